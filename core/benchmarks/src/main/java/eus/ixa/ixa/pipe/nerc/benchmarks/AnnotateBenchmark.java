@@ -0,0 +1,80 @@
+/*
+ *Copyright 2015 Rodrigo Agerri
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+
+package eus.ixa.ixa.pipe.nerc.benchmarks;
+
+import ixa.kaflib.KAFDocument;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import eus.ixa.ixa.pipe.nerc.Annotate;
+import eus.ixa.ixa.pipe.nerc.DocumentAnnotation;
+import eus.ixa.ixa.pipe.nerc.train.Flags;
+
+/**
+ * Throughput of the whole annotation of a document as done by the CLI:
+ * parsing the NAF document alone, and parsing plus named entity recognition
+ * with the statistical model and, optionally, the numeric lexer.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AnnotateBenchmark {
+
+  @Param({ "de", "en", "es", "fr", "it", "nl" })
+  public String lang;
+
+  @Param({ Flags.DEFAULT_LEXER, "numeric" })
+  public String lexer;
+
+  private Annotate annotator;
+  private String naf;
+
+  @Setup(Level.Trial)
+  public void setUp() throws IOException {
+    annotator = new Annotate(BenchmarkData.getAnnotateProperties(lang, lexer,
+        Flags.DEFAULT_DICT_OPTION));
+    naf = BenchmarkData.readInput(lang);
+  }
+
+  @Benchmark
+  public KAFDocument parse() throws IOException {
+    return BenchmarkData.parse(naf);
+  }
+
+  @Benchmark
+  public DocumentAnnotation parseAndAnnotate() throws IOException {
+    return annotator.annotateNEs(BenchmarkData.parse(naf));
+  }
+
+}
@@ -0,0 +1,225 @@
+/*
+ *Copyright 2015 Rodrigo Agerri
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+
+package eus.ixa.ixa.pipe.nerc.benchmarks;
+
+import ixa.kaflib.Entity;
+import ixa.kaflib.KAFDocument;
+import ixa.kaflib.WF;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.StringReader;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.Files;
+
+import eus.ixa.ixa.pipe.nerc.train.Flags;
+
+/**
+ * The data every benchmark runs on: the models bundled in {@code models/} and
+ * the NAF documents in {@code features/fixtures/} of the ner-base
+ * repository. The repository is found from the {@code nerc.home} system
+ * property or else by looking for a {@code models} directory upwards from the
+ * working directory.
+ */
+public final class BenchmarkData {
+
+  /**
+   * The system property with the path to the repository.
+   */
+  public static final String HOME_PROPERTY = "nerc.home";
+  /**
+   * The system property with a directory of gazetteers to use instead of
+   * those built from the fixtures.
+   */
+  public static final String DICT_PATH_PROPERTY = "nerc.dictPath";
+
+  private static File dictionaryDir;
+
+  private BenchmarkData() {
+    throw new AssertionError("This class is not meant to be instantiated!");
+  }
+
+  /**
+   * Get the directory containing the models and fixtures.
+   *
+   * @return the repository directory
+   */
+  public static File getHome() {
+    String home = System.getProperty(HOME_PROPERTY);
+    if (home != null) {
+      return new File(home);
+    }
+    File dir = new File(System.getProperty("user.dir")).getAbsoluteFile();
+    while (dir != null && !new File(dir, "models").isDirectory()) {
+      dir = dir.getParentFile();
+    }
+    if (dir == null) {
+      throw new IllegalStateException("No models directory found; set -D"
+          + HOME_PROPERTY + " to the ner-base directory");
+    }
+    return dir;
+  }
+
+  /**
+   * Get the bundled model of a language.
+   *
+   * @param lang
+   *          the language
+   * @return the path of the model
+   */
+  public static String getModel(final String lang) {
+    return new File(new File(getHome(), "models"), lang + ".bin").getPath();
+  }
+
+  /**
+   * Read the input fixture of a language.
+   *
+   * @param lang
+   *          the language
+   * @return the NAF document as a string
+   * @throws IOException
+   *           if the fixture can not be read
+   */
+  public static String readInput(final String lang) throws IOException {
+    return readFixture("input-" + lang + ".kaf");
+  }
+
+  /**
+   * Parse a NAF document.
+   *
+   * @param naf
+   *          the document
+   * @return the parsed document
+   * @throws IOException
+   *           if the document can not be parsed
+   */
+  public static KAFDocument parse(final String naf) throws IOException {
+    return KAFDocument.createFromStream(new StringReader(naf));
+  }
+
+  /**
+   * Get the tokens of every sentence of a document.
+   *
+   * @param kaf
+   *          the document
+   * @return the tokens of each sentence
+   */
+  public static List<String[]> getSentences(final KAFDocument kaf) {
+    List<String[]> sentences = new ArrayList<String[]>();
+    for (List<WF> sentence : kaf.getSentences()) {
+      String[] tokens = new String[sentence.size()];
+      for (int i = 0; i < sentence.size(); i++) {
+        tokens[i] = sentence.get(i).getForm();
+      }
+      sentences.add(tokens);
+    }
+    return sentences;
+  }
+
+  /**
+   * Get the properties to annotate a language with its bundled model.
+   *
+   * @param lang
+   *          the language
+   * @param lexer
+   *          the lexer option
+   * @param dictTag
+   *          the dictionary option
+   * @return the properties
+   * @throws IOException
+   *           if the dictionaries can not be written
+   */
+  public static Properties getAnnotateProperties(final String lang,
+      final String lexer, final String dictTag) throws IOException {
+    Properties properties = new Properties();
+    properties.setProperty("model", getModel(lang));
+    properties.setProperty("language", lang);
+    properties.setProperty("ruleBasedOption", lexer);
+    properties.setProperty("dictTag", dictTag);
+    properties.setProperty("dictPath",
+        dictTag.equals(Flags.DEFAULT_DICT_OPTION) ? Flags.DEFAULT_DICT_PATH
+            : getDictionaryDir().getPath());
+    properties.setProperty("clearFeatures", Flags.DEFAULT_FEATURE_FLAG);
+    return properties;
+  }
+
+  /**
+   * Get a directory of gazetteers built from the named entities of the
+   * output fixtures of every language, one dictionary per entity class, in
+   * the format read by {@code Dictionaries}, unless other gazetteers are
+   * given with the {@code nerc.dictPath} system property.
+   *
+   * @return the directory
+   * @throws IOException
+   *           if the dictionaries can not be written
+   */
+  public static synchronized File getDictionaryDir() throws IOException {
+    if (dictionaryDir == null && System.getProperty(DICT_PATH_PROPERTY) != null) {
+      dictionaryDir = new File(System.getProperty(DICT_PATH_PROPERTY));
+    }
+    if (dictionaryDir == null) {
+      Map<String, List<String>> entries = new LinkedHashMap<String, List<String>>();
+      File fixtures = new File(getHome(), "features/fixtures");
+      for (File fixture : fixtures.listFiles()) {
+        if (!fixture.getName().startsWith("output-")) {
+          continue;
+        }
+        KAFDocument kaf = KAFDocument.createFromFile(fixture);
+        for (Entity entity : kaf.getEntities()) {
+          List<String> typeEntries = entries.get(entity.getType());
+          if (typeEntries == null) {
+            typeEntries = new ArrayList<String>();
+            entries.put(entity.getType(), typeEntries);
+          }
+          typeEntries.add(entity.getStr() + "\t" + entity.getType());
+        }
+      }
+      File dir = Files.createTempDir();
+      for (Map.Entry<String, List<String>> typeEntries : entries.entrySet()) {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(
+            new FileOutputStream(new File(dir, typeEntries.getKey()
+                .toLowerCase() + ".txt")), Charsets.UTF_8));
+        try {
+          for (String entry : typeEntries.getValue()) {
+            writer.write(entry);
+            writer.write("\n");
+          }
+        } finally {
+          writer.close();
+        }
+      }
+      dictionaryDir = dir;
+    }
+    return dictionaryDir;
+  }
+
+  private static String readFixture(final String name) throws IOException {
+    return Files.toString(new File(new File(getHome(), "features/fixtures"),
+        name), Charsets.UTF_8);
+  }
+
+}
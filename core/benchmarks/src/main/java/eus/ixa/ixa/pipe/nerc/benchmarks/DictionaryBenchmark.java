@@ -0,0 +1,130 @@
+/*
+ *Copyright 2015 Rodrigo Agerri
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+
+package eus.ixa.ixa.pipe.nerc.benchmarks;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import eus.ixa.ixa.pipe.nerc.DictionariesNameFinder;
+import eus.ixa.ixa.pipe.nerc.dict.Dictionaries;
+import eus.ixa.ixa.pipe.nerc.dict.Dictionary;
+import eus.ixa.ixa.pipe.nerc.dict.DictionaryMatcher;
+
+/**
+ * Throughput of the gazetteer matching over every sentence of the input
+ * fixture of a language: the BIO and BILOU matches of each
+ * {@link Dictionary}, as used by the dictionary features, the
+ * {@link DictionaryMatcher} shared by all of them, and the
+ * {@link DictionariesNameFinder} used to tag and post-process named
+ * entities.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DictionaryBenchmark {
+
+  @Param({ "de", "en", "es", "fr", "it", "nl" })
+  public String lang;
+
+  private List<Dictionary> dictionaryList;
+  private DictionaryMatcher matcher;
+  private DictionariesNameFinder dictFinder;
+  private List<String[]> sentences;
+
+  @Setup(Level.Trial)
+  public void setUp() throws IOException {
+    File dictionaryDir = BenchmarkData.getDictionaryDir();
+    dictionaryList = new ArrayList<Dictionary>();
+    for (File dictFile : dictionaryDir.listFiles()) {
+      InputStream dictIn = new FileInputStream(dictFile);
+      try {
+        dictionaryList.add(new Dictionary(dictIn));
+      } finally {
+        dictIn.close();
+      }
+    }
+    matcher = new DictionaryMatcher(dictionaryList);
+    dictFinder = new DictionariesNameFinder(new Dictionaries(
+        dictionaryDir.getPath()));
+    sentences = BenchmarkData.getSentences(BenchmarkData.parse(BenchmarkData
+        .readInput(lang)));
+  }
+
+  @Benchmark
+  public void dictionaryBio(final Blackhole blackhole) {
+    for (String[] tokens : sentences) {
+      for (Dictionary dictionary : dictionaryList) {
+        blackhole.consume(dictionary.getBioDictionaryMatch(tokens));
+      }
+    }
+  }
+
+  @Benchmark
+  public void dictionaryBilou(final Blackhole blackhole) {
+    for (String[] tokens : sentences) {
+      for (Dictionary dictionary : dictionaryList) {
+        blackhole.consume(dictionary.getBilouDictionaryMatch(tokens));
+      }
+    }
+  }
+
+  @Benchmark
+  public void matcherBio(final Blackhole blackhole) {
+    for (String[] tokens : sentences) {
+      for (int i = 0; i < dictionaryList.size(); i++) {
+        blackhole.consume(matcher.getBioDictionaryMatch(tokens, i));
+      }
+    }
+  }
+
+  @Benchmark
+  public void nercToSpans(final Blackhole blackhole) {
+    for (String[] tokens : sentences) {
+      blackhole.consume(dictFinder.nercToSpans(tokens));
+    }
+  }
+
+  @Benchmark
+  public void nercToSpansExact(final Blackhole blackhole) {
+    for (String[] tokens : sentences) {
+      blackhole.consume(dictFinder.nercToSpansExact(tokens));
+    }
+  }
+
+}
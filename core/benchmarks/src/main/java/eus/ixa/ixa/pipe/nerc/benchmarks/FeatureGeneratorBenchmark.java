@@ -0,0 +1,148 @@
+/*
+ *Copyright 2015 Rodrigo Agerri
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+
+package eus.ixa.ixa.pipe.nerc.benchmarks;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import opennlp.tools.util.featuregen.AdaptiveFeatureGenerator;
+import opennlp.tools.util.featuregen.WindowFeatureGenerator;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import eus.ixa.ixa.pipe.nerc.features.CharacterNgramFeatureGenerator;
+import eus.ixa.ixa.pipe.nerc.features.FeatureGeneratorCompiler;
+import eus.ixa.ixa.pipe.nerc.features.Prefix34FeatureGenerator;
+import eus.ixa.ixa.pipe.nerc.features.PreviousMapFeatureGenerator;
+import eus.ixa.ixa.pipe.nerc.features.SentenceFeatureGenerator;
+import eus.ixa.ixa.pipe.nerc.features.SuffixFeatureGenerator;
+import eus.ixa.ixa.pipe.nerc.features.TokenClassFeatureGenerator;
+import eus.ixa.ixa.pipe.nerc.features.TokenFeatureGenerator;
+
+/**
+ * Throughput of the individual feature generators, creating the features of
+ * every token of every sentence of the input fixture of a language, as the
+ * name finder does for each token of the beam search.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FeatureGeneratorBenchmark {
+
+  @Param({ "en" })
+  public String lang;
+
+  @Param({ "token", "tokenclass", "prefix34", "suffix", "charngram",
+      "sentence", "previousmap", "window", "compiledwindow" })
+  public String generator;
+
+  /**
+   * The window of the {@code window} generator as a descriptor, compiled
+   * into the window of a fused generator.
+   */
+  private static final String WINDOW_DESCRIPTOR = "<generators>"
+      + "<window prevLength=\"2\" nextLength=\"2\"><generators>"
+      + "<custom class=\"" + TokenFeatureGenerator.class.getName() + "\"/>"
+      + "<custom class=\"" + TokenClassFeatureGenerator.class.getName() + "\"/>"
+      + "</generators></window></generators>";
+
+  private AdaptiveFeatureGenerator featureGenerator;
+  private List<String[]> sentences;
+  private final List<String> features = new ArrayList<String>();
+
+  @Setup(Level.Trial)
+  public void setUp() throws IOException {
+    featureGenerator = createGenerator(generator);
+    sentences = BenchmarkData.getSentences(BenchmarkData.parse(BenchmarkData
+        .readInput(lang)));
+  }
+
+  @Benchmark
+  public void createFeatures(final Blackhole blackhole) {
+    for (String[] tokens : sentences) {
+      for (int i = 0; i < tokens.length; i++) {
+        features.clear();
+        featureGenerator.createFeatures(features, tokens, i, null);
+        blackhole.consume(features);
+      }
+    }
+    featureGenerator.clearAdaptiveData();
+  }
+
+  /**
+   * Create a feature generator with the attributes of the default feature
+   * descriptor.
+   *
+   * @param name
+   *          the name of the generator
+   * @return the generator
+   * @throws IOException
+   *           if the generator can not be initialized
+   */
+  private static AdaptiveFeatureGenerator createGenerator(final String name)
+      throws IOException {
+    Map<String, String> attributes = new HashMap<String, String>();
+    if (name.equals("token")) {
+      return new TokenFeatureGenerator();
+    } else if (name.equals("tokenclass")) {
+      return new TokenClassFeatureGenerator();
+    } else if (name.equals("prefix34")) {
+      return new Prefix34FeatureGenerator();
+    } else if (name.equals("suffix")) {
+      return new SuffixFeatureGenerator();
+    } else if (name.equals("charngram")) {
+      CharacterNgramFeatureGenerator charNgram = new CharacterNgramFeatureGenerator();
+      attributes.put("minLength", "2");
+      attributes.put("maxLength", "5");
+      charNgram.init(attributes, null);
+      return charNgram;
+    } else if (name.equals("sentence")) {
+      SentenceFeatureGenerator sentence = new SentenceFeatureGenerator();
+      sentence.init(attributes, null);
+      return sentence;
+    } else if (name.equals("previousmap")) {
+      return new PreviousMapFeatureGenerator();
+    } else if (name.equals("window")) {
+      return new WindowFeatureGenerator(2, 2, new TokenFeatureGenerator(),
+          new TokenClassFeatureGenerator());
+    } else if (name.equals("compiledwindow")) {
+      return FeatureGeneratorCompiler.compile(WINDOW_DESCRIPTOR.getBytes("UTF-8"),
+          null);
+    }
+    throw new IllegalArgumentException("Unknown feature generator " + name);
+  }
+
+}
@@ -0,0 +1,78 @@
+/*
+ *Copyright 2015 Rodrigo Agerri
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+
+package eus.ixa.ixa.pipe.nerc.benchmarks;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import eus.ixa.ixa.pipe.nerc.NameFactory;
+import eus.ixa.ixa.pipe.nerc.NumericNameFinder;
+
+/**
+ * Throughput of the numeric lexer over the input fixture of a language,
+ * lexing every sentence on its own and the whole document in one pass as
+ * {@code Annotate} does.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class NumericNameFinderBenchmark {
+
+  @Param({ "de", "en", "es", "fr", "it", "nl" })
+  public String lang;
+
+  private NumericNameFinder numericFinder;
+  private List<String[]> sentences;
+
+  @Setup(Level.Trial)
+  public void setUp() throws IOException {
+    numericFinder = new NumericNameFinder(new NameFactory());
+    sentences = BenchmarkData.getSentences(BenchmarkData.parse(BenchmarkData
+        .readInput(lang)));
+  }
+
+  @Benchmark
+  public void sentences(final Blackhole blackhole) {
+    for (String[] tokens : sentences) {
+      blackhole.consume(numericFinder.nercToSpans(tokens));
+    }
+  }
+
+  @Benchmark
+  public Object document() {
+    return numericFinder.nercToSpans(sentences);
+  }
+
+}
@@ -0,0 +1,79 @@
+/*
+ *Copyright 2015 Rodrigo Agerri
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+
+package eus.ixa.ixa.pipe.nerc.benchmarks;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import eus.ixa.ixa.pipe.nerc.Annotate;
+import eus.ixa.ixa.pipe.nerc.DocumentAnnotation;
+import eus.ixa.ixa.pipe.nerc.train.Flags;
+
+/**
+ * Throughput of the output writers, rendering the annotation of the input
+ * fixture of a language in every output format.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WriterBenchmark {
+
+  @Param({ "de", "en", "es", "fr", "it", "nl" })
+  public String lang;
+
+  @Param({ "naf", "conll03", "conll02", "opennlp" })
+  public String outputFormat;
+
+  private DocumentAnnotation annotation;
+
+  @Setup(Level.Trial)
+  public void setUp() throws IOException {
+    Annotate annotator = new Annotate(BenchmarkData.getAnnotateProperties(
+        lang, Flags.DEFAULT_LEXER, Flags.DEFAULT_DICT_OPTION));
+    annotation = annotator.annotateNEs(BenchmarkData.parse(BenchmarkData
+        .readInput(lang)));
+  }
+
+  @Benchmark
+  public String write() {
+    if (outputFormat.equals("conll03")) {
+      return Annotate.annotateNEsToCoNLL2003(annotation);
+    } else if (outputFormat.equals("conll02")) {
+      return Annotate.annotateNEsToCoNLL2002(annotation);
+    } else if (outputFormat.equals("opennlp")) {
+      return Annotate.annotateNEsToOpenNLP(annotation);
+    }
+    return Annotate.annotateNEsToKAF(annotation);
+  }
+
+}
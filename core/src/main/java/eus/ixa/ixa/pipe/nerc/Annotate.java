@@ -21,9 +21,7 @@ import ixa.kaflib.KAFDocument;
 import ixa.kaflib.Term;
 import ixa.kaflib.WF;
 
-import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.StringReader;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
@@ -37,6 +35,7 @@ import opennlp.tools.namefind.NameFinderME;
 import opennlp.tools.namefind.NameSample;
 import opennlp.tools.util.Span;
 import eus.ixa.ixa.pipe.nerc.dict.Dictionaries;
+import eus.ixa.ixa.pipe.nerc.features.DocumentState;
 import eus.ixa.ixa.pipe.nerc.train.Flags;
 
 /**
@@ -89,11 +88,21 @@ public class Annotate {
    * Clear features after every sentence or when a -DOCSTART- mark appears.
    */
   private String clearFeatures;
+  /**
+   * The maximum number of tokens in the adaptive data of a document, 0 to
+   * use the capacity set by the model.
+   */
+  private int adaptiveCapacity;
 
   /**
    * The name of the language to annotate.
    */
   private String language;
+  /**
+   * Reads the POS tags and lemmas of the NAF term layer for the feature
+   * generators, null if they POS tag every sentence themselves.
+   */
+  private MorphologyLayer morphologyLayer;
 
   /** It manages the use of the three different name finders: {@code StatisticalNameFinder},
    * {@code DictionariesNameFinder} and {@code NumericNameFinder}. In particular, if --dictTag
@@ -103,6 +112,9 @@ public class Annotate {
    * Obviously, this option depends on the --dictPath parameter being correctly specified. The
    * --lexer numeric option annotates numeric entities (dates, percentages, and so on) via rules.
    * Finally, the oepc option post-process the output using the one entity per class hypothesis.
+   * If the posLayer option is "morphofeat" or "pos", the morphological features of the
+   * statistical model use the POS tags and lemmas of the NAF term layer, mapped with the
+   * posMapping tagset mapping, instead of POS tagging each sentence again.
    * @param properties
    *          the properties
    * @throws IOException
@@ -111,10 +123,20 @@ public class Annotate {
   public Annotate(final Properties properties) throws IOException {
 
     this.clearFeatures = properties.getProperty("clearFeatures");
+    this.adaptiveCapacity = Integer.parseInt(properties.getProperty(
+        "adaptiveCapacity", Flags.DEFAULT_ADAPTIVE_CAPACITY));
     nameFactory = new NameFactory();
     annotateOptions(properties);
 
     this.language = properties.getProperty("language");
+    if (lexerFind) {
+      numericLexerFinder = new NumericNameFinder(nameFactory);
+    }
+    String posLayer = properties.getProperty("posLayer", Flags.DEFAULT_POS_LAYER);
+    if (statistical && !posLayer.equals(Flags.DEFAULT_POS_LAYER)) {
+      morphologyLayer = new MorphologyLayer(posLayer, properties.getProperty(
+          "posMapping", Flags.DEFAULT_POS_MAPPING));
+    }
   }
 
   /**
@@ -186,6 +208,38 @@ public class Annotate {
     return nameFinder;
   }
 
+  /**
+   * Warm the annotator up after loading its models, annotating some NAF
+   * documents with every enabled name finder and serializing them in every
+   * output format until the steady state is reached.
+   *
+   * @param documents
+   *          the NAF documents of the workload, or null for the synthetic
+   *          document of the language of the annotator
+   * @param warmUp
+   *          the warm-up settings
+   * @return the report of the warm-up
+   * @throws IOException
+   *           if the documents can not be annotated
+   */
+  public final WarmUp.Report warmUp(final List<String> documents,
+      final WarmUp warmUp) throws IOException {
+    final List<String> workload = documents != null ? documents : Arrays
+        .asList(WarmUp.syntheticDocument(language));
+    return warmUp.run("annotator " + language, new WarmUp.Workload() {
+      public void run() throws IOException {
+        for (String document : workload) {
+          DocumentAnnotation annotation = annotateNEs(WarmUp
+              .parseDocument(document));
+          annotateNEsToKAF(annotation);
+          annotateNEsToOpenNLP(annotation);
+          annotateNEsToCoNLL2003(annotation);
+          annotateNEsToCoNLL2002(annotation);
+        }
+      }
+    });
+  }
+
   /**
    * Classify Named Entities creating the entities layer in the
    * {@link KAFDocument} using statistical models, post-processing and/or
@@ -193,26 +247,61 @@ public class Annotate {
    *
    * @param kaf
    *          the kaf document to be used for annotation
+   * @return the named entities found, from which every output format is
+   *         rendered
    * @throws IOException
    *           throws exception if problems with the kaf document
    */
-  public final void annotateNEs(final KAFDocument kaf) throws IOException {
+  public final DocumentAnnotation annotateNEs(final KAFDocument kaf) throws IOException {
+    return annotate(kaf, true);
+  }
 
+  /**
+   * Classify the Named Entities of a {@link KAFDocument}.
+   *
+   * @param kaf
+   *          the kaf document to be used for annotation
+   * @param addEntities
+   *          whether to add the named entities to the entities layer
+   * @return the named entities found
+   */
+  private DocumentAnnotation annotate(final KAFDocument kaf, final boolean addEntities) {
+
+    DocumentAnnotation annotation = new DocumentAnnotation(kaf);
+    // the adaptive data of this document only
+    DocumentState documentState = new DocumentState(adaptiveCapacity);
+    boolean isClearAdaptiveData = clearFeatures.equalsIgnoreCase("yes");
     List<Span> allSpans = null;
     List<List<WF>> sentences = kaf.getSentences();
+    List<String[]> sentenceTokens = new ArrayList<String[]>(sentences.size());
     for (List<WF> sentence : sentences) {
-      //process each sentence
       String[] tokens = new String[sentence.size()];
-      String[] tokenIds = new String[sentence.size()];
       for (int i = 0; i < sentence.size(); i++) {
         tokens[i] = sentence.get(i).getForm();
+      }
+      sentenceTokens.add(tokens);
+    }
+    // the numeric names of the whole document are found in one pass
+    Span[][] numericSpans = null;
+    if (lexerFind) {
+      numericSpans = numericLexerFinder.nercToSpans(sentenceTokens);
+    }
+    for (int s = 0; s < sentences.size(); s++) {
+      //process each sentence
+      List<WF> sentence = sentences.get(s);
+      String[] tokens = sentenceTokens.get(s);
+      String[] tokenIds = new String[sentence.size()];
+      for (int i = 0; i < sentence.size(); i++) {
         tokenIds[i] = sentence.get(i).getId();
       }
       if (statistical) {
         if (clearFeatures.equalsIgnoreCase("docstart") && tokens[0].startsWith("-DOCSTART-")) {
-          nameFinder.clearAdaptiveData();
+          nameFinder.clearAdaptiveData(documentState);
+        }
+        if (morphologyLayer != null) {
+          morphologyLayer.setSentence(kaf, sentence, tokens);
         }
-        Span[] statSpans = nameFinder.nercToSpans(tokens);
+        Span[] statSpans = nameFinder.nercToSpans(tokens, documentState);
         allSpans = Lists.newArrayList(statSpans);
       }
       if (postProcess) {
@@ -225,12 +314,7 @@ public class Annotate {
         allSpans = Lists.newArrayList(dictOnlySpans);
       }
       if (lexerFind) {
-        String sentenceText = StringUtils.getStringFromTokens(tokens);
-        StringReader stringReader = new StringReader(sentenceText);
-        BufferedReader sentenceReader = new BufferedReader(stringReader);
-        numericLexerFinder = new NumericNameFinder(sentenceReader, nameFactory);
-        Span[] numericSpans = numericLexerFinder.nercToSpans(tokens);
-        SpanUtils.concatenateSpans(allSpans, numericSpans);
+        SpanUtils.concatenateSpans(allSpans, numericSpans[s]);
       }
       Span[] allSpansArray = NameFinderME.dropOverlappingSpans(allSpans
           .toArray(new Span[allSpans.size()]));
@@ -240,22 +324,33 @@ public class Annotate {
       } else {
         names = dictFinder.getNamesFromSpans(allSpansArray, tokens);
       }
+      List<List<Term>> entityTerms = new ArrayList<List<Term>>();
+      List<String> entityTypes = new ArrayList<String>();
       for (Name name : names) {
         Integer startIndex = name.getSpan().getStart();
         Integer endIndex = name.getSpan().getEnd();
         List<Term> nameTerms = kaf.getTermsFromWFs(Arrays.asList(Arrays
             .copyOfRange(tokenIds, startIndex, endIndex)));
-        ixa.kaflib.Span<Term> neSpan = KAFDocument.newTermSpan(nameTerms);
-        List<ixa.kaflib.Span<Term>> references = new ArrayList<ixa.kaflib.Span<Term>>();
-        references.add(neSpan);
-        Entity neEntity = kaf.newEntity(references);
-        neEntity.setType(name.getType());
+        if (addEntities) {
+          ixa.kaflib.Span<Term> neSpan = KAFDocument.newTermSpan(nameTerms);
+          List<ixa.kaflib.Span<Term>> references = new ArrayList<ixa.kaflib.Span<Term>>();
+          references.add(neSpan);
+          Entity neEntity = kaf.newEntity(references);
+          neEntity.setType(name.getType());
+        }
+        entityTerms.add(nameTerms);
+        entityTypes.add(name.getType());
       }
-      if (clearFeatures.equalsIgnoreCase("yes")) {
-        nameFinder.clearAdaptiveData();
+      annotation.addSentence(tokens, tokenIds, allSpansArray, entityTerms,
+          entityTypes, isClearAdaptiveData);
+      if (statistical && isClearAdaptiveData) {
+        nameFinder.clearAdaptiveData(documentState);
       }
     }
-    nameFinder.clearAdaptiveData();
+    if (statistical) {
+      nameFinder.clearAdaptiveData(documentState);
+    }
+    return annotation;
   }
 
   /**
@@ -292,57 +387,42 @@ public class Annotate {
   }
 
   /**
-   * Output annotation in OpenNLP format.
+   * Output annotation as NAF.
+   *
+   * @param annotation
+   *          the named entities found by {@link #annotateNEs(KAFDocument)}
+   * @return the string containing the naf document
+   */
+  public static String annotateNEsToKAF(DocumentAnnotation annotation) {
+    return annotation.getDocument().toString();
+  }
+
+  /**
+   * Output annotation in OpenNLP format. The named entities are classified
+   * without adding them to the entities layer of the document.
    *
    * @param kaf
    *          the naf document
    * @return the string containing the annotated document
    */
   public final String annotateNEsToOpenNLP(KAFDocument kaf) {
+    return annotateNEsToOpenNLP(annotate(kaf, false));
+  }
+
+  /**
+   * Output annotation in OpenNLP format.
+   *
+   * @param annotation
+   *          the named entities found by {@link #annotateNEs(KAFDocument)}
+   * @return the string containing the annotated document
+   */
+  public static String annotateNEsToOpenNLP(DocumentAnnotation annotation) {
     StringBuilder sb = new StringBuilder();
-    List<Span> allSpans = null;
-    List<List<WF>> sentences = kaf.getSentences();
-    for (List<WF> sentence : sentences) {
-      String[] tokens = new String[sentence.size()];
-      String[] tokenIds = new String[sentence.size()];
-      for (int i = 0; i < sentence.size(); i++) {
-        tokens[i] = sentence.get(i).getForm();
-        tokenIds[i] = sentence.get(i).getId();
-      }
-      if (statistical) {
-        if (clearFeatures.equalsIgnoreCase("docstart") && tokens[0].startsWith("-DOCSTART-")) {
-          nameFinder.clearAdaptiveData();
-        }
-        Span[] statSpans = nameFinder.nercToSpans(tokens);
-        allSpans = Lists.newArrayList(statSpans);
-      }
-      if (postProcess) {
-        Span[] dictSpans = dictFinder.nercToSpansExact(tokens);
-        SpanUtils.postProcessDuplicatedSpans(allSpans, dictSpans);
-        SpanUtils.concatenateSpans(allSpans, dictSpans);
-      }
-      if (dictTag) {
-        Span[] dictOnlySpans = dictFinder.nercToSpansExact(tokens);
-        allSpans = Lists.newArrayList(dictOnlySpans);
-      }
-      if (lexerFind) {
-        String sentenceText = StringUtils.getStringFromTokens(tokens);
-        StringReader stringReader = new StringReader(sentenceText);
-        BufferedReader sentenceReader = new BufferedReader(stringReader);
-        numericLexerFinder = new NumericNameFinder(sentenceReader, nameFactory);
-        Span[] numericSpans = numericLexerFinder.nercToSpans(tokens);
-        SpanUtils.concatenateSpans(allSpans, numericSpans);
-      }
-      boolean isClearAdaptiveData = false;
-      if (clearFeatures.equalsIgnoreCase("yes")) {
-        isClearAdaptiveData = true;
-      }
-      Span[] allSpansArray = NameFinderME.dropOverlappingSpans(allSpans
-          .toArray(new Span[allSpans.size()]));
-      NameSample nameSample = new NameSample(tokens, allSpansArray, isClearAdaptiveData);
+    for (DocumentAnnotation.SentenceAnnotation sentence : annotation.getSentences()) {
+      NameSample nameSample = new NameSample(sentence.getTokens(), sentence.getSpans(),
+          sentence.isClearAdaptiveData());
       sb.append(nameSample.toString()).append("\n");
     }
-    nameFinder.clearAdaptiveData();
     return sb.toString();
   }
 
@@ -363,26 +443,30 @@ public class Annotate {
   }
 
   /**
-   * Output Conll2003 format.
+   * Output Conll2003 format. The named entities are those of the entities
+   * layer of the document.
    *
    * @param kaf
    *          the kaf document
    * @return the annotated named entities in conll03 format
    */
   public String annotateNEsToCoNLL2003(KAFDocument kaf) {
-    List<Entity> namedEntityList = kaf.getEntities();
+    return annotateNEsToCoNLL2003(DocumentAnnotation.fromEntities(kaf,
+        clearFeatures.equalsIgnoreCase("yes")));
+  }
+
+  /**
+   * Output Conll2003 format.
+   *
+   * @param annotation
+   *          the named entities found by {@link #annotateNEs(KAFDocument)}
+   * @return the annotated named entities in conll03 format
+   */
+  public static String annotateNEsToCoNLL2003(DocumentAnnotation annotation) {
+    KAFDocument kaf = annotation.getDocument();
     Map<String, Integer> entityToSpanSize = new HashMap<String, Integer>();
     Map<String, String> entityToType = new HashMap<String, String>();
-    for (Entity ne : namedEntityList) {
-      List<ixa.kaflib.Span<Term>> entitySpanList = ne.getSpans();
-      for (ixa.kaflib.Span<Term> spanTerm : entitySpanList) {
-        Term neTerm = spanTerm.getFirstTarget();
-        // create map from term Id to Entity span size
-        entityToSpanSize.put(neTerm.getId(), spanTerm.size());
-        // create map from term Id to Entity type
-        entityToType.put(neTerm.getId(), ne.getType());
-      }
-    }
+    mapEntityTerms(annotation, entityToSpanSize, entityToType);
 
     List<List<WF>> sentences = kaf.getSentences();
     StringBuilder sb = new StringBuilder();
@@ -398,7 +482,7 @@ public class Annotate {
         if (entityToSpanSize.get(thisTerm.getId()) != null) {
           int neSpanSize = entityToSpanSize.get(thisTerm.getId());
           String neClass = entityToType.get(thisTerm.getId());
-          String neType = this.convertToConLLTypes(neClass);
+          String neType = convertToConLLTypes(neClass);
           // if Entity span is multi token
           if (neSpanSize > 1) {
             for (int j = 0; j < neSpanSize; j++) {
@@ -455,24 +539,30 @@ public class Annotate {
   }
 
   /**
-   * Output Conll2002 format.
+   * Output Conll2002 format. The named entities are those of the entities
+   * layer of the document.
    *
    * @param kaf
    *          the kaf document
    * @return the annotated named entities in conll03 format
    */
   public String annotateNEsToCoNLL2002(KAFDocument kaf) {
-    List<Entity> namedEntityList = kaf.getEntities();
+    return annotateNEsToCoNLL2002(DocumentAnnotation.fromEntities(kaf,
+        clearFeatures.equalsIgnoreCase("yes")));
+  }
+
+  /**
+   * Output Conll2002 format.
+   *
+   * @param annotation
+   *          the named entities found by {@link #annotateNEs(KAFDocument)}
+   * @return the annotated named entities in conll02 format
+   */
+  public static String annotateNEsToCoNLL2002(DocumentAnnotation annotation) {
+    KAFDocument kaf = annotation.getDocument();
     Map<String, Integer> entityToSpanSize = new HashMap<String, Integer>();
     Map<String, String> entityToType = new HashMap<String, String>();
-    for (Entity ne : namedEntityList) {
-      List<ixa.kaflib.Span<Term>> entitySpanList = ne.getSpans();
-      for (ixa.kaflib.Span<Term> spanTerm : entitySpanList) {
-        Term neTerm = spanTerm.getFirstTarget();
-        entityToSpanSize.put(neTerm.getId(), spanTerm.size());
-        entityToType.put(neTerm.getId(), ne.getType());
-      }
-    }
+    mapEntityTerms(annotation, entityToSpanSize, entityToType);
 
     List<List<WF>> sentences = kaf.getSentences();
     StringBuilder sb = new StringBuilder();
@@ -532,6 +622,33 @@ public class Annotate {
     return sb.toString();
   }
 
+  /**
+   * Map the id of the first term of every named entity to the number of terms
+   * of the entity and to its type in the entities layer.
+   *
+   * @param annotation
+   *          the named entities of a document
+   * @param entityToSpanSize
+   *          the map from term id to entity span size
+   * @param entityToType
+   *          the map from term id to entity type
+   */
+  private static void mapEntityTerms(DocumentAnnotation annotation,
+      Map<String, Integer> entityToSpanSize, Map<String, String> entityToType) {
+    for (DocumentAnnotation.SentenceAnnotation sentence : annotation.getSentences()) {
+      Span[] spans = sentence.getSpans();
+      List<List<Term>> entityTerms = sentence.getEntityTerms();
+      List<String> entityTypes = sentence.getEntityTypes();
+      for (int i = 0; i < spans.length; i++) {
+        List<Term> nameTerms = entityTerms.get(i);
+        if (!nameTerms.isEmpty()) {
+          entityToSpanSize.put(nameTerms.get(0).getId(), nameTerms.size());
+          entityToType.put(nameTerms.get(0).getId(), entityTypes.get(i));
+        }
+      }
+    }
+  }
+
   /**
    * Convert Entity class annotation to CoNLL formats.
    *
@@ -539,7 +656,7 @@ public class Annotate {
    *          named entity class
    * @return the converted string
    */
-  public String convertToConLLTypes(String neType) {
+  public static String convertToConLLTypes(String neType) {
     String conllType = null;
     if (neType.equalsIgnoreCase("PERSON") || neType.equalsIgnoreCase("ORGANIZATION")
         || neType.equalsIgnoreCase("LOCATION") || neType.length() == 3) {
@@ -0,0 +1,206 @@
+/*
+ *Copyright 2015 Rodrigo Agerri
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+
+package eus.ixa.ixa.pipe.nerc;
+
+import ixa.kaflib.KAFDocument;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Properties;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Thread-safe annotation facade over a pool of {@link Annotate} objects.
+ *
+ * The adaptive data of every document is kept in its own
+ * {@link eus.ixa.ixa.pipe.nerc.features.DocumentState}, but the
+ * {@code NameFinderME} of an {@link Annotate} (its beam search and the
+ * sentence caches of its feature generators) can only be used by one thread
+ * at a time. This pool lends each thread its own {@link Annotate}, creating a
+ * new one when every other is busy. Every
+ * {@link StatisticalNameFinder} takes its model from the static models cache,
+ * so all the annotators share the same copy of the model weights and
+ * resources, and only the {@code NameFinderME} and its feature generators are
+ * created per annotator.
+ */
+public class AnnotatePool {
+
+  /**
+   * The properties used to create every annotator.
+   */
+  private final Properties properties;
+  /**
+   * The annotators not lent to any thread.
+   */
+  private final Queue<Annotate> idleAnnotators = new ConcurrentLinkedQueue<Annotate>();
+  /**
+   * The number of annotators created by the pool.
+   */
+  private final AtomicInteger poolSize = new AtomicInteger();
+
+  /**
+   * Construct a pool of annotators. The models and dictionaries are loaded
+   * by creating the first annotator.
+   *
+   * @param aProperties
+   *          the properties of every {@link Annotate}
+   * @throws IOException
+   *           if the first annotator can not be created
+   */
+  public AnnotatePool(final Properties aProperties) throws IOException {
+    this.properties = new Properties();
+    this.properties.putAll(aProperties);
+    idleAnnotators.add(createAnnotator());
+  }
+
+  /**
+   * Take an annotator from the pool for the exclusive use of the caller, who
+   * has to give it back with {@link #releaseAnnotator(Annotate)}.
+   *
+   * @return the annotator
+   * @throws IOException
+   *           if a new annotator can not be created
+   */
+  public final Annotate borrowAnnotator() throws IOException {
+    Annotate annotator = idleAnnotators.poll();
+    if (annotator == null) {
+      annotator = createAnnotator();
+    }
+    return annotator;
+  }
+
+  /**
+   * Give back an annotator to the pool. The adaptive data of the feature
+   * generators not kept in a document state is cleared, in case the last
+   * document was not fully annotated.
+   *
+   * @param annotator
+   *          the annotator
+   */
+  public final void releaseAnnotator(final Annotate annotator) {
+    StatisticalNameFinder nameFinder = annotator.getStatisticalNameFinder();
+    if (nameFinder != null) {
+      nameFinder.clearAdaptiveData();
+    }
+    idleAnnotators.add(annotator);
+  }
+
+  /**
+   * Warm up an annotator of the pool, see
+   * {@link Annotate#warmUp(List, WarmUp)}. The code compiled by the
+   * JIT compiler is shared, so the annotators created later start warm too.
+   *
+   * @param documents
+   *          the NAF documents of the workload, or null for a synthetic
+   *          document
+   * @param warmUp
+   *          the warm-up settings
+   * @return the report of the warm-up
+   * @throws IOException
+   *           if the documents can not be annotated
+   */
+  public final WarmUp.Report warmUp(final List<String> documents,
+      final WarmUp warmUp) throws IOException {
+    Annotate annotator = borrowAnnotator();
+    try {
+      return annotator.warmUp(documents, warmUp);
+    } finally {
+      releaseAnnotator(annotator);
+    }
+  }
+
+  /**
+   * Get the number of annotators created by the pool, which is the maximum
+   * number of documents annotated at the same time.
+   *
+   * @return the number of annotators
+   */
+  public final int getPoolSize() {
+    return poolSize.get();
+  }
+
+  /**
+   * Classify Named Entities creating the entities layer in the
+   * {@link KAFDocument}.
+   *
+   * @param kaf
+   *          the kaf document to be used for annotation
+   * @return the named entities found
+   * @throws IOException
+   *           throws exception if problems with the kaf document
+   * @see Annotate#annotateNEs(KAFDocument)
+   */
+  public final DocumentAnnotation annotateNEs(final KAFDocument kaf) throws IOException {
+    Annotate annotator = borrowAnnotator();
+    try {
+      return annotator.annotateNEs(kaf);
+    } finally {
+      releaseAnnotator(annotator);
+    }
+  }
+
+  /**
+   * Annotates the given KAF document and sets the linguisticProcessor details.
+   *
+   * @param enableTimestamp
+   *          whether to include a dynamic or static timestamp
+   * @param kaf
+   *          the KAF document to annotate
+   * @return the annotated document
+   * @throws IOException
+   *           throws exception if problems with the kaf document
+   * @see Annotate#annotateKAF(boolean, KAFDocument)
+   */
+  public final String annotateKAF(final boolean enableTimestamp,
+      final KAFDocument kaf) throws IOException {
+    Annotate annotator = borrowAnnotator();
+    try {
+      return annotator.annotateKAF(enableTimestamp, kaf);
+    } finally {
+      releaseAnnotator(annotator);
+    }
+  }
+
+  /**
+   * Output annotation in OpenNLP format.
+   *
+   * @param kaf
+   *          the naf document
+   * @return the string containing the annotated document
+   * @throws IOException
+   *           if a new annotator can not be created
+   * @see Annotate#annotateNEsToOpenNLP(KAFDocument)
+   */
+  public final String annotateNEsToOpenNLP(final KAFDocument kaf)
+      throws IOException {
+    Annotate annotator = borrowAnnotator();
+    try {
+      return annotator.annotateNEsToOpenNLP(kaf);
+    } finally {
+      releaseAnnotator(annotator);
+    }
+  }
+
+  private Annotate createAnnotator() throws IOException {
+    Annotate annotator = new Annotate(properties);
+    poolSize.incrementAndGet();
+    return annotator;
+  }
+
+}
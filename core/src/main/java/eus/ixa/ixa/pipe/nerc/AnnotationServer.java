@@ -0,0 +1,341 @@
+/*
+ *Copyright 2015 Rodrigo Agerri
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+
+package eus.ixa.ixa.pipe.nerc;
+
+import ixa.kaflib.KAFDocument;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import com.google.common.io.Files;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Long running annotation server. The models and dictionaries of every
+ * language are loaded once when the server is created; then each NAF document
+ * posted to the server is annotated, reusing the {@link Annotate} and
+ * {@link OpinionTargetExtractor} code paths, and the annotated document is
+ * sent back in the response.
+ *
+ * Requests are served by a fixed pool of threads. Each document is annotated
+ * with its own {@link Annotate} (from an {@link AnnotatePool}) or
+ * {@link OpinionTargetExtractor}, all of them sharing the models loaded at
+ * start up.
+ */
+public class AnnotationServer {
+
+  /**
+   * The path the documents are posted to.
+   */
+  public static final String CONTEXT_PATH = "/";
+
+  /**
+   * The task performed by the server, "tag" or "ote".
+   */
+  private final String task;
+  /**
+   * The output format of the annotated documents.
+   */
+  private final String outputFormat;
+  /**
+   * The version of ixa-pipe-nerc written in the linguistic processors.
+   */
+  private final String version;
+  /**
+   * The name of the model of each language.
+   */
+  private final Map<String, String> modelNames = new LinkedHashMap<String, String>();
+  /**
+   * The annotators of each language for the NERC task.
+   */
+  private final Map<String, AnnotatePool> annotatePools = new LinkedHashMap<String, AnnotatePool>();
+  /**
+   * The idle opinion target extractors of each language for the OTE task.
+   */
+  private final Map<String, Queue<OpinionTargetExtractor>> oteExtractors = new LinkedHashMap<String, Queue<OpinionTargetExtractor>>();
+  /**
+   * The properties of each language, to create more opinion target extractors.
+   */
+  private final Map<String, Properties> oteProperties = new LinkedHashMap<String, Properties>();
+  private HttpServer httpServer;
+  private ExecutorService executor;
+
+  /**
+   * Construct a server loading the model of every language.
+   *
+   * @param languageProperties
+   *          the annotation properties of each language, as used by
+   *          {@link Annotate} or {@link OpinionTargetExtractor}
+   * @param aTask
+   *          the task, "tag" for NERC and "ote" for opinion target extraction
+   * @param anOutputFormat
+   *          the output format
+   * @param aVersion
+   *          the version to write in the linguistic processors
+   * @throws IOException
+   *           if the models can not be loaded
+   */
+  public AnnotationServer(final Map<String, Properties> languageProperties,
+      final String aTask, final String anOutputFormat, final String aVersion)
+      throws IOException {
+    this.task = aTask;
+    this.outputFormat = anOutputFormat;
+    this.version = aVersion;
+    for (Map.Entry<String, Properties> entry : languageProperties.entrySet()) {
+      String lang = entry.getKey();
+      Properties properties = entry.getValue();
+      modelNames.put(lang,
+          Files.getNameWithoutExtension(properties.getProperty("model")));
+      System.err.println("Loading " + task + " model for language " + lang
+          + ": " + properties.getProperty("model"));
+      if (task.equalsIgnoreCase("ote")) {
+        Queue<OpinionTargetExtractor> extractors = new ConcurrentLinkedQueue<OpinionTargetExtractor>();
+        extractors.add(new OpinionTargetExtractor(properties));
+        oteExtractors.put(lang, extractors);
+        oteProperties.put(lang, properties);
+      } else {
+        annotatePools.put(lang, new AnnotatePool(properties));
+      }
+    }
+  }
+
+  /**
+   * Warm up the annotators of every language before serving requests,
+   * annotating the documents of the language in the output format of the
+   * server until the steady state is reached, see {@link WarmUp}. The report
+   * of each language is printed in the standard error.
+   *
+   * @param documents
+   *          the NAF documents of the workload; a synthetic document is used
+   *          for the languages without documents or if null
+   * @param warmUp
+   *          the warm-up settings
+   * @throws IOException
+   *           if the documents can not be annotated
+   */
+  public final void warmUp(final List<String> documents, final WarmUp warmUp)
+      throws IOException {
+    for (String lang : modelNames.keySet()) {
+      final List<String> workload = WarmUp.selectDocuments(documents, lang);
+      WarmUp.Report report = warmUp.run(task + " server " + lang,
+          new WarmUp.Workload() {
+            public void run() throws IOException {
+              for (String document : workload) {
+                annotate(WarmUp.parseDocument(document));
+              }
+            }
+          });
+      System.err.println(report);
+    }
+  }
+
+  /**
+   * Start serving requests.
+   *
+   * @param hostname
+   *          the host name or address to bind to
+   * @param port
+   *          the port
+   * @param threads
+   *          the number of documents annotated at the same time
+   * @throws IOException
+   *           if the server can not be bound to the address
+   */
+  public final void start(final String hostname, final int port,
+      final int threads) throws IOException {
+    executor = Executors.newFixedThreadPool(threads);
+    httpServer = HttpServer.create(new InetSocketAddress(hostname, port), 0);
+    httpServer.createContext(CONTEXT_PATH, new AnnotationHandler());
+    httpServer.setExecutor(executor);
+    httpServer.start();
+    System.err.println("ixa-pipe-nerc server listening at " + hostname + ":"
+        + port + " for languages " + getLanguages());
+  }
+
+  /**
+   * Stop serving requests, waiting for the documents being annotated.
+   */
+  public final void stop() {
+    if (httpServer != null) {
+      httpServer.stop(1);
+      executor.shutdown();
+    }
+  }
+
+  /**
+   * Get the languages with a model loaded.
+   *
+   * @return the languages
+   */
+  public final Iterable<String> getLanguages() {
+    return Collections.unmodifiableSet(modelNames.keySet());
+  }
+
+  /**
+   * Annotate a document, adding the linguistic processor of the task.
+   *
+   * @param kaf
+   *          the document
+   * @return the annotated document in the output format
+   * @throws IOException
+   *           if the document can not be annotated
+   * @throws IllegalArgumentException
+   *           if no model is loaded for the language of the document
+   */
+  public final String annotate(final KAFDocument kaf) throws IOException {
+    String lang = kaf.getLang();
+    if (!modelNames.containsKey(lang)) {
+      throw new IllegalArgumentException("No model loaded for language "
+          + lang + "!");
+    }
+    if (task.equalsIgnoreCase("ote")) {
+      return extractOte(lang, kaf);
+    } else {
+      return annotateNEs(lang, kaf);
+    }
+  }
+
+  private String annotateNEs(final String lang, final KAFDocument kaf)
+      throws IOException {
+    AnnotatePool pool = annotatePools.get(lang);
+    Annotate annotator = pool.borrowAnnotator();
+    DocumentAnnotation annotation = null;
+    try {
+      KAFDocument.LinguisticProcessor newLp = kaf.addLinguisticProcessor(
+          "entities", "ixa-pipe-nerc-" + modelNames.get(lang), version);
+      newLp.setBeginTimestamp();
+      annotation = annotator.annotateNEs(kaf);
+      newLp.setEndTimestamp();
+    } finally {
+      pool.releaseAnnotator(annotator);
+    }
+    String kafToString = null;
+    if (outputFormat.equalsIgnoreCase("conll03")) {
+      kafToString = Annotate.annotateNEsToCoNLL2003(annotation);
+    } else if (outputFormat.equalsIgnoreCase("conll02")) {
+      kafToString = Annotate.annotateNEsToCoNLL2002(annotation);
+    } else if (outputFormat.equalsIgnoreCase("opennlp")) {
+      kafToString = Annotate.annotateNEsToOpenNLP(annotation);
+    } else {
+      kafToString = Annotate.annotateNEsToKAF(annotation);
+    }
+    return kafToString;
+  }
+
+  private String extractOte(final String lang, final KAFDocument kaf)
+      throws IOException {
+    Queue<OpinionTargetExtractor> extractors = oteExtractors.get(lang);
+    OpinionTargetExtractor oteExtractor = extractors.poll();
+    if (oteExtractor == null) {
+      oteExtractor = new OpinionTargetExtractor(oteProperties.get(lang));
+    }
+    try {
+      KAFDocument.LinguisticProcessor newLp = kaf.addLinguisticProcessor(
+          "opinions", "ixa-pipe-nerc-" + modelNames.get(lang), version);
+      newLp.setBeginTimestamp();
+      oteExtractor.extractOpinionTargets(kaf);
+      newLp.setEndTimestamp();
+      String kafToString = null;
+      if (outputFormat.equalsIgnoreCase("opennlp")) {
+        kafToString = oteExtractor.annotateOTEsToOpenNLP(kaf);
+      } else {
+        kafToString = oteExtractor.annotateOTEsToKAF(kaf);
+      }
+      return kafToString;
+    } finally {
+      extractors.add(oteExtractor);
+    }
+  }
+
+  /**
+   * Reads the NAF document posted and answers with the annotated document.
+   */
+  private class AnnotationHandler implements HttpHandler {
+
+    @Override
+    public void handle(final HttpExchange exchange) throws IOException {
+      try {
+        if (!exchange.getRequestMethod().equalsIgnoreCase("POST")) {
+          respond(exchange, 405, "Post a NAF document to annotate it.\n");
+          return;
+        }
+        BufferedReader breader = new BufferedReader(new InputStreamReader(
+            exchange.getRequestBody(), "UTF-8"));
+        String annotated = null;
+        try {
+          KAFDocument kaf = null;
+          try {
+            // malformed XML is reported by kaflib, which returns null
+            kaf = KAFDocument.createFromStream(breader);
+          } catch (RuntimeException e) {
+            respond(exchange, 400, "Not a valid NAF document: "
+                + e.getMessage() + "\n");
+            return;
+          }
+          if (kaf == null) {
+            respond(exchange, 400, "Not a well-formed NAF document.\n");
+            return;
+          }
+          if (!modelNames.containsKey(kaf.getLang())) {
+            respond(exchange, 400, "No model loaded for language "
+                + kaf.getLang() + "!\n");
+            return;
+          }
+          annotated = annotate(kaf);
+        } catch (Exception e) {
+          e.printStackTrace();
+          respond(exchange, 500, "Error annotating document: " + e + "\n");
+          return;
+        } finally {
+          breader.close();
+        }
+        respond(exchange, 200, annotated);
+      } finally {
+        exchange.close();
+      }
+    }
+
+    private void respond(final HttpExchange exchange, final int status,
+        final String body) throws IOException {
+      byte[] bytes = body.getBytes("UTF-8");
+      String contentType = status == 200
+          && (outputFormat.equalsIgnoreCase("naf")) ? "application/xml"
+          : "text/plain";
+      exchange.getResponseHeaders().set("Content-Type",
+          contentType + "; charset=UTF-8");
+      exchange.sendResponseHeaders(status, bytes.length);
+      OutputStream os = exchange.getResponseBody();
+      os.write(bytes);
+      os.close();
+    }
+  }
+
+}
@@ -0,0 +1,602 @@
+/*
+ *Copyright 2015 Rodrigo Agerri
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+
+package eus.ixa.ixa.pipe.nerc;
+
+import ixa.kaflib.KAFDocument;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.Files;
+import com.google.common.util.concurrent.AsyncFunction;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.common.util.concurrent.MoreExecutors;
+
+/**
+ * Batch NERC tagging of many NAF documents in a single run. Every document
+ * goes through three stages, each with its own threads: parsing the NAF
+ * document, annotating it with an {@link Annotate} borrowed from an
+ * {@link AnnotatePool} and serializing it in the output format. The stages of
+ * different documents overlap, so that parsing and serialization run while
+ * other documents are being annotated.
+ *
+ * The documents in flight are kept in a bounded queue in input order; the
+ * calling thread takes them from the queue and writes each one when it is
+ * done, so that the output order is that of the input. A document which can
+ * not be parsed or annotated is reported and skipped, and the number of such
+ * documents is returned at the end of the run.
+ */
+public class BatchAnnotator {
+
+  /**
+   * The annotation properties; if no language is set, the language of each
+   * document is used.
+   */
+  private final Properties properties;
+  /**
+   * The output format.
+   */
+  private final String outputFormat;
+  /**
+   * The name of the model, written in the linguistic processors.
+   */
+  private final String modelName;
+  /**
+   * The version of ixa-pipe-nerc written in the linguistic processors.
+   */
+  private final String version;
+  /**
+   * The number of threads of each stage.
+   */
+  private final int threads;
+  /**
+   * The annotators of each language.
+   */
+  private final Map<String, AnnotatePool> annotatePools = new HashMap<String, AnnotatePool>();
+  /**
+   * The warm-up of the annotators of each language, null for none.
+   */
+  private WarmUp warmUp;
+  /**
+   * The NAF documents of the warm-up, null for the synthetic documents.
+   */
+  private List<String> warmUpDocuments;
+
+  /**
+   * Construct a batch annotator.
+   *
+   * @param aProperties
+   *          the properties of every {@link Annotate}
+   * @param anOutputFormat
+   *          the output format
+   * @param aVersion
+   *          the version to write in the linguistic processors
+   * @param aThreads
+   *          the number of threads of each stage
+   */
+  public BatchAnnotator(final Properties aProperties,
+      final String anOutputFormat, final String aVersion, final int aThreads) {
+    this.properties = aProperties;
+    this.outputFormat = anOutputFormat;
+    this.modelName = Files.getNameWithoutExtension(aProperties
+        .getProperty("model"));
+    this.version = aVersion;
+    this.threads = aThreads;
+  }
+
+  /**
+   * Warm up the annotators of each language when its model is loaded, before
+   * they annotate any document, see {@link WarmUp}. The report of each
+   * warm-up is printed in the standard error.
+   *
+   * @param documents
+   *          the NAF documents of the workload; a synthetic document is used
+   *          for the languages without documents or if null
+   * @param aWarmUp
+   *          the warm-up settings, or null for no warm-up
+   */
+  public final void setWarmUp(final List<String> documents,
+      final WarmUp aWarmUp) {
+    this.warmUpDocuments = documents;
+    this.warmUp = aWarmUp;
+  }
+
+  /**
+   * Annotate every file in a directory, recursively, in alphabetical order of
+   * their paths. Each document is named by its path relative to the
+   * directory.
+   *
+   * @param inputDir
+   *          the directory
+   * @param output
+   *          where to write the annotated documents
+   * @return the number of documents which could not be annotated
+   * @throws IOException
+   *           if the documents can not be read or written
+   */
+  public final int annotateDirectory(final File inputDir,
+      final BatchOutput output) throws IOException {
+    List<File> files = StringUtils.getFilesInDir(inputDir);
+    Collections.sort(files);
+    List<String> names = new ArrayList<String>(files.size());
+    for (File file : files) {
+      names.add(inputDir.toURI().relativize(file.toURI()).getPath());
+    }
+    return annotateFiles(files, names, output);
+  }
+
+  /**
+   * Annotate the files listed, one path per line, in a file.
+   *
+   * @param fileList
+   *          the file with the list of files
+   * @param output
+   *          where to write the annotated documents
+   * @return the number of documents which could not be annotated
+   * @throws IOException
+   *           if the documents can not be read or written, or if two files
+   *           have the same name
+   */
+  public final int annotateFileList(final File fileList,
+      final BatchOutput output) throws IOException {
+    List<File> files = new ArrayList<File>();
+    for (String line : Files.readLines(fileList, Charsets.UTF_8)) {
+      if (!line.trim().isEmpty()) {
+        files.add(new File(line.trim()));
+      }
+    }
+    return annotateFiles(files, output);
+  }
+
+  /**
+   * Annotate a list of files, each document named by the name of its file.
+   *
+   * @param files
+   *          the files
+   * @param output
+   *          where to write the annotated documents
+   * @return the number of documents which could not be annotated
+   * @throws IOException
+   *           if the documents can not be written, or if two files have the
+   *           same name
+   */
+  public final int annotateFiles(final List<File> files,
+      final BatchOutput output) throws IOException {
+    List<String> names = new ArrayList<String>(files.size());
+    Map<String, File> namedFiles = new HashMap<String, File>();
+    for (File file : files) {
+      File sameName = namedFiles.put(file.getName(), file);
+      if (sameName != null) {
+        throw new IOException("The documents " + sameName + " and " + file
+            + " would be written to the same output!");
+      }
+      names.add(file.getName());
+    }
+    return annotateFiles(files, names, output);
+  }
+
+  private int annotateFiles(final List<File> files, final List<String> names,
+      final BatchOutput output) throws IOException {
+    final List<BatchInput> inputs = new ArrayList<BatchInput>();
+    for (int i = 0; i < files.size(); i++) {
+      final File file = files.get(i);
+      inputs.add(new BatchInput(names.get(i)) {
+        @Override
+        protected Reader open() throws IOException {
+          return new InputStreamReader(new FileInputStream(file), "UTF-8");
+        }
+      });
+    }
+    return annotate(new InputReader() {
+      private int next = 0;
+
+      @Override
+      public BatchInput read() {
+        return next < inputs.size() ? inputs.get(next++) : null;
+      }
+    }, output);
+  }
+
+  /**
+   * Annotate a stream of NAF documents. If a separator is given, the
+   * documents are separated by lines equal to the separator; otherwise every
+   * line starting with an XML declaration starts a new document.
+   *
+   * @param breader
+   *          the stream of documents
+   * @param separator
+   *          the separator or null
+   * @param output
+   *          where to write the annotated documents
+   * @return the number of documents which could not be annotated
+   * @throws IOException
+   *           if the documents can not be read or written
+   */
+  public final int annotateStream(final BufferedReader breader,
+      final String separator, final BatchOutput output) throws IOException {
+    return annotate(new InputReader() {
+      private int count = 0;
+      private String pendingLine = null;
+
+      @Override
+      public BatchInput read() throws IOException {
+        StringBuilder sb = new StringBuilder();
+        String line = pendingLine;
+        pendingLine = null;
+        if (line == null) {
+          line = breader.readLine();
+        }
+        for (; line != null; line = breader.readLine()) {
+          if (separator != null && line.equals(separator)) {
+            if (sb.toString().trim().isEmpty()) {
+              sb.setLength(0);
+              continue;
+            }
+            break;
+          }
+          if (separator == null && line.startsWith("<?xml")
+              && !sb.toString().trim().isEmpty()) {
+            pendingLine = line;
+            break;
+          }
+          sb.append(line).append("\n");
+        }
+        if (sb.toString().trim().isEmpty()) {
+          return null;
+        }
+        final String document = sb.toString();
+        count++;
+        return new BatchInput("document-" + count) {
+          @Override
+          protected Reader open() {
+            return new StringReader(document);
+          }
+        };
+      }
+    }, output);
+  }
+
+  /**
+   * Run the pipeline over the documents given by a reader.
+   *
+   * @param inputReader
+   *          the reader of documents
+   * @param output
+   *          where to write the annotated documents
+   * @return the number of documents which could not be annotated
+   * @throws IOException
+   *           if the documents can not be read or written
+   */
+  private int annotate(final InputReader inputReader,
+      final BatchOutput output) throws IOException {
+    final ListeningExecutorService parseExecutor = MoreExecutors
+        .listeningDecorator(Executors.newFixedThreadPool(threads));
+    final ListeningExecutorService annotateExecutor = MoreExecutors
+        .listeningDecorator(Executors.newFixedThreadPool(threads));
+    final ListeningExecutorService serializeExecutor = MoreExecutors
+        .listeningDecorator(Executors.newFixedThreadPool(threads));
+    // the documents in flight, in input order
+    final BlockingQueue<BatchResult> pending = new ArrayBlockingQueue<BatchResult>(
+        threads * 4);
+    final IOException[] readError = new IOException[1];
+    Thread producer = new Thread("ixa-pipe-nerc-batch-reader") {
+      @Override
+      public void run() {
+        try {
+          for (BatchInput input = inputReader.read(); input != null; input = inputReader
+              .read()) {
+            pending.put(new BatchResult(input.name, submit(input,
+                parseExecutor, annotateExecutor, serializeExecutor)));
+          }
+        } catch (IOException e) {
+          readError[0] = e;
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        } finally {
+          try {
+            pending.put(BatchResult.END);
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+          }
+        }
+      }
+    };
+    producer.setDaemon(true);
+    producer.start();
+    int failures = 0;
+    try {
+      for (BatchResult result = pending.take(); result != BatchResult.END; result = pending
+          .take()) {
+        try {
+          output.write(result.name, result.document.get());
+        } catch (ExecutionException e) {
+          System.err.println("Error annotating " + result.name + ": "
+              + e.getCause());
+          failures++;
+        }
+      }
+      producer.join();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Batch annotation interrupted!", e);
+    } finally {
+      producer.interrupt();
+      parseExecutor.shutdownNow();
+      annotateExecutor.shutdownNow();
+      serializeExecutor.shutdownNow();
+      output.close();
+    }
+    if (readError[0] != null) {
+      throw readError[0];
+    }
+    return failures;
+  }
+
+  /**
+   * Submit a document to the three stages of the pipeline.
+   */
+  private ListenableFuture<String> submit(final BatchInput input,
+      final ListeningExecutorService parseExecutor,
+      final ListeningExecutorService annotateExecutor,
+      final ListeningExecutorService serializeExecutor) {
+    ListenableFuture<KAFDocument> parsed = parseExecutor
+        .submit(new Callable<KAFDocument>() {
+          @Override
+          public KAFDocument call() throws Exception {
+            BufferedReader breader = new BufferedReader(input.open());
+            try {
+              // malformed XML is reported by kaflib, which returns null
+              KAFDocument kaf = KAFDocument.createFromStream(breader);
+              if (kaf == null) {
+                throw new IOException("Not a well-formed NAF document!");
+              }
+              return kaf;
+            } finally {
+              breader.close();
+            }
+          }
+        });
+    ListenableFuture<DocumentAnnotation> annotated = Futures.transform(parsed,
+        new AsyncFunction<KAFDocument, DocumentAnnotation>() {
+          @Override
+          public ListenableFuture<DocumentAnnotation> apply(final KAFDocument kaf)
+              throws Exception {
+            AnnotatePool pool = getAnnotatePool(kaf);
+            Annotate annotator = pool.borrowAnnotator();
+            DocumentAnnotation annotation = null;
+            try {
+              KAFDocument.LinguisticProcessor newLp = kaf
+                  .addLinguisticProcessor("entities", "ixa-pipe-nerc-"
+                      + modelName, version);
+              newLp.setBeginTimestamp();
+              annotation = annotator.annotateNEs(kaf);
+              newLp.setEndTimestamp();
+            } finally {
+              pool.releaseAnnotator(annotator);
+            }
+            return Futures.immediateFuture(annotation);
+          }
+        }, annotateExecutor);
+    return Futures.transform(annotated,
+        new AsyncFunction<DocumentAnnotation, String>() {
+          @Override
+          public ListenableFuture<String> apply(final DocumentAnnotation annotation) {
+            return Futures.immediateFuture(serialize(annotation));
+          }
+        }, serializeExecutor);
+  }
+
+  /**
+   * Serialize an annotated document in the output format.
+   */
+  private String serialize(final DocumentAnnotation annotation) {
+    if (outputFormat.equalsIgnoreCase("conll03")) {
+      return Annotate.annotateNEsToCoNLL2003(annotation);
+    } else if (outputFormat.equalsIgnoreCase("conll02")) {
+      return Annotate.annotateNEsToCoNLL2002(annotation);
+    } else if (outputFormat.equalsIgnoreCase("opennlp")) {
+      return Annotate.annotateNEsToOpenNLP(annotation);
+    } else {
+      return Annotate.annotateNEsToKAF(annotation);
+    }
+  }
+
+  /**
+   * Get the annotators for the language of a document, loading its model and
+   * warming them up the first time.
+   */
+  private AnnotatePool getAnnotatePool(final KAFDocument kaf)
+      throws IOException {
+    String lang = properties.getProperty("language");
+    if (lang == null) {
+      lang = kaf.getLang();
+    } else if (!lang.equalsIgnoreCase(kaf.getLang())) {
+      throw new IllegalArgumentException(
+          "Language parameter in NAF and CLI do not match!!");
+    }
+    synchronized (annotatePools) {
+      AnnotatePool pool = annotatePools.get(lang);
+      if (pool == null) {
+        Properties langProperties = new Properties();
+        langProperties.putAll(properties);
+        langProperties.setProperty("language", lang);
+        pool = new AnnotatePool(langProperties);
+        if (warmUp != null) {
+          System.err.println(pool.warmUp(WarmUp.selectDocuments(
+              warmUpDocuments, lang), warmUp));
+        }
+        annotatePools.put(lang, pool);
+      }
+      return pool;
+    }
+  }
+
+  /**
+   * Where the annotated documents are written, in input order.
+   */
+  public abstract static class BatchOutput {
+
+    /**
+     * Write an annotated document.
+     *
+     * @param name
+     *          the name of the input document
+     * @param document
+     *          the annotated document
+     * @throws IOException
+     *           if the document can not be written
+     */
+    public abstract void write(String name, String document)
+        throws IOException;
+
+    /**
+     * Close the output after the last document.
+     *
+     * @throws IOException
+     *           if the output can not be closed
+     */
+    public void close() throws IOException {
+    }
+
+    /**
+     * Write every document to a writer, optionally followed by a separator
+     * line.
+     *
+     * @param writer
+     *          the writer
+     * @param separator
+     *          the separator or null
+     * @return the output
+     */
+    public static BatchOutput toWriter(final Writer writer,
+        final String separator) {
+      return new BatchOutput() {
+        @Override
+        public void write(final String name, final String document)
+            throws IOException {
+          writer.write(document);
+          if (separator != null) {
+            if (!document.endsWith("\n")) {
+              writer.write("\n");
+            }
+            writer.write(separator);
+            writer.write("\n");
+          }
+          writer.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+          writer.close();
+        }
+      };
+    }
+
+    /**
+     * Write every document to a file named after the input document in a
+     * directory, creating the subdirectories of the names which are paths.
+     *
+     * @param outputDir
+     *          the directory
+     * @param extension
+     *          the extension added to the names or null
+     * @return the output
+     */
+    public static BatchOutput toDirectory(final File outputDir,
+        final String extension) {
+      return new BatchOutput() {
+        @Override
+        public void write(final String name, final String document)
+            throws IOException {
+          String fileName = extension == null ? name : name + "." + extension;
+          File outputFile = new File(outputDir, fileName);
+          File parentDir = outputFile.getParentFile();
+          if (!parentDir.isDirectory() && !parentDir.mkdirs()) {
+            throw new IOException("Can not create output directory "
+                + parentDir + "!");
+          }
+          Writer writer = new BufferedWriter(new OutputStreamWriter(
+              new FileOutputStream(outputFile), "UTF-8"));
+          try {
+            writer.write(document);
+          } finally {
+            writer.close();
+          }
+        }
+      };
+    }
+  }
+
+  /**
+   * An input document.
+   */
+  private abstract static class BatchInput {
+    private final String name;
+
+    private BatchInput(final String aName) {
+      this.name = aName;
+    }
+
+    protected abstract Reader open() throws IOException;
+  }
+
+  /**
+   * Gives the input documents one by one, null after the last one.
+   */
+  private interface InputReader {
+    BatchInput read() throws IOException;
+  }
+
+  /**
+   * A document in flight.
+   */
+  private static final class BatchResult {
+    private static final BatchResult END = new BatchResult(null, null);
+    private final String name;
+    private final Future<String> document;
+
+    private BatchResult(final String aName, final Future<String> aDocument) {
+      this.name = aName;
+      this.document = aDocument;
+    }
+  }
+
+}
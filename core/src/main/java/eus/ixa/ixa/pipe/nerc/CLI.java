@@ -26,9 +26,13 @@ import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Properties;
 
 import net.sourceforge.argparse4j.ArgumentParsers;
+import net.sourceforge.argparse4j.impl.Arguments;
 import net.sourceforge.argparse4j.inf.ArgumentParser;
 import net.sourceforge.argparse4j.inf.ArgumentParserException;
 import net.sourceforge.argparse4j.inf.Namespace;
@@ -44,6 +48,8 @@ import com.google.common.io.Files;
 
 import eus.ixa.ixa.pipe.nerc.eval.CrossValidator;
 import eus.ixa.ixa.pipe.nerc.eval.Evaluate;
+import eus.ixa.ixa.pipe.nerc.model.MappedModel;
+import eus.ixa.ixa.pipe.nerc.model.MappedModelWriter;
 import eus.ixa.ixa.pipe.nerc.train.FixedTrainer;
 import eus.ixa.ixa.pipe.nerc.train.Flags;
 import eus.ixa.ixa.pipe.nerc.train.InputOutputUtils;
@@ -94,6 +100,10 @@ public class CLI {
    * Parser to manage the Opinion Target Extraction sub-command.
    */
   private Subparser oteParser;
+  /**
+   * The parser that manages the batch NER tagging sub-command.
+   */
+  private Subparser batchParser;
   /**
    * The parser that manages the training sub-command.
    */
@@ -106,6 +116,14 @@ public class CLI {
    * The parser that manages the cross validation sub-command.
    */
   private Subparser crossValidateParser;
+  /**
+   * The parser that manages the annotation server sub-command.
+   */
+  private Subparser serverParser;
+  /**
+   * The parser that manages the model conversion sub-command.
+   */
+  private Subparser convertParser;
 
   /**
    * Construct a CLI object with the sub-parsers to manage the command
@@ -114,6 +132,8 @@ public class CLI {
   public CLI() {
     annotateParser = subParsers.addParser("tag").help("NER Tagging CLI");
     loadAnnotateParameters();
+    batchParser = subParsers.addParser("batch").help("Batch NER Tagging CLI");
+    loadBatchParameters();
     oteParser = subParsers.addParser("ote").help("Opinion Target Extraction CLI");
     loadOteParameters();
     trainParser = subParsers.addParser("train").help("Training CLI");
@@ -122,6 +142,10 @@ public class CLI {
     loadEvalParameters();
     crossValidateParser = subParsers.addParser("cross").help("Cross validation CLI");
     loadCrossValidateParameters();
+    serverParser = subParsers.addParser("server").help("Annotation server CLI");
+    loadServerParameters();
+    convertParser = subParsers.addParser("convert").help("Model conversion CLI");
+    loadConvertParameters();
     }
 
   /**
@@ -156,6 +180,8 @@ public class CLI {
       System.err.println("CLI options: " + parsedArguments);
       if (args[0].equals("tag")) {
         annotate(System.in, System.out);
+      } else if (args[0].equals("batch")) {
+        batch();
       } else if (args[0].equals("ote")) {
         extractOte(System.in, System.out);
       } else if (args[0].equals("eval")) {
@@ -164,11 +190,15 @@ public class CLI {
         train();
       } else if (args[0].equals("cross")) {
         crossValidate();
+      } else if (args[0].equals("server")) {
+        server();
+      } else if (args[0].equals("convert")) {
+        convert();
       }
     } catch (ArgumentParserException e) {
       argParser.handleError(e);
       System.out.println("Run java -jar target/ixa-pipe-nerc-" + version
-          + ".jar (tag|ote|train|eval|cross) -help for details");
+          + ".jar (tag|batch|ote|train|eval|cross|server|convert) -help for details");
       System.exit(1);
     }
   }
@@ -217,23 +247,86 @@ public class CLI {
         "entities", "ixa-pipe-nerc-" + Files.getNameWithoutExtension(model), version + "-" + commit);
     newLp.setBeginTimestamp();
     Annotate annotator = new Annotate(properties);
-    annotator.annotateNEs(kaf);
+    DocumentAnnotation annotation = annotator.annotateNEs(kaf);
     newLp.setEndTimestamp();
     String kafToString = null;
     if (outputFormat.equalsIgnoreCase("conll03")) {
-      kafToString = annotator.annotateNEsToCoNLL2003(kaf);
+      kafToString = Annotate.annotateNEsToCoNLL2003(annotation);
     } else if (outputFormat.equalsIgnoreCase("conll02")) {
-      kafToString = annotator.annotateNEsToCoNLL2002(kaf);
+      kafToString = Annotate.annotateNEsToCoNLL2002(annotation);
     } else if (outputFormat.equalsIgnoreCase("opennlp")) {
-      kafToString = annotator.annotateNEsToOpenNLP(kaf);
+      kafToString = Annotate.annotateNEsToOpenNLP(annotation);
     } else {
-      kafToString = annotator.annotateNEsToKAF(kaf);
+      kafToString = Annotate.annotateNEsToKAF(annotation);
     }
     bwriter.write(kafToString);
     bwriter.close();
     breader.close();
   }
   
+  /**
+   * Main method to do Named Entity tagging of many documents: every file in a
+   * directory, every file in a list or every document in a stream read from
+   * the standard input. Exits with status 1 if any document could not be
+   * annotated.
+   *
+   * @throws IOException
+   *           exception if problems in input or output streams
+   */
+  public final void batch() throws IOException {
+
+    String model = parsedArguments.getString("model");
+    String outputFormat = parsedArguments.getString("outputFormat");
+    String lexer = parsedArguments.getString("lexer");
+    String dictTag = parsedArguments.getString("dictTag");
+    String dictPath = parsedArguments.getString("dictPath");
+    String clearFeatures = parsedArguments.getString("clearFeatures");
+    String lang = parsedArguments.getString("language");
+    String input = parsedArguments.getString("input");
+    String outputDir = parsedArguments.getString("outputDir");
+    String separator = parsedArguments.getString("separator");
+    setModelBudget();
+    Properties properties = setAnnotateProperties(model, lang == null ? "" : lang, lexer, dictTag, dictPath, clearFeatures);
+    if (lang == null) {
+      // each document is tagged with the model loaded for its language
+      properties.remove("language");
+    }
+    BatchAnnotator batchAnnotator = new BatchAnnotator(properties,
+        outputFormat, version + "-" + commit, parsedArguments.getInt("threads"));
+    WarmUp warmUp = createWarmUp();
+    if (warmUp != null) {
+      batchAnnotator.setWarmUp(readWarmUpDocuments(), warmUp);
+    }
+    BatchAnnotator.BatchOutput output = null;
+    if (outputDir != null) {
+      File outputDirFile = new File(outputDir);
+      if (!outputDirFile.isDirectory() && !outputDirFile.mkdirs()) {
+        System.err.println("Can not create output directory " + outputDir + "!!");
+        System.exit(1);
+      }
+      output = BatchAnnotator.BatchOutput.toDirectory(outputDirFile,
+          outputFormat.equalsIgnoreCase("naf") ? null : outputFormat);
+    } else {
+      output = BatchAnnotator.BatchOutput.toWriter(new BufferedWriter(
+          new OutputStreamWriter(System.out, "UTF-8")), separator);
+    }
+    File inputFile = new File(input);
+    int failures = 0;
+    if (input.equals("-")) {
+      BufferedReader breader = new BufferedReader(new InputStreamReader(
+          System.in, "UTF-8"));
+      failures = batchAnnotator.annotateStream(breader, separator, output);
+    } else if (inputFile.isDirectory()) {
+      failures = batchAnnotator.annotateDirectory(inputFile, output);
+    } else {
+      failures = batchAnnotator.annotateFileList(inputFile, output);
+    }
+    if (failures > 0) {
+      System.err.println(failures + " documents could not be annotated!!");
+      System.exit(1);
+    }
+  }
+
   /**
    * Main method to do Opinion Target Extraction (OTE).
    * 
@@ -313,6 +406,24 @@ public class CLI {
     CmdLineUtil.writeModel("ixa-pipe-nerc", new File(outModel), trainedModel);
   }
 
+  /**
+   * Convert a model into a mapped model, which the name finders open in
+   * place instead of loading it into the heap.
+   *
+   * @throws IOException
+   *           if the model can not be read or converted
+   */
+  public final void convert() throws IOException {
+    File modelFile = new File(parsedArguments.getString("model"));
+    String output = parsedArguments.getString("output");
+    if (output == null) {
+      output = Files.getNameWithoutExtension(modelFile.getPath())
+          + MappedModel.EXTENSION;
+    }
+    MappedModelWriter.convert(modelFile, new File(output));
+    System.err.println("Mapped model written to " + output);
+  }
+
   /**
    * Main evaluation entry point.
    * 
@@ -360,6 +471,102 @@ public class CLI {
     crossValidator.crossValidate(params);
   }
 
+  /**
+   * Start a long running annotation server with the models preloaded.
+   *
+   * @throws IOException
+   *           if the models can not be loaded or the server can not be started
+   */
+  public final void server() throws IOException {
+
+    String task = parsedArguments.getString("task");
+    String outputFormat = parsedArguments.getString("outputFormat");
+    String lexer = parsedArguments.getString("lexer");
+    String dictTag = parsedArguments.getString("dictTag");
+    String dictPath = parsedArguments.getString("dictPath");
+    String clearFeatures = parsedArguments.getString("clearFeatures");
+    List<String> models = parsedArguments.getList("model");
+    setModelBudget();
+    Map<String, Properties> languageProperties = new LinkedHashMap<String, Properties>();
+    for (String langModel : models) {
+      // each model is passed as lang=model, or alone with the --language option
+      String lang = parsedArguments.getString("language");
+      String model = langModel;
+      int separator = langModel.indexOf('=');
+      if (separator > 0) {
+        lang = langModel.substring(0, separator);
+        model = langModel.substring(separator + 1);
+      }
+      if (lang == null) {
+        System.err.println("No language for model " + model
+            + "; pass it as lang=model or with the --language option!!");
+        System.exit(1);
+      }
+      Properties properties = null;
+      if (task.equalsIgnoreCase("ote")) {
+        properties = setOteProperties(model, lang, clearFeatures);
+      } else {
+        properties = setAnnotateProperties(model, lang, lexer, dictTag,
+            dictPath, clearFeatures);
+      }
+      languageProperties.put(lang, properties);
+    }
+    final AnnotationServer annotationServer = new AnnotationServer(
+        languageProperties, task, outputFormat, version + "-" + commit);
+    WarmUp warmUp = createWarmUp();
+    if (warmUp != null) {
+      annotationServer.warmUp(readWarmUpDocuments(), warmUp);
+    }
+    annotationServer.start(parsedArguments.getString("host"),
+        parsedArguments.getInt("port"), parsedArguments.getInt("threads"));
+    Runtime.getRuntime().addShutdownHook(new Thread() {
+      @Override
+      public void run() {
+        annotationServer.stop();
+      }
+    });
+  }
+
+  /**
+   * Set the memory budget of the {@link ModelRegistry} if the --modelBudget
+   * option is given.
+   */
+  private void setModelBudget() {
+    Integer modelBudget = parsedArguments.getInt("modelBudget");
+    if (modelBudget != null) {
+      ModelRegistry.getInstance().setMemoryBudget(modelBudget * 1024L * 1024L);
+    }
+  }
+
+  /**
+   * Create the warm-up of the --warmUp and --warmUpRounds options.
+   *
+   * @return the warm-up, null if the --warmUp option is "no"
+   */
+  private WarmUp createWarmUp() {
+    if (parsedArguments.getString("warmUp").equalsIgnoreCase("no")) {
+      return null;
+    }
+    return new WarmUp(parsedArguments.getInt("warmUpRounds"),
+        WarmUp.DEFAULT_TOLERANCE, WarmUp.DEFAULT_STEADY_ROUNDS);
+  }
+
+  /**
+   * Read the NAF documents of the warm-up workload given with the --warmUp
+   * option.
+   *
+   * @return the documents, null for the synthetic documents
+   * @throws IOException
+   *           if the documents can not be read
+   */
+  private List<String> readWarmUpDocuments() throws IOException {
+    String warmUp = parsedArguments.getString("warmUp");
+    if (warmUp.equalsIgnoreCase("synthetic")) {
+      return null;
+    }
+    return WarmUp.readDocuments(new File(warmUp));
+  }
+
   /**
    * Create the available parameters for NER tagging.
    */
@@ -374,6 +581,22 @@ public class CLI {
         .setDefault(Flags.DEFAULT_FEATURE_FLAG)
         .help("Reset the adaptive features every sentence; defaults to 'no'; if -DOCSTART- marks" +
         		" are present, choose 'docstart'.\n");
+    annotateParser.addArgument("--adaptiveCapacity")
+        .required(false)
+        .type(Integer.class)
+        .choices(Arguments.range(0, Integer.MAX_VALUE))
+        .setDefault(Integer.valueOf(Flags.DEFAULT_ADAPTIVE_CAPACITY))
+        .help("Choose the maximum number of tokens whose previous decisions are kept by the " +
+                "adaptive features of a document; it defaults to 0, which does NOT bound them: " +
+                "every token of the document is kept.\n");
+    annotateParser.addArgument("--fusedFeatures")
+        .required(false)
+        .choices("yes", "no", "hashed")
+        .setDefault(Flags.DEFAULT_FUSED_FEATURES)
+        .help("Compile the feature generators of the model into a single generator; " +
+                "'hashed' also evaluates the features by their hashes instead of their " +
+                "strings and 'no' runs the generators built by OpenNLP; the names found " +
+                "are the same; defaults to 'yes'.\n");
     annotateParser.addArgument("-l","--language")
         .required(false)
         .choices("de", "en", "es", "eu", "it", "nl")
@@ -400,8 +623,123 @@ public class CLI {
         .setDefault(Flags.DEFAULT_DICT_PATH)
         .help("Provide the path to the dictionaries for direct dictionary tagging; it ONLY WORKS if --dictTag " +
         		"option is activated.\n");
+    annotateParser.addArgument("--posLayer")
+        .required(false)
+        .choices("morphofeat", "pos")
+        .setDefault(Flags.DEFAULT_POS_LAYER)
+        .help("Use the POS tags and lemmas of the NAF term layer for the morphological features " +
+                "instead of POS tagging again; choose the term attribute of the tags; the POS model of the features is used if the layer is missing.\n");
+    annotateParser.addArgument("--posMapping")
+        .required(false)
+        .setDefault(Flags.DEFAULT_POS_MAPPING)
+        .help("Provide a tab separated file mapping the tags of the NAF term layer to the " +
+                "tagset of the model; it ONLY WORKS if --posLayer option is activated.\n");
   }
   
+  /**
+   * Create the available parameters for batch NER tagging.
+   */
+  private void loadBatchParameters() {
+
+    batchParser.addArgument("-m", "--model")
+        .required(true)
+        .help("Pass the model to do the tagging as a parameter.\n");
+    batchParser.addArgument("-i", "--input")
+        .required(false)
+        .setDefault("-")
+        .help("Choose the documents to tag: a directory, a file listing one document path per line " +
+                "or '-' to read a stream of NAF documents from the standard input; it defaults to '-'.\n");
+    batchParser.addArgument("--separator")
+        .required(false)
+        .help("Line separating the documents of the input stream and the standard output; by " +
+                "default every XML declaration starts a new input document and the output " +
+                "documents are written one after the other.\n");
+    batchParser.addArgument("--outputDir")
+        .required(false)
+        .help("Write each tagged document to a file in this directory instead of the standard " +
+                "output, at its path relative to the input directory.\n");
+    batchParser.addArgument("-t", "--threads")
+        .required(false)
+        .type(Integer.class)
+        .setDefault(Runtime.getRuntime().availableProcessors())
+        .help("Choose the number of threads of each of the parsing, tagging and output stages; " +
+                "it defaults to the number of processors.\n");
+    batchParser.addArgument("--modelBudget")
+        .required(false)
+        .type(Integer.class)
+        .help("Choose the memory budget, in megabytes, of the models kept loaded; the least " +
+                "recently used models are evicted beyond it; it defaults to half the heap.\n");
+    batchParser.addArgument("--warmUp")
+        .required(false)
+        .setDefault(Flags.DEFAULT_BATCH_WARM_UP)
+        .help("Warm up the annotators until their steady state before tagging; choose 'synthetic' for " +
+                "a synthetic document, a NAF document or directory of NAF documents, or 'no'; " +
+                "it defaults to 'no'.\n");
+    batchParser.addArgument("--warmUpRounds")
+        .required(false)
+        .type(Integer.class)
+        .setDefault(WarmUp.DEFAULT_MAX_ROUNDS)
+        .help("Choose the maximum number of rounds of the warm-up; it defaults to " +
+                WarmUp.DEFAULT_MAX_ROUNDS + ".\n");
+    batchParser.addArgument("--clearFeatures")
+        .required(false)
+        .choices("yes", "no", "docstart")
+        .setDefault(Flags.DEFAULT_FEATURE_FLAG)
+        .help("Reset the adaptive features every sentence; defaults to 'no'; if -DOCSTART- marks" +
+                " are present, choose 'docstart'.\n");
+    batchParser.addArgument("--adaptiveCapacity")
+        .required(false)
+        .type(Integer.class)
+        .choices(Arguments.range(0, Integer.MAX_VALUE))
+        .setDefault(Integer.valueOf(Flags.DEFAULT_ADAPTIVE_CAPACITY))
+        .help("Choose the maximum number of tokens whose previous decisions are kept by the " +
+                "adaptive features of a document; it defaults to 0, which does NOT bound them: " +
+                "every token of the document is kept.\n");
+    batchParser.addArgument("--fusedFeatures")
+        .required(false)
+        .choices("yes", "no", "hashed")
+        .setDefault(Flags.DEFAULT_FUSED_FEATURES)
+        .help("Compile the feature generators of the model into a single generator; " +
+                "'hashed' also evaluates the features by their hashes instead of their " +
+                "strings and 'no' runs the generators built by OpenNLP; the names found " +
+                "are the same; defaults to 'yes'.\n");
+    batchParser.addArgument("-l","--language")
+        .required(false)
+        .choices("de", "en", "es", "eu", "it", "nl")
+        .help("Choose language; it defaults to the language value in each incoming NAF file.\n");
+    batchParser.addArgument("-o","--outputFormat")
+        .required(false)
+        .choices("conll03", "conll02", "naf", "opennlp")
+        .setDefault(Flags.DEFAULT_OUTPUT_FORMAT)
+        .help("Choose output format; it defaults to NAF.\n");
+    batchParser.addArgument("--lexer")
+        .choices("numeric")
+        .setDefault(Flags.DEFAULT_LEXER)
+        .required(false)
+        .help("Use lexer rules for NERC tagging; it defaults to false.\n");
+    batchParser.addArgument("--dictTag")
+        .required(false)
+        .choices("tag", "post")
+        .setDefault(Flags.DEFAULT_DICT_OPTION)
+        .help("Choose to directly tag entities by dictionary look-up; see the tag sub-command.\n");
+    batchParser.addArgument("--dictPath")
+        .required(false)
+        .setDefault(Flags.DEFAULT_DICT_PATH)
+        .help("Provide the path to the dictionaries for direct dictionary tagging; it ONLY WORKS " +
+                "if --dictTag option is activated.\n");
+    batchParser.addArgument("--posLayer")
+        .required(false)
+        .choices("morphofeat", "pos")
+        .setDefault(Flags.DEFAULT_POS_LAYER)
+        .help("Use the POS tags and lemmas of the NAF term layer for the morphological features " +
+                "instead of POS tagging again; choose the term attribute of the tags; see the tag sub-command.\n");
+    batchParser.addArgument("--posMapping")
+        .required(false)
+        .setDefault(Flags.DEFAULT_POS_MAPPING)
+        .help("Provide a tab separated file mapping the tags of the NAF term layer to the " +
+                "tagset of the model; it ONLY WORKS if --posLayer option is activated.\n");
+  }
+
   /**
    * Create the available parameters for Opinion Target Extraction.
    */
@@ -416,6 +754,22 @@ public class CLI {
         .setDefault(Flags.DEFAULT_FEATURE_FLAG)
         .help("Reset the adaptive features every sentence; defaults to 'no'; if -DOCSTART- marks" +
                 " are present, choose 'docstart'.\n");
+    oteParser.addArgument("--adaptiveCapacity")
+        .required(false)
+        .type(Integer.class)
+        .choices(Arguments.range(0, Integer.MAX_VALUE))
+        .setDefault(Integer.valueOf(Flags.DEFAULT_ADAPTIVE_CAPACITY))
+        .help("Choose the maximum number of tokens whose previous decisions are kept by the " +
+                "adaptive features of a document; it defaults to 0, which does NOT bound them: " +
+                "every token of the document is kept.\n");
+    oteParser.addArgument("--fusedFeatures")
+        .required(false)
+        .choices("yes", "no", "hashed")
+        .setDefault(Flags.DEFAULT_FUSED_FEATURES)
+        .help("Compile the feature generators of the model into a single generator; " +
+                "'hashed' also evaluates the features by their hashes instead of their " +
+                "strings and 'no' runs the generators built by OpenNLP; the names found " +
+                "are the same; defaults to 'yes'.\n");
     oteParser.addArgument("-l","--language")
         .required(false)
         .choices("en")
@@ -480,6 +834,127 @@ public class CLI {
         .help("Load the Cross validation parameters file\n");
   }
 
+  /**
+   * Create the parameters available for the model conversion.
+   */
+  private void loadConvertParameters() {
+    convertParser.addArgument("-m", "--model")
+        .required(true)
+        .help("Pass the model to convert as a parameter.\n");
+    convertParser.addArgument("-o", "--output")
+        .required(false)
+        .help("Choose the mapped model file; it defaults to the name of the model " +
+                "with the " + MappedModel.EXTENSION + " extension.\n");
+  }
+
+  /**
+   * Create the parameters available for the annotation server.
+   */
+  private void loadServerParameters() {
+
+    serverParser.addArgument("-m", "--model")
+        .required(true)
+        .nargs("+")
+        .help("Pass the models to preload, one per language, as lang=model; a single model " +
+                "can be passed alone with the --language option.\n");
+    serverParser.addArgument("-l","--language")
+        .required(false)
+        .choices("de", "en", "es", "eu", "it", "nl")
+        .help("Choose the language of the models passed without one.\n");
+    serverParser.addArgument("--task")
+        .required(false)
+        .choices("tag", "ote")
+        .setDefault(Flags.DEFAULT_TASK)
+        .help("Choose the task of the server, NER tagging or Opinion Target Extraction; " +
+                "it defaults to tag.\n");
+    serverParser.addArgument("--host")
+        .required(false)
+        .setDefault(Flags.DEFAULT_HOSTNAME)
+        .help("Choose the host name or address to listen at; it defaults to localhost.\n");
+    serverParser.addArgument("-p", "--port")
+        .required(false)
+        .type(Integer.class)
+        .setDefault(Flags.DEFAULT_PORT)
+        .help("Choose the port to listen at; it defaults to " + Flags.DEFAULT_PORT + ".\n");
+    serverParser.addArgument("-t", "--threads")
+        .required(false)
+        .type(Integer.class)
+        .setDefault(Runtime.getRuntime().availableProcessors())
+        .help("Choose the number of documents annotated at the same time; it defaults to " +
+                "the number of processors.\n");
+    serverParser.addArgument("--modelBudget")
+        .required(false)
+        .type(Integer.class)
+        .help("Choose the memory budget, in megabytes, of the models kept loaded; the least " +
+                "recently used models are evicted beyond it; it defaults to half the heap.\n");
+    serverParser.addArgument("--warmUp")
+        .required(false)
+        .setDefault(Flags.DEFAULT_WARM_UP)
+        .help("Warm up the annotators until their steady state before accepting requests; choose 'synthetic' for " +
+                "a synthetic document, a NAF document or directory of NAF documents, or 'no'; " +
+                "it defaults to 'synthetic'.\n");
+    serverParser.addArgument("--warmUpRounds")
+        .required(false)
+        .type(Integer.class)
+        .setDefault(WarmUp.DEFAULT_MAX_ROUNDS)
+        .help("Choose the maximum number of rounds of the warm-up; it defaults to " +
+                WarmUp.DEFAULT_MAX_ROUNDS + ".\n");
+    serverParser.addArgument("--clearFeatures")
+        .required(false)
+        .choices("yes", "no", "docstart")
+        .setDefault(Flags.DEFAULT_FEATURE_FLAG)
+        .help("Reset the adaptive features every sentence; defaults to 'no'; if -DOCSTART- marks" +
+                " are present, choose 'docstart'.\n");
+    serverParser.addArgument("--adaptiveCapacity")
+        .required(false)
+        .type(Integer.class)
+        .choices(Arguments.range(0, Integer.MAX_VALUE))
+        .setDefault(Integer.valueOf(Flags.DEFAULT_ADAPTIVE_CAPACITY))
+        .help("Choose the maximum number of tokens whose previous decisions are kept by the " +
+                "adaptive features of a document; it defaults to 0, which does NOT bound them: " +
+                "every token of the document is kept.\n");
+    serverParser.addArgument("--fusedFeatures")
+        .required(false)
+        .choices("yes", "no", "hashed")
+        .setDefault(Flags.DEFAULT_FUSED_FEATURES)
+        .help("Compile the feature generators of the model into a single generator; " +
+                "'hashed' also evaluates the features by their hashes instead of their " +
+                "strings and 'no' runs the generators built by OpenNLP; the names found " +
+                "are the same; defaults to 'yes'.\n");
+    serverParser.addArgument("-o","--outputFormat")
+        .required(false)
+        .choices("conll03", "conll02", "naf", "opennlp")
+        .setDefault(Flags.DEFAULT_OUTPUT_FORMAT)
+        .help("Choose output format; it defaults to NAF; CoNLL formats are only available " +
+                "for the tag task.\n");
+    serverParser.addArgument("--lexer")
+        .choices("numeric")
+        .setDefault(Flags.DEFAULT_LEXER)
+        .required(false)
+        .help("Use lexer rules for NERC tagging; it defaults to false.\n");
+    serverParser.addArgument("--dictTag")
+        .required(false)
+        .choices("tag", "post")
+        .setDefault(Flags.DEFAULT_DICT_OPTION)
+        .help("Choose to directly tag entities by dictionary look-up; see the tag sub-command.\n");
+    serverParser.addArgument("--dictPath")
+        .required(false)
+        .setDefault(Flags.DEFAULT_DICT_PATH)
+        .help("Provide the path to the dictionaries for direct dictionary tagging; it ONLY WORKS " +
+                "if --dictTag option is activated.\n");
+    serverParser.addArgument("--posLayer")
+        .required(false)
+        .choices("morphofeat", "pos")
+        .setDefault(Flags.DEFAULT_POS_LAYER)
+        .help("Use the POS tags and lemmas of the NAF term layer for the morphological features " +
+                "instead of POS tagging again; choose the term attribute of the tags; see the tag sub-command.\n");
+    serverParser.addArgument("--posMapping")
+        .required(false)
+        .setDefault(Flags.DEFAULT_POS_MAPPING)
+        .help("Provide a tab separated file mapping the tags of the NAF term layer to the " +
+                "tagset of the model; it ONLY WORKS if --posLayer option is activated.\n");
+  }
+
   /**
    * Set a Properties object with the CLI parameters for NER annotation.
    * @param model the model parameter
@@ -497,6 +972,10 @@ public class CLI {
     annotateProperties.setProperty("dictTag", dictTag);
     annotateProperties.setProperty("dictPath", dictPath);
     annotateProperties.setProperty("clearFeatures", clearFeatures);
+    annotateProperties.setProperty("posLayer", parsedArguments.getString("posLayer"));
+    annotateProperties.setProperty("posMapping", parsedArguments.getString("posMapping"));
+    annotateProperties.setProperty("adaptiveCapacity", parsedArguments.getInt("adaptiveCapacity").toString());
+    annotateProperties.setProperty("fusedFeatures", parsedArguments.getString("fusedFeatures"));
     return annotateProperties;
   }
   
@@ -514,6 +993,8 @@ public class CLI {
     oteProperties.setProperty("model", model);
     oteProperties.setProperty("language", language);
     oteProperties.setProperty("clearFeatures", clearFeatures);
+    oteProperties.setProperty("adaptiveCapacity", parsedArguments.getInt("adaptiveCapacity").toString());
+    oteProperties.setProperty("fusedFeatures", parsedArguments.getString("fusedFeatures"));
     return oteProperties;
   }
   
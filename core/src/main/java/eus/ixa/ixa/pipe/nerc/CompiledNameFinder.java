@@ -0,0 +1,169 @@
+/*
+ * Copyright 2015 Rodrigo Agerri
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+
+package eus.ixa.ixa.pipe.nerc;
+
+import java.util.List;
+
+import opennlp.tools.ml.BeamSearch;
+import opennlp.tools.ml.model.SequenceClassificationModel;
+import opennlp.tools.namefind.NameContextGenerator;
+import opennlp.tools.namefind.TokenNameFinder;
+import opennlp.tools.namefind.TokenNameFinderModel;
+import opennlp.tools.util.Sequence;
+import opennlp.tools.util.SequenceCodec;
+import opennlp.tools.util.SequenceValidator;
+import opennlp.tools.util.Span;
+import eus.ixa.ixa.pipe.nerc.model.HashedBeamSearch;
+import eus.ixa.ixa.pipe.nerc.model.HeapMaxentModel;
+import eus.ixa.ixa.pipe.nerc.model.MappedModel;
+import eus.ixa.ixa.pipe.nerc.train.Flags;
+import eus.ixa.ixa.pipe.nerc.train.FusedTokenNameFinderFactory;
+
+/**
+ * A name finder decoding as {@code NameFinderME} does with the feature
+ * generator descriptor of the model compiled into a single generator, see
+ * {@link FusedTokenNameFinderFactory}. The features are the same, so any
+ * model can be used, and so are the names found. It also decodes the mapped
+ * models, see {@link MappedModel}, and it can evaluate the contexts by the
+ * hashes of their features instead of their strings, see
+ * {@link HashedBeamSearch}.
+ */
+public class CompiledNameFinder implements TokenNameFinder {
+
+  private static final String[][] EMPTY = new String[0][0];
+
+  private final SequenceClassificationModel<String> model;
+  private final NameContextGenerator contextGenerator;
+  private final SequenceCodec<String> seqCodec;
+  private final SequenceValidator<String> sequenceValidator;
+
+  /**
+   * Construct the name finder of a model.
+   *
+   * @param aModel
+   *          the model
+   */
+  public CompiledNameFinder(final TokenNameFinderModel aModel) {
+    this(aModel, false);
+  }
+
+  /**
+   * Construct the name finder of a model, evaluating the contexts by the
+   * hashes of their features if asked to and the model allows it, see
+   * {@link HashedBeamSearch}.
+   *
+   * @param aModel
+   *          the model
+   * @param hashedFeatures
+   *          whether to evaluate the contexts by the hashes of their features
+   */
+  public CompiledNameFinder(final TokenNameFinderModel aModel,
+      final boolean hashedFeatures) {
+    this.model = hashedFeatures ? createHashedSequenceModel(aModel) : aModel
+        .getNameFinderSequenceModel();
+    this.contextGenerator = FusedTokenNameFinderFactory
+        .createContextGenerator(aModel);
+    this.seqCodec = aModel.getFactory().createSequenceCodec();
+    this.sequenceValidator = seqCodec.createSequenceValidator();
+  }
+
+  /**
+   * Construct the name finder of a mapped model.
+   *
+   * @param aModel
+   *          the mapped model
+   */
+  public CompiledNameFinder(final MappedModel aModel) {
+    this(aModel, false);
+  }
+
+  /**
+   * Construct the name finder of a mapped model, evaluating the contexts by
+   * the hashes of their features if asked to.
+   *
+   * @param aModel
+   *          the mapped model
+   * @param hashedFeatures
+   *          whether to evaluate the contexts by the hashes of their features
+   */
+  public CompiledNameFinder(final MappedModel aModel,
+      final boolean hashedFeatures) {
+    this.model = hashedFeatures ? aModel.createHashedSequenceModel() : aModel
+        .createSequenceModel();
+    this.contextGenerator = aModel.createContextGenerator();
+    this.seqCodec = aModel.createSequenceCodec();
+    this.sequenceValidator = seqCodec.createSequenceValidator();
+  }
+
+  /**
+   * Create the beam search of a model with the hashed predicates of its
+   * maxent model, or the beam search of the model if the maxent model can not
+   * be hashed.
+   */
+  @SuppressWarnings("deprecation")
+  private static SequenceClassificationModel<String> createHashedSequenceModel(
+      final TokenNameFinderModel aModel) {
+    HeapMaxentModel hashedModel = HeapMaxentModel.get(aModel
+        .getNameFinderModel());
+    if (hashedModel == null) {
+      System.err.println("WARNING: the maxent model "
+          + aModel.getNameFinderModel().getClass().getName()
+          + " can not be hashed, evaluating its features as strings");
+      return aModel.getNameFinderSequenceModel();
+    }
+    String beamSize = aModel
+        .getManifestProperty(BeamSearch.BEAM_SIZE_PARAMETER);
+    return new HashedBeamSearch(beamSize == null ? Flags.DEFAULT_BEAM_SIZE
+        : Integer.parseInt(beamSize), hashedModel);
+  }
+
+  /**
+   * Whether the contexts are evaluated by the hashes of their features.
+   *
+   * @return true if the contexts are evaluated by the hashes of their
+   *         features
+   */
+  public boolean isHashed() {
+    return model instanceof HashedBeamSearch;
+  }
+
+  public Span[] find(final String[] tokens) {
+    Sequence bestSequence = model.bestSequence(tokens, EMPTY,
+        contextGenerator, sequenceValidator);
+    List<String> outcomes = bestSequence.getOutcomes();
+    contextGenerator.updateAdaptiveData(tokens,
+        outcomes.toArray(new String[outcomes.size()]));
+    Span[] spans = seqCodec.decode(outcomes);
+    // the probability of a name is the average of those of its tokens
+    double[] probs = bestSequence.getProbs();
+    for (int i = 0; i < spans.length; i++) {
+      Span span = spans[i];
+      double prob = 0;
+      for (int j = span.getStart(); j < span.getEnd(); j++) {
+        prob += probs[j];
+      }
+      spans[i] = new Span(span.getStart(), span.getEnd(), span.getType(), prob
+          / span.length());
+    }
+    return spans;
+  }
+
+  public void clearAdaptiveData() {
+    contextGenerator.clearAdaptiveData();
+  }
+
+}
@@ -17,10 +17,12 @@
 package eus.ixa.ixa.pipe.nerc;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
-import java.util.Map;
 
 import eus.ixa.ixa.pipe.nerc.dict.Dictionaries;
+import eus.ixa.ixa.pipe.nerc.dict.TokenTrie;
 
 import opennlp.tools.namefind.NameFinderME;
 import opennlp.tools.util.Span;
@@ -108,22 +110,19 @@ public class DictionariesNameFinder implements NameFinder {
    * @return spans of the Named Entities
    */
   public final Span[] nercToSpans(final String[] tokens) {
-    List<Span> neSpans = new ArrayList<Span>();
-    for (Map<String, String> neDict : dictionaries.getIgnoreCaseDictionaries()) {
-      for (Map.Entry<String, String> neEntry : neDict.entrySet()) {
-        String neForm = neEntry.getKey();
-        String neType = neEntry.getValue();
-        List<Integer> neIds = StringUtils.exactTokenFinderIgnoreCase(neForm,
-            tokens);
-        if (!neIds.isEmpty()) {
-          for (int i = 0; i < neIds.size(); i += 2) {
-            Span neSpan = new Span(neIds.get(i), neIds.get(i+1), neType);
-            neSpans.add(neSpan);
-            if (debug) {
-              System.err.println(neSpans.toString());
-            }
-          }
-        }
+    String[] foldedTokens = new String[tokens.length];
+    for (int i = 0; i < tokens.length; i++) {
+      foldedTokens[i] = StringUtils.foldCase(tokens[i]);
+    }
+    List<long[]> matches = findEntries(
+        dictionaries.getIgnoreCaseDictionariesTrie(), foldedTokens);
+    List<Span> neSpans = new ArrayList<Span>(matches.size());
+    for (long[] match : matches) {
+      Span neSpan = new Span((int) match[1], (int) match[2],
+          dictionaries.getIgnoreCaseTrieType((int) match[0]));
+      neSpans.add(neSpan);
+      if (debug) {
+        System.err.println(neSpans.toString());
       }
     }
     return neSpans.toArray(new Span[neSpans.size()]);
@@ -138,27 +137,71 @@ public class DictionariesNameFinder implements NameFinder {
    * @return spans of the Named Entities all
    */
   public final Span[] nercToSpansExact(final String[] tokens) {
-    List<Span> neSpans = new ArrayList<Span>();
-    for (Map<String, String> neDict : dictionaries.getDictionaries()) {
-      for (Map.Entry<String, String> neEntry : neDict.entrySet()) {
-        String neForm = neEntry.getKey();
-        String neType = neEntry.getValue();
-        List<Integer> neIds = StringUtils.exactTokenFinder(neForm,
-            tokens);
-        if (!neIds.isEmpty()) {
-          for (int i = 0; i < neIds.size(); i += 2) {
-            Span neSpan = new Span(neIds.get(i), neIds.get(i+1), neType);
-            neSpans.add(neSpan);
-            if (debug) {
-              System.err.println(neSpans.toString());
-            }
-          }
-        }
+    List<long[]> matches = findEntries(dictionaries.getDictionariesTrie(),
+        tokens);
+    List<Span> neSpans = new ArrayList<Span>(matches.size());
+    for (long[] match : matches) {
+      Span neSpan = new Span((int) match[1], (int) match[2],
+          dictionaries.getTrieType((int) match[0]));
+      neSpans.add(neSpan);
+      if (debug) {
+        System.err.println(neSpans.toString());
       }
     }
     return neSpans.toArray(new Span[neSpans.size()]);
   }
 
+  /**
+   * Finds every occurrence of every entry of a {@link TokenTrie} in a sentence
+   * walking it once from each token, at most as far as the longest entry. The
+   * occurrences are sorted by entry value and then by position, which is the
+   * order in which scanning the sentence once per dictionary entry finds them.
+   * 
+   * @param trie
+   *          the trie of dictionary entries
+   * @param tokens
+   *          the tokenized sentence
+   * @return the occurrences as {entry value, start, end} triples
+   */
+  private static List<long[]> findEntries(final TokenTrie trie,
+      final String[] tokens) {
+    List<long[]> matches = new ArrayList<long[]>();
+    // entries with no tokens occur at every position
+    for (int value : trie.getRoot().getValues()) {
+      for (int i = 0; i <= tokens.length; i++) {
+        matches.add(new long[] { value, i, i });
+      }
+    }
+    int maxLength = trie.getMaxLength();
+    for (int i = 0; i < tokens.length; i++) {
+      TokenTrie.Node node = trie.getRoot();
+      for (int j = i; j < tokens.length && j - i < maxLength; j++) {
+        node = node.getChild(tokens[j]);
+        if (node == null) {
+          break;
+        }
+        for (int value : node.getValues()) {
+          matches.add(new long[] { value, i, j + 1 });
+        }
+      }
+    }
+    Collections.sort(matches, MATCH_ORDER);
+    return matches;
+  }
+
+  /**
+   * Order of the occurrences found by
+   * {@link #findEntries(TokenTrie, String[])}.
+   */
+  private static final Comparator<long[]> MATCH_ORDER = new Comparator<long[]>() {
+    public int compare(final long[] match1, final long[] match2) {
+      if (match1[0] != match2[0]) {
+        return match1[0] < match2[0] ? -1 : 1;
+      }
+      return match1[1] < match2[1] ? -1 : (match1[1] == match2[1] ? 0 : 1);
+    }
+  };
+
   /**
    * Creates a list of {@link Name} objects from spans and tokens.
    * 
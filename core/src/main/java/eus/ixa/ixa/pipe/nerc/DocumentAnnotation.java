@@ -0,0 +1,273 @@
+/*
+ *Copyright 2015 Rodrigo Agerri
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+
+package eus.ixa.ixa.pipe.nerc;
+
+import ixa.kaflib.Entity;
+import ixa.kaflib.KAFDocument;
+import ixa.kaflib.Term;
+import ixa.kaflib.WF;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import opennlp.tools.util.Span;
+
+/**
+ * The named entities found in a document by a single pass of the name
+ * finders: for each sentence, its tokens, their ids, the spans of the named
+ * entities with their types and the terms of each entity. Every output format
+ * is rendered from it without running the name finders again.
+ */
+public class DocumentAnnotation {
+
+  /**
+   * The annotated document.
+   */
+  private final KAFDocument kaf;
+  /**
+   * The annotation of each sentence, in document order.
+   */
+  private final List<SentenceAnnotation> sentences = new ArrayList<SentenceAnnotation>();
+
+  /**
+   * Construct an empty annotation of a document.
+   *
+   * @param aKaf
+   *          the document
+   */
+  public DocumentAnnotation(final KAFDocument aKaf) {
+    this.kaf = aKaf;
+  }
+
+  /**
+   * Build the annotation of a document from its entities layer.
+   *
+   * @param kaf
+   *          the document
+   * @param clearAdaptiveData
+   *          whether the adaptive data is cleared after every sentence
+   * @return the annotation
+   */
+  public static DocumentAnnotation fromEntities(final KAFDocument kaf,
+      final boolean clearAdaptiveData) {
+    DocumentAnnotation annotation = new DocumentAnnotation(kaf);
+    List<List<WF>> sentences = kaf.getSentences();
+    // the sentence and token index of every word form
+    Map<String, int[]> wfIndexes = new HashMap<String, int[]>();
+    List<List<Span>> sentenceSpans = new ArrayList<List<Span>>();
+    List<List<List<Term>>> sentenceTerms = new ArrayList<List<List<Term>>>();
+    List<List<String>> sentenceTypes = new ArrayList<List<String>>();
+    for (int s = 0; s < sentences.size(); s++) {
+      List<WF> sentence = sentences.get(s);
+      for (int i = 0; i < sentence.size(); i++) {
+        wfIndexes.put(sentence.get(i).getId(), new int[] { s, i });
+      }
+      sentenceSpans.add(new ArrayList<Span>());
+      sentenceTerms.add(new ArrayList<List<Term>>());
+      sentenceTypes.add(new ArrayList<String>());
+    }
+    for (Entity ne : kaf.getEntities()) {
+      for (ixa.kaflib.Span<Term> spanTerm : ne.getSpans()) {
+        List<Term> terms = spanTerm.getTargets();
+        List<WF> firstWFs = terms.get(0).getWFs();
+        List<WF> lastWFs = terms.get(terms.size() - 1).getWFs();
+        int[] start = wfIndexes.get(firstWFs.get(0).getId());
+        int[] end = wfIndexes.get(lastWFs.get(lastWFs.size() - 1).getId());
+        if (start == null || end == null || start[0] != end[0]) {
+          continue;
+        }
+        sentenceSpans.get(start[0]).add(
+            new Span(start[1], end[1] + 1, ne.getType()));
+        sentenceTerms.get(start[0]).add(terms);
+        sentenceTypes.get(start[0]).add(ne.getType());
+      }
+    }
+    for (int s = 0; s < sentences.size(); s++) {
+      List<WF> sentence = sentences.get(s);
+      String[] tokens = new String[sentence.size()];
+      String[] tokenIds = new String[sentence.size()];
+      for (int i = 0; i < sentence.size(); i++) {
+        tokens[i] = sentence.get(i).getForm();
+        tokenIds[i] = sentence.get(i).getId();
+      }
+      annotation.addSentence(tokens, tokenIds,
+          sortByStart(sentenceSpans.get(s), sentenceTerms.get(s),
+              sentenceTypes.get(s)), sentenceTerms.get(s),
+          sentenceTypes.get(s), clearAdaptiveData);
+    }
+    return annotation;
+  }
+
+  /**
+   * Add the annotation of the next sentence.
+   *
+   * @param tokens
+   *          the tokens
+   * @param tokenIds
+   *          the ids of the tokens
+   * @param spans
+   *          the spans of the named entities
+   * @param entityTerms
+   *          the terms of each named entity
+   * @param entityTypes
+   *          the type of each named entity in the entities layer
+   * @param clearAdaptiveData
+   *          whether the adaptive data was cleared after the sentence
+   */
+  public final void addSentence(final String[] tokens,
+      final String[] tokenIds, final Span[] spans,
+      final List<List<Term>> entityTerms, final List<String> entityTypes,
+      final boolean clearAdaptiveData) {
+    sentences.add(new SentenceAnnotation(tokens, tokenIds, spans,
+        entityTerms, entityTypes, clearAdaptiveData));
+  }
+
+  /**
+   * Get the annotated document.
+   *
+   * @return the document
+   */
+  public final KAFDocument getDocument() {
+    return kaf;
+  }
+
+  /**
+   * Get the annotation of every sentence.
+   *
+   * @return the sentences
+   */
+  public final List<SentenceAnnotation> getSentences() {
+    return Collections.unmodifiableList(sentences);
+  }
+
+  /**
+   * Sort the spans of a sentence, and their terms and types in the same
+   * order.
+   */
+  private static Span[] sortByStart(final List<Span> spans,
+      final List<List<Term>> terms, final List<String> types) {
+    final List<Integer> order = new ArrayList<Integer>();
+    for (int i = 0; i < spans.size(); i++) {
+      order.add(i);
+    }
+    Collections.sort(order, new Comparator<Integer>() {
+      @Override
+      public int compare(final Integer a, final Integer b) {
+        return spans.get(a).compareTo(spans.get(b));
+      }
+    });
+    Span[] sorted = new Span[spans.size()];
+    List<List<Term>> sortedTerms = new ArrayList<List<Term>>();
+    List<String> sortedTypes = new ArrayList<String>();
+    for (int i = 0; i < sorted.length; i++) {
+      sorted[i] = spans.get(order.get(i));
+      sortedTerms.add(terms.get(order.get(i)));
+      sortedTypes.add(types.get(order.get(i)));
+    }
+    terms.clear();
+    terms.addAll(sortedTerms);
+    types.clear();
+    types.addAll(sortedTypes);
+    return sorted;
+  }
+
+  /**
+   * The named entities of a sentence.
+   */
+  public static final class SentenceAnnotation {
+
+    private final String[] tokens;
+    private final String[] tokenIds;
+    private final Span[] spans;
+    private final List<List<Term>> entityTerms;
+    private final List<String> entityTypes;
+    private final boolean clearAdaptiveData;
+
+    private SentenceAnnotation(final String[] aTokens,
+        final String[] aTokenIds, final Span[] aSpans,
+        final List<List<Term>> anEntityTerms,
+        final List<String> someEntityTypes, final boolean aClearAdaptiveData) {
+      this.tokens = aTokens;
+      this.tokenIds = aTokenIds;
+      this.spans = aSpans;
+      this.entityTerms = anEntityTerms;
+      this.entityTypes = someEntityTypes;
+      this.clearAdaptiveData = aClearAdaptiveData;
+    }
+
+    /**
+     * Get the tokens of the sentence.
+     *
+     * @return the tokens
+     */
+    public String[] getTokens() {
+      return tokens;
+    }
+
+    /**
+     * Get the ids of the tokens of the sentence.
+     *
+     * @return the token ids
+     */
+    public String[] getTokenIds() {
+      return tokenIds;
+    }
+
+    /**
+     * Get the spans of the named entities, whose types are the named entity
+     * classes.
+     *
+     * @return the spans
+     */
+    public Span[] getSpans() {
+      return spans;
+    }
+
+    /**
+     * Get the terms of each named entity, in the order of the spans.
+     *
+     * @return the terms of each named entity
+     */
+    public List<List<Term>> getEntityTerms() {
+      return entityTerms;
+    }
+
+    /**
+     * Get the type of each named entity in the entities layer, in the order
+     * of the spans; the types of the spans are those of the name finders.
+     *
+     * @return the type of each named entity
+     */
+    public List<String> getEntityTypes() {
+      return entityTypes;
+    }
+
+    /**
+     * Whether the adaptive data was cleared after the sentence.
+     *
+     * @return true if the adaptive data was cleared
+     */
+    public boolean isClearAdaptiveData() {
+      return clearAdaptiveData;
+    }
+  }
+
+}
@@ -0,0 +1,383 @@
+/*
+ *Copyright 2015 Rodrigo Agerri
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+
+package eus.ixa.ixa.pipe.nerc;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Enumeration;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import opennlp.tools.namefind.TokenNameFinderModel;
+
+import com.google.common.hash.Hashing;
+import com.google.common.io.Files;
+
+import eus.ixa.ixa.pipe.nerc.model.MappedModel;
+
+/**
+ * Registry of the {@link TokenNameFinderModel}s loaded in the process. Models
+ * are identified by the canonical path of the model file plus a hash of its
+ * content, so that two models for the same language are kept apart and a
+ * model file replaced on disk is loaded again.
+ *
+ * Different models are loaded concurrently; concurrent requests for the same
+ * model wait for a single load. Every model has an estimated heap footprint
+ * and, when the models loaded exceed the memory budget of the registry, the
+ * least recently requested ones are evicted. An evicted model stays in memory
+ * as long as some name finder uses it, and it is loaded again when requested.
+ *
+ * The {@link MappedModel}s are kept apart: they are identified by the length
+ * and time of modification of the file instead of its hash, which would read
+ * the whole file, and they do not count against the memory budget because
+ * they are read in place from the page cache.
+ */
+public class ModelRegistry {
+
+  /**
+   * The system property with the default memory budget, in megabytes.
+   */
+  public static final String BUDGET_PROPERTY = "ixa.pipe.nerc.modelBudget";
+  /**
+   * The estimated heap footprint of a model per byte of its uncompressed
+   * model file: the predicates and outcomes are kept as UTF-16 strings in
+   * hash tables and every parameter as an object.
+   */
+  private static final int HEAP_BYTES_PER_MODEL_BYTE = 3;
+
+  private static final ModelRegistry instance = new ModelRegistry(
+      defaultBudget());
+
+  /**
+   * The models loaded or being loaded.
+   */
+  private final ConcurrentHashMap<ModelKey, FutureTask<TokenNameFinderModel>> models =
+      new ConcurrentHashMap<ModelKey, FutureTask<TokenNameFinderModel>>();
+  /**
+   * The mapped models opened or being opened.
+   */
+  private final ConcurrentHashMap<ModelKey, FutureTask<MappedModel>> mappedModels =
+      new ConcurrentHashMap<ModelKey, FutureTask<MappedModel>>();
+  /**
+   * The estimated footprint of every model loaded, in access order.
+   */
+  private final LinkedHashMap<ModelKey, Long> footprints = new LinkedHashMap<ModelKey, Long>(
+      16, 0.75f, true);
+  /**
+   * The content hash of every model file, with the length and time of
+   * modification it was computed for, to avoid reading the file on every
+   * request.
+   */
+  private final ConcurrentHashMap<String, FileHash> fileHashes = new ConcurrentHashMap<String, FileHash>();
+  private long memoryBudget;
+  private long usedMemory = 0;
+
+  /**
+   * Construct a registry.
+   *
+   * @param aMemoryBudget
+   *          the memory budget, in bytes
+   */
+  public ModelRegistry(final long aMemoryBudget) {
+    this.memoryBudget = aMemoryBudget;
+  }
+
+  /**
+   * Get the registry shared by the process.
+   *
+   * @return the registry
+   */
+  public static ModelRegistry getInstance() {
+    return instance;
+  }
+
+  /**
+   * Get a model, loading it if it is not in the registry.
+   *
+   * @param model
+   *          the path of the model file
+   * @return the model
+   * @throws IOException
+   *           if the model can not be loaded
+   */
+  public final TokenNameFinderModel getModel(final String model)
+      throws IOException {
+    final File modelFile = new File(model).getCanonicalFile();
+    final ModelKey key = new ModelKey(modelFile.getPath(), hash(modelFile));
+    FutureTask<TokenNameFinderModel> task = models.get(key);
+    if (task == null) {
+      FutureTask<TokenNameFinderModel> newTask = new FutureTask<TokenNameFinderModel>(
+          new Callable<TokenNameFinderModel>() {
+            @Override
+            public TokenNameFinderModel call() throws IOException {
+              return load(key, modelFile);
+            }
+          });
+      task = models.putIfAbsent(key, newTask);
+      if (task == null) {
+        task = newTask;
+        task.run();
+      }
+    }
+    try {
+      TokenNameFinderModel nerModel = task.get();
+      synchronized (footprints) {
+        // update the access order
+        footprints.get(key);
+      }
+      return nerModel;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted while loading " + model, e);
+    } catch (ExecutionException e) {
+      models.remove(key, task);
+      if (e.getCause() instanceof IOException) {
+        throw (IOException) e.getCause();
+      }
+      throw new IOException("Error loading " + model, e.getCause());
+    }
+  }
+
+  /**
+   * Get a mapped model, opening it if it is not in the registry.
+   *
+   * @param model
+   *          the path of the mapped model file
+   * @return the model
+   * @throws IOException
+   *           if the model can not be opened
+   */
+  public final MappedModel getMappedModel(final String model)
+      throws IOException {
+    final File modelFile = new File(model).getCanonicalFile();
+    ModelKey key = new ModelKey(modelFile.getPath(), modelFile.length() + ":"
+        + modelFile.lastModified());
+    FutureTask<MappedModel> task = mappedModels.get(key);
+    if (task == null) {
+      FutureTask<MappedModel> newTask = new FutureTask<MappedModel>(
+          new Callable<MappedModel>() {
+            @Override
+            public MappedModel call() throws IOException {
+              return MappedModel.open(modelFile);
+            }
+          });
+      task = mappedModels.putIfAbsent(key, newTask);
+      if (task == null) {
+        task = newTask;
+        task.run();
+      }
+    }
+    try {
+      return task.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted while opening " + model, e);
+    } catch (ExecutionException e) {
+      mappedModels.remove(key, task);
+      if (e.getCause() instanceof IOException) {
+        throw (IOException) e.getCause();
+      }
+      throw new IOException("Error opening " + model, e.getCause());
+    }
+  }
+
+  /**
+   * Set the memory budget, evicting models if the models loaded exceed it.
+   *
+   * @param aMemoryBudget
+   *          the memory budget, in bytes
+   */
+  public final void setMemoryBudget(final long aMemoryBudget) {
+    synchronized (footprints) {
+      this.memoryBudget = aMemoryBudget;
+      evict(null);
+    }
+  }
+
+  /**
+   * Get the memory budget.
+   *
+   * @return the memory budget, in bytes
+   */
+  public final long getMemoryBudget() {
+    synchronized (footprints) {
+      return memoryBudget;
+    }
+  }
+
+  /**
+   * Get the estimated footprint of the models in the registry.
+   *
+   * @return the footprint, in bytes
+   */
+  public final long getUsedMemory() {
+    synchronized (footprints) {
+      return usedMemory;
+    }
+  }
+
+  /**
+   * Get the number of models in the registry.
+   *
+   * @return the number of models
+   */
+  public final int size() {
+    synchronized (footprints) {
+      return footprints.size();
+    }
+  }
+
+  /**
+   * Estimate the heap footprint of the model in a model file, from the
+   * uncompressed size of its entries.
+   *
+   * @param modelFile
+   *          the model file
+   * @return the estimated footprint, in bytes
+   * @throws IOException
+   *           if the model file can not be read
+   */
+  public static long estimateFootprint(final File modelFile) throws IOException {
+    long uncompressed = 0;
+    ZipFile zipFile = new ZipFile(modelFile);
+    try {
+      Enumeration<? extends ZipEntry> entries = zipFile.entries();
+      while (entries.hasMoreElements()) {
+        ZipEntry entry = entries.nextElement();
+        uncompressed += entry.getSize() > 0 ? entry.getSize() : entry
+            .getCompressedSize();
+      }
+    } finally {
+      zipFile.close();
+    }
+    return uncompressed * HEAP_BYTES_PER_MODEL_BYTE;
+  }
+
+  private TokenNameFinderModel load(final ModelKey key, final File modelFile)
+      throws IOException {
+    long footprint = estimateFootprint(modelFile);
+    InputStream modelIn = new BufferedInputStream(new FileInputStream(
+        modelFile));
+    TokenNameFinderModel nerModel = null;
+    try {
+      nerModel = new TokenNameFinderModel(modelIn);
+    } finally {
+      modelIn.close();
+    }
+    synchronized (footprints) {
+      footprints.put(key, footprint);
+      usedMemory += footprint;
+      evict(key);
+    }
+    return nerModel;
+  }
+
+  /**
+   * Evict the least recently used models until the models loaded fit in the
+   * budget. Must be called holding the lock of the footprints.
+   *
+   * @param keep
+   *          a model not to evict, or null
+   */
+  private void evict(final ModelKey keep) {
+    Iterator<Map.Entry<ModelKey, Long>> lru = footprints.entrySet().iterator();
+    while (usedMemory > memoryBudget && lru.hasNext()) {
+      Map.Entry<ModelKey, Long> entry = lru.next();
+      if (entry.getKey().equals(keep)) {
+        continue;
+      }
+      lru.remove();
+      usedMemory -= entry.getValue();
+      models.remove(entry.getKey());
+      System.err.println("Evicted model " + entry.getKey().path
+          + " from the model registry");
+    }
+  }
+
+  private String hash(final File modelFile) throws IOException {
+    String path = modelFile.getPath();
+    long length = modelFile.length();
+    long lastModified = modelFile.lastModified();
+    FileHash fileHash = fileHashes.get(path);
+    if (fileHash == null || fileHash.length != length
+        || fileHash.lastModified != lastModified) {
+      fileHash = new FileHash(length, lastModified, Files.hash(modelFile,
+          Hashing.md5()).toString());
+      fileHashes.put(path, fileHash);
+    }
+    return fileHash.hash;
+  }
+
+  private static long defaultBudget() {
+    String budget = System.getProperty(BUDGET_PROPERTY);
+    if (budget != null) {
+      return Long.parseLong(budget) * 1024 * 1024;
+    }
+    return Runtime.getRuntime().maxMemory() / 2;
+  }
+
+  /**
+   * The key of a model: its canonical path and the hash of its content.
+   */
+  private static final class ModelKey {
+    private final String path;
+    private final String hash;
+
+    private ModelKey(final String aPath, final String aHash) {
+      this.path = aPath;
+      this.hash = aHash;
+    }
+
+    @Override
+    public boolean equals(final Object other) {
+      if (!(other instanceof ModelKey)) {
+        return false;
+      }
+      ModelKey key = (ModelKey) other;
+      return path.equals(key.path) && hash.equals(key.hash);
+    }
+
+    @Override
+    public int hashCode() {
+      return 31 * path.hashCode() + hash.hashCode();
+    }
+  }
+
+  private static final class FileHash {
+    private final long length;
+    private final long lastModified;
+    private final String hash;
+
+    private FileHash(final long aLength, final long aLastModified,
+        final String aHash) {
+      this.length = aLength;
+      this.lastModified = aLastModified;
+      this.hash = aHash;
+    }
+  }
+
+}
@@ -0,0 +1,150 @@
+/*
+ *  Copyright 2015 Rodrigo Agerri
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+
+package eus.ixa.ixa.pipe.nerc;
+
+import ixa.kaflib.KAFDocument;
+import ixa.kaflib.Term;
+import ixa.kaflib.WF;
+
+import java.io.BufferedReader;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+import eus.ixa.ixa.pipe.nerc.features.SentenceContext;
+import eus.ixa.ixa.pipe.nerc.train.Flags;
+
+/**
+ * Reads the POS tags and lemmas of a sentence from the term layer of a NAF
+ * document, so that the morphological feature generators use them instead of
+ * POS tagging and lemmatizing the sentence again. The POS tags are taken from
+ * the morphofeat or the pos attribute of the terms and optionally mapped to
+ * the tagset of the model by a tab separated file of tag and mapped tag
+ * pairs; tags not in the mapping are used as they are.
+ *
+ * If a token of the sentence has no term, or its term has no tag, the POS
+ * models of the feature generators are used for the whole sentence; likewise
+ * the lemma dictionaries are used if a term has no lemma. The lemma of a
+ * term spanning several word forms is given to its first token; the other
+ * tokens of the term get their lowercased form, as the lemma dictionaries
+ * give for words they do not know.
+ */
+public class MorphologyLayer {
+
+  private static final Pattern tabPattern = Pattern.compile("\t");
+
+  /**
+   * Whether the tags are read from the pos attribute instead of morphofeat.
+   */
+  private final boolean isPos;
+  /**
+   * The tagset mapping, empty if none.
+   */
+  private final Map<String, String> tagMapping = new HashMap<String, String>();
+
+  /**
+   * Construct the reader of the term layer.
+   *
+   * @param posLayer
+   *          the term attribute to read the tags from, "morphofeat" or "pos"
+   * @param posMapping
+   *          the path to the tagset mapping, or
+   *          {@link Flags#DEFAULT_POS_MAPPING} for none
+   * @throws IOException
+   *           if the mapping can not be read
+   */
+  public MorphologyLayer(final String posLayer, final String posMapping)
+      throws IOException {
+    this.isPos = posLayer.equalsIgnoreCase("pos");
+    if (!posMapping.equals(Flags.DEFAULT_POS_MAPPING)) {
+      loadMapping(posMapping);
+    }
+  }
+
+  private void loadMapping(final String posMapping) throws IOException {
+    BufferedReader breader = new BufferedReader(new InputStreamReader(
+        new FileInputStream(posMapping), "UTF-8"));
+    try {
+      String line;
+      while ((line = breader.readLine()) != null) {
+        String[] lineArray = tabPattern.split(line.trim());
+        if (lineArray.length == 2) {
+          tagMapping.put(lineArray[0], lineArray[1]);
+        } else if (lineArray[0].length() > 0) {
+          System.err.println(line + " is not a well formed tag mapping!");
+        }
+      }
+    } finally {
+      breader.close();
+    }
+  }
+
+  /**
+   * Give the POS tags and lemmas of a sentence from the term layer to the
+   * feature generators. Must be called in the thread running the name finder,
+   * just before it is run on the sentence.
+   *
+   * @param kaf
+   *          the document
+   * @param sentence
+   *          the word forms of the sentence
+   * @param tokens
+   *          the tokens passed to the name finder
+   * @return whether the term layer had POS tags for every token
+   */
+  public final boolean setSentence(final KAFDocument kaf,
+      final List<WF> sentence, final String[] tokens) {
+    Map<String, Term> wfTerms = new HashMap<String, Term>();
+    for (Term term : kaf.getSentenceTerms(sentence.get(0).getSent())) {
+      for (WF wf : term.getWFs()) {
+        wfTerms.put(wf.getId(), term);
+      }
+    }
+    String[] posTags = new String[tokens.length];
+    List<String> lemmas = new ArrayList<String>(tokens.length);
+    for (int i = 0; i < tokens.length; i++) {
+      Term term = wfTerms.get(sentence.get(i).getId());
+      String tag = term == null ? null : isPos ? term.getPos() : term
+          .getMorphofeat();
+      if (tag == null || tag.length() == 0) {
+        SentenceContext.setAnnotations(tokens, null, null);
+        return false;
+      }
+      String mappedTag = tagMapping.get(tag);
+      posTags[i] = mappedTag == null ? tag : mappedTag;
+      if (lemmas != null) {
+        if (term.getLemma() == null) {
+          lemmas = null;
+        } else if (term.getWFs().get(0).getId().equals(
+            sentence.get(i).getId())) {
+          lemmas.add(term.getLemma());
+        } else {
+          // the lemma of a multiword term is given to its first token only
+          lemmas.add(tokens[i].toLowerCase());
+        }
+      }
+    }
+    SentenceContext.setAnnotations(tokens, posTags, lemmas);
+    return true;
+  }
+
+}
@@ -16,7 +16,10 @@
 package eus.ixa.ixa.pipe.nerc;
 
 import java.io.BufferedReader;
+import java.io.StringReader;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 
 import eus.ixa.ixa.pipe.nerc.lexer.NumericNameLexer;
@@ -24,14 +27,62 @@ import eus.ixa.ixa.pipe.nerc.lexer.NumericNameLexer;
 import opennlp.tools.namefind.NameFinderME;
 import opennlp.tools.util.Span;
 
+/**
+ * Rule based name finder of numeric expressions (dates, times, money and
+ * percents) using the {@link NumericNameLexer}. The tokens of a sentence, or
+ * of every sentence in a document, are joined in a single text which is
+ * lexed once; the character offsets of each match are mapped to the tokens
+ * starting and ending at them through a table of token offsets. The lexer
+ * and its buffers are reused for every text, so an instance must not be used
+ * by several threads at the same time.
+ */
 public class NumericNameFinder implements NameFinder {
-  
+
+  /**
+   * Separates the tokens of a sentence in the text lexed.
+   */
+  private static final char TOKEN_SEPARATOR = ' ';
+  /**
+   * Separates the sentences in the text lexed: the paragraph separator is not
+   * part of any numeric expression and the lexer skips it.
+   */
+  private static final char SENTENCE_SEPARATOR = '\u2029';
+
   private NumericNameLexer numericLexer;
   private NameFactory nameFactory;
-  
+  /**
+   * True if the lexer has to read the reader given in the constructor
+   * instead of the tokens.
+   */
+  private boolean pendingReader = false;
+  private final StringBuilder text = new StringBuilder();
+  private int[] tokenStarts = new int[0];
+  private int[] tokenEnds = new int[0];
+  private int[] tokenSentences = new int[0];
+  private int[] tokenIndexes = new int[0];
+
+  /**
+   * Construct a numeric name finder whose first call to
+   * {@link #nercToSpans(String[])} finds the names in the text of a reader,
+   * which has to contain the tokens of the sentence separated by a space.
+   *
+   * @param breader the sentence
+   * @param aNameFactory the factory to create names
+   */
   public NumericNameFinder(BufferedReader breader, NameFactory aNameFactory) {
     this.nameFactory = aNameFactory;
     numericLexer = new NumericNameLexer(breader, aNameFactory);
+    pendingReader = true;
+  }
+
+  /**
+   * Construct a numeric name finder to be reused for every sentence.
+   *
+   * @param aNameFactory the factory to create names
+   */
+  public NumericNameFinder(NameFactory aNameFactory) {
+    this.nameFactory = aNameFactory;
+    numericLexer = new NumericNameLexer(aNameFactory);
   }
 
   public List<Name> getNames(String[] tokens) {
@@ -42,17 +93,91 @@ public class NumericNameFinder implements NameFinder {
   }
 
   public Span[] nercToSpans(final String[] tokens) {
-    List<Span> neSpans = new ArrayList<Span>();
-    List<Name> flexNameList = numericLexer.getNumericNames();
-    for (Name name : flexNameList) {
-      //System.err.println("numeric name: " + name.value());
-      List<Integer> neIds = StringUtils.exactTokenFinderIgnoreCase(name.value(), tokens);
-      for (int i = 0; i < neIds.size(); i += 2) {
-        Span neSpan = new Span(neIds.get(i), neIds.get(i+1), name.getType());
-        neSpans.add(neSpan);
+    return nercToSpans(Collections.singletonList(tokens))[0];
+  }
+
+  /**
+   * Find the numeric names of every sentence of a document in a single pass
+   * of the lexer.
+   *
+   * @param sentences the tokens of each sentence
+   * @return the spans of the names found in each sentence
+   */
+  public Span[][] nercToSpans(final List<String[]> sentences) {
+    int tokenCount = buildText(sentences);
+    if (pendingReader) {
+      pendingReader = false;
+    } else {
+      numericLexer.reset(new StringReader(text.toString()));
+    }
+    List<List<Span>> neSpans = new ArrayList<List<Span>>(sentences.size());
+    for (int i = 0; i < sentences.size(); i++) {
+      neSpans.add(new ArrayList<Span>());
+    }
+    while (numericLexer.hasNextToken()) {
+      Name name = numericLexer.getNextToken();
+      int start = name.startOffset();
+      int end = start + name.nameLength();
+      // some expressions end with a space
+      while (end > start && end <= text.length()
+          && text.charAt(end - 1) == TOKEN_SEPARATOR) {
+        end--;
+      }
+      int first = Arrays.binarySearch(tokenStarts, 0, tokenCount, start);
+      int last = Arrays.binarySearch(tokenEnds, 0, tokenCount, end);
+      if (first >= 0 && last >= first
+          && tokenSentences[first] == tokenSentences[last]) {
+        neSpans.get(tokenSentences[first]).add(
+            new Span(tokenIndexes[first], tokenIndexes[last] + 1, name
+                .getType()));
+      }
+    }
+    Span[][] sentenceSpans = new Span[sentences.size()][];
+    for (int i = 0; i < sentenceSpans.length; i++) {
+      sentenceSpans[i] = neSpans.get(i).toArray(
+          new Span[neSpans.get(i).size()]);
+    }
+    return sentenceSpans;
+  }
+
+  /**
+   * Join the tokens of the sentences in the text to lex and fill the table
+   * of token offsets.
+   *
+   * @param sentences the tokens of each sentence
+   * @return the number of tokens
+   */
+  private int buildText(final List<String[]> sentences) {
+    int tokenCount = 0;
+    for (String[] tokens : sentences) {
+      tokenCount += tokens.length;
+    }
+    if (tokenStarts.length < tokenCount) {
+      tokenStarts = new int[tokenCount];
+      tokenEnds = new int[tokenCount];
+      tokenSentences = new int[tokenCount];
+      tokenIndexes = new int[tokenCount];
+    }
+    text.setLength(0);
+    int k = 0;
+    for (int s = 0; s < sentences.size(); s++) {
+      String[] tokens = sentences.get(s);
+      if (s > 0) {
+        text.append(SENTENCE_SEPARATOR);
+      }
+      for (int i = 0; i < tokens.length; i++) {
+        if (i > 0) {
+          text.append(TOKEN_SEPARATOR);
+        }
+        tokenStarts[k] = text.length();
+        text.append(tokens[i]);
+        tokenEnds[k] = text.length();
+        tokenSentences[k] = s;
+        tokenIndexes[k] = i;
+        k++;
       }
     }
-    return neSpans.toArray(new Span[neSpans.size()]);
+    return tokenCount;
   }
 
   public List<Name> getNamesFromSpans(Span[] neSpans, String[] tokens) {
@@ -29,6 +29,8 @@ import java.util.Properties;
 import opennlp.tools.namefind.NameFinderME;
 import opennlp.tools.namefind.NameSample;
 import opennlp.tools.util.Span;
+import eus.ixa.ixa.pipe.nerc.features.DocumentState;
+import eus.ixa.ixa.pipe.nerc.train.Flags;
 
 /**
  * Annotation class for Opinion Target Extraction (OTE).
@@ -51,11 +53,18 @@ public class OpinionTargetExtractor {
    * Clear features after every sentence or when a -DOCSTART- mark appears.
    */
   private String clearFeatures;
+  /**
+   * The maximum number of tokens in the adaptive data of a document, 0 to
+   * use the capacity set by the model.
+   */
+  private int adaptiveCapacity;
 
   
   public OpinionTargetExtractor(final Properties properties) throws IOException {
 
     this.clearFeatures = properties.getProperty("clearFeatures");
+    this.adaptiveCapacity = Integer.parseInt(properties.getProperty(
+        "adaptiveCapacity", Flags.DEFAULT_ADAPTIVE_CAPACITY));
     nameFactory = new NameFactory();
     oteExtractor = new StatisticalNameFinder(properties, nameFactory);
   }
@@ -67,6 +76,7 @@ public class OpinionTargetExtractor {
    */
   public final void extractOpinionTargets(final KAFDocument kaf) throws IOException {
 
+    DocumentState documentState = new DocumentState(adaptiveCapacity);
     List<List<WF>> sentences = kaf.getSentences();
     for (List<WF> sentence : sentences) {
       //process each sentence
@@ -77,9 +87,9 @@ public class OpinionTargetExtractor {
         tokenIds[i] = sentence.get(i).getId();
       }
       if (clearFeatures.equalsIgnoreCase("docstart") && tokens[0].startsWith("-DOCSTART-")) {
-        oteExtractor.clearAdaptiveData();
+        oteExtractor.clearAdaptiveData(documentState);
       }
-      List<Name> names = oteExtractor.getNames(tokens);
+      List<Name> names = oteExtractor.getNames(tokens, documentState);
       for (Name name : names) {
         Integer startIndex = name.getSpan().getStart();
         Integer endIndex = name.getSpan().getEnd();
@@ -90,10 +100,10 @@ public class OpinionTargetExtractor {
         opinion.createOpinionTarget(neSpan);
       }
       if (clearFeatures.equalsIgnoreCase("yes")) {
-        oteExtractor.clearAdaptiveData();
+        oteExtractor.clearAdaptiveData(documentState);
       }
     }
-    oteExtractor.clearAdaptiveData();
+    oteExtractor.clearAdaptiveData(documentState);
   }
 
   /**
@@ -116,6 +126,7 @@ public class OpinionTargetExtractor {
    */
   public final String annotateOTEsToOpenNLP(KAFDocument kaf) {
     StringBuilder sb = new StringBuilder();
+    DocumentState documentState = new DocumentState(adaptiveCapacity);
     List<List<WF>> sentences = kaf.getSentences();
     for (List<WF> sentence : sentences) {
       String[] tokens = new String[sentence.size()];
@@ -125,9 +136,9 @@ public class OpinionTargetExtractor {
         tokenIds[i] = sentence.get(i).getId();
       }
       if (clearFeatures.equalsIgnoreCase("docstart") && tokens[0].startsWith("-DOCSTART-")) {
-        oteExtractor.clearAdaptiveData();
+        oteExtractor.clearAdaptiveData(documentState);
       }
-      Span[] statSpans = oteExtractor.nercToSpans(tokens);
+      Span[] statSpans = oteExtractor.nercToSpans(tokens, documentState);
       boolean isClearAdaptiveData = false;
       if (clearFeatures.equalsIgnoreCase("yes")) {
         isClearAdaptiveData = true;
@@ -136,7 +147,7 @@ public class OpinionTargetExtractor {
       NameSample nameSample = new NameSample(tokens, allSpansArray, isClearAdaptiveData);
       sb.append(nameSample.toString()).append("\n");
     }
-    oteExtractor.clearAdaptiveData();
+    oteExtractor.clearAdaptiveData(documentState);
     return sb.toString();
   }
 
@@ -16,19 +16,20 @@
 
 package eus.ixa.ixa.pipe.nerc;
 
-import java.io.FileInputStream;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Date;
 import java.util.List;
 import java.util.Properties;
-import java.util.concurrent.ConcurrentHashMap;
 
 import opennlp.tools.namefind.NameFinderME;
 import opennlp.tools.namefind.TokenNameFinder;
 import opennlp.tools.namefind.TokenNameFinderModel;
 import opennlp.tools.util.Span;
+import eus.ixa.ixa.pipe.nerc.features.DocumentState;
+import eus.ixa.ixa.pipe.nerc.model.MappedModel;
+import eus.ixa.ixa.pipe.nerc.train.Flags;
 
 /**
  * Statistical Sequence Labelling based on Apache OpenNLP Machine Learning API.
@@ -40,16 +41,10 @@ import opennlp.tools.util.Span;
 
 public class StatisticalNameFinder implements NameFinder {
 
-  /**
-   * The models to use for every language. The keys of the hash are the
-   * language codes, the values the models.
-   */
-  private static ConcurrentHashMap<String, TokenNameFinderModel> nercModels =
-      new ConcurrentHashMap<String, TokenNameFinderModel>();
   /**
    * The name finder.
    */
-  private NameFinderME nameFinder;
+  private TokenNameFinder nameFinder;
   /**
    * The name factory.
    */
@@ -62,8 +57,12 @@ public class StatisticalNameFinder implements NameFinder {
   public StatisticalNameFinder(final Properties props) {
     String lang = props.getProperty("language");
     String model = props.getProperty("model");
-    TokenNameFinderModel nerModel = loadModel(lang, model);
-    nameFinder = new NameFinderME(nerModel);
+    if (MappedModel.isMappedModel(model)) {
+      nameFinder = loadMappedNameFinder(props, model);
+    } else {
+      TokenNameFinderModel nerModel = loadModel(lang, model);
+      nameFinder = createNameFinder(props, nerModel);
+    }
   }
 
   /**
@@ -79,8 +78,12 @@ public class StatisticalNameFinder implements NameFinder {
     String lang = props.getProperty("language");
     String model = props.getProperty("model");
     this.nameFactory = aNameFactory;
-    TokenNameFinderModel nerModel = loadModel(lang, model);
-    nameFinder = new NameFinderME(nerModel);
+    if (MappedModel.isMappedModel(model)) {
+      nameFinder = loadMappedNameFinder(props, model);
+    } else {
+      TokenNameFinderModel nerModel = loadModel(lang, model);
+      nameFinder = createNameFinder(props, nerModel);
+    }
   }
 
 
@@ -103,6 +106,23 @@ public class StatisticalNameFinder implements NameFinder {
     return names;
   }
 
+  /**
+   * Produce the list of {@link Name} objects of a sentence of a document,
+   * with the adaptive data of the document in its {@link DocumentState}.
+   *
+   * @param tokens
+   *          an array of tokenized text
+   * @param state
+   *          the state of the document the sentence belongs to
+   * @return a List of names
+   */
+  public final List<Name> getNames(final String[] tokens,
+      final DocumentState state) {
+    Span[] origSpans = nercToSpans(tokens, state);
+    Span[] neSpans = NameFinderME.dropOverlappingSpans(origSpans);
+    return getNamesFromSpans(neSpans, tokens);
+  }
+
   /**
    * This method receives as input an array of tokenized text and calls the
    * NameFinderME.find(tokens) to recognize and classify Named Entities. It
@@ -123,6 +143,32 @@ public class StatisticalNameFinder implements NameFinder {
     return probSpans.toArray(new Span[probSpans.size()]);
   }
 
+  /**
+   * Recognize the Named Entities of a sentence of a document, reading and
+   * updating the adaptive data of the document in its {@link DocumentState}
+   * instead of the default state of the current thread. The sentences of
+   * several documents may be interleaved. The state only scopes the
+   * adaptive data to the document: the name finder must still not be used by
+   * several threads at once, even for different documents, so concurrent
+   * annotation needs one name finder per thread, such as those of the
+   * annotators lent by {@link AnnotatePool}.
+   *
+   * @param tokens
+   *          an array of tokenized text
+   * @param state
+   *          the state of the document the sentence belongs to
+   * @return an list of {@link Span}s of Named Entities
+   */
+  public final Span[] nercToSpans(final String[] tokens,
+      final DocumentState state) {
+    DocumentState previous = DocumentState.bind(state);
+    try {
+      return nercToSpans(tokens);
+    } finally {
+      DocumentState.bind(previous);
+    }
+  }
+
   /**
    * Creates a list of {@link Name} objects from spans and tokens.
    *
@@ -156,8 +202,71 @@ public class StatisticalNameFinder implements NameFinder {
   }
 
   /**
-   * Loads statically the probabilistic model. Every instance of this finder
-   * will share the same model.
+   * Forgets the adaptive data of a document, typically when a -DOCSTART-
+   * mark is found or after every sentence.
+   *
+   * @param state
+   *          the state of the document
+   */
+  public final void clearAdaptiveData(final DocumentState state) {
+    DocumentState previous = DocumentState.bind(state);
+    try {
+      nameFinder.clearAdaptiveData();
+    } finally {
+      DocumentState.bind(previous);
+    }
+  }
+
+  /**
+   * Warm the name finder up, finding the names of some sentences until the
+   * steady state is reached. Each round uses its own {@link DocumentState},
+   * so the adaptive data of the documents being annotated is not changed.
+   *
+   * @param sentences
+   *          the tokenized sentences of the workload
+   * @param warmUp
+   *          the warm-up settings
+   * @return the report of the warm-up
+   * @throws IOException
+   *           never, the workload only finds names
+   */
+  public final WarmUp.Report warmUp(final List<String[]> sentences,
+      final WarmUp warmUp) throws IOException {
+    return warmUp.run("statistical name finder", new WarmUp.Workload() {
+      public void run() {
+        DocumentState state = new DocumentState();
+        for (String[] tokens : sentences) {
+          getNames(tokens, state);
+        }
+        clearAdaptiveData(state);
+      }
+    });
+  }
+
+  /**
+   * Create the name finder of a model, with the compiled feature generators
+   * unless the {@code fusedFeatures} property is "no", and evaluating their
+   * features by their hashes if it is "hashed".
+   * @param props the properties
+   * @param nerModel the model
+   * @return the name finder
+   */
+  private TokenNameFinder createNameFinder(final Properties props,
+      final TokenNameFinderModel nerModel) {
+    String fusedFeatures = props.getProperty("fusedFeatures",
+        Flags.DEFAULT_FUSED_FEATURES);
+    if (fusedFeatures.equalsIgnoreCase("yes")) {
+      return new CompiledNameFinder(nerModel);
+    } else if (fusedFeatures.equalsIgnoreCase("hashed")) {
+      return new CompiledNameFinder(nerModel, true);
+    }
+    return new NameFinderME(nerModel);
+  }
+
+  /**
+   * Loads the probabilistic model from the {@link ModelRegistry}. Every
+   * instance of this finder using the same model file will share the same
+   * model.
    *
    * @param lang the language
    * @param model the model to be loaded
@@ -165,15 +274,33 @@ public class StatisticalNameFinder implements NameFinder {
    */
   private final TokenNameFinderModel loadModel(final String lang, final String model) {
     try {
-      synchronized(nercModels) {
-        if (!nercModels.containsKey(lang)) {
-          nercModels.put(lang, new TokenNameFinderModel(new FileInputStream(model)));
-        }
-      }
+      return ModelRegistry.getInstance().getModel(model);
     } catch (IOException e) {
       e.printStackTrace();
     }
+    return null;
+  }
 
-    return nercModels.get(lang);
+  /**
+   * Loads a mapped model from the {@link ModelRegistry} and creates its name
+   * finder, which always uses the compiled feature generators, evaluating
+   * their features by their hashes if the {@code fusedFeatures} property is
+   * "hashed".
+   *
+   * @param props the properties
+   * @param model the mapped model to be loaded
+   * @return the name finder
+   */
+  private TokenNameFinder loadMappedNameFinder(final Properties props,
+      final String model) {
+    boolean hashedFeatures = props.getProperty("fusedFeatures",
+        Flags.DEFAULT_FUSED_FEATURES).equalsIgnoreCase("hashed");
+    try {
+      return new CompiledNameFinder(ModelRegistry.getInstance()
+          .getMappedModel(model), hashedFeatures);
+    } catch (IOException e) {
+      e.printStackTrace();
+    }
+    return null;
   }
 }
@@ -93,6 +93,30 @@ public final class StringUtils {
     return neTokens;
   }
 
+  /**
+   * Folds the case of a string so that two strings are
+   * {@link String#equalsIgnoreCase(String)} if and only if their folded forms
+   * are equal.
+   *
+   * @param string
+   *          the string to fold
+   * @return the case folded string
+   */
+  public static String foldCase(final String string) {
+    char[] folded = null;
+    for (int i = 0; i < string.length(); i++) {
+      char c = string.charAt(i);
+      char f = Character.toLowerCase(Character.toUpperCase(c));
+      if (f != c) {
+        if (folded == null) {
+          folded = string.toCharArray();
+        }
+        folded[i] = f;
+      }
+    }
+    return folded == null ? string : new String(folded);
+  }
+
   /**
    * Finds a pattern (typically a named entity string) in a sentence string. It
    * outputs the offsets for the start and end characters named entity found, if
@@ -0,0 +1,371 @@
+/*
+ * Copyright 2015 Rodrigo Agerri
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+
+package eus.ixa.ixa.pipe.nerc;
+
+import ixa.kaflib.KAFDocument;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.Files;
+
+/**
+ * Warm-up of the annotators after loading the models: a workload is run in
+ * rounds until the time of a round stops improving, that is, until the JIT
+ * compiler has compiled the feature generation and decoding paths and the
+ * annotators are in their steady state. The long running modes warm their
+ * annotators up before accepting documents, so that the first documents are
+ * not much slower than the rest.
+ *
+ * A round is steady if it is not faster than the fastest previous round by
+ * more than the tolerance; the warm-up ends after a number of consecutive
+ * steady rounds or, if the steady state is not reached, after the maximum
+ * number of rounds.
+ *
+ * The workload is either a set of NAF documents, see
+ * {@link #readDocuments(File)}, or a synthetic document made of capitalized
+ * names, common words, numbers and punctuation, see
+ * {@link #syntheticDocument(String)}.
+ */
+public final class WarmUp {
+
+  /**
+   * The default maximum number of rounds.
+   */
+  public static final int DEFAULT_MAX_ROUNDS = 50;
+  /**
+   * The default improvement, over the fastest round, below which a round is
+   * steady.
+   */
+  public static final double DEFAULT_TOLERANCE = 0.05;
+  /**
+   * The default number of consecutive steady rounds ending the warm-up.
+   */
+  public static final int DEFAULT_STEADY_ROUNDS = 3;
+
+  private static final long SYNTHETIC_SEED = 42;
+  private static final int SYNTHETIC_SENTENCES = 40;
+  private static final int SYNTHETIC_SENTENCE_LENGTH = 20;
+  private static final String[] NAMES = { "Maria", "Lopez", "John", "Smith",
+      "Bilbao", "Donostia", "London", "Paris", "Berlin", "Amsterdam",
+      "European", "Union", "University", "Group", "Google", "Reuters",
+      "Garcia", "Anna", "Obama", "NATO" };
+  private static final String[] WORDS = { "the", "of", "in", "and", "a",
+      "to", "was", "said", "de", "la", "el", "y", "en", "der", "und", "het",
+      "van", "il", "di", "et", "president", "city", "company", "team",
+      "yesterday", "government", "minister", "report" };
+  private static final String[] NUMBERS = { "2015", "12", "3.5", "1,000",
+      "20%", "15:30", "10/06/2015" };
+  private static final String[] PUNCTUATION = { ",", "(", ")", "\"", ":" };
+
+  private final int maxRounds;
+  private final double tolerance;
+  private final int steadyRounds;
+
+  /**
+   * Construct a warm-up with the default settings.
+   */
+  public WarmUp() {
+    this(DEFAULT_MAX_ROUNDS, DEFAULT_TOLERANCE, DEFAULT_STEADY_ROUNDS);
+  }
+
+  /**
+   * Construct a warm-up.
+   *
+   * @param aMaxRounds
+   *          the maximum number of rounds
+   * @param aTolerance
+   *          the improvement, as a fraction of the fastest round, below which
+   *          a round is steady
+   * @param aSteadyRounds
+   *          the number of consecutive steady rounds ending the warm-up
+   */
+  public WarmUp(final int aMaxRounds, final double aTolerance,
+      final int aSteadyRounds) {
+    if (aMaxRounds < 1 || aSteadyRounds < 1 || aTolerance < 0) {
+      throw new IllegalArgumentException("Invalid warm-up settings: "
+          + aMaxRounds + " rounds, tolerance " + aTolerance + ", "
+          + aSteadyRounds + " steady rounds!");
+    }
+    this.maxRounds = aMaxRounds;
+    this.tolerance = aTolerance;
+    this.steadyRounds = aSteadyRounds;
+  }
+
+  /**
+   * Run a workload until the steady state is reached. Nothing is printed;
+   * the caller decides where the report goes.
+   *
+   * @param name
+   *          the name of the workload, for the report
+   * @param workload
+   *          the workload of one round
+   * @return the report of the warm-up
+   * @throws IOException
+   *           if the workload fails
+   */
+  public Report run(final String name, final Workload workload)
+      throws IOException {
+    long start = System.nanoTime();
+    long fastest = Long.MAX_VALUE;
+    long roundTime = 0;
+    int steady = 0;
+    int rounds = 0;
+    while (rounds < maxRounds && steady < steadyRounds) {
+      long roundStart = System.nanoTime();
+      workload.run();
+      roundTime = System.nanoTime() - roundStart;
+      rounds++;
+      if (fastest != Long.MAX_VALUE && roundTime >= fastest * (1 - tolerance)) {
+        steady++;
+      } else {
+        steady = 0;
+      }
+      fastest = Math.min(fastest, roundTime);
+    }
+    return new Report(name, rounds, roundTime, System.nanoTime() - start,
+        steady >= steadyRounds);
+  }
+
+  /**
+   * Read the NAF documents of a warm-up workload.
+   *
+   * @param input
+   *          a NAF document or a directory of NAF documents
+   * @return the documents
+   * @throws IOException
+   *           if the documents can not be read
+   */
+  public static List<String> readDocuments(final File input)
+      throws IOException {
+    List<File> files = new ArrayList<File>();
+    if (input.isDirectory()) {
+      files.addAll(StringUtils.getFilesInDir(input));
+      Collections.sort(files);
+    } else {
+      files.add(input);
+    }
+    List<String> documents = new ArrayList<String>();
+    for (File file : files) {
+      documents.add(Files.toString(file, Charsets.UTF_8));
+    }
+    return documents;
+  }
+
+  /**
+   * Select the NAF documents of a language from a warm-up workload.
+   *
+   * @param documents
+   *          the NAF documents of the workload, or null
+   * @param lang
+   *          the language
+   * @return the documents of the language or else the synthetic document of
+   *         the language
+   * @throws IOException
+   *           if a document is not valid NAF
+   */
+  public static List<String> selectDocuments(final List<String> documents,
+      final String lang) throws IOException {
+    List<String> selected = new ArrayList<String>();
+    if (documents != null) {
+      for (String document : documents) {
+        if (lang.equals(parseDocument(document).getLang())) {
+          selected.add(document);
+        }
+      }
+    }
+    if (selected.isEmpty()) {
+      selected.add(syntheticDocument(lang));
+    }
+    return selected;
+  }
+
+  /**
+   * Parse a NAF document of a warm-up workload; every round parses the
+   * documents again, as annotating them adds layers to them.
+   *
+   * @param document
+   *          the document
+   * @return the parsed document
+   * @throws IOException
+   *           if the document is not valid NAF
+   */
+  public static KAFDocument parseDocument(final String document)
+      throws IOException {
+    try {
+      return KAFDocument.createFromStream(new StringReader(document));
+    } catch (IOException e) {
+      throw e;
+    } catch (Exception e) {
+      throw new IOException("Warm-up document is not valid NAF: " + e, e);
+    }
+  }
+
+  /**
+   * Create a synthetic NAF document, with text and terms layers, for the
+   * warm-up of the annotators of a language. The document is always the same.
+   *
+   * @param lang
+   *          the language of the document
+   * @return the document
+   */
+  public static String syntheticDocument(final String lang) {
+    Random random = new Random(SYNTHETIC_SEED);
+    StringBuilder text = new StringBuilder();
+    StringBuilder terms = new StringBuilder();
+    int offset = 0;
+    int wid = 0;
+    for (int sent = 1; sent <= SYNTHETIC_SENTENCES; sent++) {
+      int length = SYNTHETIC_SENTENCE_LENGTH / 2
+          + random.nextInt(SYNTHETIC_SENTENCE_LENGTH);
+      for (int i = 0; i <= length; i++) {
+        String form;
+        String pos;
+        String morphofeat;
+        int kind = random.nextInt(10);
+        if (i == length) {
+          form = ".";
+          pos = "O";
+          morphofeat = ".";
+        } else if (kind < 3) {
+          form = NAMES[random.nextInt(NAMES.length)];
+          pos = "R";
+          morphofeat = "NNP";
+        } else if (kind < 8) {
+          form = WORDS[random.nextInt(WORDS.length)];
+          pos = "N";
+          morphofeat = "NN";
+        } else if (kind < 9) {
+          form = NUMBERS[random.nextInt(NUMBERS.length)];
+          pos = "G";
+          morphofeat = "CD";
+        } else {
+          form = PUNCTUATION[random.nextInt(PUNCTUATION.length)];
+          pos = "O";
+          morphofeat = form;
+        }
+        String xmlForm = form.replace("\"", "&quot;");
+        wid++;
+        text.append("    <wf wid=\"w").append(wid).append("\" sent=\"")
+            .append(sent).append("\" offset=\"").append(offset)
+            .append("\" length=\"").append(form.length()).append("\">")
+            .append(xmlForm).append("</wf>\n");
+        terms.append("    <term tid=\"t").append(wid)
+            .append("\" type=\"open\" lemma=\"").append(xmlForm.toLowerCase())
+            .append("\" pos=\"").append(pos).append("\" morphofeat=\"")
+            .append(morphofeat.replace("\"", "&quot;"))
+            .append("\">\n      <span>\n")
+            .append("        <target id=\"w").append(wid)
+            .append("\" />\n      </span>\n    </term>\n");
+        offset += form.length() + 1;
+      }
+    }
+    return "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n" + "<NAF xml:lang=\""
+        + lang + "\" version=\"v1.naf\">\n" + "  <nafHeader />\n"
+        + "  <text>\n" + text + "  </text>\n" + "  <terms>\n" + terms
+        + "  </terms>\n" + "</NAF>\n";
+  }
+
+  /**
+   * The work of a warm-up round.
+   */
+  public interface Workload {
+
+    /**
+     * Run a round of the warm-up.
+     *
+     * @throws IOException
+     *           if the round fails
+     */
+    void run() throws IOException;
+  }
+
+  /**
+   * The report of a warm-up.
+   */
+  public static final class Report {
+
+    private final String name;
+    private final int rounds;
+    private final long lastRoundNanos;
+    private final long totalNanos;
+    private final boolean steady;
+
+    private Report(final String aName, final int aRounds,
+        final long aLastRoundNanos, final long aTotalNanos,
+        final boolean isSteady) {
+      this.name = aName;
+      this.rounds = aRounds;
+      this.lastRoundNanos = aLastRoundNanos;
+      this.totalNanos = aTotalNanos;
+      this.steady = isSteady;
+    }
+
+    /**
+     * Get the number of rounds run.
+     *
+     * @return the number of rounds
+     */
+    public int getRounds() {
+      return rounds;
+    }
+
+    /**
+     * Get the time of the last round, the steady time if the steady state
+     * was reached.
+     *
+     * @return the time in nanoseconds
+     */
+    public long getLastRoundNanos() {
+      return lastRoundNanos;
+    }
+
+    /**
+     * Get the time of the whole warm-up.
+     *
+     * @return the time in nanoseconds
+     */
+    public long getTotalNanos() {
+      return totalNanos;
+    }
+
+    /**
+     * Whether the steady state was reached before the maximum number of
+     * rounds.
+     *
+     * @return true if the steady state was reached
+     */
+    public boolean isSteady() {
+      return steady;
+    }
+
+    @Override
+    public String toString() {
+      return "Warm-up of " + name + ": "
+          + (steady ? "steady state" : "no steady state") + " after "
+          + rounds + " rounds in " + totalNanos / 1000000 + " ms, last round "
+          + lastRoundNanos / 1000000 + " ms";
+    }
+  }
+
+}
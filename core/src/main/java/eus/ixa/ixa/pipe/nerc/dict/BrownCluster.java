@@ -24,8 +24,9 @@ import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.io.Writer;
 import java.nio.charset.Charset;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.regex.Pattern;
 
 import opennlp.tools.util.InvalidFormatException;
@@ -41,6 +42,11 @@ import opennlp.tools.util.model.SerializableArtifact;
  * The file containing the clustering lexicon has to be passed as the 
  * argument of the BrownClusterFeatures parameter in the prop file.
  * 
+ * The prefixes of every Brown path used as features are computed once for
+ * each path when the lexicon is loaded, and the prefixes of the tokens of the
+ * sentence being processed by each thread are kept, so that every token is
+ * looked up once per sentence.
+ * 
  * @author ragerri
  * @version 2014/09/29
  * 
@@ -62,7 +68,26 @@ public class BrownCluster implements SerializableArtifact {
     }
   }
   
-  private Map<String, String> tokenToClusterMap = new HashMap<String, String>();
+  /**
+   * The lengths of the prefixes of the Brown paths used as features.
+   */
+  public static final int[] PATH_LENGTHS = { 4, 6, 10, 20 };
+  private static final List<String> NO_PATHS = Collections.emptyList();
+
+  private final Lexicon tokenToClusterMap;
+  /**
+   * The path prefixes of each cluster id of the lexicon.
+   */
+  private final List<List<String>> clusterPaths;
+  /**
+   * The path prefixes of the tokens of the current sentence of each thread.
+   */
+  private final ThreadLocal<SentencePaths> sentencePaths = new ThreadLocal<SentencePaths>() {
+    @Override
+    protected SentencePaths initialValue() {
+      return new SentencePaths();
+    }
+  };
 
   /**
    * Generates the token to cluster map from Brown cluster input file.
@@ -72,6 +97,7 @@ public class BrownCluster implements SerializableArtifact {
    */
   public BrownCluster(InputStream in) throws IOException {
 
+    CompactLexicon lexicon = new CompactLexicon();
     BufferedReader breader = new BufferedReader(new InputStreamReader(in, Charset.forName("UTF-8")));
     String line;
     while ((line = breader.readLine()) != null) {
@@ -80,14 +106,67 @@ public class BrownCluster implements SerializableArtifact {
         int freq = Integer.parseInt(lineArray[2]);
           if (freq > 5 ) {
             String normalizedToken = ClarkCluster.dotInsideI.matcher(lineArray[1]).replaceAll("I");
-            tokenToClusterMap.put(normalizedToken, lineArray[0]);
+            lexicon.put(normalizedToken, lineArray[0]);
         }
       }
       else if (lineArray.length == 2) {
         String normalizedToken = ClarkCluster.dotInsideI.matcher(lineArray[0]).replaceAll("I");
-        tokenToClusterMap.put(normalizedToken, lineArray[1]);
+        lexicon.put(normalizedToken, lineArray[1]);
       }
     }
+    lexicon.trim();
+    tokenToClusterMap = lexicon;
+    clusterPaths = getClusterPaths(lexicon);
+  }
+
+  /**
+   * Construct the resource from a lexicon already built, such as the
+   * lexicon of a mapped model file.
+   * @param lexicon the token to cluster lexicon
+   */
+  public BrownCluster(Lexicon lexicon) {
+    this.tokenToClusterMap = lexicon;
+    this.clusterPaths = getClusterPaths(lexicon);
+  }
+
+  /**
+   * Get the token to cluster lexicon.
+   * @return the lexicon
+   */
+  public Lexicon getLexicon() {
+    return tokenToClusterMap;
+  }
+
+  /**
+   * Get the path prefixes of each cluster id of a lexicon.
+   * @param lexicon the lexicon
+   * @return the path prefixes indexed by cluster id
+   */
+  private static List<List<String>> getClusterPaths(Lexicon lexicon) {
+    List<List<String>> paths = new ArrayList<List<String>>(lexicon.getClusterCount());
+    for (int i = 0; i < lexicon.getClusterCount(); i++) {
+      paths.add(getPathPrefixes(lexicon.getCluster(i)));
+    }
+    return paths;
+  }
+
+  /**
+   * Get the prefixes of a Brown path of the lengths in {@link #PATH_LENGTHS},
+   * stopping at the first one as long as the path.
+   * @param brownClass the Brown path
+   * @return the unmodifiable list of prefixes
+   */
+  private static List<String> getPathPrefixes(String brownClass) {
+    List<String> pathLengthsList = new ArrayList<String>(PATH_LENGTHS.length);
+    pathLengthsList.add(brownClass.substring(0,
+        Math.min(brownClass.length(), PATH_LENGTHS[0])));
+    for (int i = 1; i < PATH_LENGTHS.length; i++) {
+      if (PATH_LENGTHS[i - 1] < brownClass.length()) {
+        pathLengthsList.add(brownClass.substring(0,
+            Math.min(brownClass.length(), PATH_LENGTHS[i])));
+      }
+    }
+    return Collections.unmodifiableList(pathLengthsList);
   }
 
   /**
@@ -96,14 +175,49 @@ public class BrownCluster implements SerializableArtifact {
    * @return the brown class if such token is in the brown cluster map
    */
   public String lookupToken(String string) {
-    return tokenToClusterMap.get(string);
+    return tokenToClusterMap.lookup(string);
+  }
+
+  /**
+   * Get the prefixes of the Brown path of a token.
+   * @param string the token to look-up
+   * @return the shared, unmodifiable list of path prefixes, empty if the
+   * token is not in the brown cluster map
+   */
+  public List<String> lookupPaths(String string) {
+    int clusterId = tokenToClusterMap.getClusterId(string);
+    return clusterId < 0 ? NO_PATHS : clusterPaths.get(clusterId);
+  }
+
+  /**
+   * Get the prefixes of the Brown path of a token of a sentence, looking up
+   * each token once while the thread processes the same sentence.
+   * @param tokens the sentence
+   * @param index the index of the token
+   * @return the shared, unmodifiable list of path prefixes, empty if the
+   * token is not in the brown cluster map
+   */
+  public List<String> lookupPaths(String[] tokens, int index) {
+    SentencePaths current = sentencePaths.get();
+    if (current.tokens != tokens) {
+      current.tokens = tokens;
+      current.paths = new Object[tokens.length];
+    }
+    @SuppressWarnings("unchecked")
+    List<String> paths = (List<String>) current.paths[index];
+    if (paths == null) {
+      paths = lookupPaths(tokens[index]);
+      current.paths[index] = paths;
+    }
+    return paths;
   }
 
   public void serialize(OutputStream out) throws IOException {
     Writer writer = new BufferedWriter(new OutputStreamWriter(out));
 
-    for (Map.Entry<String, String> entry : tokenToClusterMap.entrySet()) {
-      writer.write(entry.getKey() + "\t" + entry.getValue() + "\n");
+    for (int i = 0; i < tokenToClusterMap.size(); i++) {
+      writer.write(tokenToClusterMap.getWord(i) + "\t"
+          + tokenToClusterMap.getEntryCluster(i) + "\n");
     }
 
     writer.flush();
@@ -112,5 +226,14 @@ public class BrownCluster implements SerializableArtifact {
   public Class<?> getArtifactSerializerClass() {
     return BrownClusterSerializer.class;
   }
+
+  /**
+   * The path prefixes of the tokens of a sentence, filled as they are
+   * looked up.
+   */
+  private static final class SentencePaths {
+    private String[] tokens;
+    private Object[] paths;
+  }
 }
 
@@ -0,0 +1,346 @@
+/*
+ * Copyright 2015 Rodrigo Agerri
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+package eus.ixa.ixa.pipe.nerc.dict;
+
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Compact map from words to cluster classes for the large cluster lexicons.
+ * The words are kept as UTF-8 bytes in a single byte pool and found through
+ * an open addressing hash table of entry indexes; each entry has an int
+ * cluster id into a table of the distinct cluster classes. A word is looked
+ * up comparing its characters with the bytes in the pool, so lookups do not
+ * allocate, with a fast path for ASCII words.
+ *
+ * As with a {@link HashMap}, putting a word already in the lexicon replaces
+ * its cluster class. Words must be well formed UTF-16, as those read by a
+ * UTF-8 reader are.
+ */
+public class CompactLexicon implements Lexicon {
+
+  private static final int INITIAL_CAPACITY = 1024;
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+  /**
+   * The UTF-8 bytes of every word, one after another.
+   */
+  private byte[] wordPool = new byte[INITIAL_CAPACITY * 8];
+  private int poolSize = 0;
+  /**
+   * The offset of each word in the pool; the word of an entry ends where the
+   * word of the next entry starts.
+   */
+  private int[] wordOffsets = new int[INITIAL_CAPACITY + 1];
+  /**
+   * The hash of the word of each entry.
+   */
+  private int[] wordHashes = new int[INITIAL_CAPACITY];
+  /**
+   * The cluster id of each entry.
+   */
+  private int[] clusterIds = new int[INITIAL_CAPACITY];
+  private int size = 0;
+  /**
+   * The open addressing table: each slot is an entry index plus one, or 0 if
+   * empty.
+   */
+  private int[] slots = new int[INITIAL_CAPACITY * 2];
+  /**
+   * The distinct cluster classes, indexed by cluster id.
+   */
+  private String[] clusters = new String[16];
+  private int clusterCount = 0;
+  /**
+   * The id of each cluster class, only used while adding words.
+   */
+  private final Map<String, Integer> clusterIndexes = new HashMap<String, Integer>();
+
+  /**
+   * Construct an empty lexicon.
+   */
+  public CompactLexicon() {
+  }
+
+  /**
+   * Add a word with its cluster class, replacing its class if the word is
+   * already in the lexicon.
+   *
+   * @param word
+   *          the word
+   * @param cluster
+   *          the cluster class
+   */
+  public final void put(final String word, final String cluster) {
+    int clusterId = getOrAddClusterId(cluster);
+    int hash = hash(word);
+    int mask = slots.length - 1;
+    int slot = hash & mask;
+    while (slots[slot] != 0) {
+      int entry = slots[slot] - 1;
+      if (wordHashes[entry] == hash && wordEquals(entry, word)) {
+        clusterIds[entry] = clusterId;
+        return;
+      }
+      slot = (slot + 1) & mask;
+    }
+    addEntry(word, hash, clusterId);
+    slots[slot] = size;
+    if (size * 2 > slots.length) {
+      rehash(slots.length * 2);
+    }
+  }
+
+  /**
+   * Look up the cluster class of a word.
+   *
+   * @param word
+   *          the word
+   * @return the cluster class or null if the word is not in the lexicon
+   */
+  public final String lookup(final String word) {
+    int clusterId = getClusterId(word);
+    return clusterId < 0 ? null : clusters[clusterId];
+  }
+
+  /**
+   * Look up the cluster id of a word.
+   *
+   * @param word
+   *          the word
+   * @return the cluster id, or -1 if the word is not in the lexicon
+   */
+  public final int getClusterId(final String word) {
+    int entry = findEntry(word);
+    return entry < 0 ? -1 : clusterIds[entry];
+  }
+
+  /**
+   * Get the cluster class of a cluster id.
+   *
+   * @param clusterId
+   *          the cluster id
+   * @return the cluster class
+   */
+  public final String getCluster(final int clusterId) {
+    return clusters[clusterId];
+  }
+
+  /**
+   * Get the number of distinct cluster classes.
+   *
+   * @return the number of cluster classes
+   */
+  public final int getClusterCount() {
+    return clusterCount;
+  }
+
+  /**
+   * Get the number of words in the lexicon.
+   *
+   * @return the number of words
+   */
+  public final int size() {
+    return size;
+  }
+
+  /**
+   * Get the word of an entry, decoding it from the pool.
+   *
+   * @param entry
+   *          the entry index, from 0 to {@link #size()}
+   * @return the word
+   */
+  public final String getWord(final int entry) {
+    int offset = wordOffsets[entry];
+    return new String(wordPool, offset, wordOffsets[entry + 1] - offset,
+        UTF_8);
+  }
+
+  /**
+   * Get the cluster class of an entry.
+   *
+   * @param entry
+   *          the entry index, from 0 to {@link #size()}
+   * @return the cluster class
+   */
+  public final String getEntryCluster(final int entry) {
+    return clusters[clusterIds[entry]];
+  }
+
+  /**
+   * Get the lexicon as a map. The map is a copy built on every call.
+   *
+   * @return the word to cluster class map
+   */
+  public final Map<String, String> toMap() {
+    Map<String, String> map = new HashMap<String, String>(size * 2);
+    for (int entry = 0; entry < size; entry++) {
+      map.put(getWord(entry), getEntryCluster(entry));
+    }
+    return map;
+  }
+
+  /**
+   * Free the space reserved for more words once the lexicon is loaded.
+   */
+  public final void trim() {
+    wordPool = Arrays.copyOf(wordPool, poolSize);
+    wordOffsets = Arrays.copyOf(wordOffsets, size + 1);
+    wordHashes = Arrays.copyOf(wordHashes, size);
+    clusterIds = Arrays.copyOf(clusterIds, size);
+    clusters = Arrays.copyOf(clusters, clusterCount);
+  }
+
+  private int findEntry(final String word) {
+    int hash = hash(word);
+    int mask = slots.length - 1;
+    int slot = hash & mask;
+    while (slots[slot] != 0) {
+      int entry = slots[slot] - 1;
+      if (wordHashes[entry] == hash && wordEquals(entry, word)) {
+        return entry;
+      }
+      slot = (slot + 1) & mask;
+    }
+    return -1;
+  }
+
+  private int getOrAddClusterId(final String cluster) {
+    Integer clusterId = clusterIndexes.get(cluster);
+    if (clusterId == null) {
+      if (clusterCount == clusters.length) {
+        clusters = Arrays.copyOf(clusters, Math.max(16, clusterCount * 2));
+      }
+      clusterId = clusterCount;
+      clusters[clusterCount++] = cluster;
+      clusterIndexes.put(cluster, clusterId);
+    }
+    return clusterId;
+  }
+
+  private void addEntry(final String word, final int hash, final int clusterId) {
+    if (size == wordHashes.length) {
+      int capacity = Math.max(INITIAL_CAPACITY, size * 2);
+      wordOffsets = Arrays.copyOf(wordOffsets, capacity + 1);
+      wordHashes = Arrays.copyOf(wordHashes, capacity);
+      clusterIds = Arrays.copyOf(clusterIds, capacity);
+    }
+    byte[] bytes = word.getBytes(UTF_8);
+    if (poolSize + bytes.length > wordPool.length) {
+      wordPool = Arrays.copyOf(wordPool,
+          Math.max(wordPool.length * 2, poolSize + bytes.length + INITIAL_CAPACITY));
+    }
+    System.arraycopy(bytes, 0, wordPool, poolSize, bytes.length);
+    wordOffsets[size] = poolSize;
+    poolSize += bytes.length;
+    wordOffsets[size + 1] = poolSize;
+    wordHashes[size] = hash;
+    clusterIds[size] = clusterId;
+    size++;
+  }
+
+  private void rehash(final int capacity) {
+    slots = new int[capacity];
+    int mask = capacity - 1;
+    for (int entry = 0; entry < size; entry++) {
+      int slot = wordHashes[entry] & mask;
+      while (slots[slot] != 0) {
+        slot = (slot + 1) & mask;
+      }
+      slots[slot] = entry + 1;
+    }
+  }
+
+  /**
+   * Hash the characters of a word, spreading the bits of
+   * {@link String#hashCode()} over the low bits used by the table.
+   */
+  private static int hash(final String word) {
+    int hash = word.hashCode();
+    hash ^= (hash >>> 16);
+    hash *= 0x85ebca6b;
+    hash ^= (hash >>> 13);
+    return hash;
+  }
+
+  /**
+   * Compare a word with the UTF-8 bytes of an entry without decoding them.
+   */
+  private boolean wordEquals(final int entry, final String word) {
+    int offset = wordOffsets[entry];
+    int end = wordOffsets[entry + 1];
+    int length = word.length();
+    int i = 0;
+    // ASCII fast path
+    while (i < length && offset < end) {
+      byte b = wordPool[offset];
+      if (b < 0) {
+        break;
+      }
+      if (word.charAt(i) != b) {
+        return false;
+      }
+      i++;
+      offset++;
+    }
+    while (i < length && offset < end) {
+      int b = wordPool[offset] & 0xff;
+      int codePoint;
+      if (b < 0x80) {
+        codePoint = b;
+        offset += 1;
+      } else if (b < 0xe0) {
+        if (offset + 1 >= end) {
+          return false;
+        }
+        codePoint = ((b & 0x1f) << 6) | (wordPool[offset + 1] & 0x3f);
+        offset += 2;
+      } else if (b < 0xf0) {
+        if (offset + 2 >= end) {
+          return false;
+        }
+        codePoint = ((b & 0x0f) << 12) | ((wordPool[offset + 1] & 0x3f) << 6)
+            | (wordPool[offset + 2] & 0x3f);
+        offset += 3;
+      } else {
+        if (offset + 3 >= end) {
+          return false;
+        }
+        codePoint = ((b & 0x07) << 18) | ((wordPool[offset + 1] & 0x3f) << 12)
+            | ((wordPool[offset + 2] & 0x3f) << 6) | (wordPool[offset + 3] & 0x3f);
+        offset += 4;
+      }
+      if (codePoint >= Character.MIN_SUPPLEMENTARY_CODE_POINT) {
+        if (i + 1 >= length
+            || word.charAt(i) != Character.highSurrogate(codePoint)
+            || word.charAt(i + 1) != Character.lowSurrogate(codePoint)) {
+          return false;
+        }
+        i += 2;
+      } else {
+        if (word.charAt(i) != codePoint) {
+          return false;
+        }
+        i++;
+      }
+    }
+    return i == length && offset == end;
+  }
+
+}
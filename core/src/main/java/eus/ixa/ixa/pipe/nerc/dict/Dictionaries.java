@@ -43,6 +43,7 @@ import eus.ixa.ixa.pipe.nerc.StringUtils;
 public class Dictionaries {
   
   private static final Pattern tabPattern = Pattern.compile("\t");
+  private static final Pattern spacePattern = Pattern.compile(" ");
 
   public static boolean DEBUG = false;
   /**
@@ -57,6 +58,22 @@ public class Dictionaries {
    * The list of lowercase dictionaries as HashMap<String, String>.
    */
   private static List<Map<String, String>> dictionariesIgnoreCase;
+  /**
+   * Token trie of every entry in the dictionaries.
+   */
+  private static TokenTrie dictionariesTrie;
+  /**
+   * Token trie of every entry in the lowercase dictionaries, case folded.
+   */
+  private static TokenTrie dictionariesIgnoreCaseTrie;
+  /**
+   * The class of each entry in the dictionaries trie.
+   */
+  private static List<String> trieTypes;
+  /**
+   * The class of each entry in the lowercase dictionaries trie.
+   */
+  private static List<String> ignoreCaseTrieTypes;
 
   /**
    * Construct the dictionaries from the input directory path.
@@ -65,15 +82,16 @@ public class Dictionaries {
    *          the input directory
    */
   public Dictionaries(final String inputDir) {
-    if (dictNames == null && dictionaries == null
-        && dictionariesIgnoreCase == null) {
-      try {
-        loadDictionaries(inputDir);
-      } catch (IOException e) {
-        e.getMessage();
+    synchronized (Dictionaries.class) {
+      if (dictNames == null && dictionaries == null
+          && dictionariesIgnoreCase == null) {
+        try {
+          loadDictionaries(inputDir);
+        } catch (IOException e) {
+          e.getMessage();
+        }
       }
     }
-
   }
 
   /**
@@ -94,6 +112,49 @@ public class Dictionaries {
     return dictionariesIgnoreCase;
   }
 
+  /**
+   * Get the token trie containing the entries of every dictionary. The value of
+   * each entry is its index in {@link #getTrieType(int)}; values follow the
+   * order of the dictionaries and of the entries in each of them.
+   * 
+   * @return the trie
+   */
+  public final TokenTrie getDictionariesTrie() {
+    return dictionariesTrie;
+  }
+
+  /**
+   * Get the token trie containing the entries of every lower case dictionary,
+   * with their tokens folded by {@link StringUtils#foldCase(String)}.
+   * 
+   * @return the trie
+   */
+  public final TokenTrie getIgnoreCaseDictionariesTrie() {
+    return dictionariesIgnoreCaseTrie;
+  }
+
+  /**
+   * Get the class of an entry of the dictionaries trie.
+   * 
+   * @param value
+   *          the value of the entry in the trie
+   * @return the named entity class
+   */
+  public final String getTrieType(final int value) {
+    return trieTypes.get(value);
+  }
+
+  /**
+   * Get the class of an entry of the lower case dictionaries trie.
+   * 
+   * @param value
+   *          the value of the entry in the trie
+   * @return the named entity class
+   */
+  public final String getIgnoreCaseTrieType(final int value) {
+    return ignoreCaseTrieTypes.get(value);
+  }
+
   /**
    * Get the dictionary names.
    * 
@@ -141,6 +202,43 @@ public class Dictionaries {
         }
       }
     }
+    trieTypes = new ArrayList<String>();
+    dictionariesTrie = buildTrie(dictionaries, trieTypes, false);
+    ignoreCaseTrieTypes = new ArrayList<String>();
+    dictionariesIgnoreCaseTrie = buildTrie(dictionariesIgnoreCase,
+        ignoreCaseTrieTypes, true);
     System.err.println("found " + dictionaries.size() + " dictionaries");
   }
+
+  /**
+   * Build a token trie with the entries of a list of dictionaries. Entries are
+   * split in tokens as {@link StringUtils#exactTokenFinder(String, String[])}
+   * does.
+   * 
+   * @param dicts
+   *          the dictionaries
+   * @param types
+   *          the list where the class of each entry is added
+   * @param foldCase
+   *          whether to fold the case of the tokens
+   * @return the trie
+   */
+  private static TokenTrie buildTrie(final List<Map<String, String>> dicts,
+      final List<String> types, final boolean foldCase) {
+    TokenTrie trie = new TokenTrie();
+    for (Map<String, String> dict : dicts) {
+      for (Map.Entry<String, String> entry : dict.entrySet()) {
+        String[] entryTokens = spacePattern.split(entry.getKey());
+        if (foldCase) {
+          for (int i = 0; i < entryTokens.length; i++) {
+            entryTokens[i] = StringUtils.foldCase(entryTokens[i]);
+          }
+        }
+        trie.add(entryTokens, types.size());
+        types.add(entry.getValue());
+      }
+    }
+    trie.compact();
+    return trie;
+  }
 }
@@ -25,14 +25,13 @@ import java.io.OutputStreamWriter;
 import java.io.Writer;
 import java.nio.charset.Charset;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.regex.Pattern;
 
-import opennlp.tools.namefind.BilouCodec;
-import opennlp.tools.namefind.BioCodec;
 import opennlp.tools.util.InvalidFormatException;
 import opennlp.tools.util.model.ArtifactSerializer;
 import opennlp.tools.util.model.SerializableArtifact;
@@ -63,6 +62,7 @@ public class Dictionary implements SerializableArtifact {
   }
   
   private Map<String, String> dictionary = new HashMap<String, String>();
+  private final List<DictionaryMatcher> matchers = new ArrayList<DictionaryMatcher>(1);
 
   public Dictionary(InputStream in) throws IOException {
 
@@ -109,43 +109,8 @@ public class Dictionary implements SerializableArtifact {
    * @return the list of named entities in the current sentence
    */
   public List<String> getBioDictionaryMatch(String[] tokens) {
-
-    List<String> entitiesList = new ArrayList<String>();
-
-    String prefix = "-" + BioCodec.START;
-    String gazEntry = null;
-    String searchSpan = null;
-    // iterative over tokens from the beginning
-    for (int i = 0; i < tokens.length; i++) {
-      gazEntry = null;
-      int j;
-      // iterate over tokens from the end
-      for (j = tokens.length - 1; j >= i; j--) {
-        // create span for search in dictionary Map; the first search takes as span
-        // the whole sentence
-        searchSpan = createSpan(tokens, i, j);
-        gazEntry = lookup(searchSpan.toLowerCase());
-        if (gazEntry != null) {
-          break;
-        }
-      }
-      prefix = "-" + BioCodec.START;
-      // multi-token case
-      if (gazEntry != null) {
-        while (i < j) {
-          entitiesList.add((gazEntry + prefix).intern());
-          prefix = "-" + BioCodec.CONTINUE;
-          i++;
-        }
-      }
-      // one word case or last member of span
-      if (gazEntry != null) {
-        entitiesList.add((gazEntry + prefix).intern());
-      } else {
-        entitiesList.add(BioCodec.OTHER);
-      }
-    }
-    return entitiesList;
+    return DictionaryMatcher.getMatcher(Collections.singletonList(this))
+        .getBioDictionaryMatch(tokens, 0);
   }
   
   /**
@@ -154,63 +119,17 @@ public class Dictionary implements SerializableArtifact {
    * @return the list of named entities in the current sentence
    */
   public List<String> getBilouDictionaryMatch(String[] tokens) {
-
-    List<String> entitiesList = new ArrayList<String>();
-
-    String prefix = "-" + BilouCodec.START;
-    String gazClass = null;
-    String searchSpan = null;
-    // iterative over tokens from the beginning
-    for (int i = 0; i < tokens.length; i++) {
-      gazClass = null;
-      int j;
-      // iterate over tokens from the end
-      for (j = tokens.length - 1; j >= i; j--) {
-        // create span for search in dictionary Map; the first search takes as span
-        // the whole sentence
-        searchSpan = createSpan(tokens, i, j);
-        gazClass = lookup(searchSpan.toLowerCase());
-        if (gazClass != null) {
-          break;
-        }
-      }
-      prefix = "-" + BilouCodec.START;
-      // multi-token case
-      if (gazClass != null) {
-        while (i < j) {
-          entitiesList.add((gazClass + prefix).intern());
-          prefix = "-" + BilouCodec.CONTINUE;
-          i++;
-        }
-      }
-      // one word case or last member of span
-      if (gazClass != null) {
-        if (prefix.equals("-" + BilouCodec.START)) {
-          entitiesList.add((gazClass + "-" + BilouCodec.UNIT).intern());
-        } else if (prefix.equals("-" + BilouCodec.CONTINUE)) {
-          entitiesList.add((gazClass + "-" + BilouCodec.LAST).intern());
-        }       
-      } else {
-        entitiesList.add(BilouCodec.OTHER);
-      }
-    }
-    return entitiesList;
+    return DictionaryMatcher.getMatcher(Collections.singletonList(this))
+        .getBilouDictionaryMatch(tokens, 0);
   }
   
   /**
-   * Create a multi token entry search in the dictionary Map.
-   * @param tokens the sentence
-   * @param from the start index
-   * @param to the end index
-   * @return the string representing the possibly multi token entity
+   * The matchers built for this dictionary, kept by the
+   * {@link DictionaryMatcher} so that they are built once.
+   * @return the list of matchers whose first dictionary is this one
    */
-  private String createSpan(String[] tokens, int from, int to) {
-    String tokenSpan = "";
-    for (int i = from; i < to; i++) {
-      tokenSpan += tokens[i] + " ";
-    }
-    tokenSpan += tokens[to];
-    return tokenSpan;
+  final List<DictionaryMatcher> getMatchers() {
+    return matchers;
   }
 
   public void serialize(OutputStream out) throws IOException {
@@ -0,0 +1,344 @@
+/*
+ * Copyright 2015 Rodrigo Agerri
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+package eus.ixa.ixa.pipe.nerc.dict;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+import opennlp.tools.namefind.BilouCodec;
+import opennlp.tools.namefind.BioCodec;
+
+/**
+ * Longest match of the entries of several {@link Dictionary} objects in a
+ * sentence. Every entry is added to one {@link TokenTrie} so that the matches
+ * of every dictionary are found in a single walk over the tokens, bounded by
+ * the length of the longest entry. For each dictionary the matches are those
+ * of a greedy left to right search of the longest entry starting at each
+ * token, which is what {@link Dictionary#getBioDictionaryMatch(String[])} and
+ * {@link Dictionary#getBilouDictionaryMatch(String[])} return.
+ *
+ * The matches of the last sentence are kept for each thread, so that the
+ * feature generators of every dictionary of a model share them.
+ */
+public class DictionaryMatcher {
+
+  private static final Pattern spacePattern = Pattern.compile(" ");
+
+  /**
+   * The dictionaries matched.
+   */
+  private final List<Dictionary> dictionaries;
+  /**
+   * The trie of the entries of every dictionary.
+   */
+  private final TokenTrie trie = new TokenTrie();
+  /**
+   * The dictionary of each entry in the trie.
+   */
+  private final int[] entryDictionary;
+  /**
+   * The class of each entry in the trie.
+   */
+  private final EntityClass[] entryClass;
+  /**
+   * The matches in the last sentence seen by each thread.
+   */
+  private final ThreadLocal<SentenceMatches> lastMatches = new ThreadLocal<SentenceMatches>();
+
+  /**
+   * Build a matcher for a list of dictionaries.
+   *
+   * @param aDictionaries
+   *          the dictionaries
+   */
+  public DictionaryMatcher(final List<Dictionary> aDictionaries) {
+    this.dictionaries = new ArrayList<Dictionary>(aDictionaries);
+    Map<String, EntityClass> classes = new HashMap<String, EntityClass>();
+    List<Integer> entryDicts = new ArrayList<Integer>();
+    List<EntityClass> entryClasses = new ArrayList<EntityClass>();
+    for (int i = 0; i < dictionaries.size(); i++) {
+      for (Map.Entry<String, String> entry : dictionaries.get(i).getDict()
+          .entrySet()) {
+        EntityClass entityClass = classes.get(entry.getValue());
+        if (entityClass == null) {
+          entityClass = new EntityClass(entry.getValue());
+          classes.put(entry.getValue(), entityClass);
+        }
+        trie.add(spacePattern.split(entry.getKey(), -1), entryDicts.size());
+        entryDicts.add(i);
+        entryClasses.add(entityClass);
+      }
+    }
+    trie.compact();
+    entryDictionary = new int[entryDicts.size()];
+    for (int i = 0; i < entryDictionary.length; i++) {
+      entryDictionary[i] = entryDicts.get(i);
+    }
+    entryClass = entryClasses.toArray(new EntityClass[entryClasses.size()]);
+  }
+
+  /**
+   * Get a matcher for a list of dictionaries, reusing the one previously built
+   * for the same dictionaries if any.
+   *
+   * @param aDictionaries
+   *          the dictionaries
+   * @return the matcher
+   */
+  public static DictionaryMatcher getMatcher(
+      final List<Dictionary> aDictionaries) {
+    if (aDictionaries.isEmpty()) {
+      throw new IllegalArgumentException("No dictionaries to match!");
+    }
+    Dictionary first = aDictionaries.get(0);
+    synchronized (first) {
+      for (DictionaryMatcher matcher : first.getMatchers()) {
+        if (matcher.dictionaries.equals(aDictionaries)) {
+          return matcher;
+        }
+      }
+      DictionaryMatcher matcher = new DictionaryMatcher(aDictionaries);
+      first.getMatchers().add(matcher);
+      return matcher;
+    }
+  }
+
+  /**
+   * Get the dictionaries matched.
+   *
+   * @return the dictionaries
+   */
+  public final List<Dictionary> getDictionaries() {
+    return dictionaries;
+  }
+
+  /**
+   * Performs gazetteer match of a dictionary in a bio encoding.
+   *
+   * @param tokens
+   *          the sentence
+   * @param dictIndex
+   *          the index of the dictionary in {@link #getDictionaries()}
+   * @return the list of named entities in the current sentence
+   */
+  public final List<String> getBioDictionaryMatch(final String[] tokens,
+      final int dictIndex) {
+    return match(tokens).getLabels(dictIndex, false);
+  }
+
+  /**
+   * Performs gazetteer match of a dictionary in a bilou encoding.
+   *
+   * @param tokens
+   *          the sentence
+   * @param dictIndex
+   *          the index of the dictionary in {@link #getDictionaries()}
+   * @return the list of named entities in the current sentence
+   */
+  public final List<String> getBilouDictionaryMatch(final String[] tokens,
+      final int dictIndex) {
+    return match(tokens).getLabels(dictIndex, true);
+  }
+
+  /**
+   * Get the matches of every dictionary in a sentence, computing them if the
+   * sentence is not the last one seen by this thread.
+   *
+   * @param tokens
+   *          the sentence
+   * @return the matches
+   */
+  private SentenceMatches match(final String[] tokens) {
+    SentenceMatches matches = lastMatches.get();
+    if (matches == null || matches.tokens != tokens) {
+      matches = new SentenceMatches(tokens);
+      lastMatches.set(matches);
+    }
+    return matches;
+  }
+
+  /**
+   * Move from a node of the trie with the space separated parts of a token.
+   *
+   * @param node
+   *          the node
+   * @param tokenParts
+   *          the parts of the lowercase token
+   * @return the node reached or null
+   */
+  private static TokenTrie.Node walk(TokenTrie.Node node,
+      final String[] tokenParts) {
+    for (int i = 0; i < tokenParts.length && node != null; i++) {
+      node = node.getChild(tokenParts[i]);
+    }
+    return node;
+  }
+
+  /**
+   * The labels of a named entity class, interned as the original matching
+   * did.
+   */
+  private static final class EntityClass {
+    private final String bioStart;
+    private final String bioContinue;
+    private final String bilouStart;
+    private final String bilouContinue;
+    private final String bilouLast;
+    private final String bilouUnit;
+
+    private EntityClass(final String neClass) {
+      bioStart = (neClass + "-" + BioCodec.START).intern();
+      bioContinue = (neClass + "-" + BioCodec.CONTINUE).intern();
+      bilouStart = (neClass + "-" + BilouCodec.START).intern();
+      bilouContinue = (neClass + "-" + BilouCodec.CONTINUE).intern();
+      bilouLast = (neClass + "-" + BilouCodec.LAST).intern();
+      bilouUnit = (neClass + "-" + BilouCodec.UNIT).intern();
+    }
+  }
+
+  /**
+   * The matches of every dictionary in a sentence.
+   */
+  private final class SentenceMatches {
+
+    private final String[] tokens;
+    /**
+     * For each dictionary and each token starting a match, the last token of
+     * the match; -1 for tokens outside any match.
+     */
+    private final int[][] matchEnds;
+    /**
+     * For each dictionary and each token starting a match, its class.
+     */
+    private final EntityClass[][] matchClasses;
+    private final List<List<String>> bioLabels;
+    private final List<List<String>> bilouLabels;
+
+    private SentenceMatches(final String[] aTokens) {
+      this.tokens = aTokens;
+      int dictCount = dictionaries.size();
+      matchEnds = new int[dictCount][aTokens.length];
+      matchClasses = new EntityClass[dictCount][aTokens.length];
+      bioLabels = new ArrayList<List<String>>(
+          Collections.<List<String>> nCopies(dictCount, null));
+      bilouLabels = new ArrayList<List<String>>(
+          Collections.<List<String>> nCopies(dictCount, null));
+      for (int[] ends : matchEnds) {
+        Arrays.fill(ends, -1);
+      }
+      String[][] tokenParts = new String[aTokens.length][];
+      for (int i = 0; i < aTokens.length; i++) {
+        String lowercase = aTokens[i].toLowerCase();
+        tokenParts[i] = lowercase.indexOf(' ') < 0 ? new String[] { lowercase }
+            : spacePattern.split(lowercase, -1);
+      }
+      // the next token each dictionary has to look for a match from
+      int[] nextFree = new int[dictCount];
+      int[] longestEnd = new int[dictCount];
+      for (int i = 0; i < aTokens.length; i++) {
+        boolean searching = false;
+        for (int d = 0; d < dictCount; d++) {
+          if (nextFree[d] == i) {
+            longestEnd[d] = -1;
+            searching = true;
+          }
+        }
+        if (!searching) {
+          continue;
+        }
+        TokenTrie.Node node = trie.getRoot();
+        for (int j = i; j < aTokens.length; j++) {
+          node = walk(node, tokenParts[j]);
+          if (node == null) {
+            break;
+          }
+          for (int entry : node.getValues()) {
+            int d = entryDictionary[entry];
+            if (nextFree[d] == i) {
+              longestEnd[d] = j;
+              matchClasses[d][i] = entryClass[entry];
+            }
+          }
+        }
+        for (int d = 0; d < dictCount; d++) {
+          if (nextFree[d] == i) {
+            if (longestEnd[d] >= 0) {
+              matchEnds[d][i] = longestEnd[d];
+              nextFree[d] = longestEnd[d] + 1;
+            } else {
+              nextFree[d] = i + 1;
+            }
+          }
+        }
+      }
+    }
+
+    private List<String> getLabels(final int dictIndex, final boolean isBilou) {
+      List<List<String>> cache = isBilou ? bilouLabels : bioLabels;
+      List<String> labels = cache.get(dictIndex);
+      if (labels == null) {
+        labels = isBilou ? encodeBilou(dictIndex) : encodeBio(dictIndex);
+        cache.set(dictIndex, labels);
+      }
+      return labels;
+    }
+
+    private List<String> encodeBio(final int dictIndex) {
+      List<String> entitiesList = new ArrayList<String>(tokens.length);
+      int[] ends = matchEnds[dictIndex];
+      for (int i = 0; i < tokens.length; i++) {
+        if (ends[i] < 0) {
+          entitiesList.add(BioCodec.OTHER);
+        } else {
+          EntityClass entityClass = matchClasses[dictIndex][i];
+          entitiesList.add(entityClass.bioStart);
+          for (int j = i + 1; j <= ends[i]; j++) {
+            entitiesList.add(entityClass.bioContinue);
+          }
+          i = ends[i];
+        }
+      }
+      return entitiesList;
+    }
+
+    private List<String> encodeBilou(final int dictIndex) {
+      List<String> entitiesList = new ArrayList<String>(tokens.length);
+      int[] ends = matchEnds[dictIndex];
+      for (int i = 0; i < tokens.length; i++) {
+        if (ends[i] < 0) {
+          entitiesList.add(BilouCodec.OTHER);
+        } else if (ends[i] == i) {
+          entitiesList.add(matchClasses[dictIndex][i].bilouUnit);
+        } else {
+          EntityClass entityClass = matchClasses[dictIndex][i];
+          entitiesList.add(entityClass.bilouStart);
+          for (int j = i + 1; j < ends[i]; j++) {
+            entitiesList.add(entityClass.bilouContinue);
+          }
+          entitiesList.add(entityClass.bilouLast);
+          i = ends[i];
+        }
+      }
+      return entitiesList;
+    }
+  }
+
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright 2015 Rodrigo Agerri
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+
+package eus.ixa.ixa.pipe.nerc.dict;
+
+import java.util.Map;
+
+/**
+ * Read access to a map from words to cluster classes, the lexicon of the
+ * {@link BrownCluster}, {@link ClarkCluster} and {@link Word2VecCluster}
+ * resources. The lexicon is either built in the heap, see
+ * {@link CompactLexicon}, or read from a mapped model file, see
+ * {@link eus.ixa.ixa.pipe.nerc.model.MappedLexicon}.
+ */
+public interface Lexicon {
+
+  /**
+   * Look up the cluster class of a word.
+   *
+   * @param word
+   *          the word
+   * @return the cluster class or null if the word is not in the lexicon
+   */
+  String lookup(String word);
+
+  /**
+   * Look up the cluster id of a word.
+   *
+   * @param word
+   *          the word
+   * @return the cluster id, or -1 if the word is not in the lexicon
+   */
+  int getClusterId(String word);
+
+  /**
+   * Get the cluster class of a cluster id.
+   *
+   * @param clusterId
+   *          the cluster id
+   * @return the cluster class
+   */
+  String getCluster(int clusterId);
+
+  /**
+   * Get the number of distinct cluster classes.
+   *
+   * @return the number of cluster classes
+   */
+  int getClusterCount();
+
+  /**
+   * Get the number of words in the lexicon.
+   *
+   * @return the number of words
+   */
+  int size();
+
+  /**
+   * Get the word of an entry.
+   *
+   * @param entry
+   *          the entry index, from 0 to {@link #size()}
+   * @return the word
+   */
+  String getWord(int entry);
+
+  /**
+   * Get the cluster class of an entry.
+   *
+   * @param entry
+   *          the entry index, from 0 to {@link #size()}
+   * @return the cluster class
+   */
+  String getEntryCluster(int entry);
+
+  /**
+   * Get the lexicon as a map. The map is a copy built on every call.
+   *
+   * @return the word to cluster class map
+   */
+  Map<String, String> toMap();
+}
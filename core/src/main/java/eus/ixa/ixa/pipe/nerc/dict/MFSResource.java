@@ -17,14 +17,15 @@
 package eus.ixa.ixa.pipe.nerc.dict;
 
 import java.io.BufferedReader;
-import java.io.BufferedWriter;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.OutputStream;
-import java.io.OutputStreamWriter;
-import java.io.Writer;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.SortedSet;
@@ -45,6 +46,12 @@ import com.google.common.collect.TreeMultimap;
 /**
  * Reads wordnet lexicons formated as house#n\t1092#noun.artifact
  * to search for most frequent senses.
+ *
+ * The most frequent sense of every lemma#pos entry is resolved when the
+ * lexicon is loaded, and the lemmas of the entries, split into their
+ * underscore separated words, are kept in a {@link TokenTrie}, so that the
+ * longest multiword entry starting at each token of a sentence is found with
+ * a single walk bounded by the longest entry.
  * @author ragerri
  * @version 2015-03-30
  * 
@@ -67,9 +74,28 @@ public class MFSResource implements SerializableArtifact {
   }
   
   /**
-   * The dictionary for finding the MFS.
+   * The lexicon as read, kept to serialize it and to rank the senses of an
+   * entry, as every entry is only needed to resolve its most frequent sense.
    */
-  private ListMultimap<String, String> multiMap = ArrayListMultimap.create();
+  private final byte[] lexicon;
+  /**
+   * The lemmas of the entries, split at underscores; the values are entry
+   * indexes.
+   */
+  private final TokenTrie lemmaTrie = new TokenTrie();
+  /**
+   * The pos class of each entry.
+   */
+  private String[] entryPosClasses;
+  /**
+   * The index of the most frequent sense of each entry.
+   */
+  private int[] entrySenses;
+  /**
+   * The labels of each sense in the bio and bilou encodings: start, continue,
+   * last and unit.
+   */
+  private final List<String[]> senseLabels = new ArrayList<String[]>();
   
   /**
    * Build the MFS Dictionary.
@@ -77,17 +103,125 @@ public class MFSResource implements SerializableArtifact {
    * @throws IOException the io exception
    */
   public MFSResource(InputStream in) throws IOException {
-    BufferedReader breader = new BufferedReader(new InputStreamReader(
-        in));
-    String line;
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    byte[] buffer = new byte[8192];
     try {
-      while ((line = breader.readLine()) != null) {
-        String[] elems = spacePattern.split(line);
-        multiMap.put(elems[0], elems[1]);
+      for (int read; (read = in.read(buffer)) != -1;) {
+        bytes.write(buffer, 0, read);
       }
     } catch (IOException e) {
       e.printStackTrace();
     }
+    lexicon = bytes.toByteArray();
+    ListMultimap<String, String> multiMap = ArrayListMultimap.create();
+    BufferedReader breader = getReader();
+    String line;
+    while ((line = breader.readLine()) != null) {
+      String[] elems = spacePattern.split(line);
+      multiMap.put(elems[0], elems[1]);
+    }
+    compile(multiMap);
+  }
+
+  /**
+   * Get a reader of the lexicon lines.
+   * @return the reader
+   */
+  private BufferedReader getReader() {
+    return new BufferedReader(new InputStreamReader(new ByteArrayInputStream(
+        lexicon)));
+  }
+
+  /**
+   * Resolve the most frequent sense of every entry and build the lemma trie.
+   * Entries which are not lowercase, or have no pos class, are left out as
+   * the lookups are always lowercase lemma#pos strings.
+   * @param multiMap the freq#sense values of each entry
+   */
+  private void compile(ListMultimap<String, String> multiMap) {
+    Map<String, Integer> senseIndexes = new HashMap<String, Integer>();
+    List<String> posClasses = new ArrayList<String>();
+    List<Integer> senses = new ArrayList<Integer>();
+    for (Map.Entry<String, Collection<String>> entry : multiMap.asMap().entrySet()) {
+      String key = entry.getKey();
+      int posIndex = key.lastIndexOf('#');
+      if (posIndex < 0 || !key.toLowerCase().equals(key)) {
+        continue;
+      }
+      String mfs = getMostFrequentSense(entry.getValue());
+      if (mfs == null) {
+        continue;
+      }
+      Integer senseIndex = senseIndexes.get(mfs);
+      if (senseIndex == null) {
+        senseIndex = senseLabels.size();
+        senseIndexes.put(mfs, senseIndex);
+        senseLabels.add(new String[] {
+            (mfs + "-" + BioCodec.START).intern(),
+            (mfs + "-" + BioCodec.CONTINUE).intern(),
+            (mfs + "-" + BilouCodec.LAST).intern(),
+            (mfs + "-" + BilouCodec.UNIT).intern() });
+      }
+      lemmaTrie.add(splitLemma(key.substring(0, posIndex)), senses.size());
+      posClasses.add(key.substring(posIndex + 1).intern());
+      senses.add(senseIndex);
+    }
+    lemmaTrie.compact();
+    entryPosClasses = posClasses.toArray(new String[posClasses.size()]);
+    entrySenses = new int[senses.size()];
+    for (int i = 0; i < entrySenses.length; i++) {
+      entrySenses[i] = senses.get(i);
+    }
+  }
+
+  /**
+   * Get the most frequent sense of a list of freq#sense values, the first one
+   * in alphabetical order if several senses are equally frequent.
+   * @param mfsList the freq#sense values
+   * @return the most frequent sense, or null if no value is well formed
+   */
+  private static String getMostFrequentSense(Collection<String> mfsList) {
+    String mfs = null;
+    int maxFreq = 0;
+    for (String mfsResult : mfsList) {
+      String[] mfsEntry = mfsResult.split("#");
+      int freq;
+      try {
+        freq = Integer.parseInt(mfsEntry[0]);
+      } catch (NumberFormatException e) {
+        System.err.println(mfsResult + " is not a well formed freq#sense value!");
+        continue;
+      }
+      if (mfsEntry.length < 2) {
+        continue;
+      }
+      if (mfs == null || freq > maxFreq
+          || (freq == maxFreq && mfsEntry[1].compareTo(mfs) < 0)) {
+        mfs = mfsEntry[1];
+        maxFreq = freq;
+      }
+    }
+    return mfs;
+  }
+
+  /**
+   * Split a lemma into its underscore separated words, keeping empty words.
+   * @param lemma the lemma
+   * @return the words
+   */
+  private static String[] splitLemma(String lemma) {
+    if (lemma.indexOf('_') < 0) {
+      return new String[] { lemma };
+    }
+    List<String> words = new ArrayList<String>();
+    int start = 0;
+    int end;
+    while ((end = lemma.indexOf('_', start)) >= 0) {
+      words.add(lemma.substring(start, end));
+      start = end + 1;
+    }
+    words.add(lemma.substring(start));
+    return words.toArray(new String[words.size()]);
   }
   
   /**
@@ -100,55 +234,7 @@ public class MFSResource implements SerializableArtifact {
    * @return the most frequent senses for the sentence
    */
   public List<String> getFirstSenseBio(List<String> lemmas, String[] posTags) {
-
-    List<String> mostFrequentSenseList = new ArrayList<String>();
-
-    String prefix = "-" + BioCodec.START;
-    String mostFrequentSense = null;
-    String searchSpan = null;
-    // iterative over lemmas from the beginning
-    for (int i = 0; i < lemmas.size(); i++) {
-      mostFrequentSense = null;
-      String pos = posTags[i];
-      int j;
-      // iterate over lemmas from the end
-      for (j = lemmas.size() - 1; j >= i; j--) {
-        // create span for search in multimap; the first search takes as span
-        // the whole sentence
-        String endPos = posTags[j];
-        searchSpan = createSpan(lemmas, i, j);
-        String firstSpan = (searchSpan + "#" + pos.substring(0, 1))
-            .toLowerCase();
-        TreeMultimap<Integer, String> mfsMap = getOrderedMap(firstSpan);
-        if (!mfsMap.isEmpty()) {
-          mostFrequentSense = getMFS(mfsMap);
-          break;
-        }
-        String lastSpan = (searchSpan + "#" + endPos.substring(0, 1))
-            .toLowerCase();
-        TreeMultimap<Integer, String> mfsMapEnd = getOrderedMap(lastSpan);
-        if (!mfsMapEnd.isEmpty()) {
-          mostFrequentSense = getMFS(mfsMapEnd);
-          break;
-        }
-      }
-      prefix = "-" + BioCodec.START;
-      // multi-token case
-      if (mostFrequentSense != null) {
-        while (i < j) {
-          mostFrequentSenseList.add((mostFrequentSense + prefix).intern());
-          prefix = "-" + BioCodec.CONTINUE;
-          i++;
-        }
-      }
-      // one word case or last member of multispan
-      if (mostFrequentSense != null) {
-        mostFrequentSenseList.add((mostFrequentSense + prefix).intern());
-      } else {
-        mostFrequentSenseList.add(BioCodec.OTHER);
-      }
-    }
-    return mostFrequentSenseList;
+    return getFirstSense(lemmas, posTags, false);
   }
   
   /**
@@ -161,88 +247,119 @@ public class MFSResource implements SerializableArtifact {
    * @return the most frequent senses for the sentence
    */
   public List<String> getFirstSenseBilou(List<String> lemmas, String[] posTags) {
+    return getFirstSense(lemmas, posTags, true);
+  }
 
-    List<String> mostFrequentSenseList = new ArrayList<String>();
-
-    String prefix = "-" + BioCodec.START;
-    String mostFrequentSense = null;
-    String searchSpan = null;
-    // iterative over lemmas from the beginning
-    for (int i = 0; i < lemmas.size(); i++) {
-      mostFrequentSense = null;
-      String pos = posTags[i];
-      int j;
-      // iterate over lemmas from the end
-      for (j = lemmas.size() - 1; j >= i; j--) {
-        // create span for search in multimap; the first search takes as span
-        // the whole sentence
-        String endPos = posTags[j];
-        searchSpan = createSpan(lemmas, i, j);
-        String firstSpan = (searchSpan + "#" + pos.substring(0, 1))
-            .toLowerCase();
-        TreeMultimap<Integer, String> mfsMap = getOrderedMap(firstSpan);
-        if (!mfsMap.isEmpty()) {
-          mostFrequentSense = getMFS(mfsMap);
-          break;
-        }
-        String lastSpan = (searchSpan + "#" + endPos.substring(0, 1))
-            .toLowerCase();
-        TreeMultimap<Integer, String> mfsMapEnd = getOrderedMap(lastSpan);
-        if (!mfsMapEnd.isEmpty()) {
-          mostFrequentSense = getMFS(mfsMapEnd);
-          break;
+  /**
+   * Find the longest lemma span starting at each token with a most frequent
+   * sense for the pos class of its first or last token, and label its tokens.
+   * 
+   * @param lemmas
+   *          in the sentence
+   * @param posTags posTags in the sentence
+   * @param isBilou whether to use the bilou encoding instead of bio
+   * @return the most frequent senses for the sentence
+   */
+  private List<String> getFirstSense(List<String> lemmas, String[] posTags,
+      boolean isBilou) {
+    int sentenceLength = lemmas.size();
+    List<String> mostFrequentSenseList = new ArrayList<String>(sentenceLength);
+    String[] lowerLemmas = new String[sentenceLength];
+    String[] posClasses = new String[sentenceLength];
+    for (int i = 0; i < sentenceLength; i++) {
+      lowerLemmas[i] = String.valueOf(lemmas.get(i)).toLowerCase();
+      posClasses[i] = posTags[i].substring(0, 1).toLowerCase();
+    }
+    for (int i = 0; i < sentenceLength; i++) {
+      int sense = -1;
+      int end = i;
+      TokenTrie.Node node = lemmaTrie.getRoot();
+      // walk the trie from the current lemma while some entry continues
+      for (int j = i; j < sentenceLength && node != null; j++) {
+        node = walkLemma(node, lowerLemmas[j]);
+        if (node != null && node.getValues().length > 0) {
+          int spanSense = getSense(node, posClasses[i]);
+          if (spanSense < 0) {
+            spanSense = getSense(node, posClasses[j]);
+          }
+          if (spanSense >= 0) {
+            sense = spanSense;
+            end = j;
+          }
         }
       }
-      prefix = "-" + BilouCodec.START;
-      // multi-token case
-      if (mostFrequentSense != null) {
-        while (i < j) {
-          mostFrequentSenseList.add((mostFrequentSense + prefix).intern());
-          prefix = "-" + BilouCodec.CONTINUE;
-          i++;
-        }
+      if (sense < 0) {
+        mostFrequentSenseList.add(isBilou ? BilouCodec.OTHER : BioCodec.OTHER);
+        continue;
       }
-      // one word case or last member of multi-span
-      if (mostFrequentSense != null) {
-        if (prefix.equals("-" + BilouCodec.CONTINUE)) {
-          mostFrequentSenseList.add((mostFrequentSense + "-" + BilouCodec.LAST).intern());
-        } else if (prefix.equals("-" + BilouCodec.START)) {
-          mostFrequentSenseList.add((mostFrequentSense + "-" + BilouCodec.UNIT).intern());
-        }
-      } else {
-        mostFrequentSenseList.add(BilouCodec.OTHER);
+      String[] labels = senseLabels.get(sense);
+      if (i == end) {
+        mostFrequentSenseList.add(isBilou ? labels[3] : labels[0]);
+        continue;
+      }
+      mostFrequentSenseList.add(labels[0]);
+      for (i++; i < end; i++) {
+        mostFrequentSenseList.add(labels[1]);
       }
+      mostFrequentSenseList.add(isBilou ? labels[2] : labels[1]);
     }
     return mostFrequentSenseList;
   }
-  
+
   /**
-   * Create lemma span for search of multiwords in MFS dictionary.
-   * 
-   * @param lemmas
-   *          the lemmas of the sentence
-   * @param from
-   *          the starting index
-   * @param to
-   *          the end index
-   * @return the string representing a perhaps multi word entry
+   * Walk the trie with the underscore separated words of a lemma.
+   * @param node the node to start from
+   * @param lemma the lowercase lemma
+   * @return the node reached, or null if no entry continues with the lemma
    */
-  private String createSpan(List<String> lemmas, int from, int to) {
-    String lemmaSpan = "";
-    for (int i = from; i < to; i++) {
-      lemmaSpan += lemmas.get(i) + "_";
+  private static TokenTrie.Node walkLemma(TokenTrie.Node node, String lemma) {
+    if (lemma.indexOf('_') < 0) {
+      return node.getChild(lemma);
+    }
+    int start = 0;
+    int end;
+    while (node != null && (end = lemma.indexOf('_', start)) >= 0) {
+      node = node.getChild(lemma.substring(start, end));
+      start = end + 1;
+    }
+    return node == null ? null : node.getChild(lemma.substring(start));
+  }
+
+  /**
+   * Get the most frequent sense of the entry of a pos class ending in a node.
+   * @param node the node
+   * @param posClass the pos class
+   * @return the index of the sense, or -1 if there is no such entry
+   */
+  private int getSense(TokenTrie.Node node, String posClass) {
+    for (int entry : node.getValues()) {
+      if (entryPosClasses[entry].equals(posClass)) {
+        return entrySenses[entry];
+      }
     }
-    lemmaSpan += lemmas.get(to);
-    return lemmaSpan;
+    return -1;
   }
   
   /**
-   * Get the ordered Map of most frequent senses for a lemma#pos entry.
+   * Get the ordered Map of most frequent senses for a lemma#pos entry. The
+   * senses are read again from the lexicon.
    * @param lemmaPOSClass the lemma#pos entry
    * @return the ordered multimap of senses
    */
   public TreeMultimap<Integer, String> getOrderedMap(String lemmaPOSClass) {
-    List<String> mfsList = multiMap.get(lemmaPOSClass);
+    List<String> mfsList = new ArrayList<String>();
+    BufferedReader breader = getReader();
+    try {
+      String line;
+      while ((line = breader.readLine()) != null) {
+        String[] elems = spacePattern.split(line);
+        if (elems[0].equals(lemmaPOSClass)) {
+          mfsList.add(elems[1]);
+        }
+      }
+    } catch (IOException e) {
+      e.printStackTrace();
+    }
     TreeMultimap<Integer, String> mfsMap = TreeMultimap.create(Ordering.natural().reverse(), Ordering.natural());
     if (!mfsList.isEmpty()) {
       getOrderedSenses(mfsList, mfsMap);
@@ -297,12 +414,8 @@ public class MFSResource implements SerializableArtifact {
    * @throws IOException if io errors
    */
   public void serialize(OutputStream out) throws IOException {
-    Writer writer = new BufferedWriter(new OutputStreamWriter(out));
-
-    for (Map.Entry<String, String> entry : multiMap.entries()) {
-      writer.write(entry.getKey() + "\t" + entry.getValue() +"\n");
-    }
-    writer.flush();
+    out.write(lexicon);
+    out.flush();
   }
 
   public Class<?> getArtifactSerializerClass() {
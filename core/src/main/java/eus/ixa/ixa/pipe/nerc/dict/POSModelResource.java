@@ -60,9 +60,15 @@ public class POSModelResource implements SerializableArtifact {
    */
   private POSModel posModel;
   /**
-   * The POS tagger.
+   * The POS tagger of each thread. {@link POSTaggerME} is not thread safe,
+   * but every tagger shares the same model.
    */
-  private POSTaggerME posTagger;
+  private final ThreadLocal<POSTaggerME> posTagger = new ThreadLocal<POSTaggerME>() {
+    @Override
+    protected POSTaggerME initialValue() {
+      return new POSTaggerME(posModel);
+    }
+  };
   
   /**
    * Construct the POSModelResource from the inputstream.
@@ -71,7 +77,6 @@ public class POSModelResource implements SerializableArtifact {
    */
   public POSModelResource(InputStream in) throws IOException {
     posModel = new POSModel(in);
-    posTagger = new POSTaggerME(posModel);
   }
   
   /**
@@ -80,7 +85,7 @@ public class POSModelResource implements SerializableArtifact {
    * @return the array containing the pos tags
    */
   public String[] posTag(String[] tokens) {
-    String[] posTags = posTagger.tag(tokens);
+    String[] posTags = posTagger.get().tag(tokens);
     return posTags;
   }
   
@@ -0,0 +1,173 @@
+/*
+ * Copyright 2015 Rodrigo Agerri
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+package eus.ixa.ixa.pipe.nerc.dict;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Token level trie to match gazetteer entries in a sentence. Every entry is
+ * added as a sequence of tokens and it is associated with an integer value
+ * (typically the index of the entry in some table kept by the caller), so
+ * that every occurrence of any entry can be found walking once from each
+ * token of the sentence, instead of scanning the sentence once per entry.
+ * The trie should be compacted with {@link #compact()} once every entry is
+ * added.
+ */
+public class TokenTrie {
+
+  private static final int[] NO_VALUES = new int[0];
+  private static final String[] NO_TOKENS = new String[0];
+  private static final Node[] NO_CHILDREN = new Node[0];
+
+  /**
+   * A node of the trie. Its values are those of the entries ending in it. The
+   * children of the node are kept in a map while entries are added, and in
+   * two arrays sorted by token once the trie is compacted.
+   */
+  public static final class Node {
+
+    private String[] tokens = NO_TOKENS;
+    private Node[] children = NO_CHILDREN;
+    private Map<String, Node> addedChildren;
+    private int[] values = NO_VALUES;
+
+    private Node() {
+    }
+
+    /**
+     * Get the node reached from this node with a token.
+     *
+     * @param token
+     *          the token
+     * @return the child node or null if no entry continues with the token
+     */
+    public Node getChild(final String token) {
+      if (addedChildren != null) {
+        return addedChildren.get(token);
+      }
+      int index = Arrays.binarySearch(tokens, token);
+      return index < 0 ? null : children[index];
+    }
+
+    /**
+     * Get the values of the entries ending in this node, in insertion order.
+     *
+     * @return the values, an empty array if no entry ends here
+     */
+    public int[] getValues() {
+      return values;
+    }
+
+    private Node addChild(final String token) {
+      if (addedChildren == null) {
+        addedChildren = new HashMap<String, Node>(Math.max(4,
+            tokens.length * 2));
+        for (int i = 0; i < tokens.length; i++) {
+          addedChildren.put(tokens[i], children[i]);
+        }
+      }
+      Node child = addedChildren.get(token);
+      if (child == null) {
+        child = new Node();
+        addedChildren.put(token, child);
+      }
+      return child;
+    }
+
+    private void addValue(final int value) {
+      values = Arrays.copyOf(values, values.length + 1);
+      values[values.length - 1] = value;
+    }
+
+    private void compact() {
+      if (addedChildren != null) {
+        tokens = addedChildren.keySet().toArray(
+            new String[addedChildren.size()]);
+        Arrays.sort(tokens);
+        children = new Node[tokens.length];
+        for (int i = 0; i < tokens.length; i++) {
+          children[i] = addedChildren.get(tokens[i]);
+        }
+        addedChildren = null;
+      }
+      for (Node child : children) {
+        child.compact();
+      }
+    }
+  }
+
+  private final Node root = new Node();
+  private int maxLength = 0;
+  private int size = 0;
+
+  /**
+   * Add an entry to the trie.
+   *
+   * @param entryTokens
+   *          the tokens of the entry
+   * @param value
+   *          the value associated with the entry
+   */
+  public final void add(final String[] entryTokens, final int value) {
+    Node node = root;
+    for (String token : entryTokens) {
+      node = node.addChild(token);
+    }
+    node.addValue(value);
+    maxLength = Math.max(maxLength, entryTokens.length);
+    size++;
+  }
+
+  /**
+   * Store the children of every node in arrays sorted by token, which take
+   * much less memory than the maps used while adding entries. Entries can
+   * still be added afterwards, but the trie should be compacted again.
+   */
+  public final void compact() {
+    root.compact();
+  }
+
+  /**
+   * The root of the trie. Entries with no tokens end in it.
+   *
+   * @return the root node
+   */
+  public final Node getRoot() {
+    return root;
+  }
+
+  /**
+   * Get the length, in tokens, of the longest entry, which bounds every walk
+   * over a sentence.
+   *
+   * @return the maximum entry length
+   */
+  public final int getMaxLength() {
+    return maxLength;
+  }
+
+  /**
+   * Get the number of entries added to the trie.
+   *
+   * @return the number of entries
+   */
+  public final int size() {
+    return size;
+  }
+
+}
@@ -25,7 +25,6 @@ import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.io.Writer;
 import java.nio.charset.Charset;
-import java.util.HashMap;
 import java.util.Map;
 import java.util.regex.Pattern;
 
@@ -64,34 +63,59 @@ public class Word2VecCluster implements SerializableArtifact {
     }
   }
   
-  private Map<String, String> tokenToClusterMap = new HashMap<String, String>();
+  private final Lexicon tokenToClusterMap;
   
   public Word2VecCluster(InputStream in) throws IOException {
 
+    CompactLexicon lexicon = new CompactLexicon();
     BufferedReader breader = new BufferedReader(new InputStreamReader(in, Charset.forName("UTF-8")));
     String line;
     while ((line = breader.readLine()) != null) {
       String[] lineArray = spacePattern.split(line);
       if (lineArray.length == 2) {
         String normalizedToken = ClarkCluster.dotInsideI.matcher(lineArray[0]).replaceAll("i");
-        tokenToClusterMap.put(normalizedToken.toLowerCase(), lineArray[1]);
+        lexicon.put(normalizedToken.toLowerCase(), lineArray[1]);
       }
     }
+    lexicon.trim();
+    tokenToClusterMap = lexicon;
   }
   
+  /**
+   * Construct the resource from a lexicon already built, such as the
+   * lexicon of a mapped model file.
+   * @param lexicon the token to cluster lexicon
+   */
+  public Word2VecCluster(Lexicon lexicon) {
+    this.tokenToClusterMap = lexicon;
+  }
+
+  /**
+   * Get the token to cluster lexicon.
+   * @return the lexicon
+   */
+  public Lexicon getLexicon() {
+    return tokenToClusterMap;
+  }
+
   public String lookupToken(String string) {
-    return tokenToClusterMap.get(string);
+    return tokenToClusterMap.lookup(string);
   }
   
+  /**
+   * Get the lexicon as a map. The map is a copy of the lexicon.
+   * @return the token to cluster map
+   */
   public Map<String, String> getMap() {
-    return tokenToClusterMap;
+    return tokenToClusterMap.toMap();
   }
 
   public void serialize(OutputStream out) throws IOException {
     Writer writer = new BufferedWriter(new OutputStreamWriter(out));
 
-    for (Map.Entry<String, String> entry : tokenToClusterMap.entrySet()) {
-      writer.write(entry.getKey() + " " + entry.getValue() + "\n");
+    for (int i = 0; i < tokenToClusterMap.size(); i++) {
+      writer.write(tokenToClusterMap.getWord(i) + " "
+          + tokenToClusterMap.getEntryCluster(i) + "\n");
     }
 
     writer.flush();
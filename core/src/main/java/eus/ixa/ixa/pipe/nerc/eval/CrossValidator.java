@@ -114,7 +114,7 @@ public class CrossValidator {
         .forName("UTF-8"));
     Map<String, Object> resources = FixedTrainer.loadResources(params, featureGeneratorBytes);
     this.nameClassifierFactory = TokenNameFinderFactory.create(
-        TokenNameFinderFactory.class.getName(), featureGeneratorBytes,
+        FixedTrainer.getNameClassifierFactoryName(params), featureGeneratorBytes,
         resources, sequenceCodec);
   }
   
@@ -15,12 +15,10 @@
  */
 package eus.ixa.ixa.pipe.nerc.eval;
 
-import java.io.FileInputStream;
 import java.io.IOException;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Properties;
-import java.util.concurrent.ConcurrentHashMap;
 
 import opennlp.tools.cmdline.namefind.NameEvaluationErrorListener;
 import opennlp.tools.cmdline.namefind.TokenNameFinderDetailedFMeasureListener;
@@ -32,6 +30,7 @@ import opennlp.tools.namefind.TokenNameFinderEvaluator;
 import opennlp.tools.namefind.TokenNameFinderModel;
 import opennlp.tools.util.ObjectStream;
 import opennlp.tools.util.eval.EvaluationMonitor;
+import eus.ixa.ixa.pipe.nerc.ModelRegistry;
 import eus.ixa.ixa.pipe.nerc.train.AbstractTrainer;
 import eus.ixa.ixa.pipe.nerc.train.Flags;
 
@@ -51,13 +50,6 @@ public class Evaluate {
    * An instance of the probabilistic {@link NameFinderME}.
    */
   private NameFinderME nameFinder;
-  /**
-   * The models to use for every language. The keys of the hash are the
-   * language codes, the values the models.
-   */
-  private static ConcurrentHashMap<String, TokenNameFinderModel> nercModels =
-      new ConcurrentHashMap<String, TokenNameFinderModel>();
- 
   /**
    * Construct an evaluator. It takes from the properties a model,
    * a testset and the format of the testset. Every other parameter
@@ -80,8 +72,8 @@ public class Evaluate {
       String[] neTypes = netypes.split(",");
       testSamples = new NameSampleTypeFilter(neTypes, testSamples);
     }
-    nercModels.putIfAbsent(lang, new TokenNameFinderModel(new FileInputStream(model)));
-    nameFinder = new NameFinderME(nercModels.get(lang));
+    TokenNameFinderModel nerModel = ModelRegistry.getInstance().getModel(model);
+    nameFinder = new NameFinderME(nerModel);
   }
 
   /**
@@ -0,0 +1,280 @@
+/*
+ * Copyright 2015 Rodrigo Agerri
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+
+package eus.ixa.ixa.pipe.nerc.features;
+
+import java.util.Arrays;
+
+/**
+ * The adaptive data of a generator: the last outcome of every token seen in
+ * the document. Tokens are kept in an open addressing table of entry ids and
+ * outcomes as codes of the few distinct outcomes of a model, so that an entry
+ * costs a few array slots instead of the boxed entries of a {@code HashMap}.
+ *
+ * With a capacity, the map keeps at most that many tokens, evicting the token
+ * least recently put when a new one arrives, so that its size does not grow
+ * with the length of the document. A capacity of 0 keeps every token.
+ */
+public final class AdaptiveMap {
+
+  private static final int NONE = -1;
+  private static final int INITIAL_ENTRIES = 256;
+
+  /**
+   * The maximum number of tokens, 0 for no maximum.
+   */
+  private final int capacity;
+  /**
+   * The entry id of each slot of the table, or NONE.
+   */
+  private int[] slots;
+  private String[] tokens;
+  private int[] hashes;
+  /**
+   * The code of the outcome of every entry.
+   */
+  private short[] outcomeCodes;
+  /**
+   * The list of entries from the most to the least recently put.
+   */
+  private int[] newer;
+  private int[] older;
+  private int newest = NONE;
+  private int oldest = NONE;
+  private int size;
+  /**
+   * The distinct outcomes, indexed by their code.
+   */
+  private String[] outcomes = new String[8];
+  private int outcomeCount;
+
+  /**
+   * Construct an adaptive map.
+   *
+   * @param aCapacity
+   *          the maximum number of tokens kept, 0 to keep every token
+   */
+  public AdaptiveMap(final int aCapacity) {
+    if (aCapacity < 0) {
+      throw new IllegalArgumentException("The capacity can not be negative: "
+          + aCapacity);
+    }
+    this.capacity = aCapacity;
+    int entries = aCapacity > 0 ? Math.min(aCapacity, INITIAL_ENTRIES)
+        : INITIAL_ENTRIES;
+    allocate(entries);
+  }
+
+  /**
+   * Get the maximum number of tokens kept.
+   *
+   * @return the capacity, 0 if every token is kept
+   */
+  public int getCapacity() {
+    return capacity;
+  }
+
+  /**
+   * Get the number of tokens kept.
+   *
+   * @return the size
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Get the last outcome of a token.
+   *
+   * @param token
+   *          the token
+   * @return the outcome, or null if the token is not kept
+   */
+  public String get(final String token) {
+    int entry = find(token, token.hashCode());
+    return entry == NONE ? null : outcomes[outcomeCodes[entry]];
+  }
+
+  /**
+   * Set the last outcome of a token, making it the most recent token.
+   *
+   * @param token
+   *          the token
+   * @param outcome
+   *          the outcome
+   */
+  public void put(final String token, final String outcome) {
+    int hash = token.hashCode();
+    int entry = find(token, hash);
+    if (entry == NONE) {
+      if (capacity > 0 && size == capacity) {
+        // reuse the entry of the least recently put token
+        entry = oldest;
+        removeSlot(entry);
+        unlink(entry);
+      } else {
+        if (size == tokens.length) {
+          grow();
+        }
+        entry = size++;
+      }
+      tokens[entry] = token;
+      hashes[entry] = hash;
+      insertSlot(entry);
+    } else {
+      unlink(entry);
+    }
+    outcomeCodes[entry] = outcomeCode(outcome);
+    linkNewest(entry);
+  }
+
+  /**
+   * Remove every token.
+   */
+  public void clear() {
+    Arrays.fill(slots, NONE);
+    Arrays.fill(tokens, 0, size, null);
+    size = 0;
+    newest = NONE;
+    oldest = NONE;
+  }
+
+  private int find(final String token, final int hash) {
+    int mask = slots.length - 1;
+    for (int slot = mix(hash) & mask;; slot = (slot + 1) & mask) {
+      int entry = slots[slot];
+      if (entry == NONE) {
+        return NONE;
+      }
+      if (hashes[entry] == hash && tokens[entry].equals(token)) {
+        return entry;
+      }
+    }
+  }
+
+  private void insertSlot(final int entry) {
+    int mask = slots.length - 1;
+    int slot = mix(hashes[entry]) & mask;
+    while (slots[slot] != NONE) {
+      slot = (slot + 1) & mask;
+    }
+    slots[slot] = entry;
+  }
+
+  /**
+   * Remove an entry from the table, shifting back the entries of its probe
+   * sequence.
+   */
+  private void removeSlot(final int entry) {
+    int mask = slots.length - 1;
+    int slot = mix(hashes[entry]) & mask;
+    while (slots[slot] != entry) {
+      slot = (slot + 1) & mask;
+    }
+    int hole = slot;
+    for (slot = (hole + 1) & mask; slots[slot] != NONE; slot = (slot + 1) & mask) {
+      int home = mix(hashes[slots[slot]]) & mask;
+      // move the entry to the hole if the hole is in its probe sequence
+      if (((slot - home) & mask) >= ((slot - hole) & mask)) {
+        slots[hole] = slots[slot];
+        hole = slot;
+      }
+    }
+    slots[hole] = NONE;
+  }
+
+  private void unlink(final int entry) {
+    int newerEntry = newer[entry];
+    int olderEntry = older[entry];
+    if (newerEntry == NONE) {
+      newest = olderEntry;
+    } else {
+      older[newerEntry] = olderEntry;
+    }
+    if (olderEntry == NONE) {
+      oldest = newerEntry;
+    } else {
+      newer[olderEntry] = newerEntry;
+    }
+  }
+
+  private void linkNewest(final int entry) {
+    newer[entry] = NONE;
+    older[entry] = newest;
+    if (newest == NONE) {
+      oldest = entry;
+    } else {
+      newer[newest] = entry;
+    }
+    newest = entry;
+  }
+
+  private short outcomeCode(final String outcome) {
+    for (int code = 0; code < outcomeCount; code++) {
+      if (outcomes[code] == outcome
+          || (outcome != null && outcome.equals(outcomes[code]))) {
+        return (short) code;
+      }
+    }
+    if (outcomeCount == Short.MAX_VALUE) {
+      throw new IllegalStateException("Too many distinct outcomes");
+    }
+    if (outcomeCount == outcomes.length) {
+      outcomes = Arrays.copyOf(outcomes, outcomeCount * 2);
+    }
+    outcomes[outcomeCount] = outcome;
+    return (short) outcomeCount++;
+  }
+
+  private void allocate(final int entries) {
+    tokens = new String[entries];
+    hashes = new int[entries];
+    outcomeCodes = new short[entries];
+    newer = new int[entries];
+    older = new int[entries];
+    // keep the table at most half full
+    int tableSize = Integer.highestOneBit(entries) * 4;
+    slots = new int[tableSize];
+    Arrays.fill(slots, NONE);
+  }
+
+  private void grow() {
+    int entries = tokens.length * 2;
+    if (capacity > 0) {
+      entries = Math.min(entries, capacity);
+    }
+    String[] oldTokens = tokens;
+    int[] oldHashes = hashes;
+    short[] oldOutcomeCodes = outcomeCodes;
+    int[] oldNewer = newer;
+    int[] oldOlder = older;
+    allocate(entries);
+    System.arraycopy(oldTokens, 0, tokens, 0, size);
+    System.arraycopy(oldHashes, 0, hashes, 0, size);
+    System.arraycopy(oldOutcomeCodes, 0, outcomeCodes, 0, size);
+    System.arraycopy(oldNewer, 0, newer, 0, size);
+    System.arraycopy(oldOlder, 0, older, 0, size);
+    for (int entry = 0; entry < size; entry++) {
+      insertSlot(entry);
+    }
+  }
+
+  private static int mix(final int hash) {
+    int h = hash * 0x9E3779B9;
+    return h ^ (h >>> 16);
+  }
+
+}
@@ -27,16 +27,16 @@ import opennlp.tools.util.featuregen.FeatureGeneratorAdapter;
 public class BigramClassFeatureGenerator extends FeatureGeneratorAdapter {
 
   public void createFeatures(List<String> features, String[] tokens, int index, String[] previousOutcomes) {
-    String wc = TokenClassFeatureGenerator.tokenShapeFeature(tokens[index]);
+    String wc = TokenOrthography.get(tokens, index).getShape();
     //bi-gram features 
     if (index > 0) {
       features.add("pw,w=" + tokens[index-1] + "," + tokens[index]);
-      String pwc = TokenClassFeatureGenerator.tokenShapeFeature(tokens[index - 1]);
+      String pwc = TokenOrthography.get(tokens, index - 1).getShape();
       features.add("pwc,wc=" + pwc + "," + wc);
     }
     if (index + 1 < tokens.length) {
       features.add("w,nw=" + tokens[index] + "," + tokens[index + 1]);
-      String nwc = TokenClassFeatureGenerator.tokenShapeFeature(tokens[index + 1]);
+      String nwc = TokenOrthography.get(tokens, index + 1).getShape();
       features.add("wc,nc=" + wc + "," + nwc);
     }
   } 
@@ -38,15 +38,15 @@ public class BrownBigramFeatureGenerator extends CustomFeatureGenerator implemen
   public void createFeatures(List<String> features, String[] tokens, int index,
       String[] previousOutcomes) {
     
-    List<String> wordClasses = BrownTokenClasses.getWordClasses(tokens[index], brownLexicon);
+    List<String> wordClasses = BrownTokenClasses.getWordClasses(tokens, index, brownLexicon);
     if (index > 0) {
-      List<String> prevWordClasses = BrownTokenClasses.getWordClasses(tokens[index - 1], brownLexicon);
+      List<String> prevWordClasses = BrownTokenClasses.getWordClasses(tokens, index - 1, brownLexicon);
       for (int i = 0; i < wordClasses.size() && i < prevWordClasses.size(); i++)
       features.add("p" + attributes.get("dict") + "," + attributes.get("dict")+ "=" + prevWordClasses.get(i) + "," + wordClasses.get(i));
     }
     //this is a bug, but it seems to work better
     if (index + 1 > tokens.length) {
-      List<String> nextWordClasses = BrownTokenClasses.getWordClasses(tokens[index + 1], brownLexicon);
+      List<String> nextWordClasses = BrownTokenClasses.getWordClasses(tokens, index + 1, brownLexicon);
       for (int i = 0; i < wordClasses.size() && i < nextWordClasses.size(); i++) {
         features.add(attributes.get("dict") + "," + "n" + attributes.get("dict") + "=" + wordClasses.get(i) + "," + nextWordClasses.get(i));
       }
@@ -38,8 +38,8 @@ public class BrownTokenClassFeatureGenerator extends CustomFeatureGenerator impl
   public void createFeatures(List<String> features, String[] tokens, int index,
       String[] previousOutcomes) {
     
-    String tokenShape = TokenClassFeatureGenerator.tokenShapeFeature(tokens[index]);
-    List<String> wordClasses = BrownTokenClasses.getWordClasses(tokens[index], brownLexicon);
+    String tokenShape = TokenOrthography.get(tokens, index).getShape();
+    List<String> wordClasses = BrownTokenClasses.getWordClasses(tokens, index, brownLexicon);
     
     for (int i = 0; i < wordClasses.size(); i++) {
       features.add("c," + attributes.get("dict") + "=" + tokenShape + "," + wordClasses.get(i));
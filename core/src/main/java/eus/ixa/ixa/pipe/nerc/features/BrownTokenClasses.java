@@ -15,7 +15,6 @@
  */
 package eus.ixa.ixa.pipe.nerc.features;
 
-import java.util.ArrayList;
 import java.util.List;
 
 import eus.ixa.ixa.pipe.nerc.dict.BrownCluster;
@@ -28,32 +27,33 @@ import eus.ixa.ixa.pipe.nerc.dict.BrownCluster;
  */
 public class BrownTokenClasses {
   
-  public static final int[] pathLengths = { 4, 6, 10, 20 };
+  public static final int[] pathLengths = BrownCluster.PATH_LENGTHS;
   
   /**
    * It provides a list containing the pathLengths for a token if found
-   * in the {@code BrownCluster} Map token,BrownClass.
+   * in the {@code BrownCluster} Map token,BrownClass. The list is
+   * precomputed when the lexicon is loaded and it is not modifiable.
    * 
    * @param token the token to be looked up in the brown clustering map
    * @param brownLexicon the Brown clustering map
    * @return the list of the paths for a token
    */
   public static List<String> getWordClasses(String token, BrownCluster brownLexicon) {
-    if (brownLexicon.lookupToken(token) == null) {
-      return new ArrayList<String>(0);
-    } else {
-      String brownClass = brownLexicon.lookupToken(token);
-      List<String> pathLengthsList = new ArrayList<String>();
-      pathLengthsList.add(brownClass.substring(0,
-          Math.min(brownClass.length(), pathLengths[0])));
-      for (int i = 1; i < pathLengths.length; i++) {
-        if (pathLengths[i - 1] < brownClass.length()) {
-          pathLengthsList.add(brownClass.substring(0,
-              Math.min(brownClass.length(), pathLengths[i])));
-        }
-      }
-      return pathLengthsList;
-    }
+    return brownLexicon.lookupPaths(token);
+  }
+
+  /**
+   * It provides a list containing the pathLengths for a token of a sentence,
+   * looking up each token once per sentence and thread. The list is
+   * precomputed when the lexicon is loaded and it is not modifiable.
+   * 
+   * @param tokens the sentence
+   * @param index the index of the token to be looked up
+   * @param brownLexicon the Brown clustering map
+   * @return the list of the paths for a token
+   */
+  public static List<String> getWordClasses(String[] tokens, int index, BrownCluster brownLexicon) {
+    return brownLexicon.lookupPaths(tokens, index);
   }
   
   public static void printList(List<String> classList) {
@@ -39,7 +39,7 @@ public class BrownTokenFeatureGenerator extends CustomFeatureGenerator implement
   public void createFeatures(List<String> features, String[] tokens, int index,
       String[] previousOutcomes) {
     
-    List<String> wordClasses = BrownTokenClasses.getWordClasses(tokens[index], brownLexicon);
+    List<String> wordClasses = BrownTokenClasses.getWordClasses(tokens, index, brownLexicon);
     if (DEBUG) {
       BrownTokenClasses.printList(wordClasses);
     }
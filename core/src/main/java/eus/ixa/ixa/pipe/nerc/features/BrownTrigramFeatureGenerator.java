@@ -38,10 +38,10 @@ public class BrownTrigramFeatureGenerator extends CustomFeatureGenerator impleme
   public void createFeatures(List<String> features, String[] tokens, int index,
       String[] previousOutcomes) {
     
-    List<String> wordClasses = BrownTokenClasses.getWordClasses(tokens[index], brownLexicon);
+    List<String> wordClasses = BrownTokenClasses.getWordClasses(tokens, index, brownLexicon);
     if (index > 1) {
-      List<String> prevWordClasses = BrownTokenClasses.getWordClasses(tokens[index - 1], brownLexicon);
-      List<String> prevprevWordClasses = BrownTokenClasses.getWordClasses(tokens[index - 2], brownLexicon);
+      List<String> prevWordClasses = BrownTokenClasses.getWordClasses(tokens, index - 1, brownLexicon);
+      List<String> prevprevWordClasses = BrownTokenClasses.getWordClasses(tokens, index - 2, brownLexicon);
       for (int i = 0; i < wordClasses.size() && i < prevWordClasses.size() && i < prevprevWordClasses.size(); i++)
       features.add("pp" + attributes.get("dict") + "p" + attributes.get("dict") + "," + attributes.get("dict")+ "=" + prevprevWordClasses.get(i) + "," + prevWordClasses.get(i) + "," + wordClasses.get(i));
       
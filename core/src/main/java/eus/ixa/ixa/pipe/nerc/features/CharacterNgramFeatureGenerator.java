@@ -21,17 +21,35 @@ import java.util.Map;
 import opennlp.tools.ngram.NGramModel;
 import opennlp.tools.util.InvalidFormatException;
 import opennlp.tools.util.StringList;
+import opennlp.tools.util.StringUtil;
 import opennlp.tools.util.featuregen.CustomFeatureGenerator;
 import opennlp.tools.util.featuregen.FeatureGeneratorResourceProvider;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
 /**
  * The {@link CharacterNgramFeatureGenerator} uses character ngrams to
  * generate features about each token.
  * The minimum and maximum length can be specified.
+ *
+ * The ngrams of a token are those of the {@code NGramModel} of OpenNLP, in
+ * the same order. If the {@code buckets} attribute is given, the ngrams are
+ * hashed into that number of buckets and each bucket hit becomes a feature.
+ * The features of the most recently seen tokens are cached, up to
+ * {@code cacheSize} tokens; the cache can be used by several threads.
  */
 public class CharacterNgramFeatureGenerator extends CustomFeatureGenerator {
-  
-  private Map<String, String> attributes;
+
+  /**
+   * The default number of tokens whose features are cached.
+   */
+  public static final int DEFAULT_CACHE_SIZE = 10000;
+
+  private int minLength;
+  private int maxLength;
+  private int buckets;
+  private Cache<String, String[]> cache;
 
   /**
    * Initializes the current instance.
@@ -41,15 +59,79 @@ public class CharacterNgramFeatureGenerator extends CustomFeatureGenerator {
 
   public void createFeatures(List<String> features, String[] tokens, int index, String[] preds) {
 
-    NGramModel model = new NGramModel();
-    model.add(tokens[index], Integer.parseInt(attributes.get("minLength")), Integer.parseInt(attributes.get("maxLength")));
+    String token = tokens[index];
+    String[] ngramFeatures = cache.getIfPresent(token);
+    if (ngramFeatures == null) {
+      ngramFeatures = buckets > 0 ? hashedNgrams(token) : ngrams(token);
+      cache.put(token, ngramFeatures);
+    }
+    for (String ngramFeature : ngramFeatures) {
+      features.add(ngramFeature);
+    }
+  }
 
+  /**
+   * Get the ngrams of a token, as "ng=" features.
+   */
+  private String[] ngrams(final String token) {
+    NGramModel model = new NGramModel();
+    model.add(token, minLength, maxLength);
+    String[] ngramFeatures = new String[model.size()];
+    int count = 0;
     for (StringList tokenList : model) {
-
       if (tokenList.size() > 0) {
-        features.add("ng=" + tokenList.getToken(0).toLowerCase());
+        ngramFeatures[count++] = "ng=" + tokenList.getToken(0).toLowerCase();
+      }
+    }
+    return trim(ngramFeatures, count);
+  }
+
+  /**
+   * Get the distinct buckets of the ngrams of a token, as "ngh=" features.
+   */
+  private String[] hashedNgrams(final String token) {
+    String lowercased = StringUtil.toLowerCase(token);
+    int length = lowercased.length();
+    int[] hits = new int[countNgrams(length)];
+    int count = 0;
+    for (int n = minLength; n <= maxLength; n++) {
+      for (int start = 0; start + n <= length; start++) {
+        int hash = 0;
+        for (int i = start; i < start + n; i++) {
+          hash = 31 * hash + lowercased.charAt(i);
+        }
+        int bucket = (hash & 0x7fffffff) % buckets;
+        boolean seen = false;
+        for (int i = 0; i < count && !seen; i++) {
+          seen = hits[i] == bucket;
+        }
+        if (!seen) {
+          hits[count++] = bucket;
+        }
       }
     }
+    String[] ngramFeatures = new String[count];
+    for (int i = 0; i < count; i++) {
+      ngramFeatures[i] = "ngh=" + hits[i];
+    }
+    return ngramFeatures;
+  }
+
+  private int countNgrams(final int length) {
+    int count = 0;
+    for (int n = minLength; n <= maxLength && n <= length; n++) {
+      count += length - n + 1;
+    }
+    return count;
+  }
+
+  private static String[] trim(final String[] array, final int length) {
+    if (array.length == length) {
+      return array;
+    }
+    String[] trimmed = new String[length];
+    System.arraycopy(array, 0, trimmed, 0, length);
+    return trimmed;
   }
 
   @Override
@@ -64,8 +146,17 @@ public class CharacterNgramFeatureGenerator extends CustomFeatureGenerator {
   public void init(Map<String, String> properties,
       FeatureGeneratorResourceProvider resourceProvider)
       throws InvalidFormatException {
-    this.attributes = properties;
-    
+    try {
+      minLength = Integer.parseInt(properties.get("minLength"));
+      maxLength = Integer.parseInt(properties.get("maxLength"));
+      buckets = properties.get("buckets") == null ? 0 : Integer
+          .parseInt(properties.get("buckets"));
+      int cacheSize = properties.get("cacheSize") == null ? DEFAULT_CACHE_SIZE
+          : Integer.parseInt(properties.get("cacheSize"));
+      cache = CacheBuilder.newBuilder().maximumSize(cacheSize).build();
+    } catch (NumberFormatException e) {
+      throw new InvalidFormatException("Invalid character ngram attributes: "
+          + properties, e);
+    }
   }
 }
-
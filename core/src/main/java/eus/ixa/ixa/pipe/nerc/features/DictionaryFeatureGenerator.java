@@ -1,9 +1,11 @@
 package eus.ixa.ixa.pipe.nerc.features;
 
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.WeakHashMap;
 
 import opennlp.tools.util.InvalidFormatException;
 import opennlp.tools.util.featuregen.ArtifactToSerializerMapper;
@@ -11,6 +13,7 @@ import opennlp.tools.util.featuregen.CustomFeatureGenerator;
 import opennlp.tools.util.featuregen.FeatureGeneratorResourceProvider;
 import opennlp.tools.util.model.ArtifactSerializer;
 import eus.ixa.ixa.pipe.nerc.dict.Dictionary;
+import eus.ixa.ixa.pipe.nerc.dict.DictionaryMatcher;
 
 /**
  * Checks if a named entity is in a gazetteer.
@@ -20,9 +23,18 @@ import eus.ixa.ixa.pipe.nerc.dict.Dictionary;
  */
 public class DictionaryFeatureGenerator extends CustomFeatureGenerator implements  ArtifactToSerializerMapper {
 
+  /**
+   * The dictionaries of the generators initialized with each resource
+   * provider, that is, of each feature generator descriptor.
+   */
+  private static final Map<FeatureGeneratorResourceProvider, List<Dictionary>> descriptorDictionaries = new WeakHashMap<FeatureGeneratorResourceProvider, List<Dictionary>>();
+
   private String[] currentSentence;
   private List<String> currentEntities;
   private Dictionary dictionary;
+  private List<Dictionary> dictionaries;
+  private DictionaryMatcher dictionaryMatcher;
+  private int dictionaryIndex;
   private Map<String, String> attributes;
   private boolean isBilou = true;
   
@@ -34,10 +46,15 @@ public class DictionaryFeatureGenerator extends CustomFeatureGenerator implement
     // cache results for sentence
     if (currentSentence != tokens) {
       currentSentence = tokens;
+      if (dictionaryMatcher == null) {
+        // every dictionary of the descriptor is matched in the same walk
+        dictionaryMatcher = DictionaryMatcher.getMatcher(dictionaries);
+        dictionaryIndex = dictionaries.indexOf(dictionary);
+      }
       if (isBilou) {
-        currentEntities = dictionary.getBilouDictionaryMatch(tokens);
+        currentEntities = dictionaryMatcher.getBilouDictionaryMatch(tokens, dictionaryIndex);
       } else {
-        currentEntities = dictionary.getBioDictionaryMatch(tokens);
+        currentEntities = dictionaryMatcher.getBioDictionaryMatch(tokens, dictionaryIndex);
       }
     }
     
@@ -63,6 +80,16 @@ public class DictionaryFeatureGenerator extends CustomFeatureGenerator implement
       throw new InvalidFormatException("Not a Dictionary resource for key: " + properties.get("dict"));
     }
     this.dictionary = (Dictionary) dictResource;
+    synchronized (descriptorDictionaries) {
+      dictionaries = descriptorDictionaries.get(resourceProvider);
+      if (dictionaries == null) {
+        dictionaries = new ArrayList<Dictionary>();
+        descriptorDictionaries.put(resourceProvider, dictionaries);
+      }
+      if (!dictionaries.contains(dictionary)) {
+        dictionaries.add(dictionary);
+      }
+    }
     this.attributes = properties;
     if (properties.get("seqCodec").equalsIgnoreCase("bio")) {
       isBilou = false;
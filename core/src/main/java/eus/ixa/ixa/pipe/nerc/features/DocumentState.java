@@ -0,0 +1,179 @@
+/*
+ * Copyright 2015 Rodrigo Agerri
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+
+package eus.ixa.ixa.pipe.nerc.features;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * The document-scoped adaptive maps: the previous decisions of the adaptive
+ * feature generators ({@link PreviousMapFeatureGenerator},
+ * {@link Prev2MapFeatureGenerator} and
+ * {@link PreviousMapTokenFeatureGenerator}) on the document being annotated,
+ * one map per generator. Keeping them out of the generators lets the same
+ * generators, and the name finder holding them, annotate several documents
+ * one after another, or with their sentences interleaved, without their
+ * adaptive data mixing. The size of each map may be bounded, by the
+ * generator (see {@code AdaptiveDataCapacity} in the training parameters) or
+ * by the state (the {@code adaptiveCapacity} annotation option), see
+ * {@link AdaptiveMap}.
+ *
+ * A state is bound to the current thread while a name finder runs on its
+ * document, see {@code StatisticalNameFinder#nercToSpans(String[],
+ * DocumentState)}. When no state is bound, as when training or evaluating,
+ * the generators use a default state of the thread, which behaves as the
+ * adaptive data kept by the generators themselves did.
+ *
+ * A state does not make a name finder thread-safe. The name finder keeps
+ * the state of its beam search and the generators keep caches of the
+ * sentence being annotated, so a name finder and its generators annotate
+ * one sentence at a time, on one thread, whatever the states used. To
+ * annotate from several threads, use one name finder per thread, as
+ * {@code AnnotatePool} does.
+ */
+public class DocumentState {
+
+  private static final ThreadLocal<DocumentState> boundState = new ThreadLocal<DocumentState>();
+  private static final ThreadLocal<DocumentState> defaultState = new ThreadLocal<DocumentState>() {
+    @Override
+    protected DocumentState initialValue() {
+      // the generators of discarded models must not be kept alive
+      return new DocumentState(new WeakHashMap<Object, AdaptiveMap>(), 0);
+    }
+  };
+
+  /**
+   * The adaptive data of each generator.
+   */
+  private final Map<Object, AdaptiveMap> adaptiveMaps;
+  /**
+   * The capacity of every adaptive map, or 0 to use that of each generator.
+   */
+  private final int capacity;
+
+  /**
+   * Construct the empty state of a document.
+   */
+  public DocumentState() {
+    this(0);
+  }
+
+  /**
+   * Construct the empty state of a document bounding its adaptive data.
+   *
+   * @param aCapacity
+   *          the maximum number of tokens in the adaptive data of every
+   *          generator, or 0 to use the capacity of each generator
+   */
+  public DocumentState(final int aCapacity) {
+    this(new IdentityHashMap<Object, AdaptiveMap>(), aCapacity);
+  }
+
+  private DocumentState(final Map<Object, AdaptiveMap> anAdaptiveMaps,
+      final int aCapacity) {
+    if (aCapacity < 0) {
+      throw new IllegalArgumentException("The capacity can not be negative: "
+          + aCapacity);
+    }
+    this.adaptiveMaps = anAdaptiveMaps;
+    this.capacity = aCapacity;
+  }
+
+  /**
+   * Get the state of the document being annotated by the current thread.
+   *
+   * @return the bound state or else the default state of the thread
+   */
+  public static DocumentState current() {
+    DocumentState state = boundState.get();
+    return state != null ? state : defaultState.get();
+  }
+
+  /**
+   * Bind a state to the current thread.
+   *
+   * @param state
+   *          the state, or null to go back to the default state
+   * @return the state bound before, or null
+   */
+  public static DocumentState bind(final DocumentState state) {
+    DocumentState previous = boundState.get();
+    if (state == null) {
+      boundState.remove();
+    } else {
+      boundState.set(state);
+    }
+    return previous;
+  }
+
+  /**
+   * Get the adaptive data of a generator, creating it empty the first time.
+   *
+   * @param generator
+   *          the generator
+   * @param generatorCapacity
+   *          the capacity set by the generator, 0 for none, used if the
+   *          state does not set one
+   * @return the adaptive data of the generator
+   */
+  public final AdaptiveMap getAdaptiveMap(final Object generator,
+      final int generatorCapacity) {
+    AdaptiveMap adaptiveMap = adaptiveMaps.get(generator);
+    if (adaptiveMap == null) {
+      adaptiveMap = new AdaptiveMap(capacity > 0 ? capacity
+          : generatorCapacity);
+      adaptiveMaps.put(generator, adaptiveMap);
+    }
+    return adaptiveMap;
+  }
+
+  /**
+   * Clear the adaptive data of a generator.
+   *
+   * @param generator
+   *          the generator
+   */
+  public final void clearAdaptiveData(final Object generator) {
+    AdaptiveMap adaptiveMap = adaptiveMaps.get(generator);
+    if (adaptiveMap != null) {
+      adaptiveMap.clear();
+    }
+  }
+
+  /**
+   * Whether no generator has adaptive data in this state.
+   *
+   * @return true if every adaptive map is empty
+   */
+  public final boolean isEmpty() {
+    for (AdaptiveMap adaptiveMap : adaptiveMaps.values()) {
+      if (adaptiveMap.size() > 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Clear the adaptive data of every generator.
+   */
+  public final void clearAdaptiveData() {
+    adaptiveMaps.clear();
+  }
+
+}
@@ -0,0 +1,349 @@
+/*
+ * Copyright 2015 Rodrigo Agerri
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+
+package eus.ixa.ixa.pipe.nerc.features;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.transform.TransformerException;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.dom.DOMSource;
+import javax.xml.transform.stream.StreamResult;
+
+import opennlp.tools.util.InvalidFormatException;
+import opennlp.tools.util.featuregen.AdaptiveFeatureGenerator;
+import opennlp.tools.util.featuregen.CustomFeatureGenerator;
+import opennlp.tools.util.featuregen.FeatureGeneratorResourceProvider;
+import opennlp.tools.util.featuregen.GeneratorFactory;
+
+import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+import org.xml.sax.SAXException;
+
+/**
+ * Compile a feature generator descriptor, as created by
+ * {@link XMLFeatureDescriptor}, into a single {@link FusedFeatureGenerator}
+ * generating the same features as the generators built from it by the
+ * {@code GeneratorFactory} of OpenNLP, so that models trained with either
+ * can be used with the other.
+ *
+ * The {@code generators}, {@code cache}, {@code window} and {@code custom}
+ * elements are compiled; any other element is built by the
+ * {@code GeneratorFactory} and run as it is.
+ *
+ * The descriptor is parsed once: a compiler keeps the elements, with the
+ * constructors of their custom generators from the
+ * {@link FeatureGeneratorRegistry}, and creates as many generators as asked
+ * without parsing it again. A compiler can be shared by several threads.
+ */
+public final class FeatureGeneratorCompiler {
+
+  private final Template root;
+
+  private FeatureGeneratorCompiler(final Template aRoot) {
+    this.root = aRoot;
+  }
+
+  /**
+   * Parse a feature generator descriptor.
+   *
+   * @param descriptor
+   *          the descriptor
+   * @return the compiler of the descriptor
+   * @throws InvalidFormatException
+   *           if the descriptor is not valid
+   */
+  public static FeatureGeneratorCompiler parse(final byte[] descriptor)
+      throws InvalidFormatException {
+    Element rootElement;
+    try {
+      rootElement = DocumentBuilderFactory.newInstance().newDocumentBuilder()
+          .parse(new ByteArrayInputStream(descriptor)).getDocumentElement();
+    } catch (ParserConfigurationException e) {
+      throw new IllegalStateException(e);
+    } catch (SAXException e) {
+      throw new InvalidFormatException("Descriptor is not valid XML!", e);
+    } catch (IOException e) {
+      throw new InvalidFormatException("Descriptor can not be read!", e);
+    }
+    return new FeatureGeneratorCompiler(parseElement(rootElement));
+  }
+
+  /**
+   * Compile a feature generator descriptor.
+   *
+   * @param descriptor
+   *          the descriptor
+   * @param resourceProvider
+   *          the provider of the resources of the generators, or null
+   * @return the compiled generator
+   * @throws InvalidFormatException
+   *           if the descriptor is not valid
+   */
+  public static FusedFeatureGenerator compile(final byte[] descriptor,
+      final FeatureGeneratorResourceProvider resourceProvider)
+      throws InvalidFormatException {
+    return parse(descriptor).createGenerator(resourceProvider);
+  }
+
+  /**
+   * Create the generator of the descriptor.
+   *
+   * @param resourceProvider
+   *          the provider of the resources of the generators, or null
+   * @return the compiled generator
+   * @throws InvalidFormatException
+   *           if a generator can not be initialized
+   */
+  public FusedFeatureGenerator createGenerator(
+      final FeatureGeneratorResourceProvider resourceProvider)
+      throws InvalidFormatException {
+    Instantiation instantiation = new Instantiation(resourceProvider);
+    FusedFeatureGenerator.Node rootNode = root.instantiate(instantiation);
+    return new FusedFeatureGenerator(rootNode, instantiation.tokenGenerators,
+        instantiation.generators, instantiation.cacheCount);
+  }
+
+  private static Template parseElement(final Element element)
+      throws InvalidFormatException {
+    String name = element.getTagName();
+    if (name.equals("generators")) {
+      List<Template> children = new ArrayList<Template>();
+      for (Element child : getChildElements(element)) {
+        children.add(parseElement(child));
+      }
+      return new AggregatedTemplate(children);
+    } else if (name.equals("cache")) {
+      return new CachedTemplate(parseElement(getNestedElement(element)));
+    } else if (name.equals("window")) {
+      try {
+        int prevLength = Integer.parseInt(element.getAttribute("prevLength"));
+        int nextLength = Integer.parseInt(element.getAttribute("nextLength"));
+        return new WindowTemplate(parseElement(getNestedElement(element)),
+            prevLength, nextLength);
+      } catch (NumberFormatException e) {
+        throw new InvalidFormatException("Window length is not a number!", e);
+      }
+    } else if (name.equals("custom")) {
+      String className = element.getAttribute("class");
+      Map<String, String> properties = new HashMap<String, String>();
+      NamedNodeMap attributes = element.getAttributes();
+      for (int i = 0; i < attributes.getLength(); i++) {
+        Node attribute = attributes.item(i);
+        if (!attribute.getNodeName().equals("class")) {
+          properties.put(attribute.getNodeName(), attribute.getNodeValue());
+        }
+      }
+      return new CustomTemplate(FeatureGeneratorRegistry.getCreator(className),
+          properties);
+    } else {
+      ByteArrayOutputStream elementBytes = new ByteArrayOutputStream();
+      try {
+        TransformerFactory.newInstance().newTransformer()
+            .transform(new DOMSource(element), new StreamResult(elementBytes));
+      } catch (TransformerException e) {
+        throw new InvalidFormatException("Element can not be serialized: "
+            + name, e);
+      }
+      return new OpenNLPTemplate(name, elementBytes.toByteArray());
+    }
+  }
+
+  private static List<Element> getChildElements(final Element element) {
+    List<Element> children = new ArrayList<Element>();
+    NodeList nodes = element.getChildNodes();
+    for (int i = 0; i < nodes.getLength(); i++) {
+      if (nodes.item(i) instanceof Element) {
+        children.add((Element) nodes.item(i));
+      }
+    }
+    return children;
+  }
+
+  /**
+   * Get the generator nested in a cache or window element.
+   */
+  private static Element getNestedElement(final Element element)
+      throws InvalidFormatException {
+    List<Element> children = getChildElements(element);
+    if (children.isEmpty()) {
+      throw new InvalidFormatException("No nested generator in "
+          + element.getTagName() + "!");
+    }
+    return children.get(0);
+  }
+
+  /**
+   * The generators created for a fused generator.
+   */
+  private static final class Instantiation {
+    private final FeatureGeneratorResourceProvider resourceProvider;
+    private final List<AdaptiveFeatureGenerator> tokenGenerators = new ArrayList<AdaptiveFeatureGenerator>();
+    private final List<AdaptiveFeatureGenerator> generators = new ArrayList<AdaptiveFeatureGenerator>();
+    private int cacheCount;
+
+    private Instantiation(final FeatureGeneratorResourceProvider aResourceProvider) {
+      this.resourceProvider = aResourceProvider;
+    }
+
+    /**
+     * Add a generator, to run once per token if its features do not depend
+     * on the previous outcomes.
+     */
+    private FusedFeatureGenerator.Node add(final AdaptiveFeatureGenerator generator) {
+      generators.add(generator);
+      if (generator.getClass().getPackage() == FeatureGeneratorCompiler.class
+          .getPackage() && !(generator instanceof SuperSenseFeatureGenerator)) {
+        tokenGenerators.add(generator);
+        return new FusedFeatureGenerator.TokenNode(tokenGenerators.size() - 1);
+      }
+      return new FusedFeatureGenerator.GeneratorNode(generator);
+    }
+  }
+
+  /**
+   * A parsed element of the descriptor.
+   */
+  private abstract static class Template {
+
+    abstract FusedFeatureGenerator.Node instantiate(Instantiation instantiation)
+        throws InvalidFormatException;
+  }
+
+  private static final class AggregatedTemplate extends Template {
+    private final List<Template> children;
+
+    private AggregatedTemplate(final List<Template> aChildren) {
+      this.children = aChildren;
+    }
+
+    @Override
+    FusedFeatureGenerator.Node instantiate(final Instantiation instantiation)
+        throws InvalidFormatException {
+      List<FusedFeatureGenerator.Node> nodes = new ArrayList<FusedFeatureGenerator.Node>();
+      for (Template child : children) {
+        nodes.add(child.instantiate(instantiation));
+      }
+      return new FusedFeatureGenerator.AggregatedNode(nodes);
+    }
+  }
+
+  private static final class CachedTemplate extends Template {
+    private final Template child;
+
+    private CachedTemplate(final Template aChild) {
+      this.child = aChild;
+    }
+
+    @Override
+    FusedFeatureGenerator.Node instantiate(final Instantiation instantiation)
+        throws InvalidFormatException {
+      int id = instantiation.cacheCount++;
+      return new FusedFeatureGenerator.CachedNode(id,
+          child.instantiate(instantiation));
+    }
+  }
+
+  private static final class WindowTemplate extends Template {
+    private final Template child;
+    private final int prevLength;
+    private final int nextLength;
+
+    private WindowTemplate(final Template aChild, final int aPrevLength,
+        final int aNextLength) {
+      this.child = aChild;
+      this.prevLength = aPrevLength;
+      this.nextLength = aNextLength;
+    }
+
+    @Override
+    FusedFeatureGenerator.Node instantiate(final Instantiation instantiation)
+        throws InvalidFormatException {
+      return new FusedFeatureGenerator.WindowNode(
+          child.instantiate(instantiation), prevLength, nextLength);
+    }
+  }
+
+  /**
+   * A custom generator, created and initialized as the
+   * {@code GeneratorFactory} does.
+   */
+  private static final class CustomTemplate extends Template {
+    private final FeatureGeneratorRegistry.Creator creator;
+    private final Map<String, String> properties;
+
+    private CustomTemplate(final FeatureGeneratorRegistry.Creator aCreator,
+        final Map<String, String> aProperties) {
+      this.creator = aCreator;
+      this.properties = Collections.unmodifiableMap(aProperties);
+    }
+
+    @Override
+    FusedFeatureGenerator.Node instantiate(final Instantiation instantiation)
+        throws InvalidFormatException {
+      AdaptiveFeatureGenerator generator = creator.create();
+      if (generator instanceof CustomFeatureGenerator
+          && instantiation.resourceProvider != null) {
+        // a copy, as the generators may keep the map
+        ((CustomFeatureGenerator) generator).init(new HashMap<String, String>(
+            properties), instantiation.resourceProvider);
+      }
+      return instantiation.add(generator);
+    }
+  }
+
+  /**
+   * An element of the OpenNLP descriptor format, built by the
+   * {@code GeneratorFactory}.
+   */
+  private static final class OpenNLPTemplate extends Template {
+    private final String name;
+    private final byte[] element;
+
+    private OpenNLPTemplate(final String aName, final byte[] anElement) {
+      this.name = aName;
+      this.element = anElement;
+    }
+
+    @Override
+    FusedFeatureGenerator.Node instantiate(final Instantiation instantiation)
+        throws InvalidFormatException {
+      AdaptiveFeatureGenerator generator;
+      try {
+        generator = GeneratorFactory.create(new ByteArrayInputStream(element),
+            instantiation.resourceProvider);
+      } catch (InvalidFormatException e) {
+        throw e;
+      } catch (IOException e) {
+        throw new InvalidFormatException("Element can not be built: " + name, e);
+      }
+      instantiation.generators.add(generator);
+      return new FusedFeatureGenerator.GeneratorNode(generator);
+    }
+  }
+
+}
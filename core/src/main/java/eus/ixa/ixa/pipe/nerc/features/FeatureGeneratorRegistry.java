@@ -0,0 +1,234 @@
+/*
+ * Copyright 2015 Rodrigo Agerri
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+
+package eus.ixa.ixa.pipe.nerc.features;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import opennlp.tools.util.InvalidFormatException;
+import opennlp.tools.util.featuregen.AdaptiveFeatureGenerator;
+
+/**
+ * The constructors of the feature generators named by the {@code custom}
+ * elements of a descriptor, so that the generators of this package are
+ * created without reflection. Other generators may be registered; those
+ * not registered are instantiated by reflection, as the
+ * {@code GeneratorFactory} of OpenNLP does.
+ */
+public final class FeatureGeneratorRegistry {
+
+  /**
+   * The constructor of a feature generator.
+   */
+  public interface Creator {
+
+    /**
+     * Create a new, uninitialized, generator.
+     *
+     * @return the generator
+     */
+    AdaptiveFeatureGenerator create();
+  }
+
+  private static final Map<String, Creator> creators = new ConcurrentHashMap<String, Creator>();
+
+  static {
+    register(BigramClassFeatureGenerator.class, new Creator() {
+      public AdaptiveFeatureGenerator create() {
+        return new BigramClassFeatureGenerator();
+      }
+    });
+    register(BrownBigramFeatureGenerator.class, new Creator() {
+      public AdaptiveFeatureGenerator create() {
+        return new BrownBigramFeatureGenerator();
+      }
+    });
+    register(BrownTokenClassFeatureGenerator.class, new Creator() {
+      public AdaptiveFeatureGenerator create() {
+        return new BrownTokenClassFeatureGenerator();
+      }
+    });
+    register(BrownTokenFeatureGenerator.class, new Creator() {
+      public AdaptiveFeatureGenerator create() {
+        return new BrownTokenFeatureGenerator();
+      }
+    });
+    register(BrownTrigramFeatureGenerator.class, new Creator() {
+      public AdaptiveFeatureGenerator create() {
+        return new BrownTrigramFeatureGenerator();
+      }
+    });
+    register(CharacterNgramFeatureGenerator.class, new Creator() {
+      public AdaptiveFeatureGenerator create() {
+        return new CharacterNgramFeatureGenerator();
+      }
+    });
+    register(ClarkFeatureGenerator.class, new Creator() {
+      public AdaptiveFeatureGenerator create() {
+        return new ClarkFeatureGenerator();
+      }
+    });
+    register(DictionaryFeatureGenerator.class, new Creator() {
+      public AdaptiveFeatureGenerator create() {
+        return new DictionaryFeatureGenerator();
+      }
+    });
+    register(FivegramClassFeatureGenerator.class, new Creator() {
+      public AdaptiveFeatureGenerator create() {
+        return new FivegramClassFeatureGenerator();
+      }
+    });
+    register(FourgramClassFeatureGenerator.class, new Creator() {
+      public AdaptiveFeatureGenerator create() {
+        return new FourgramClassFeatureGenerator();
+      }
+    });
+    register(MFSFeatureGenerator.class, new Creator() {
+      public AdaptiveFeatureGenerator create() {
+        return new MFSFeatureGenerator();
+      }
+    });
+    register(MorphoFeatureGenerator.class, new Creator() {
+      public AdaptiveFeatureGenerator create() {
+        return new MorphoFeatureGenerator();
+      }
+    });
+    register(OutcomePriorFeatureGenerator.class, new Creator() {
+      public AdaptiveFeatureGenerator create() {
+        return new OutcomePriorFeatureGenerator();
+      }
+    });
+    register(Prefix34FeatureGenerator.class, new Creator() {
+      public AdaptiveFeatureGenerator create() {
+        return new Prefix34FeatureGenerator();
+      }
+    });
+    register(Prev2MapFeatureGenerator.class, new Creator() {
+      public AdaptiveFeatureGenerator create() {
+        return new Prev2MapFeatureGenerator();
+      }
+    });
+    register(PreviousMapFeatureGenerator.class, new Creator() {
+      public AdaptiveFeatureGenerator create() {
+        return new PreviousMapFeatureGenerator();
+      }
+    });
+    register(PreviousMapTokenFeatureGenerator.class, new Creator() {
+      public AdaptiveFeatureGenerator create() {
+        return new PreviousMapTokenFeatureGenerator();
+      }
+    });
+    register(SentenceFeatureGenerator.class, new Creator() {
+      public AdaptiveFeatureGenerator create() {
+        return new SentenceFeatureGenerator();
+      }
+    });
+    register(SuffixFeatureGenerator.class, new Creator() {
+      public AdaptiveFeatureGenerator create() {
+        return new SuffixFeatureGenerator();
+      }
+    });
+    register(SuperSenseFeatureGenerator.class, new Creator() {
+      public AdaptiveFeatureGenerator create() {
+        return new SuperSenseFeatureGenerator();
+      }
+    });
+    register(TokenClassFeatureGenerator.class, new Creator() {
+      public AdaptiveFeatureGenerator create() {
+        return new TokenClassFeatureGenerator();
+      }
+    });
+    register(TokenFeatureGenerator.class, new Creator() {
+      public AdaptiveFeatureGenerator create() {
+        return new TokenFeatureGenerator();
+      }
+    });
+    register(TrigramClassFeatureGenerator.class, new Creator() {
+      public AdaptiveFeatureGenerator create() {
+        return new TrigramClassFeatureGenerator();
+      }
+    });
+    register(Word2VecClusterFeatureGenerator.class, new Creator() {
+      public AdaptiveFeatureGenerator create() {
+        return new Word2VecClusterFeatureGenerator();
+      }
+    });
+    register(WordShapeSuperSenseFeatureGenerator.class, new Creator() {
+      public AdaptiveFeatureGenerator create() {
+        return new WordShapeSuperSenseFeatureGenerator();
+      }
+    });
+  }
+
+  private FeatureGeneratorRegistry() {
+    throw new AssertionError("This class is not meant to be instantiated!");
+  }
+
+  /**
+   * Register the constructor of a feature generator.
+   *
+   * @param generatorClass
+   *          the class of the generator
+   * @param creator
+   *          the constructor
+   */
+  public static void register(
+      final Class<? extends AdaptiveFeatureGenerator> generatorClass,
+      final Creator creator) {
+    creators.put(generatorClass.getName(), creator);
+  }
+
+  /**
+   * Get the constructor of a feature generator.
+   *
+   * @param className
+   *          the class name of the generator
+   * @return the registered constructor, or a constructor instantiating the
+   *         class by reflection if none was registered
+   * @throws InvalidFormatException
+   *           if the class is not a feature generator
+   */
+  public static Creator getCreator(final String className)
+      throws InvalidFormatException {
+    Creator creator = creators.get(className);
+    if (creator != null) {
+      return creator;
+    }
+    final Class<? extends AdaptiveFeatureGenerator> generatorClass;
+    try {
+      generatorClass = Class.forName(className).asSubclass(
+          AdaptiveFeatureGenerator.class);
+    } catch (ClassNotFoundException e) {
+      throw new InvalidFormatException("Feature generator class not found: "
+          + className, e);
+    } catch (ClassCastException e) {
+      throw new InvalidFormatException("Not a feature generator: " + className,
+          e);
+    }
+    return new Creator() {
+      public AdaptiveFeatureGenerator create() {
+        try {
+          return generatorClass.getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException e) {
+          throw new IllegalStateException(
+              "Feature generator can not be created: " + className, e);
+        }
+      }
+    };
+  }
+
+}
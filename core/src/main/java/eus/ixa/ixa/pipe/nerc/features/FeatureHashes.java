@@ -0,0 +1,311 @@
+/*
+ * Copyright 2015 Rodrigo Agerri
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+
+package eus.ixa.ixa.pipe.nerc.features;
+
+import java.util.Arrays;
+
+/**
+ * A buffer of features given by their 64-bit hashes instead of by their
+ * strings, see {@link FusedFeatureGenerator#createFeatureHashes}. The hash
+ * of a feature is the polynomial hash of its characters, so the hash of a
+ * prefixed feature is computed from the hash of the prefix and the hash of
+ * the feature, and the features of a window are not concatenated.
+ *
+ * A feature is kept as the hash, plus the parts whose concatenation is the
+ * feature, so that its string can be compared or built when the hash alone
+ * does not identify a predicate of the model; the parts are strings which
+ * already exist, so adding a feature does not allocate once the buffer has
+ * grown to the size of the contexts.
+ */
+public final class FeatureHashes {
+
+  /**
+   * The multiplier of the polynomial hash, odd so that no character is lost.
+   */
+  private static final long MULTIPLIER = 0x9e3779b97f4a7c15L;
+  /**
+   * The number of parts of a feature.
+   */
+  private static final int PARTS = 4;
+
+  private int size = 0;
+  private long[] hashes = new long[64];
+  /**
+   * The multiplier raised to the length of each feature.
+   */
+  private long[] powers = new long[64];
+  private String[] parts = new String[64 * PARTS];
+  private final Feature feature = new Feature();
+
+  /**
+   * Construct an empty buffer.
+   */
+  public FeatureHashes() {
+  }
+
+  private FeatureHashes(final int capacity) {
+    int length = Math.max(capacity, 1);
+    this.hashes = new long[length];
+    this.powers = new long[length];
+    this.parts = new String[length * PARTS];
+  }
+
+  /**
+   * Get the hash of a string, the same as the hash of a feature with that
+   * string.
+   *
+   * @param string
+   *          the string
+   * @return the hash
+   */
+  public static long hash(final String string) {
+    return extend(0, string);
+  }
+
+  /**
+   * Mix the bits of a hash, for the tables indexed by its low bits.
+   *
+   * @param hash
+   *          the hash
+   * @return the mixed hash
+   */
+  public static long mix(final long hash) {
+    long mixed = hash;
+    mixed ^= mixed >>> 33;
+    mixed *= 0xff51afd7ed558ccdL;
+    mixed ^= mixed >>> 33;
+    mixed *= 0xc4ceb9fe1a85ec53L;
+    mixed ^= mixed >>> 33;
+    return mixed;
+  }
+
+  private static long extend(final long hash, final String string) {
+    long extended = hash;
+    for (int i = 0; i < string.length(); i++) {
+      extended = extended * MULTIPLIER + string.charAt(i);
+    }
+    return extended;
+  }
+
+  /**
+   * Get the multiplier raised to the length of a string, the power of a
+   * prefix for {@link #addPrefixed}.
+   */
+  static long power(final String string) {
+    long power = 1;
+    for (int i = 0; i < string.length(); i++) {
+      power *= MULTIPLIER;
+    }
+    return power;
+  }
+
+  /**
+   * Remove every feature.
+   */
+  public void clear() {
+    size = 0;
+  }
+
+  /**
+   * Get the number of features.
+   *
+   * @return the number of features
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Get the hash of a feature.
+   *
+   * @param i
+   *          the index of the feature
+   * @return the hash
+   */
+  public long getHash(final int i) {
+    return hashes[i];
+  }
+
+  /**
+   * Get a feature as a sequence of characters, without building its string.
+   * The sequence is reused by the next call.
+   *
+   * @param i
+   *          the index of the feature
+   * @return the characters of the feature
+   */
+  public CharSequence getFeature(final int i) {
+    feature.set(i);
+    return feature;
+  }
+
+  /**
+   * Add a feature.
+   *
+   * @param aFeature
+   *          the feature
+   */
+  public void add(final String aFeature) {
+    add(aFeature, null, null, null);
+  }
+
+  /**
+   * Add the feature which is the concatenation of some strings.
+   *
+   * @param first
+   *          the first string
+   * @param second
+   *          the second string, or null
+   * @param third
+   *          the third string, or null
+   * @param fourth
+   *          the fourth string, or null
+   */
+  public void add(final String first, final String second, final String third,
+      final String fourth) {
+    long hash = extend(0, first);
+    long power = power(first);
+    if (second != null) {
+      hash = extend(hash, second);
+      power *= power(second);
+    }
+    if (third != null) {
+      hash = extend(hash, third);
+      power *= power(third);
+    }
+    if (fourth != null) {
+      hash = extend(hash, fourth);
+      power *= power(fourth);
+    }
+    int i = append(hash, power);
+    parts[i * PARTS] = first;
+    parts[i * PARTS + 1] = second;
+    parts[i * PARTS + 2] = third;
+    parts[i * PARTS + 3] = fourth;
+  }
+
+  /**
+   * Add every feature of another buffer.
+   *
+   * @param features
+   *          the buffer
+   */
+  public void addAll(final FeatureHashes features) {
+    for (int j = 0; j < features.size; j++) {
+      int i = append(features.hashes[j], features.powers[j]);
+      System.arraycopy(features.parts, j * PARTS, parts, i * PARTS, PARTS);
+    }
+  }
+
+  /**
+   * Add a feature of another buffer with a prefix, as a window does.
+   *
+   * @param prefix
+   *          the prefix
+   * @param prefixHash
+   *          the hash of the prefix
+   * @param prefixPower
+   *          the power of the prefix, see {@link #power(String)}
+   * @param features
+   *          the buffer
+   * @param j
+   *          the index of the feature in the buffer
+   */
+  void addPrefixed(final String prefix, final long prefixHash,
+      final long prefixPower, final FeatureHashes features, final int j) {
+    int i = append(prefixHash * features.powers[j] + features.hashes[j],
+        prefixPower * features.powers[j]);
+    int from = j * PARTS;
+    int to = i * PARTS;
+    if (features.parts[from + PARTS - 1] == null) {
+      parts[to] = prefix;
+      System.arraycopy(features.parts, from, parts, to + 1, PARTS - 1);
+    } else {
+      // no part left for the prefix, only with nested windows
+      parts[to] = prefix + features.getFeature(j);
+      parts[to + 1] = null;
+      parts[to + 2] = null;
+      parts[to + 3] = null;
+    }
+  }
+
+  /**
+   * Copy the features into a buffer of their size.
+   *
+   * @return the copy
+   */
+  FeatureHashes copy() {
+    FeatureHashes copy = new FeatureHashes(size);
+    copy.addAll(this);
+    return copy;
+  }
+
+  private int append(final long hash, final long power) {
+    if (size == hashes.length) {
+      hashes = Arrays.copyOf(hashes, size * 2);
+      powers = Arrays.copyOf(powers, size * 2);
+      parts = Arrays.copyOf(parts, size * 2 * PARTS);
+    }
+    hashes[size] = hash;
+    powers[size] = power;
+    return size++;
+  }
+
+  /**
+   * The characters of a feature, read from its parts.
+   */
+  private final class Feature implements CharSequence {
+    private int offset;
+
+    private void set(final int i) {
+      offset = i * PARTS;
+    }
+
+    public int length() {
+      int length = 0;
+      for (int k = offset; k < offset + PARTS && parts[k] != null; k++) {
+        length += parts[k].length();
+      }
+      return length;
+    }
+
+    public char charAt(final int index) {
+      int start = index;
+      for (int k = offset; k < offset + PARTS && parts[k] != null; k++) {
+        if (start < parts[k].length()) {
+          return parts[k].charAt(start);
+        }
+        start -= parts[k].length();
+      }
+      throw new IndexOutOfBoundsException(Integer.toString(index));
+    }
+
+    public CharSequence subSequence(final int start, final int end) {
+      return toString().substring(start, end);
+    }
+
+    @Override
+    public String toString() {
+      StringBuilder sb = new StringBuilder();
+      for (int k = offset; k < offset + PARTS && parts[k] != null; k++) {
+        sb.append(parts[k]);
+      }
+      return sb.toString();
+    }
+  }
+
+}
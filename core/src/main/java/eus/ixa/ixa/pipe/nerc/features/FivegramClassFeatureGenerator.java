@@ -30,22 +30,22 @@ public class FivegramClassFeatureGenerator extends FeatureGeneratorAdapter {
 
   public void createFeatures(List<String> features, String[] tokens, int index,
       String[] previousOutcomes) {
-    String wc = TokenClassFeatureGenerator.tokenShapeFeature(tokens[index]);
+    String wc = TokenOrthography.get(tokens, index).getShape();
     // fivegram features
     if (index > 3) {
       features.add("ppppw,pppw,ppw,pw,w=" + tokens[index - 4] + "," + tokens[index - 3] + "," + tokens[index - 2] + "," + tokens[index - 1] + "," + tokens[index]);
-      String pwc = TokenClassFeatureGenerator.tokenShapeFeature(tokens[index - 1]);
-      String ppwc = TokenClassFeatureGenerator.tokenShapeFeature(tokens[index - 2]);
-      String pppwc = TokenClassFeatureGenerator.tokenShapeFeature(tokens[index - 3]);
-      String ppppwc = TokenClassFeatureGenerator.tokenShapeFeature(tokens[index - 4]);
+      String pwc = TokenOrthography.get(tokens, index - 1).getShape();
+      String ppwc = TokenOrthography.get(tokens, index - 2).getShape();
+      String pppwc = TokenOrthography.get(tokens, index - 3).getShape();
+      String ppppwc = TokenOrthography.get(tokens, index - 4).getShape();
       features.add("pppwc,ppwc,pwc,wc=" + ppppwc + "," + pppwc + "," + ppwc + "," + pwc + "," + wc);
     }
     if (index + 4 < tokens.length) {
       features.add("w,nw,nnw,nnnw,nnnnw=" + tokens[index] + "," + tokens[index + 1] + "," + tokens[index + 2] + "," + tokens[index + 3] + "," + tokens[index + 4]);
-      String nwc = TokenClassFeatureGenerator.tokenShapeFeature(tokens[index + 1]);
-      String nnwc = TokenClassFeatureGenerator.tokenShapeFeature(tokens[index + 2]);
-      String nnnwc = TokenClassFeatureGenerator.tokenShapeFeature(tokens[index + 3]);
-      String nnnnwc = TokenClassFeatureGenerator.tokenShapeFeature(tokens[index + 4]);
+      String nwc = TokenOrthography.get(tokens, index + 1).getShape();
+      String nnwc = TokenOrthography.get(tokens, index + 2).getShape();
+      String nnnwc = TokenOrthography.get(tokens, index + 3).getShape();
+      String nnnnwc = TokenOrthography.get(tokens, index + 4).getShape();
       features.add("wc,nwc,nnwc,nnnwc=" + wc + "," + nwc + "," + nnwc + "," + nnnwc + "," + nnnnwc);
     }
   }
@@ -0,0 +1,422 @@
+/*
+ * Copyright 2015 Rodrigo Agerri
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+
+package eus.ixa.ixa.pipe.nerc.features;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import opennlp.tools.util.featuregen.AdaptiveFeatureGenerator;
+
+/**
+ * The feature generator of a descriptor compiled by
+ * {@link FeatureGeneratorCompiler}: a single generator producing, in the
+ * same order, the features the {@code generators}, {@code cache},
+ * {@code window} and {@code custom} elements of the descriptor produce when
+ * built by the {@code GeneratorFactory} of OpenNLP.
+ *
+ * When a new sentence is seen, the sentence is walked once, running for each
+ * token every generator whose features only depend on the tokens and on the
+ * adaptive data; the generators of a token share its analyses (see
+ * {@link TokenOrthography} and {@link SentenceContext}) while they are still
+ * fresh, and windows read the features of the neighbouring tokens from the
+ * resulting table instead of generating them again. The generators depending
+ * on the previous outcomes ({@link SuperSenseFeatureGenerator} and those
+ * OpenNLP builds) run when the features of a token are asked for. As with
+ * {@code CachedFeatureGenerator}, the features of a cached element are kept
+ * for the sentence once computed.
+ *
+ * The sentence is compared by identity and its features are discarded when
+ * the adaptive data changes or a different {@link DocumentState} is bound.
+ *
+ * The features can also be created as their hashes, see
+ * {@link #createFeatureHashes}: the features of the token generators are
+ * hashed once per sentence and the prefixes of the windows are added to the
+ * hashes, so that the features of the neighbouring tokens are not
+ * concatenated with the prefixes every time the features of a token are
+ * asked for.
+ */
+public final class FusedFeatureGenerator implements AdaptiveFeatureGenerator {
+
+  private final Node root;
+  /**
+   * The generators run once per token of a sentence.
+   */
+  private final AdaptiveFeatureGenerator[] tokenGenerators;
+  /**
+   * Every generator, to pass them the adaptive data.
+   */
+  private final AdaptiveFeatureGenerator[] generators;
+  private final int cacheCount;
+
+  private String[] sentenceTokens;
+  private DocumentState sentenceState;
+  /**
+   * The features of each token generator for each token of the sentence.
+   */
+  private String[][][] tokenFeatures;
+  /**
+   * The features of each cached element for each token of the sentence.
+   */
+  private String[][][] cachedFeatures;
+  /**
+   * The hashed features of each token generator for each token of the
+   * sentence, hashed when first asked for.
+   */
+  private FeatureHashes[][] tokenHashes;
+  /**
+   * The hashed features of each cached element for each token of the
+   * sentence.
+   */
+  private FeatureHashes[][] cachedHashes;
+  private final List<String> scratch = new ArrayList<String>();
+  private final FeatureHashes scratchHashes = new FeatureHashes();
+
+  FusedFeatureGenerator(final Node aRoot,
+      final List<AdaptiveFeatureGenerator> aTokenGenerators,
+      final List<AdaptiveFeatureGenerator> aGenerators, final int aCacheCount) {
+    this.root = aRoot;
+    this.tokenGenerators = aTokenGenerators
+        .toArray(new AdaptiveFeatureGenerator[aTokenGenerators.size()]);
+    this.generators = aGenerators
+        .toArray(new AdaptiveFeatureGenerator[aGenerators.size()]);
+    this.cacheCount = aCacheCount;
+  }
+
+  public void createFeatures(final List<String> features,
+      final String[] tokens, final int index, final String[] preds) {
+    DocumentState state = DocumentState.current();
+    if (tokens != sentenceTokens || state != sentenceState) {
+      walkSentence(tokens, preds);
+      sentenceState = state;
+    }
+    root.emit(this, features, tokens, index, preds);
+  }
+
+  /**
+   * Create the features of a token as their hashes, see
+   * {@link FeatureHashes}. The features are those
+   * {@link #createFeatures(List, String[], int, String[])} creates, in the
+   * same order.
+   *
+   * @param features
+   *          the buffer to add the features to
+   * @param tokens
+   *          the sentence
+   * @param index
+   *          the index of the token
+   * @param preds
+   *          the previous outcomes
+   */
+  public void createFeatureHashes(final FeatureHashes features,
+      final String[] tokens, final int index, final String[] preds) {
+    DocumentState state = DocumentState.current();
+    if (tokens != sentenceTokens || state != sentenceState) {
+      walkSentence(tokens, preds);
+      sentenceState = state;
+    }
+    root.emitHashes(this, features, tokens, index, preds);
+  }
+
+  /**
+   * Run the token generators over every token of a new sentence.
+   */
+  private void walkSentence(final String[] tokens, final String[] preds) {
+    sentenceTokens = tokens;
+    tokenFeatures = new String[tokenGenerators.length][tokens.length][];
+    cachedFeatures = new String[cacheCount][tokens.length][];
+    tokenHashes = new FeatureHashes[tokenGenerators.length][tokens.length];
+    cachedHashes = new FeatureHashes[cacheCount][tokens.length];
+    for (int index = 0; index < tokens.length; index++) {
+      for (int id = 0; id < tokenGenerators.length; id++) {
+        scratch.clear();
+        tokenGenerators[id].createFeatures(scratch, tokens, index, preds);
+        tokenFeatures[id][index] = scratch.toArray(new String[scratch.size()]);
+      }
+    }
+  }
+
+  public void updateAdaptiveData(final String[] tokens, final String[] outcomes) {
+    for (AdaptiveFeatureGenerator generator : generators) {
+      generator.updateAdaptiveData(tokens, outcomes);
+    }
+    sentenceTokens = null;
+  }
+
+  public void clearAdaptiveData() {
+    for (AdaptiveFeatureGenerator generator : generators) {
+      generator.clearAdaptiveData();
+    }
+    sentenceTokens = null;
+  }
+
+  /**
+   * An element of the compiled descriptor.
+   */
+  abstract static class Node {
+
+    /**
+     * Add the features of the element for a token of the current sentence.
+     */
+    abstract void emit(FusedFeatureGenerator fused, List<String> features,
+        String[] tokens, int index, String[] preds);
+
+    /**
+     * Add the hashes of the features of the element for a token of the
+     * current sentence.
+     */
+    abstract void emitHashes(FusedFeatureGenerator fused,
+        FeatureHashes features, String[] tokens, int index, String[] preds);
+  }
+
+  /**
+   * A generator run once per token of a sentence.
+   */
+  static final class TokenNode extends Node {
+    private final int id;
+
+    TokenNode(final int anId) {
+      this.id = anId;
+    }
+
+    @Override
+    void emit(final FusedFeatureGenerator fused, final List<String> features,
+        final String[] tokens, final int index, final String[] preds) {
+      for (String feature : fused.tokenFeatures[id][index]) {
+        features.add(feature);
+      }
+    }
+
+    @Override
+    void emitHashes(final FusedFeatureGenerator fused,
+        final FeatureHashes features, final String[] tokens, final int index,
+        final String[] preds) {
+      FeatureHashes hashes = fused.tokenHashes[id][index];
+      if (hashes == null) {
+        FeatureHashes hashed = fused.scratchHashes;
+        hashed.clear();
+        for (String feature : fused.tokenFeatures[id][index]) {
+          hashed.add(feature);
+        }
+        hashes = hashed.copy();
+        fused.tokenHashes[id][index] = hashes;
+      }
+      features.addAll(hashes);
+    }
+  }
+
+  /**
+   * A generator run every time the features of a token are asked for.
+   */
+  static final class GeneratorNode extends Node {
+    private final AdaptiveFeatureGenerator generator;
+
+    GeneratorNode(final AdaptiveFeatureGenerator aGenerator) {
+      this.generator = aGenerator;
+    }
+
+    @Override
+    void emit(final FusedFeatureGenerator fused, final List<String> features,
+        final String[] tokens, final int index, final String[] preds) {
+      generator.createFeatures(features, tokens, index, preds);
+    }
+
+    @Override
+    void emitHashes(final FusedFeatureGenerator fused,
+        final FeatureHashes features, final String[] tokens, final int index,
+        final String[] preds) {
+      List<String> generated = fused.scratch;
+      generated.clear();
+      generator.createFeatures(generated, tokens, index, preds);
+      for (String feature : generated) {
+        features.add(feature);
+      }
+    }
+  }
+
+  /**
+   * The {@code generators} element.
+   */
+  static final class AggregatedNode extends Node {
+    private final Node[] children;
+
+    AggregatedNode(final List<Node> aChildren) {
+      this.children = aChildren.toArray(new Node[aChildren.size()]);
+    }
+
+    @Override
+    void emit(final FusedFeatureGenerator fused, final List<String> features,
+        final String[] tokens, final int index, final String[] preds) {
+      for (Node child : children) {
+        child.emit(fused, features, tokens, index, preds);
+      }
+    }
+
+    @Override
+    void emitHashes(final FusedFeatureGenerator fused,
+        final FeatureHashes features, final String[] tokens, final int index,
+        final String[] preds) {
+      for (Node child : children) {
+        child.emitHashes(fused, features, tokens, index, preds);
+      }
+    }
+  }
+
+  /**
+   * The {@code cache} element.
+   */
+  static final class CachedNode extends Node {
+    private final int id;
+    private final Node child;
+
+    CachedNode(final int anId, final Node aChild) {
+      this.id = anId;
+      this.child = aChild;
+    }
+
+    @Override
+    void emit(final FusedFeatureGenerator fused, final List<String> features,
+        final String[] tokens, final int index, final String[] preds) {
+      String[][] cache = fused.cachedFeatures[id];
+      String[] cached = cache[index];
+      if (cached == null) {
+        List<String> childFeatures = new ArrayList<String>();
+        child.emit(fused, childFeatures, tokens, index, preds);
+        cached = childFeatures.toArray(new String[childFeatures.size()]);
+        cache[index] = cached;
+      }
+      for (String feature : cached) {
+        features.add(feature);
+      }
+    }
+
+    @Override
+    void emitHashes(final FusedFeatureGenerator fused,
+        final FeatureHashes features, final String[] tokens, final int index,
+        final String[] preds) {
+      FeatureHashes[] cache = fused.cachedHashes[id];
+      FeatureHashes cached = cache[index];
+      if (cached == null) {
+        FeatureHashes childFeatures = new FeatureHashes();
+        child.emitHashes(fused, childFeatures, tokens, index, preds);
+        cached = childFeatures.copy();
+        cache[index] = cached;
+      }
+      features.addAll(cached);
+    }
+  }
+
+  /**
+   * The {@code window} element.
+   */
+  static final class WindowNode extends Node {
+    private final Node child;
+    private final String[] prevPrefixes;
+    private final String[] nextPrefixes;
+    private final long[] prevHashes;
+    private final long[] prevPowers;
+    private final long[] nextHashes;
+    private final long[] nextPowers;
+    /**
+     * The hashed features of a neighbouring token, a node not being part of
+     * its own child.
+     */
+    private final FeatureHashes windowHashes = new FeatureHashes();
+
+    WindowNode(final Node aChild, final int prevLength, final int nextLength) {
+      this.child = aChild;
+      this.prevPrefixes = new String[prevLength + 1];
+      for (int i = 1; i < prevPrefixes.length; i++) {
+        prevPrefixes[i] = WindowFeatureGenerator.PREV_PREFIX + i;
+      }
+      this.nextPrefixes = new String[nextLength + 1];
+      for (int i = 1; i < nextPrefixes.length; i++) {
+        nextPrefixes[i] = WindowFeatureGenerator.NEXT_PREFIX + i;
+      }
+      this.prevHashes = new long[prevPrefixes.length];
+      this.prevPowers = new long[prevPrefixes.length];
+      for (int i = 1; i < prevPrefixes.length; i++) {
+        prevHashes[i] = FeatureHashes.hash(prevPrefixes[i]);
+        prevPowers[i] = FeatureHashes.power(prevPrefixes[i]);
+      }
+      this.nextHashes = new long[nextPrefixes.length];
+      this.nextPowers = new long[nextPrefixes.length];
+      for (int i = 1; i < nextPrefixes.length; i++) {
+        nextHashes[i] = FeatureHashes.hash(nextPrefixes[i]);
+        nextPowers[i] = FeatureHashes.power(nextPrefixes[i]);
+      }
+    }
+
+    @Override
+    void emit(final FusedFeatureGenerator fused, final List<String> features,
+        final String[] tokens, final int index, final String[] preds) {
+      // current features
+      child.emit(fused, features, tokens, index, preds);
+      List<String> windowFeatures = new ArrayList<String>();
+      // previous features
+      for (int i = 1; i < prevPrefixes.length; i++) {
+        if (index - i >= 0) {
+          windowFeatures.clear();
+          child.emit(fused, windowFeatures, tokens, index - i, preds);
+          for (String feature : windowFeatures) {
+            features.add(prevPrefixes[i] + feature);
+          }
+        }
+      }
+      // next features
+      for (int i = 1; i < nextPrefixes.length; i++) {
+        if (index + i < tokens.length) {
+          windowFeatures.clear();
+          child.emit(fused, windowFeatures, tokens, index + i, preds);
+          for (String feature : windowFeatures) {
+            features.add(nextPrefixes[i] + feature);
+          }
+        }
+      }
+    }
+
+    @Override
+    void emitHashes(final FusedFeatureGenerator fused,
+        final FeatureHashes features, final String[] tokens, final int index,
+        final String[] preds) {
+      // current features
+      child.emitHashes(fused, features, tokens, index, preds);
+      // previous features
+      for (int i = 1; i < prevPrefixes.length; i++) {
+        if (index - i >= 0) {
+          windowHashes.clear();
+          child.emitHashes(fused, windowHashes, tokens, index - i, preds);
+          for (int j = 0; j < windowHashes.size(); j++) {
+            features.addPrefixed(prevPrefixes[i], prevHashes[i],
+                prevPowers[i], windowHashes, j);
+          }
+        }
+      }
+      // next features
+      for (int i = 1; i < nextPrefixes.length; i++) {
+        if (index + i < tokens.length) {
+          windowHashes.clear();
+          child.emitHashes(fused, windowHashes, tokens, index + i, preds);
+          for (int j = 0; j < windowHashes.size(); j++) {
+            features.addPrefixed(nextPrefixes[i], nextHashes[i],
+                nextPowers[i], windowHashes, j);
+          }
+        }
+      }
+    }
+  }
+
+}
@@ -0,0 +1,153 @@
+/*
+ * Copyright 2015 Rodrigo Agerri
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+
+package eus.ixa.ixa.pipe.nerc.features;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import opennlp.tools.namefind.NameContextGenerator;
+import opennlp.tools.namefind.NameFinderME;
+import opennlp.tools.util.featuregen.AdaptiveFeatureGenerator;
+
+/**
+ * The context generator of a {@link FusedFeatureGenerator}: the features of
+ * the generator followed by the previous outcome features, as the
+ * {@code DefaultNameContextGenerator} of OpenNLP creates them. The context is
+ * written into a feature buffer kept across calls, so that only the returned
+ * array is allocated per call. The context can also be created as the hashes
+ * of its features, see {@link #getContextHashes}.
+ */
+public class FusedNameContextGenerator implements NameContextGenerator {
+
+  private static final AdaptiveFeatureGenerator[] NO_GENERATORS = new AdaptiveFeatureGenerator[0];
+
+  private final FusedFeatureGenerator generator;
+  /**
+   * The generators added after the fused one, as the name finder does.
+   */
+  private AdaptiveFeatureGenerator[] additionalGenerators = NO_GENERATORS;
+  private final List<String> buffer = new ArrayList<String>();
+
+  /**
+   * Construct the context generator.
+   *
+   * @param aGenerator
+   *          the compiled feature generator
+   */
+  public FusedNameContextGenerator(final FusedFeatureGenerator aGenerator) {
+    this.generator = aGenerator;
+  }
+
+  public void addFeatureGenerator(final AdaptiveFeatureGenerator aGenerator) {
+    additionalGenerators = Arrays.copyOf(additionalGenerators,
+        additionalGenerators.length + 1);
+    additionalGenerators[additionalGenerators.length - 1] = aGenerator;
+  }
+
+  public String[] getContext(final int index, final String[] tokens,
+      final String[] preds, final Object[] additionalContext) {
+    List<String> features = buffer;
+    // the buffer keeps the capacity of the largest context seen
+    features.clear();
+    generator.createFeatures(features, tokens, index, preds);
+    for (AdaptiveFeatureGenerator additionalGenerator : additionalGenerators) {
+      additionalGenerator.createFeatures(features, tokens, index, preds);
+    }
+    // previous outcome features
+    if (preds != null) {
+      String po = NameFinderME.OTHER;
+      String ppo = NameFinderME.OTHER;
+      if (index > 1) {
+        ppo = preds[index - 2];
+      }
+      if (index > 0) {
+        po = preds[index - 1];
+      }
+      features.add("po=" + po);
+      features.add("pow=" + po + "," + tokens[index]);
+      features.add("powf=" + po + ","
+          + TokenOrthography.get(tokens, index).getShape());
+      features.add("ppo=" + ppo);
+    }
+    return features.toArray(new String[features.size()]);
+  }
+
+  /**
+   * Create the context of a token as the hashes of its features, see
+   * {@link FeatureHashes}. The features are those
+   * {@link #getContext(int, String[], String[], Object[])} returns, in the
+   * same order.
+   *
+   * @param features
+   *          the buffer to write the features to, cleared first
+   * @param index
+   *          the index of the token
+   * @param tokens
+   *          the sentence
+   * @param preds
+   *          the previous outcomes
+   * @param additionalContext
+   *          the additional context, not used
+   */
+  public void getContextHashes(final FeatureHashes features, final int index,
+      final String[] tokens, final String[] preds,
+      final Object[] additionalContext) {
+    features.clear();
+    generator.createFeatureHashes(features, tokens, index, preds);
+    if (additionalGenerators.length > 0) {
+      buffer.clear();
+      for (AdaptiveFeatureGenerator additionalGenerator : additionalGenerators) {
+        additionalGenerator.createFeatures(buffer, tokens, index, preds);
+      }
+      for (String feature : buffer) {
+        features.add(feature);
+      }
+    }
+    // previous outcome features
+    if (preds != null) {
+      String po = NameFinderME.OTHER;
+      String ppo = NameFinderME.OTHER;
+      if (index > 1) {
+        ppo = preds[index - 2];
+      }
+      if (index > 0) {
+        po = preds[index - 1];
+      }
+      features.add("po=", po, null, null);
+      features.add("pow=", po, ",", tokens[index]);
+      features.add("powf=", po, ",", TokenOrthography.get(tokens, index)
+          .getShape());
+      features.add("ppo=", ppo, null, null);
+    }
+  }
+
+  public void updateAdaptiveData(final String[] tokens, final String[] outcomes) {
+    generator.updateAdaptiveData(tokens, outcomes);
+    for (AdaptiveFeatureGenerator additionalGenerator : additionalGenerators) {
+      additionalGenerator.updateAdaptiveData(tokens, outcomes);
+    }
+  }
+
+  public void clearAdaptiveData() {
+    generator.clearAdaptiveData();
+    for (AdaptiveFeatureGenerator additionalGenerator : additionalGenerators) {
+      additionalGenerator.clearAdaptiveData();
+    }
+  }
+
+}
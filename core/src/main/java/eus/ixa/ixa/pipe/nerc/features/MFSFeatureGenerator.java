@@ -62,16 +62,14 @@ public class MFSFeatureGenerator extends CustomFeatureGenerator implements
   public void createFeatures(List<String> features, String[] tokens, int index,
       String[] previousOutcomes) {
 
-    // cache annotation results for each sentence
+    // cache annotation results for each sentence, shared with other generators
     if (currentSentence != tokens) {
+      SentenceContext sentenceContext = SentenceContext.get(tokens);
       currentSentence = tokens;
-      currentTags = posModelResource.posTag(tokens);
-      currentLemmas = lemmaDictResource.lookUpLemmaArray(tokens, currentTags);
-      if (isBio) {
-        currentMFSList = mfsDictResource.getFirstSenseBio(currentLemmas, currentTags);
-      } else {
-        currentMFSList = mfsDictResource.getFirstSenseBilou(currentLemmas, currentTags);
-      }
+      currentTags = sentenceContext.getPosTags(posModelResource);
+      currentLemmas = sentenceContext.getLemmas(posModelResource, lemmaDictResource);
+      currentMFSList = sentenceContext.getFirstSenses(posModelResource,
+          lemmaDictResource, mfsDictResource, isBio);
     }
     String posTag = currentTags[index];
 
@@ -105,7 +103,8 @@ public class MFSFeatureGenerator extends CustomFeatureGenerator implements
 
   @Override
   public void clearAdaptiveData() {
-
+    currentSentence = null;
+    SentenceContext.clear();
   }
 
   @Override
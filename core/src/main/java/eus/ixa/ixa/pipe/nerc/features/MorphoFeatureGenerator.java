@@ -53,11 +53,12 @@ public class MorphoFeatureGenerator extends CustomFeatureGenerator implements Ar
   public void createFeatures(List<String> features, String[] tokens, int index,
       String[] previousOutcomes) {
     
-    //cache annotations for each sentence
+    //cache annotations for each sentence, shared with other generators
     if (currentSentence != tokens) {
+      SentenceContext sentenceContext = SentenceContext.get(tokens);
       currentSentence = tokens;
-      currentTags = posModelResource.posTag(tokens);
-      currentLemmas = lemmaDictResource.lookUpLemmaArray(tokens, currentTags);
+      currentTags = sentenceContext.getPosTags(posModelResource);
+      currentLemmas = sentenceContext.getLemmas(posModelResource, lemmaDictResource);
     }
     String posTag = currentTags[index];
     if (isPos) {
@@ -80,7 +81,8 @@ public class MorphoFeatureGenerator extends CustomFeatureGenerator implements Ar
 
   @Override
   public void clearAdaptiveData() {
-    
+    currentSentence = null;
+    SentenceContext.clear();
   }
 
   @Override
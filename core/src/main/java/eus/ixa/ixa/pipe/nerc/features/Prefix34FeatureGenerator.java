@@ -33,7 +33,7 @@ public class Prefix34FeatureGenerator extends FeatureGeneratorAdapter {
 
   public void createFeatures(List<String> features, String[] tokens, int index,
       String[] previousOutcomes) {
-    String[] prefs = Prefix34FeatureGenerator.getPrefixes(tokens[index]);
+    String[] prefs = TokenOrthography.get(tokens, index).getPrefixes();
     for (String pref : prefs) {
       features.add("pre=" + pref);
     }
@@ -15,7 +15,6 @@
  */
 package eus.ixa.ixa.pipe.nerc.features;
 
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -24,11 +23,14 @@ import opennlp.tools.util.featuregen.CustomFeatureGenerator;
 import opennlp.tools.util.featuregen.FeatureGeneratorResourceProvider;
 
 public class PreviousMapTokenFeatureGenerator extends CustomFeatureGenerator {
-  
-  private Map<String, String> previousMap = new HashMap<String, String>();
-  
+
+  /**
+   * The maximum number of tokens in the previous map, 0 for no maximum.
+   */
+  private int capacity;
 
   public void createFeatures(List<String> features, String[] tokens, int index, String[] preds) {
+    AdaptiveMap previousMap = DocumentState.current().getAdaptiveMap(this, capacity);
     features.add("w,pd=" + tokens[index] + "," + previousMap.get(tokens[index]));
   }
 
@@ -36,6 +38,7 @@ public class PreviousMapTokenFeatureGenerator extends CustomFeatureGenerator {
    * Generates previous decision features for the token based on contents of the previous map.
    */
   public void updateAdaptiveData(String[] tokens, String[] outcomes) {
+    AdaptiveMap previousMap = DocumentState.current().getAdaptiveMap(this, capacity);
 
     for (int i = 0; i < tokens.length; i++) {
       previousMap.put(tokens[i], outcomes[i]);
@@ -43,17 +46,23 @@ public class PreviousMapTokenFeatureGenerator extends CustomFeatureGenerator {
   }
 
   /**
-   * Clears the previous map.
+   * Clears the previous map of the current document.
    */
   public void clearAdaptiveData() {
-    previousMap.clear();
+    DocumentState.current().clearAdaptiveData(this);
   }
 
   @Override
   public void init(Map<String, String> properties,
       FeatureGeneratorResourceProvider resourceProvider)
       throws InvalidFormatException {
-    
+    try {
+      capacity = properties.get("capacity") == null ? 0 : Integer
+          .parseInt(properties.get("capacity"));
+    } catch (NumberFormatException e) {
+      throw new InvalidFormatException("Invalid adaptive data capacity: "
+          + properties.get("capacity"), e);
+    }
   }
 
 }
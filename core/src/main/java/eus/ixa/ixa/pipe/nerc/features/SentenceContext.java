@@ -0,0 +1,251 @@
+/*
+ * Copyright 2015 Rodrigo Agerri
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+
+package eus.ixa.ixa.pipe.nerc.features;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import eus.ixa.ixa.pipe.nerc.dict.LemmaResource;
+import eus.ixa.ixa.pipe.nerc.dict.MFSResource;
+import eus.ixa.ixa.pipe.nerc.dict.POSModelResource;
+
+/**
+ * The linguistic annotation of the sentence being processed by the current
+ * thread, shared by every feature generator of every model. The POS tags,
+ * lemmas and most frequent senses of a sentence are computed once for each
+ * POS model, lemma dictionary and MFS dictionary, however many feature
+ * generators (and windows over them) ask for them.
+ *
+ * The POS tags and lemmas may also be given for a sentence, for example from
+ * the term layer of the NAF document being annotated, in which case the POS
+ * models and lemma dictionaries are not run for it.
+ *
+ * The context of a thread belongs to the last sentence seen, compared by
+ * identity as the name finders pass the same array for every token of a
+ * sentence, and it is discarded when a different sentence is requested.
+ */
+public final class SentenceContext {
+
+  private static final ThreadLocal<SentenceContext> context = new ThreadLocal<SentenceContext>() {
+    @Override
+    protected SentenceContext initialValue() {
+      return new SentenceContext();
+    }
+  };
+
+  /**
+   * The current sentence.
+   */
+  private String[] tokens;
+  /**
+   * The POS tags given for the sentence, or null.
+   */
+  private String[] givenPosTags;
+  /**
+   * The lemmas given for the sentence, or null.
+   */
+  private List<String> givenLemmas;
+  /**
+   * The POS tags of the sentence for each POS model.
+   */
+  private final Map<POSModelResource, String[]> posTags = new HashMap<POSModelResource, String[]>(
+      4);
+  /**
+   * The lemmas of the sentence for each POS model and lemma dictionary.
+   */
+  private final Map<ResourceKey, List<String>> lemmas = new HashMap<ResourceKey, List<String>>(
+      4);
+  /**
+   * The most frequent senses of the sentence for each POS model, lemma
+   * dictionary, MFS dictionary and sequence codec.
+   */
+  private final Map<ResourceKey, List<String>> firstSenses = new HashMap<ResourceKey, List<String>>(
+      4);
+
+  private SentenceContext() {
+  }
+
+  /**
+   * Get the context of a sentence for the current thread.
+   *
+   * @param tokens
+   *          the sentence
+   * @return the context of the sentence
+   */
+  public static SentenceContext get(final String[] tokens) {
+    SentenceContext sentenceContext = context.get();
+    if (sentenceContext.tokens != tokens) {
+      sentenceContext.reset();
+      sentenceContext.tokens = tokens;
+    }
+    return sentenceContext;
+  }
+
+  /**
+   * Give the POS tags and lemmas of a sentence, to be used instead of those of
+   * the POS models and lemma dictionaries until a different sentence is
+   * requested.
+   *
+   * @param tokens
+   *          the sentence
+   * @param posTags
+   *          the POS tags, or null to run the POS models
+   * @param lemmas
+   *          the lemmas, or null to run the lemma dictionaries
+   */
+  public static void setAnnotations(final String[] tokens,
+      final String[] posTags, final List<String> lemmas) {
+    SentenceContext sentenceContext = get(tokens);
+    sentenceContext.reset();
+    sentenceContext.givenPosTags = posTags;
+    sentenceContext.givenLemmas = lemmas;
+  }
+
+  /**
+   * Discard the context of the current thread, so that the annotations are
+   * computed again even if a sentence array is reused with other tokens.
+   */
+  public static void clear() {
+    SentenceContext sentenceContext = context.get();
+    sentenceContext.reset();
+    sentenceContext.tokens = null;
+  }
+
+  /**
+   * Get the POS tags of the sentence.
+   *
+   * @param posModelResource
+   *          the POS model
+   * @return the POS tags
+   */
+  public String[] getPosTags(final POSModelResource posModelResource) {
+    if (givenPosTags != null) {
+      return givenPosTags;
+    }
+    String[] tags = posTags.get(posModelResource);
+    if (tags == null) {
+      tags = posModelResource.posTag(tokens);
+      posTags.put(posModelResource, tags);
+    }
+    return tags;
+  }
+
+  /**
+   * Get the lemmas of the sentence.
+   *
+   * @param posModelResource
+   *          the POS model
+   * @param lemmaResource
+   *          the lemma dictionary
+   * @return the lemmas
+   */
+  public List<String> getLemmas(final POSModelResource posModelResource,
+      final LemmaResource lemmaResource) {
+    if (givenLemmas != null) {
+      return givenLemmas;
+    }
+    ResourceKey key = new ResourceKey(posModelResource, lemmaResource, null,
+        false);
+    List<String> sentenceLemmas = lemmas.get(key);
+    if (sentenceLemmas == null) {
+      sentenceLemmas = lemmaResource.lookUpLemmaArray(tokens,
+          getPosTags(posModelResource));
+      lemmas.put(key, sentenceLemmas);
+    }
+    return sentenceLemmas;
+  }
+
+  /**
+   * Get the most frequent senses of the sentence.
+   *
+   * @param posModelResource
+   *          the POS model
+   * @param lemmaResource
+   *          the lemma dictionary
+   * @param mfsResource
+   *          the MFS dictionary
+   * @param isBio
+   *          whether the senses are in a bio encoding, otherwise bilou
+   * @return the most frequent senses
+   */
+  public List<String> getFirstSenses(final POSModelResource posModelResource,
+      final LemmaResource lemmaResource, final MFSResource mfsResource,
+      final boolean isBio) {
+    ResourceKey key = new ResourceKey(posModelResource, lemmaResource,
+        mfsResource, isBio);
+    List<String> senses = firstSenses.get(key);
+    if (senses == null) {
+      List<String> sentenceLemmas = getLemmas(posModelResource, lemmaResource);
+      String[] tags = getPosTags(posModelResource);
+      if (isBio) {
+        senses = mfsResource.getFirstSenseBio(sentenceLemmas, tags);
+      } else {
+        senses = mfsResource.getFirstSenseBilou(sentenceLemmas, tags);
+      }
+      firstSenses.put(key, senses);
+    }
+    return senses;
+  }
+
+  private void reset() {
+    givenPosTags = null;
+    givenLemmas = null;
+    posTags.clear();
+    lemmas.clear();
+    firstSenses.clear();
+  }
+
+  /**
+   * The resources an annotation was computed with, compared by identity.
+   */
+  private static final class ResourceKey {
+    private final POSModelResource posModelResource;
+    private final LemmaResource lemmaResource;
+    private final MFSResource mfsResource;
+    private final boolean isBio;
+
+    private ResourceKey(final POSModelResource aPosModelResource,
+        final LemmaResource aLemmaResource, final MFSResource aMfsResource,
+        final boolean aIsBio) {
+      this.posModelResource = aPosModelResource;
+      this.lemmaResource = aLemmaResource;
+      this.mfsResource = aMfsResource;
+      this.isBio = aIsBio;
+    }
+
+    @Override
+    public boolean equals(final Object other) {
+      if (!(other instanceof ResourceKey)) {
+        return false;
+      }
+      ResourceKey key = (ResourceKey) other;
+      return posModelResource == key.posModelResource
+          && lemmaResource == key.lemmaResource
+          && mfsResource == key.mfsResource && isBio == key.isBio;
+    }
+
+    @Override
+    public int hashCode() {
+      int hash = System.identityHashCode(posModelResource);
+      hash = 31 * hash + System.identityHashCode(lemmaResource);
+      hash = 31 * hash + System.identityHashCode(mfsResource);
+      return 31 * hash + (isBio ? 1 : 0);
+    }
+  }
+
+}
@@ -34,7 +34,7 @@ public class SuffixFeatureGenerator extends FeatureGeneratorAdapter {
   
   public void createFeatures(List<String> features, String[] tokens, int index,
       String[] previousOutcomes) {
-    String[] suffs = SuffixFeatureGenerator.getSuffixes(tokens[index]);
+    String[] suffs = TokenOrthography.get(tokens, index).getSuffixes();
     for (String suff : suffs) {
       features.add("suf=" + suff);
     }
@@ -57,22 +57,20 @@ public class SuperSenseFeatureGenerator extends CustomFeatureGenerator implement
   public void createFeatures(List<String> features, String[] tokens, int index,
       String[] previousOutcomes) {
 
-    // cache results for each sentence
+    // cache results for each sentence, shared with other generators
     if (currentSentence != tokens) {
+      SentenceContext sentenceContext = SentenceContext.get(tokens);
       currentSentence = tokens;
-      currentTags = posModelResource.posTag(tokens);
-      currentLemmas = lemmaDictResource.lookUpLemmaArray(tokens, currentTags);
-      if (isBio) {
-        currentMFSList = mfsDictResource.getFirstSenseBio(currentLemmas, currentTags);
-      } else {
-      currentMFSList = mfsDictResource.getFirstSenseBilou(currentLemmas, currentTags);
-      }
+      currentTags = sentenceContext.getPosTags(posModelResource);
+      currentLemmas = sentenceContext.getLemmas(posModelResource, lemmaDictResource);
+      currentMFSList = sentenceContext.getFirstSenses(posModelResource,
+          lemmaDictResource, mfsDictResource, isBio);
     }
 
     String curLemma = currentLemmas.get(index);
     String curTok = tokens[index];
     String curPOS = currentTags[index];
-    String curShape = WordShapeSuperSenseFeatureGenerator.normalize(tokens[index]);
+    String curShape = TokenOrthography.get(tokens, index).getSuperSenseShape();
     String firstSense = currentMFSList.get(index);
     String prevLabel = null;
 
@@ -91,23 +89,23 @@ public class SuperSenseFeatureGenerator extends CustomFeatureGenerator implement
     String next2Lemma = null;
 
     if (index - 2 >= 0) {
-      prev2Shape = WordShapeSuperSenseFeatureGenerator.normalize(tokens[index - 2]);
+      prev2Shape = TokenOrthography.get(tokens, index - 2).getSuperSenseShape();
       prev2Lemma = currentLemmas.get(index - 2);
       prev2POS = currentTags[index - 2];
     }
     if (index - 1 >= 0) {
-      prevShape = WordShapeSuperSenseFeatureGenerator.normalize(tokens[index - 1]);
+      prevShape = TokenOrthography.get(tokens, index - 1).getSuperSenseShape();
       prevLemma = currentLemmas.get(index - 1);
       prevPOS = currentTags[index - 1];
       prevLabel = previousOutcomes[index - 1];
     }
     if (index + 1 < tokens.length) {
-      nextShape = WordShapeSuperSenseFeatureGenerator.normalize(tokens[index + 1]);
+      nextShape = TokenOrthography.get(tokens, index + 1).getSuperSenseShape();
       nextLemma = currentLemmas.get(index + 1);
       nextPOS = currentTags[index + 1];
     }
     if (index + 2 < tokens.length) {
-      next2Shape = WordShapeSuperSenseFeatureGenerator.normalize(tokens[index + 2]);
+      next2Shape = TokenOrthography.get(tokens, index + 2).getSuperSenseShape();
       next2Lemma = currentLemmas.get(index + 2);
       next2POS = currentTags[index + 2];
     }
@@ -190,7 +188,8 @@ public class SuperSenseFeatureGenerator extends CustomFeatureGenerator implement
 
   @Override
   public void clearAdaptiveData() {
-
+    currentSentence = null;
+    SentenceContext.clear();
   }
 
   @Override
@@ -16,10 +16,8 @@
 package eus.ixa.ixa.pipe.nerc.features;
 
 import java.util.List;
-import java.util.regex.Pattern;
 
 import opennlp.tools.util.featuregen.FeatureGeneratorAdapter;
-import opennlp.tools.util.featuregen.StringPattern;
 
 /**
  * Generates a class name for the specified token. The classes are as follows
@@ -42,12 +40,6 @@ import opennlp.tools.util.featuregen.StringPattern;
  */
 public class TokenClassFeatureGenerator extends FeatureGeneratorAdapter {
 
-  private static Pattern capPeriod;
-
-  static {
-    capPeriod = Pattern.compile("^[A-Z]\\.$");
-  }
-
   private boolean generateWordAndClassFeature;
 
   public TokenClassFeatureGenerator() {
@@ -60,54 +52,18 @@ public class TokenClassFeatureGenerator extends FeatureGeneratorAdapter {
 
   public void createFeatures(List<String> features, String[] tokens, int index,
       String[] preds) {
-    String wordClass = tokenShapeFeature(tokens[index]);
+    TokenOrthography orthography = TokenOrthography.get(tokens, index);
+    String wordClass = orthography.getShape();
     features.add("wc=" + wordClass);
 
     if (generateWordAndClassFeature) {
-      features.add("w&c=" + tokens[index].toLowerCase()
+      features.add("w&c=" + orthography.getLowercase()
           + "," + wordClass);
     }
   }
 
   public static String tokenShapeFeature(String token) {
-
-    StringPattern pattern = StringPattern.recognize(token);
-
-    String feat;
-    if (pattern.isAllLowerCaseLetter()) {
-      feat = "lc";
-    } else if (pattern.digits() == 2) {
-      feat = "2d";
-    } else if (pattern.digits() == 4) {
-      feat = "4d";
-    }
-    else if (pattern.containsDigit()) {
-      if (pattern.containsLetters()) {
-        feat = "an";
-      } else if (pattern.containsHyphen()) {
-        feat = "dd";
-      } else if (pattern.containsSlash()) {
-        feat = "ds";
-      } else if (pattern.containsComma()) {
-        feat = "dc";
-      } else if (pattern.containsPeriod()) {
-        feat = "dp";
-      } else {
-        feat = "num";
-      }
-    } else if (pattern.isAllCapitalLetter() && token.length() == 1) {
-      feat = "sc";
-    } else if (pattern.isAllCapitalLetter()) {
-      feat = "ac";
-    } else if (capPeriod.matcher(token).find()) {
-      feat = "cp";
-    } else if (pattern.isInitialCapitalLetter()) {
-      feat = "ic";
-    } else {
-      feat = "other";
-    }
-
-    return (feat);
+    return TokenOrthography.analyze(token).getShape();
   }
 
 }
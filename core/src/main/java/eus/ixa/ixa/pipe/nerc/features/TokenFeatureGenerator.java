@@ -39,7 +39,7 @@ public class TokenFeatureGenerator extends FeatureGeneratorAdapter {
       String[] preds) {
 
     if (lowercase) {
-      features.add("w=" + tokens[index].toLowerCase());
+      features.add("w=" + TokenOrthography.get(tokens, index).getLowercase());
     } else {
       features.add("w=" + tokens[index]);
     }
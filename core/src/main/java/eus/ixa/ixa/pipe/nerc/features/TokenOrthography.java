@@ -0,0 +1,351 @@
+/*
+ * Copyright 2015 Rodrigo Agerri
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+
+package eus.ixa.ixa.pipe.nerc.features;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+import opennlp.tools.util.featuregen.StringPattern;
+
+/**
+ * The orthography of a token as seen by the shape based feature generators:
+ * its lowercase form, its token class (see
+ * {@link TokenClassFeatureGenerator}), its word shape (see
+ * {@link WordShapeSuperSenseFeatureGenerator}) and its prefixes and suffixes
+ * (see {@link Prefix34FeatureGenerator} and {@link SuffixFeatureGenerator}).
+ *
+ * The lowercase form, the token class and the word shape are computed in a
+ * single pass over the characters of the token, with a fast path for ASCII
+ * tokens; the prefixes and suffixes when first asked for. The analyses of
+ * the sentence being processed by the current thread are kept, so that every
+ * generator, and every window over it, analyses each token once. As in
+ * {@link SentenceContext}, the sentence is compared by identity and the
+ * analyses are discarded when a different sentence is requested.
+ */
+public final class TokenOrthography {
+
+  private static final int PREFIX_LENGTH = 4;
+  private static final int SUFFIX_LENGTH = 4;
+
+  private static final ThreadLocal<SentenceOrthography> sentenceOrthography = new ThreadLocal<SentenceOrthography>() {
+    @Override
+    protected SentenceOrthography initialValue() {
+      return new SentenceOrthography();
+    }
+  };
+
+  private final String token;
+  private final String lowercase;
+  private final String shape;
+  private final String superSenseShape;
+  private String[] prefixes;
+  private String[] suffixes;
+
+  private TokenOrthography(final String aToken, final String aLowercase,
+      final String aShape, final String aSuperSenseShape) {
+    this.token = aToken;
+    this.lowercase = aLowercase;
+    this.shape = aShape;
+    this.superSenseShape = aSuperSenseShape;
+  }
+
+  /**
+   * Get the analysis of a token of the sentence being processed by the
+   * current thread.
+   *
+   * @param tokens
+   *          the sentence
+   * @param index
+   *          the index of the token
+   * @return the analysis of the token
+   */
+  public static TokenOrthography get(final String[] tokens, final int index) {
+    SentenceOrthography sentence = sentenceOrthography.get();
+    if (sentence.tokens != tokens) {
+      sentence.reset(tokens);
+    }
+    TokenOrthography analysis = sentence.analyses[index];
+    // the token may have been replaced in the array since it was analysed
+    if (analysis == null || analysis.token != tokens[index]) {
+      analysis = analyze(tokens[index]);
+      sentence.analyses[index] = analysis;
+    }
+    return analysis;
+  }
+
+  /**
+   * Analyse a token.
+   *
+   * @param token
+   *          the token
+   * @return the analysis
+   */
+  public static TokenOrthography analyze(final String token) {
+    final int length = token.length();
+    // the StringPattern of the token, for ASCII tokens
+    boolean ascii = true;
+    boolean allLowercase = true;
+    boolean allUppercase = true;
+    boolean containsUppercase = false;
+    boolean containsLetters = false;
+    boolean containsHyphen = false;
+    boolean containsSlash = false;
+    boolean containsComma = false;
+    boolean containsPeriod = false;
+    int digits = 0;
+    // the word shape
+    char[] shapeChars = new char[length];
+    int shapeLength = 0;
+    int prevCharType = -1;
+    boolean addedStar = false;
+    for (int i = 0; i < length; i++) {
+      char ch = token.charAt(i);
+      char charType;
+      if (ch >= 'A' && ch <= 'Z') {
+        charType = 'X';
+        containsLetters = true;
+        containsUppercase = true;
+        allLowercase = false;
+      } else if (ch >= 'a' && ch <= 'z') {
+        charType = 'x';
+        containsLetters = true;
+        allUppercase = false;
+      } else {
+        charType = ch;
+        allLowercase = false;
+        allUppercase = false;
+        if (ch >= '0' && ch <= '9') {
+          charType = 'd';
+          digits++;
+        } else if (ch == '-') {
+          containsHyphen = true;
+        } else if (ch == '/') {
+          containsSlash = true;
+        } else if (ch == ',') {
+          containsComma = true;
+        } else if (ch == '.') {
+          containsPeriod = true;
+        } else if (ch > 0x7F) {
+          ascii = false;
+        }
+      }
+      if (charType == prevCharType) {
+        if (!addedStar) {
+          shapeChars[shapeLength++] = '*';
+          addedStar = true;
+        }
+      } else {
+        addedStar = false;
+        shapeChars[shapeLength++] = charType;
+      }
+      prevCharType = charType;
+    }
+    String superSenseShape = new String(shapeChars, 0, shapeLength);
+    String shape;
+    String lowercase;
+    if (ascii) {
+      shape = tokenClass(token, allLowercase, digits, containsLetters,
+          containsHyphen, containsSlash, containsComma, containsPeriod,
+          allUppercase, length > 0 && token.charAt(0) >= 'A'
+              && token.charAt(0) <= 'Z');
+      lowercase = containsUppercase ? toLowerCaseAscii(token) : token;
+    } else {
+      StringPattern pattern = StringPattern.recognize(token);
+      shape = tokenClass(token, pattern.isAllLowerCaseLetter(),
+          pattern.digits(), pattern.containsLetters(),
+          pattern.containsHyphen(), pattern.containsSlash(),
+          pattern.containsComma(), pattern.containsPeriod(),
+          pattern.isAllCapitalLetter(), pattern.isInitialCapitalLetter());
+      lowercase = token.toLowerCase();
+    }
+    return new TokenOrthography(token, lowercase, shape, superSenseShape);
+  }
+
+  /**
+   * The token class, the first matching class as listed in
+   * {@link TokenClassFeatureGenerator}.
+   */
+  private static String tokenClass(final String token,
+      final boolean allLowercase, final int digits,
+      final boolean containsLetters, final boolean containsHyphen,
+      final boolean containsSlash, final boolean containsComma,
+      final boolean containsPeriod, final boolean allUppercase,
+      final boolean initialUppercase) {
+    if (allLowercase) {
+      return "lc";
+    } else if (digits == 2) {
+      return "2d";
+    } else if (digits == 4) {
+      return "4d";
+    } else if (digits > 0) {
+      if (containsLetters) {
+        return "an";
+      } else if (containsHyphen) {
+        return "dd";
+      } else if (containsSlash) {
+        return "ds";
+      } else if (containsComma) {
+        return "dc";
+      } else if (containsPeriod) {
+        return "dp";
+      } else {
+        return "num";
+      }
+    } else if (allUppercase && token.length() == 1) {
+      return "sc";
+    } else if (allUppercase) {
+      return "ac";
+    } else if (isCapitalPeriod(token)) {
+      return "cp";
+    } else if (initialUppercase) {
+      return "ic";
+    } else {
+      return "other";
+    }
+  }
+
+  /**
+   * Whether the token matches {@code ^[A-Z]\.$}: a capital letter and a
+   * period, optionally followed by a final line terminator.
+   */
+  private static boolean isCapitalPeriod(final String token) {
+    int length = token.length();
+    if (length < 2 || token.charAt(0) < 'A' || token.charAt(0) > 'Z'
+        || token.charAt(1) != '.') {
+      return false;
+    }
+    if (length == 2) {
+      return true;
+    }
+    char ch = token.charAt(2);
+    if (length == 3) {
+      return ch == '\n' || ch == '\r' || ch == '\u0085' || ch == '\u2028'
+          || ch == '\u2029';
+    }
+    return length == 4 && ch == '\r' && token.charAt(3) == '\n';
+  }
+
+  /**
+   * Lowercase an ASCII token as {@link String#toLowerCase()} does.
+   */
+  private static String toLowerCaseAscii(final String token) {
+    String language = Locale.getDefault().getLanguage();
+    // the locales where toLowerCase does not map A-Z to a-z
+    if (language.equals("tr") || language.equals("az")
+        || language.equals("lt")) {
+      return token.toLowerCase();
+    }
+    char[] chars = token.toCharArray();
+    for (int i = 0; i < chars.length; i++) {
+      if (chars[i] >= 'A' && chars[i] <= 'Z') {
+        chars[i] += 'a' - 'A';
+      }
+    }
+    return new String(chars);
+  }
+
+  /**
+   * Get the token.
+   *
+   * @return the token
+   */
+  public String getToken() {
+    return token;
+  }
+
+  /**
+   * Get the lowercase form of the token.
+   *
+   * @return the lowercase token
+   */
+  public String getLowercase() {
+    return lowercase;
+  }
+
+  /**
+   * Get the token class, as in {@link TokenClassFeatureGenerator}.
+   *
+   * @return the token class
+   */
+  public String getShape() {
+    return shape;
+  }
+
+  /**
+   * Get the word shape, as in {@link WordShapeSuperSenseFeatureGenerator}.
+   *
+   * @return the word shape
+   */
+  public String getSuperSenseShape() {
+    return superSenseShape;
+  }
+
+  /**
+   * Get the prefixes, as in {@link Prefix34FeatureGenerator}. The array is
+   * shared and must not be modified.
+   *
+   * @return the prefixes
+   */
+  public String[] getPrefixes() {
+    if (prefixes == null) {
+      String[] prefs = new String[PREFIX_LENGTH];
+      for (int li = 3, ll = PREFIX_LENGTH; li < ll; li++) {
+        prefs[li] = token.substring(0, Math.min(li + 1, token.length()));
+      }
+      prefixes = prefs;
+    }
+    return prefixes;
+  }
+
+  /**
+   * Get the suffixes, as in {@link SuffixFeatureGenerator}. The array is
+   * shared and must not be modified.
+   *
+   * @return the suffixes
+   */
+  public String[] getSuffixes() {
+    if (suffixes == null) {
+      String[] suffs = new String[SUFFIX_LENGTH];
+      for (int li = 0, ll = SUFFIX_LENGTH; li < ll; li++) {
+        suffs[li] = token.substring(Math.max(token.length() - li - 1, 0));
+      }
+      suffixes = suffs;
+    }
+    return suffixes;
+  }
+
+  /**
+   * The analyses of the tokens of the current sentence of a thread.
+   */
+  private static final class SentenceOrthography {
+    private static final TokenOrthography[] NO_ANALYSES = new TokenOrthography[0];
+
+    private String[] tokens;
+    private TokenOrthography[] analyses = NO_ANALYSES;
+
+    private void reset(final String[] newTokens) {
+      tokens = newTokens;
+      int length = newTokens.length;
+      if (analyses.length < length) {
+        analyses = new TokenOrthography[Math.max(length, analyses.length * 2)];
+      } else {
+        Arrays.fill(analyses, null);
+      }
+    }
+  }
+
+}
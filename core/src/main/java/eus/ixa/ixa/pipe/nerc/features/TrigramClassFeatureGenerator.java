@@ -30,18 +30,18 @@ public class TrigramClassFeatureGenerator extends FeatureGeneratorAdapter {
 
   public void createFeatures(List<String> features, String[] tokens, int index,
       String[] previousOutcomes) {
-    String wc = TokenClassFeatureGenerator.tokenShapeFeature(tokens[index]);
+    String wc = TokenOrthography.get(tokens, index).getShape();
     // trigram features
     if (index > 1) {
       features.add("ppw,pw,w=" + tokens[index - 2] + "," + tokens[index - 1] + "," + tokens[index]);
-      String pwc = TokenClassFeatureGenerator.tokenShapeFeature(tokens[index - 1]);
-      String ppwc = TokenClassFeatureGenerator.tokenShapeFeature(tokens[index - 2]);
+      String pwc = TokenOrthography.get(tokens, index - 1).getShape();
+      String ppwc = TokenOrthography.get(tokens, index - 2).getShape();
       features.add("ppwc,pwc,wc=" + ppwc + "," + pwc + "," + wc);
     }
     if (index + 2 < tokens.length) {
       features.add("w,nw,nnw=" + tokens[index] + "," + tokens[index + 1] + "," + tokens[index + 2]);
-      String nwc = TokenClassFeatureGenerator.tokenShapeFeature(tokens[index + 1]);
-      String nnwc = TokenClassFeatureGenerator.tokenShapeFeature(tokens[index + 2]);
+      String nwc = TokenOrthography.get(tokens, index + 1).getShape();
+      String nnwc = TokenOrthography.get(tokens, index + 2).getShape();
       features.add("wc,nwc,nnwc=" + wc + "," + nwc + "," + nnwc);
     }
   }
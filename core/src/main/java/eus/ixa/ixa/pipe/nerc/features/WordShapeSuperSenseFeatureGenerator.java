@@ -38,9 +38,10 @@ public class WordShapeSuperSenseFeatureGenerator extends CustomFeatureGenerator
   public void createFeatures(List<String> features, String[] tokens, int index,
       String[] preds) {
 
-    String normalizedToken = normalize(tokens[index]);
+    TokenOrthography orthography = TokenOrthography.get(tokens, index);
+    String normalizedToken = orthography.getSuperSenseShape();
     features.add("sh=" + normalizedToken);
-    features.add("w,sh=" + tokens[index].toLowerCase() + "," + normalizedToken);
+    features.add("w,sh=" + orthography.getLowercase() + "," + normalizedToken);
   }
 
   /**
@@ -51,37 +52,7 @@ public class WordShapeSuperSenseFeatureGenerator extends CustomFeatureGenerator
    * @return the normalized token
    */
   public static String normalize(String token) {
-    String normalizedToken = "";
-
-    char currentCharacter;
-    int prevCharType = -1;
-    char charType = '~';
-    boolean addedStar = false;
-    for (int i = 0; i < token.length(); i++) {
-
-      currentCharacter = token.charAt(i);
-      if (currentCharacter >= 'A' && currentCharacter <= 'Z') {
-        charType = 'X';
-      } else if (currentCharacter >= 'a' && currentCharacter <= 'z') {
-        charType = 'x';
-      } else if (currentCharacter >= '0' && currentCharacter <= '9') {
-        charType = 'd';
-      } else {
-        charType = currentCharacter;
-      }
-
-      if (charType == prevCharType) {
-        if (!addedStar) {
-          normalizedToken += "*";
-          addedStar = true;
-        }
-      } else {
-        addedStar = false;
-        normalizedToken += charType;
-      }
-      prevCharType = charType;
-    }
-    return normalizedToken;
+    return TokenOrthography.analyze(token).getSuperSenseShape();
   }
 
   @Override
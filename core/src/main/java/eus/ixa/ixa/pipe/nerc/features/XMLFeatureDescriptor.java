@@ -152,6 +152,7 @@ public final class XMLFeatureDescriptor {
     if (Flags.isPreviousMapFeature(params)) {
       Element previousMapFeature = new Element("custom");
       previousMapFeature.setAttribute("class", PreviousMapFeatureGenerator.class.getName());
+      setAdaptiveCapacity(previousMapFeature, params);
       generators.addContent(previousMapFeature);
       System.err.println("-> Previous Map Features added!");
     }
@@ -205,6 +206,10 @@ public final class XMLFeatureDescriptor {
       charngramFeature.setAttribute("class", CharacterNgramFeatureGenerator.class.getName());
       charngramFeature.setAttribute("minLength", Integer.toString(minCharNgram));
       charngramFeature.setAttribute("maxLength",Integer.toString(maxCharNgram));
+      String charNgramBuckets = Flags.getCharNgramFeaturesBuckets(params);
+      if (!charNgramBuckets.equals(Flags.DEFAULT_CHAR_NGRAM_BUCKETS)) {
+        charngramFeature.setAttribute("buckets", charNgramBuckets);
+      }
       generators.addContent(charngramFeature);
       System.err.println("-> CharNgram Class Features added!");
     }
@@ -233,10 +238,12 @@ public final class XMLFeatureDescriptor {
       //previous 2 maps features
       Element prev2MapFeature = new Element("custom");
       prev2MapFeature.setAttribute("class", Prev2MapFeatureGenerator.class.getName());
+      setAdaptiveCapacity(prev2MapFeature, params);
       generators.addContent(prev2MapFeature);
       //previous map and token feature (in window)
       Element prevMapTokenFeature = new Element("custom");
       prevMapTokenFeature.setAttribute("class", PreviousMapTokenFeatureGenerator.class.getName());
+      setAdaptiveCapacity(prevMapTokenFeature, params);
       Element prevMapTokenWindow = new Element("window");
       prevMapTokenWindow.setAttribute("prevLength", Integer.toString(leftWindow));
       prevMapTokenWindow.setAttribute("nextLength", Integer.toString(rightWindow));
@@ -408,6 +415,19 @@ public final class XMLFeatureDescriptor {
     }
   }
 
+  /**
+   * Bound the adaptive data of a previous map generator if the
+   * AdaptiveDataCapacity parameter is set.
+   * @param generator the element of the generator
+   * @param params the training parameters
+   */
+  private static void setAdaptiveCapacity(Element generator, TrainingParameters params) {
+    String adaptiveCapacity = Flags.getAdaptiveDataCapacity(params);
+    if (!adaptiveCapacity.equals(Flags.DEFAULT_ADAPTIVE_CAPACITY)) {
+      generator.setAttribute("capacity", adaptiveCapacity);
+    }
+  }
+
   /**
    * Get the range of the character ngram of current token.
    * @param params the training parameters
@@ -18,6 +18,8 @@ package eus.ixa.ixa.pipe.nerc.lexer;
 
 import java.io.BufferedReader;
 import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.NoSuchElementException;
@@ -56,6 +58,26 @@ public class NumericNameLexer {
   public NumericNameLexer(final BufferedReader breader, final NameFactory nameFactory) {
     jlexer = new NumericLexer(breader, nameFactory);
   }
+
+  /**
+   * Construct a new NumericNameLexer with no input; the input is given with
+   * {@link #reset(Reader)}.
+   * @param nameFactory The NameFactory that will be invoked to convert
+   *        each string extracted by the @link NumericLexer into a @Name object
+   */
+  public NumericNameLexer(final NameFactory nameFactory) {
+    jlexer = new NumericLexer(new StringReader(""), nameFactory);
+  }
+
+  /**
+   * Start lexing a new input, reusing the buffers of the lexer. The offsets
+   * of the names found are relative to the start of the new input.
+   * @param reader the new input
+   */
+  public void reset(final Reader reader) {
+    jlexer.yyreset(reader);
+    nextToken = null;
+  }
   
   /**
    * Returns found expressions as a List of names.
@@ -0,0 +1,167 @@
+/*
+ * Copyright 2015 Rodrigo Agerri
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+
+package eus.ixa.ixa.pipe.nerc.model;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Queue;
+
+import opennlp.tools.ml.model.SequenceClassificationModel;
+import opennlp.tools.util.BeamSearchContextGenerator;
+import opennlp.tools.util.Sequence;
+import opennlp.tools.util.SequenceValidator;
+import eus.ixa.ixa.pipe.nerc.features.FeatureHashes;
+import eus.ixa.ixa.pipe.nerc.features.FusedNameContextGenerator;
+
+/**
+ * The beam search of the {@code BeamSearch} of OpenNLP over a
+ * {@link HashedMaxentModel}: with a {@link FusedNameContextGenerator}, the
+ * contexts are created as the hashes of their features and evaluated without
+ * creating their strings, see {@link FeatureHashes}; with any other context
+ * generator, the contexts are created and evaluated as strings. The
+ * sequences found are those of {@code BeamSearch}.
+ */
+public final class HashedBeamSearch implements
+    SequenceClassificationModel<String> {
+
+  private static final Object[] EMPTY_ADDITIONAL_CONTEXT = new Object[0];
+  /**
+   * The minimum score of a sequence, as in {@code BeamSearch}.
+   */
+  private static final double ZERO_LOG = -100000;
+
+  private final int size;
+  private final HashedMaxentModel model;
+
+  /**
+   * Construct the beam search.
+   *
+   * @param aSize
+   *          the size of the beam
+   * @param aModel
+   *          the model
+   */
+  public HashedBeamSearch(final int aSize, final HashedMaxentModel aModel) {
+    this.size = aSize;
+    this.model = aModel;
+  }
+
+  public Sequence bestSequence(final String[] sequence,
+      final Object[] additionalContext,
+      final BeamSearchContextGenerator<String> cg,
+      final SequenceValidator<String> validator) {
+    Sequence[] sequences = bestSequences(1, sequence, additionalContext, cg,
+        validator);
+    if (sequences.length > 0) {
+      return sequences[0];
+    }
+    return null;
+  }
+
+  public Sequence[] bestSequences(final int numSequences,
+      final String[] sequence, final Object[] additionalContext,
+      final BeamSearchContextGenerator<String> cg,
+      final SequenceValidator<String> validator) {
+    return bestSequences(numSequences, sequence, additionalContext, ZERO_LOG,
+        cg, validator);
+  }
+
+  public Sequence[] bestSequences(final int numSequences,
+      final String[] sequence, final Object[] additionalContext,
+      final double minSequenceScore,
+      final BeamSearchContextGenerator<String> cg,
+      final SequenceValidator<String> validator) {
+    Queue<Sequence> prev = new PriorityQueue<Sequence>(size);
+    Queue<Sequence> next = new PriorityQueue<Sequence>(size);
+    Queue<Sequence> tmp;
+    prev.add(new Sequence());
+    Object[] context = additionalContext == null ? EMPTY_ADDITIONAL_CONTEXT
+        : additionalContext;
+    FusedNameContextGenerator fusedGenerator = cg instanceof FusedNameContextGenerator ? (FusedNameContextGenerator) cg
+        : null;
+    FeatureHashes features = new FeatureHashes();
+    double[] probs = new double[model.getNumOutcomes()];
+    double[] sortedScores = new double[probs.length];
+    for (int i = 0; i < sequence.length; i++) {
+      int sz = Math.min(size, prev.size());
+      for (int sc = 0; prev.size() > 0 && sc < sz; sc++) {
+        Sequence top = prev.remove();
+        List<String> tmpOutcomes = top.getOutcomes();
+        String[] outcomes = tmpOutcomes.toArray(new String[tmpOutcomes.size()]);
+        double[] scores;
+        if (fusedGenerator != null) {
+          fusedGenerator.getContextHashes(features, i, sequence, outcomes,
+              context);
+          scores = model.eval(features, probs);
+        } else {
+          scores = model.eval(cg.getContext(i, sequence, outcomes, context),
+              probs);
+        }
+        System.arraycopy(scores, 0, sortedScores, 0, scores.length);
+        Arrays.sort(sortedScores);
+        double min = sortedScores[Math.max(0, scores.length - size)];
+        for (int p = 0; p < scores.length; p++) {
+          if (scores[p] < min) {
+            // only advance the first "size" outcomes
+            continue;
+          }
+          String out = model.getOutcome(p);
+          if (validator.validSequence(i, sequence, outcomes, out)) {
+            Sequence ns = new Sequence(top, out, scores[p]);
+            if (ns.getScore() > minSequenceScore) {
+              next.add(ns);
+            }
+          }
+        }
+        if (next.size() == 0) {
+          // if no advanced sequences, advance all valid
+          for (int p = 0; p < scores.length; p++) {
+            String out = model.getOutcome(p);
+            if (validator.validSequence(i, sequence, outcomes, out)) {
+              Sequence ns = new Sequence(top, out, scores[p]);
+              if (ns.getScore() > minSequenceScore) {
+                next.add(ns);
+              }
+            }
+          }
+        }
+      }
+      // make prev = next; and re-init next (we reuse existing prev set once
+      // we clear it)
+      prev.clear();
+      tmp = prev;
+      prev = next;
+      next = tmp;
+    }
+    int numSeq = Math.min(numSequences, prev.size());
+    Sequence[] topSequences = new Sequence[numSeq];
+    for (int seqIndex = 0; seqIndex < numSeq; seqIndex++) {
+      topSequences[seqIndex] = prev.remove();
+    }
+    return topSequences;
+  }
+
+  public String[] getOutcomes() {
+    String[] outcomes = new String[model.getNumOutcomes()];
+    for (int i = 0; i < outcomes.length; i++) {
+      outcomes[i] = model.getOutcome(i);
+    }
+    return outcomes;
+  }
+
+}
@@ -0,0 +1,308 @@
+/*
+ * Copyright 2015 Rodrigo Agerri
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+
+package eus.ixa.ixa.pipe.nerc.model;
+
+import java.text.DecimalFormat;
+import java.util.Arrays;
+import java.util.Map;
+
+import opennlp.tools.ml.model.AbstractModel;
+import opennlp.tools.ml.model.IndexHashTable;
+import opennlp.tools.ml.model.MaxentModel;
+import opennlp.tools.util.InvalidFormatException;
+import eus.ixa.ixa.pipe.nerc.features.FeatureHashes;
+
+/**
+ * A {@link MaxentModel} which also evaluates contexts given by the hashes of
+ * their features, see {@link FeatureHashes}, giving the same probabilities
+ * as the GIS, quasi-Newton or perceptron model of OpenNLP it comes from. The
+ * predicates are found in a {@link HashedPredicateTable}, and by their
+ * strings when their hashes collide.
+ *
+ * A feature which is not a predicate of the model is taken for a predicate
+ * with the same 64-bit hash; with the polynomial hash of the features, and
+ * millions of predicates, the chance of that is below one in 10^12 per
+ * feature.
+ */
+public abstract class HashedMaxentModel implements MaxentModel {
+
+  /**
+   * A GIS model, with its correction constant and parameter.
+   */
+  static final int GIS = 0;
+  /**
+   * A maxent model trained with the quasi-Newton method.
+   */
+  static final int QN = 1;
+  /**
+   * A perceptron model.
+   */
+  static final int PERCEPTRON = 2;
+
+  private final int modelType;
+  private final double correctionConstant;
+  private final double correctionParam;
+  private final String[] outcomeNames;
+
+  HashedMaxentModel(final int aModelType, final double aCorrectionConstant,
+      final double aCorrectionParam, final String[] someOutcomeNames) {
+    this.modelType = aModelType;
+    this.correctionConstant = aCorrectionConstant;
+    this.correctionParam = aCorrectionParam;
+    this.outcomeNames = someOutcomeNames;
+  }
+
+  /**
+   * Get the type of a model of OpenNLP.
+   *
+   * @param model
+   *          the model
+   * @return {@link #GIS}, {@link #QN} or {@link #PERCEPTRON}
+   * @throws InvalidFormatException
+   *           if the model is of another type
+   */
+  static int getModelType(final AbstractModel model)
+      throws InvalidFormatException {
+    if (model.getModelType() == AbstractModel.ModelType.Maxent) {
+      return GIS;
+    } else if (model.getModelType() == AbstractModel.ModelType.MaxentQn) {
+      return QN;
+    } else if (model.getModelType() == AbstractModel.ModelType.Perceptron) {
+      return PERCEPTRON;
+    }
+    throw new InvalidFormatException("Unsupported model type: "
+        + model.getModelType());
+  }
+
+  /**
+   * Get the predicates of a model of OpenNLP by index, from the predicate
+   * index of its data structures: an {@link IndexHashTable} in the models
+   * read by OpenNLP, a {@link Map} in some models built in memory.
+   *
+   * @param predicateIndex
+   *          the predicate index
+   * @param predicateCount
+   *          the number of predicates of the model
+   * @return the predicates
+   * @throws InvalidFormatException
+   *           if the predicate index is of another type
+   */
+  static String[] getPredicates(final Object predicateIndex,
+      final int predicateCount) throws InvalidFormatException {
+    String[] predicates = new String[predicateCount];
+    if (predicateIndex instanceof IndexHashTable) {
+      @SuppressWarnings("unchecked")
+      IndexHashTable<String> table = (IndexHashTable<String>) predicateIndex;
+      table.toArray(predicates);
+    } else if (predicateIndex instanceof Map) {
+      @SuppressWarnings("unchecked")
+      Map<String, Integer> map = (Map<String, Integer>) predicateIndex;
+      for (Map.Entry<String, Integer> entry : map.entrySet()) {
+        predicates[entry.getValue()] = entry.getKey();
+      }
+    } else {
+      throw new InvalidFormatException("Unsupported predicate index: "
+          + predicateIndex.getClass().getName());
+    }
+    return predicates;
+  }
+
+  /**
+   * Get the index of a predicate.
+   *
+   * @param predicate
+   *          the predicate
+   * @return the index, or a negative value if the model has no such predicate
+   */
+  abstract int getPredicate(CharSequence predicate);
+
+  /**
+   * Get the index of the predicate of a hash.
+   *
+   * @param hash
+   *          the hash
+   * @return the index, {@link HashedPredicateTable#MISSING} or
+   *         {@link HashedPredicateTable#COLLIDED}
+   */
+  abstract int getHashedPredicate(long hash);
+
+  /**
+   * Add the parameters of a predicate to the scores of the outcomes.
+   *
+   * @param predicate
+   *          the index of the predicate
+   * @param value
+   *          the value of the predicate in the context
+   * @param probs
+   *          the scores of the outcomes
+   * @param numFeats
+   *          the number of parameters added to each outcome
+   */
+  abstract void addParameters(int predicate, double value, double[] probs,
+      int[] numFeats);
+
+  public final double[] eval(final String[] context) {
+    return eval(context, null, new double[outcomeNames.length]);
+  }
+
+  public final double[] eval(final String[] context, final double[] probs) {
+    return eval(context, null, probs);
+  }
+
+  public final double[] eval(final String[] context, final float[] values) {
+    return eval(context, values, new double[outcomeNames.length]);
+  }
+
+  private double[] eval(final String[] context, final float[] values,
+      final double[] probs) {
+    int[] numFeats = new int[outcomeNames.length];
+    prior(probs);
+    for (int ci = 0; ci < context.length; ci++) {
+      int predicate = getPredicate(context[ci]);
+      if (predicate >= 0) {
+        addParameters(predicate, values == null ? 1 : values[ci], probs,
+            numFeats);
+      }
+    }
+    normalize(probs, numFeats);
+    return probs;
+  }
+
+  /**
+   * Evaluate a context given by the hashes of its features.
+   *
+   * @param context
+   *          the features of the context
+   * @param probs
+   *          the array to write the probabilities of the outcomes to
+   * @return the probabilities of the outcomes
+   */
+  public final double[] eval(final FeatureHashes context, final double[] probs) {
+    int[] numFeats = new int[outcomeNames.length];
+    prior(probs);
+    for (int ci = 0; ci < context.size(); ci++) {
+      int predicate = getHashedPredicate(context.getHash(ci));
+      if (predicate == HashedPredicateTable.COLLIDED) {
+        predicate = getPredicate(context.getFeature(ci));
+      }
+      if (predicate >= 0) {
+        addParameters(predicate, 1, probs, numFeats);
+      }
+    }
+    normalize(probs, numFeats);
+    return probs;
+  }
+
+  private void prior(final double[] probs) {
+    if (modelType == GIS) {
+      // the uniform prior of the GIS model
+      Arrays.fill(probs, Math.log(1.0 / outcomeNames.length));
+    } else {
+      Arrays.fill(probs, 0);
+    }
+  }
+
+  private void normalize(final double[] probs, final int[] numFeats) {
+    int numOutcomes = outcomeNames.length;
+    if (modelType == GIS) {
+      double constantInverse = 1.0 / correctionConstant;
+      double normal = 0.0;
+      for (int oid = 0; oid < numOutcomes; oid++) {
+        if (correctionParam != 0) {
+          probs[oid] = Math.exp(probs[oid] * constantInverse
+              + ((1.0 - (numFeats[oid] / correctionConstant)) * correctionParam));
+        } else {
+          probs[oid] = Math.exp(probs[oid] * constantInverse);
+        }
+        normal += probs[oid];
+      }
+      for (int oid = 0; oid < numOutcomes; oid++) {
+        probs[oid] /= normal;
+      }
+    } else if (modelType == QN) {
+      double max = probs[0];
+      for (int oid = 1; oid < numOutcomes; oid++) {
+        max = Math.max(max, probs[oid]);
+      }
+      double sum = 0.0;
+      for (int oid = 0; oid < numOutcomes; oid++) {
+        sum += Math.exp(probs[oid] - max);
+      }
+      double logSumExp = max + Math.log(sum);
+      for (int oid = 0; oid < numOutcomes; oid++) {
+        probs[oid] = Math.exp(probs[oid] - logSumExp);
+      }
+    } else {
+      double maxPrior = 1;
+      for (int oid = 0; oid < numOutcomes; oid++) {
+        maxPrior = Math.max(maxPrior, Math.abs(probs[oid]));
+      }
+      double normal = 0.0;
+      for (int oid = 0; oid < numOutcomes; oid++) {
+        probs[oid] = Math.exp(probs[oid] / maxPrior);
+        normal += probs[oid];
+      }
+      for (int oid = 0; oid < numOutcomes; oid++) {
+        probs[oid] /= normal;
+      }
+    }
+  }
+
+  public final String getBestOutcome(final double[] outcomes) {
+    int best = 0;
+    for (int i = 1; i < outcomes.length; i++) {
+      if (outcomes[i] > outcomes[best]) {
+        best = i;
+      }
+    }
+    return outcomeNames[best];
+  }
+
+  public final String getAllOutcomes(final double[] outcomes) {
+    if (outcomes.length != outcomeNames.length) {
+      return "The double array sent as a parameter to "
+          + "HashedMaxentModel.getAllOutcomes() must not have been produced by this model.";
+    }
+    DecimalFormat df = new DecimalFormat("0.0000");
+    StringBuilder sb = new StringBuilder(outcomes.length * 2);
+    sb.append(outcomeNames[0]).append("[").append(df.format(outcomes[0]))
+        .append("]");
+    for (int i = 1; i < outcomes.length; i++) {
+      sb.append("  ").append(outcomeNames[i]).append("[")
+          .append(df.format(outcomes[i])).append("]");
+    }
+    return sb.toString();
+  }
+
+  public final String getOutcome(final int i) {
+    return outcomeNames[i];
+  }
+
+  public final int getIndex(final String outcome) {
+    for (int i = 0; i < outcomeNames.length; i++) {
+      if (outcomeNames[i].equals(outcome)) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  public final int getNumOutcomes() {
+    return outcomeNames.length;
+  }
+
+}
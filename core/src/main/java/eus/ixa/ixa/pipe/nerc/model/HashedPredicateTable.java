@@ -0,0 +1,148 @@
+/*
+ * Copyright 2015 Rodrigo Agerri
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+
+package eus.ixa.ixa.pipe.nerc.model;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+
+import eus.ixa.ixa.pipe.nerc.features.FeatureHashes;
+
+/**
+ * Open addressing table from the 64-bit hashes of the predicates of a model,
+ * see {@link FeatureHashes}, to their indexes. A hash shared by several
+ * predicates is marked as {@link #COLLIDED}, and those predicates are found
+ * by their strings instead.
+ *
+ * The layout, written by {@link #write(DataOutputStream)}, is the number of
+ * slots, then the long array of the hashes of the slots and the int array of
+ * their predicates: an index plus one, -1 if the hash is shared by several
+ * predicates and 0 if the slot is empty.
+ */
+final class HashedPredicateTable {
+
+  /**
+   * The predicate of a hash not in the table.
+   */
+  static final int MISSING = -1;
+  /**
+   * The predicate of a hash shared by several predicates.
+   */
+  static final int COLLIDED = -2;
+  /**
+   * The slot of a hash shared by several predicates.
+   */
+  private static final int COLLIDED_SLOT = -1;
+
+  private final int mask;
+  private final LongBuffer hashes;
+  private final IntBuffer predicates;
+
+  private HashedPredicateTable(final LongBuffer someHashes,
+      final IntBuffer somePredicates) {
+    this.mask = somePredicates.limit() - 1;
+    this.hashes = someHashes;
+    this.predicates = somePredicates;
+  }
+
+  /**
+   * Read a table from a mapped model file.
+   *
+   * @param buffer
+   *          the model file, positioned at the table and left after it
+   */
+  HashedPredicateTable(final ByteBuffer buffer) {
+    int slotCount = buffer.getInt();
+    MappedModel.align(buffer);
+    this.mask = slotCount - 1;
+    this.hashes = MappedModel.slice(buffer, slotCount * 8).asLongBuffer();
+    this.predicates = MappedModel.slice(buffer, slotCount * 4).asIntBuffer();
+    MappedModel.align(buffer);
+  }
+
+  /**
+   * Build the table of the predicates of a model.
+   *
+   * @param predicateHashes
+   *          the hash of every predicate, by index
+   * @return the table
+   */
+  static HashedPredicateTable build(final long[] predicateHashes) {
+    int slotCount = 2;
+    while (slotCount * 3 < predicateHashes.length * 4) {
+      slotCount *= 2;
+    }
+    long[] hashes = new long[slotCount];
+    int[] predicates = new int[slotCount];
+    for (int predicate = 0; predicate < predicateHashes.length; predicate++) {
+      long hash = predicateHashes[predicate];
+      int slot = (int) FeatureHashes.mix(hash) & (slotCount - 1);
+      while (predicates[slot] != 0 && hashes[slot] != hash) {
+        slot = (slot + 1) & (slotCount - 1);
+      }
+      if (predicates[slot] != 0) {
+        predicates[slot] = COLLIDED_SLOT;
+      } else {
+        hashes[slot] = hash;
+        predicates[slot] = predicate + 1;
+      }
+    }
+    return new HashedPredicateTable(LongBuffer.wrap(hashes),
+        IntBuffer.wrap(predicates));
+  }
+
+  /**
+   * Get the predicate of a hash.
+   *
+   * @param hash
+   *          the hash
+   * @return the index of the predicate, {@link #MISSING} or {@link #COLLIDED}
+   */
+  int get(final long hash) {
+    int slot = (int) FeatureHashes.mix(hash) & mask;
+    int predicate;
+    while ((predicate = predicates.get(slot)) != 0) {
+      if (hashes.get(slot) == hash) {
+        return predicate == COLLIDED_SLOT ? COLLIDED : predicate - 1;
+      }
+      slot = (slot + 1) & mask;
+    }
+    return MISSING;
+  }
+
+  /**
+   * Write the table to a model file.
+   *
+   * @param out
+   *          the model file
+   * @throws IOException
+   *           if the table can not be written
+   */
+  void write(final DataOutputStream out) throws IOException {
+    out.writeInt(predicates.limit());
+    MappedModel.align(out);
+    for (int slot = 0; slot < hashes.limit(); slot++) {
+      out.writeLong(hashes.get(slot));
+    }
+    for (int slot = 0; slot < predicates.limit(); slot++) {
+      out.writeInt(predicates.get(slot));
+    }
+    MappedModel.align(out);
+  }
+}
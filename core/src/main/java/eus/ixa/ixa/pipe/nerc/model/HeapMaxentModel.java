@@ -0,0 +1,118 @@
+/*
+ * Copyright 2015 Rodrigo Agerri
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+
+package eus.ixa.ixa.pipe.nerc.model;
+
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import opennlp.tools.ml.model.AbstractModel;
+import opennlp.tools.ml.model.Context;
+import opennlp.tools.ml.model.IndexHashTable;
+import opennlp.tools.ml.model.MaxentModel;
+import opennlp.tools.util.InvalidFormatException;
+import eus.ixa.ixa.pipe.nerc.features.FeatureHashes;
+
+/**
+ * A {@link HashedMaxentModel} over the parameters and predicates of a GIS,
+ * quasi-Newton or perceptron model of OpenNLP loaded in the heap. The
+ * {@link HashedPredicateTable} of the predicates is built when the model is
+ * first asked for, and shared by every name finder using the model.
+ */
+public final class HeapMaxentModel extends HashedMaxentModel {
+
+  /**
+   * The hashed models by model of OpenNLP, dropped with the model; a hashed
+   * model does not refer to its model, only to its parameters and predicates.
+   */
+  private static final Map<MaxentModel, HeapMaxentModel> models = new WeakHashMap<MaxentModel, HeapMaxentModel>();
+
+  private final Context[] params;
+  private final IndexHashTable<String> predicateIndex;
+  private final HashedPredicateTable hashedPredicates;
+
+  @SuppressWarnings("unchecked")
+  private HeapMaxentModel(final int aModelType, final Object[] data)
+      throws InvalidFormatException {
+    super(aModelType, ((Number) data[3]).doubleValue(), ((Number) data[4])
+        .doubleValue(), (String[]) data[2]);
+    this.params = (Context[]) data[0];
+    String[] predicates = getPredicates(data[1], params.length);
+    if (data[1] instanceof IndexHashTable) {
+      this.predicateIndex = (IndexHashTable<String>) data[1];
+    } else {
+      this.predicateIndex = new IndexHashTable<String>(predicates, 0.7);
+    }
+    long[] hashes = new long[predicates.length];
+    for (int i = 0; i < predicates.length; i++) {
+      hashes[i] = FeatureHashes.hash(predicates[i]);
+    }
+    this.hashedPredicates = HashedPredicateTable.build(hashes);
+  }
+
+  /**
+   * Get the hashed model of a model of OpenNLP.
+   *
+   * @param model
+   *          the model
+   * @return the hashed model, or null if the model is not a GIS,
+   *         quasi-Newton or perceptron model of OpenNLP
+   */
+  public static HeapMaxentModel get(final MaxentModel model) {
+    if (!(model instanceof AbstractModel)) {
+      return null;
+    }
+    HeapMaxentModel hashedModel;
+    synchronized (models) {
+      hashedModel = models.get(model);
+    }
+    if (hashedModel == null) {
+      AbstractModel abstractModel = (AbstractModel) model;
+      try {
+        hashedModel = new HeapMaxentModel(getModelType(abstractModel),
+            abstractModel.getDataStructures());
+      } catch (InvalidFormatException e) {
+        return null;
+      }
+      synchronized (models) {
+        models.put(model, hashedModel);
+      }
+    }
+    return hashedModel;
+  }
+
+  @Override
+  int getPredicate(final CharSequence predicate) {
+    return predicateIndex.get(predicate.toString());
+  }
+
+  @Override
+  int getHashedPredicate(final long hash) {
+    return hashedPredicates.get(hash);
+  }
+
+  @Override
+  void addParameters(final int predicate, final double value,
+      final double[] probs, final int[] numFeats) {
+    int[] outcomes = params[predicate].getOutcomes();
+    double[] parameters = params[predicate].getParameters();
+    for (int i = 0; i < outcomes.length; i++) {
+      numFeats[outcomes[i]]++;
+      probs[outcomes[i]] += parameters[i] * value;
+    }
+  }
+
+}
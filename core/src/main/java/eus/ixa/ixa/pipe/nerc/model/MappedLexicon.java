@@ -0,0 +1,117 @@
+/*
+ * Copyright 2015 Rodrigo Agerri
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+
+package eus.ixa.ixa.pipe.nerc.model;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import eus.ixa.ixa.pipe.nerc.dict.Lexicon;
+
+/**
+ * A cluster lexicon read from a mapped model file: the distinct cluster
+ * classes, decoded when the file is opened, and a {@link MappedStringTable}
+ * from the words to their cluster ids.
+ */
+public final class MappedLexicon implements Lexicon {
+
+  private final String[] clusters;
+  private final MappedStringTable words;
+
+  /**
+   * Read a lexicon from a mapped model file.
+   *
+   * @param buffer
+   *          the model file, positioned at the lexicon and left after it
+   */
+  MappedLexicon(final ByteBuffer buffer) {
+    clusters = new String[buffer.getInt()];
+    for (int i = 0; i < clusters.length; i++) {
+      clusters[i] = MappedModel.readString(buffer);
+    }
+    MappedModel.align(buffer);
+    words = new MappedStringTable(buffer);
+  }
+
+  public String lookup(final String word) {
+    int clusterId = words.get(word);
+    return clusterId < 0 ? null : clusters[clusterId];
+  }
+
+  public int getClusterId(final String word) {
+    return words.get(word);
+  }
+
+  public String getCluster(final int clusterId) {
+    return clusters[clusterId];
+  }
+
+  public int getClusterCount() {
+    return clusters.length;
+  }
+
+  public int size() {
+    return words.size();
+  }
+
+  public String getWord(final int entry) {
+    return words.getKey(entry);
+  }
+
+  public String getEntryCluster(final int entry) {
+    return clusters[words.getValue(entry)];
+  }
+
+  public Map<String, String> toMap() {
+    Map<String, String> map = new HashMap<String, String>(size() * 2);
+    for (int entry = 0; entry < size(); entry++) {
+      map.put(getWord(entry), getEntryCluster(entry));
+    }
+    return map;
+  }
+
+  /**
+   * Write a lexicon to a model file.
+   *
+   * @param out
+   *          the model file
+   * @param lexicon
+   *          the lexicon
+   * @throws IOException
+   *           if the lexicon can not be written
+   */
+  static void write(final DataOutputStream out, final Lexicon lexicon)
+      throws IOException {
+    out.writeInt(lexicon.getClusterCount());
+    for (int i = 0; i < lexicon.getClusterCount(); i++) {
+      MappedModel.writeString(out, lexicon.getCluster(i));
+    }
+    MappedModel.align(out);
+    List<String> keys = new ArrayList<String>(lexicon.size());
+    int[] clusterIds = new int[lexicon.size()];
+    for (int entry = 0; entry < lexicon.size(); entry++) {
+      String word = lexicon.getWord(entry);
+      keys.add(word);
+      clusterIds[entry] = lexicon.getClusterId(word);
+    }
+    MappedStringTable.write(out, keys, clusterIds);
+  }
+}
@@ -0,0 +1,236 @@
+/*
+ * Copyright 2015 Rodrigo Agerri
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+
+package eus.ixa.ixa.pipe.nerc.model;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import opennlp.tools.ml.model.AbstractModel;
+import opennlp.tools.ml.model.Context;
+import opennlp.tools.ml.model.MaxentModel;
+import opennlp.tools.util.InvalidFormatException;
+import eus.ixa.ixa.pipe.nerc.features.FeatureHashes;
+
+/**
+ * A {@link MaxentModel} read from a mapped model file, giving the same
+ * probabilities as the GIS, quasi-Newton or perceptron model of OpenNLP it
+ * was converted from. The predicates are found in a
+ * {@link MappedStringTable} and, by their hashes, in a
+ * {@link HashedPredicateTable} written with the model; the parameters of
+ * every predicate are consecutive in two flat arrays, the outcome and the
+ * weight of each parameter, so no object is created per predicate when the
+ * file is opened. The outcomes are kept as chars and, when a model has no
+ * more than 65536 different weights, as perceptron models do, the weights
+ * are kept as chars indexing a pool of the different weights.
+ */
+public final class MappedMaxentModel extends HashedMaxentModel {
+
+  /**
+   * The largest number of different weights kept in a pool.
+   */
+  private static final int MAX_POOLED_WEIGHTS = Character.MAX_VALUE + 1;
+
+  private final MappedStringTable predicates;
+  private final HashedPredicateTable hashedPredicates;
+  /**
+   * The first parameter of each predicate; the parameters of a predicate end
+   * where those of the next predicate start.
+   */
+  private final IntBuffer paramStarts;
+  private final CharBuffer paramOutcomes;
+  /**
+   * The weight of each parameter, or the pool of the different weights if
+   * {@link #paramWeightIndexes} is not null.
+   */
+  private final DoubleBuffer paramWeights;
+  private final CharBuffer paramWeightIndexes;
+
+  /**
+   * Read a model from a mapped model file.
+   *
+   * @param buffer
+   *          the model file, positioned at the model and left after it
+   */
+  MappedMaxentModel(final ByteBuffer buffer) {
+    super(buffer.getInt(), buffer.getDouble(), buffer.getDouble(),
+        readOutcomes(buffer));
+    int predicateCount = buffer.getInt();
+    int paramCount = buffer.getInt();
+    int weightCount = buffer.getInt();
+    MappedModel.align(buffer);
+    this.paramStarts = MappedModel.slice(buffer, (predicateCount + 1) * 4)
+        .asIntBuffer();
+    this.paramOutcomes = MappedModel.slice(buffer, paramCount * 2)
+        .asCharBuffer();
+    MappedModel.align(buffer);
+    if (weightCount > 0) {
+      this.paramWeights = MappedModel.slice(buffer, weightCount * 8)
+          .asDoubleBuffer();
+      this.paramWeightIndexes = MappedModel.slice(buffer, paramCount * 2)
+          .asCharBuffer();
+    } else {
+      this.paramWeights = MappedModel.slice(buffer, paramCount * 8)
+          .asDoubleBuffer();
+      this.paramWeightIndexes = null;
+    }
+    MappedModel.align(buffer);
+    this.predicates = new MappedStringTable(buffer);
+    this.hashedPredicates = new HashedPredicateTable(buffer);
+  }
+
+  private static String[] readOutcomes(final ByteBuffer buffer) {
+    String[] outcomeNames = new String[buffer.getInt()];
+    for (int i = 0; i < outcomeNames.length; i++) {
+      outcomeNames[i] = MappedModel.readString(buffer);
+    }
+    return outcomeNames;
+  }
+
+  @Override
+  int getPredicate(final CharSequence predicate) {
+    return predicates.get(predicate);
+  }
+
+  @Override
+  int getHashedPredicate(final long hash) {
+    return hashedPredicates.get(hash);
+  }
+
+  @Override
+  void addParameters(final int predicate, final double value,
+      final double[] probs, final int[] numFeats) {
+    int end = paramStarts.get(predicate + 1);
+    for (int param = paramStarts.get(predicate); param < end; param++) {
+      int outcome = paramOutcomes.get(param);
+      double weight = paramWeightIndexes == null ? paramWeights.get(param)
+          : paramWeights.get(paramWeightIndexes.get(param));
+      numFeats[outcome]++;
+      probs[outcome] += weight * value;
+    }
+  }
+
+  /**
+   * Write the model of OpenNLP to a model file.
+   *
+   * @param out
+   *          the model file
+   * @param model
+   *          the GIS, quasi-Newton or perceptron model
+   * @throws IOException
+   *           if the model can not be written
+   */
+  static void write(final DataOutputStream out, final MaxentModel model)
+      throws IOException {
+    if (!(model instanceof AbstractModel)) {
+      throw new InvalidFormatException("Unsupported model: "
+          + model.getClass().getName());
+    }
+    AbstractModel abstractModel = (AbstractModel) model;
+    int type = getModelType(abstractModel);
+    Object[] data = abstractModel.getDataStructures();
+    Context[] params = (Context[]) data[0];
+    String[] predicates = getPredicates(data[1], params.length);
+    String[] outcomes = (String[]) data[2];
+    if (outcomes.length > Character.MAX_VALUE + 1) {
+      throw new InvalidFormatException("Too many outcomes: " + outcomes.length);
+    }
+    out.writeInt(type);
+    out.writeDouble(((Number) data[3]).doubleValue());
+    out.writeDouble(((Number) data[4]).doubleValue());
+    out.writeInt(outcomes.length);
+    for (String outcome : outcomes) {
+      MappedModel.writeString(out, outcome);
+    }
+    int paramCount = 0;
+    for (Context context : params) {
+      paramCount += context.getOutcomes().length;
+    }
+    Map<Double, Integer> weightPool = getWeightPool(params);
+    out.writeInt(params.length);
+    out.writeInt(paramCount);
+    out.writeInt(weightPool == null ? 0 : weightPool.size());
+    MappedModel.align(out);
+    int start = 0;
+    for (Context context : params) {
+      out.writeInt(start);
+      start += context.getOutcomes().length;
+    }
+    out.writeInt(start);
+    for (Context context : params) {
+      for (int outcome : context.getOutcomes()) {
+        out.writeChar(outcome);
+      }
+    }
+    MappedModel.align(out);
+    if (weightPool != null) {
+      for (Double weight : weightPool.keySet()) {
+        out.writeDouble(weight);
+      }
+      for (Context context : params) {
+        for (double weight : context.getParameters()) {
+          out.writeChar(weightPool.get(weight));
+        }
+      }
+    } else {
+      for (Context context : params) {
+        for (double weight : context.getParameters()) {
+          out.writeDouble(weight);
+        }
+      }
+    }
+    MappedModel.align(out);
+    int[] indexes = new int[predicates.length];
+    long[] hashes = new long[predicates.length];
+    for (int i = 0; i < predicates.length; i++) {
+      indexes[i] = i;
+      hashes[i] = FeatureHashes.hash(predicates[i]);
+    }
+    MappedStringTable.write(out, Arrays.asList(predicates), indexes);
+    HashedPredicateTable.build(hashes).write(out);
+  }
+
+  /**
+   * Get the different weights of the parameters of a model, each with its
+   * index in the pool; the weights are told apart by their bits, so the pool
+   * gives back the same weights.
+   *
+   * @param params
+   *          the parameters of the model
+   * @return the pool, or null if the model has too many different weights
+   */
+  private static Map<Double, Integer> getWeightPool(final Context[] params) {
+    Map<Double, Integer> weightPool = new LinkedHashMap<Double, Integer>();
+    for (Context context : params) {
+      for (double weight : context.getParameters()) {
+        if (!weightPool.containsKey(weight)) {
+          if (weightPool.size() == MAX_POOLED_WEIGHTS) {
+            return null;
+          }
+          weightPool.put(weight, weightPool.size());
+        }
+      }
+    }
+    return weightPool;
+  }
+}
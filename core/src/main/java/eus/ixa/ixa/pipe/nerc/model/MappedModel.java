@@ -0,0 +1,356 @@
+/*
+ * Copyright 2015 Rodrigo Agerri
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+
+package eus.ixa.ixa.pipe.nerc.model;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.HashMap;
+import java.util.Map;
+
+import opennlp.tools.ml.BeamSearch;
+import opennlp.tools.ml.model.SequenceClassificationModel;
+import opennlp.tools.namefind.NameContextGenerator;
+import opennlp.tools.util.InvalidFormatException;
+import opennlp.tools.util.SequenceCodec;
+import opennlp.tools.util.featuregen.FeatureGeneratorResourceProvider;
+import opennlp.tools.util.model.ArtifactProvider;
+import opennlp.tools.util.model.ArtifactSerializer;
+import eus.ixa.ixa.pipe.nerc.dict.BrownCluster;
+import eus.ixa.ixa.pipe.nerc.dict.ClarkCluster;
+import eus.ixa.ixa.pipe.nerc.dict.Word2VecCluster;
+import eus.ixa.ixa.pipe.nerc.features.FeatureGeneratorCompiler;
+import eus.ixa.ixa.pipe.nerc.features.FusedNameContextGenerator;
+
+/**
+ * A name finder model read from a flat binary file, converted from a
+ * {@code TokenNameFinderModel} by {@link MappedModelWriter}. The file is
+ * mapped in memory and read in place: opening a model only reads its header,
+ * the outcomes and the cluster classes, so it takes milliseconds, and the
+ * processes using the same model file share its pages through the page cache
+ * of the operating system instead of keeping a copy each in their heaps.
+ *
+ * The file holds, in this order, the header (language, sequence codec, beam
+ * size and feature generator descriptor), the resources of the feature
+ * generators and the maxent model (see {@link MappedMaxentModel}). The
+ * Brown, Clark and Word2Vec lexicons are stored as {@link MappedLexicon}s;
+ * the other resources keep the format of their serializer and are created
+ * from it the first time they are asked for.
+ */
+public final class MappedModel implements ArtifactProvider {
+
+  /**
+   * The extension of the mapped model files.
+   */
+  public static final String EXTENSION = ".nbin";
+
+  static final int MAGIC = 0x49584e46;
+  static final int VERSION = 3;
+  static final byte BROWN_LEXICON = 1;
+  static final byte CLARK_LEXICON = 2;
+  static final byte WORD2VEC_LEXICON = 3;
+  static final byte SERIALIZED = 4;
+
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+  private static final int ALIGNMENT = 8;
+
+  private final String language;
+  private final String sequenceCodecName;
+  private final int beamSize;
+  private final byte[] descriptor;
+  /**
+   * The resources created, by name.
+   */
+  private final Map<String, Object> artifacts = new HashMap<String, Object>();
+  /**
+   * The serialized resources not created yet, by name.
+   */
+  private final Map<String, SerializedArtifact> serializedArtifacts = new HashMap<String, SerializedArtifact>();
+  private final MappedMaxentModel maxentModel;
+  private final FeatureGeneratorCompiler compiler;
+
+  private MappedModel(final ByteBuffer buffer) throws IOException {
+    if (buffer.getInt() != MAGIC) {
+      throw new InvalidFormatException("Not a mapped model file!");
+    }
+    int version = buffer.getInt();
+    if (version != VERSION) {
+      throw new InvalidFormatException("Unsupported mapped model version: "
+          + version);
+    }
+    this.language = readString(buffer);
+    this.sequenceCodecName = readString(buffer);
+    this.beamSize = buffer.getInt();
+    this.descriptor = new byte[buffer.getInt()];
+    buffer.get(descriptor);
+    int resourceCount = buffer.getInt();
+    for (int i = 0; i < resourceCount; i++) {
+      String name = readString(buffer);
+      byte kind = buffer.get();
+      align(buffer);
+      if (kind == BROWN_LEXICON) {
+        artifacts.put(name, new BrownCluster(new MappedLexicon(buffer)));
+      } else if (kind == CLARK_LEXICON) {
+        artifacts.put(name, new ClarkCluster(new MappedLexicon(buffer)));
+      } else if (kind == WORD2VEC_LEXICON) {
+        artifacts.put(name, new Word2VecCluster(new MappedLexicon(buffer)));
+      } else if (kind == SERIALIZED) {
+        String serializerName = readString(buffer);
+        ByteBuffer bytes = slice(buffer, buffer.getInt());
+        serializedArtifacts.put(name, new SerializedArtifact(serializerName,
+            bytes));
+        align(buffer);
+      } else {
+        throw new InvalidFormatException("Unknown resource kind " + kind
+            + " of " + name);
+      }
+    }
+    this.maxentModel = new MappedMaxentModel(buffer);
+    this.compiler = FeatureGeneratorCompiler.parse(descriptor);
+  }
+
+  /**
+   * Open a mapped model file.
+   *
+   * @param modelFile
+   *          the file
+   * @return the model
+   * @throws IOException
+   *           if the file can not be read or it is not a mapped model
+   */
+  public static MappedModel open(final File modelFile) throws IOException {
+    RandomAccessFile file = new RandomAccessFile(modelFile, "r");
+    try {
+      FileChannel channel = file.getChannel();
+      if (channel.size() > Integer.MAX_VALUE) {
+        throw new InvalidFormatException("Mapped model file too large: "
+            + modelFile);
+      }
+      // the mapping stays valid once the file is closed
+      MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0,
+          channel.size());
+      return new MappedModel(buffer);
+    } catch (RuntimeException e) {
+      throw new InvalidFormatException("Corrupt mapped model file: "
+          + modelFile, e);
+    } finally {
+      file.close();
+    }
+  }
+
+  /**
+   * Whether a model file is a mapped model file, by its extension.
+   *
+   * @param model
+   *          the path of the model file
+   * @return true if it is a mapped model file
+   */
+  public static boolean isMappedModel(final String model) {
+    return model.endsWith(EXTENSION);
+  }
+
+  public String getLanguage() {
+    return language;
+  }
+
+  /**
+   * Get the beam size of the decoding.
+   *
+   * @return the beam size
+   */
+  public int getBeamSize() {
+    return beamSize;
+  }
+
+  /**
+   * Get the maxent model.
+   *
+   * @return the maxent model
+   */
+  public MappedMaxentModel getMaxentModel() {
+    return maxentModel;
+  }
+
+  /**
+   * Create the beam search decoding with the maxent model, as
+   * {@code TokenNameFinderModel#getNameFinderSequenceModel()} does.
+   *
+   * @return the sequence model
+   */
+  public SequenceClassificationModel<String> createSequenceModel() {
+    return new BeamSearch<String>(beamSize, maxentModel);
+  }
+
+  /**
+   * Create the beam search decoding with the maxent model which evaluates
+   * the contexts of the compiled feature generators by the hashes of their
+   * features, see {@link HashedBeamSearch}.
+   *
+   * @return the sequence model
+   */
+  public SequenceClassificationModel<String> createHashedSequenceModel() {
+    return new HashedBeamSearch(beamSize, maxentModel);
+  }
+
+  /**
+   * Create the sequence codec the model was trained with.
+   *
+   * @return the sequence codec
+   */
+  @SuppressWarnings("unchecked")
+  public SequenceCodec<String> createSequenceCodec() {
+    try {
+      return (SequenceCodec<String>) Class.forName(sequenceCodecName)
+          .getDeclaredConstructor().newInstance();
+    } catch (ReflectiveOperationException e) {
+      throw new IllegalStateException("Can not create sequence codec "
+          + sequenceCodecName, e);
+    } catch (ClassCastException e) {
+      throw new IllegalStateException("Not a sequence codec: "
+          + sequenceCodecName, e);
+    }
+  }
+
+  /**
+   * Create a context generator with the compiled feature generator
+   * descriptor of the model, see {@link FeatureGeneratorCompiler}.
+   *
+   * @return the context generator
+   */
+  public NameContextGenerator createContextGenerator() {
+    try {
+      return new FusedNameContextGenerator(
+          compiler.createGenerator(new FeatureGeneratorResourceProvider() {
+            public Object getResource(final String key) {
+              return getArtifact(key);
+            }
+          }));
+    } catch (InvalidFormatException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  /**
+   * Get a resource of the feature generators, creating it from its
+   * serialized form the first time.
+   *
+   * @param key
+   *          the name of the resource
+   * @return the resource, null if the model has no resource of that name
+   */
+  @SuppressWarnings("unchecked")
+  public synchronized <T> T getArtifact(final String key) {
+    Object artifact = artifacts.get(key);
+    if (artifact == null) {
+      SerializedArtifact serialized = serializedArtifacts.remove(key);
+      if (serialized != null) {
+        artifact = serialized.create();
+        artifacts.put(key, artifact);
+      }
+    }
+    return (T) artifact;
+  }
+
+  public String getManifestProperty(final String key) {
+    return null;
+  }
+
+  public boolean isLoadedFromSerialized() {
+    return true;
+  }
+
+  /**
+   * A resource in the format of its serializer.
+   */
+  private static final class SerializedArtifact {
+    private final String serializerName;
+    private final ByteBuffer bytes;
+
+    private SerializedArtifact(final String aSerializerName,
+        final ByteBuffer someBytes) {
+      this.serializerName = aSerializerName;
+      this.bytes = someBytes;
+    }
+
+    private Object create() {
+      byte[] content = new byte[bytes.remaining()];
+      bytes.duplicate().get(content);
+      try {
+        ArtifactSerializer<?> serializer = (ArtifactSerializer<?>) Class
+            .forName(serializerName).getDeclaredConstructor().newInstance();
+        return serializer.create(new ByteArrayInputStream(content));
+      } catch (IOException e) {
+        throw new IllegalStateException("Can not create resource with "
+            + serializerName, e);
+      } catch (ReflectiveOperationException e) {
+        throw new IllegalStateException("Can not create serializer "
+            + serializerName, e);
+      } catch (ClassCastException e) {
+        throw new IllegalStateException("Not an artifact serializer: "
+            + serializerName, e);
+      }
+    }
+  }
+
+  /**
+   * Take the next bytes of a model file as a buffer of their own.
+   */
+  static ByteBuffer slice(final ByteBuffer buffer, final int length) {
+    ByteBuffer slice = buffer.slice();
+    slice.limit(length);
+    buffer.position(buffer.position() + length);
+    return slice;
+  }
+
+  /**
+   * Skip the padding after a section of a model file.
+   */
+  static void align(final ByteBuffer buffer) {
+    int padding = (ALIGNMENT - buffer.position() % ALIGNMENT) % ALIGNMENT;
+    buffer.position(buffer.position() + padding);
+  }
+
+  /**
+   * Pad a section of a model file so that the next one is aligned for its
+   * int and double arrays.
+   */
+  static void align(final DataOutputStream out) throws IOException {
+    int padding = (ALIGNMENT - out.size() % ALIGNMENT) % ALIGNMENT;
+    for (int i = 0; i < padding; i++) {
+      out.writeByte(0);
+    }
+  }
+
+  static String readString(final ByteBuffer buffer) {
+    byte[] bytes = new byte[buffer.getInt()];
+    buffer.get(bytes);
+    return new String(bytes, UTF_8);
+  }
+
+  static void writeString(final DataOutputStream out, final String string)
+      throws IOException {
+    byte[] bytes = string.getBytes(UTF_8);
+    out.writeInt(bytes.length);
+    out.write(bytes);
+  }
+}
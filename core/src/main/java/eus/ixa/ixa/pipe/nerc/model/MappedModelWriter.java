@@ -0,0 +1,186 @@
+/*
+ * Copyright 2015 Rodrigo Agerri
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+
+package eus.ixa.ixa.pipe.nerc.model;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import opennlp.tools.ml.BeamSearch;
+import opennlp.tools.ml.model.MaxentModel;
+import opennlp.tools.namefind.TokenNameFinderModel;
+import opennlp.tools.util.InvalidFormatException;
+import opennlp.tools.util.model.ArtifactSerializer;
+import opennlp.tools.util.model.SerializableArtifact;
+import eus.ixa.ixa.pipe.nerc.dict.BrownCluster;
+import eus.ixa.ixa.pipe.nerc.dict.ClarkCluster;
+import eus.ixa.ixa.pipe.nerc.dict.Word2VecCluster;
+import eus.ixa.ixa.pipe.nerc.train.Flags;
+import eus.ixa.ixa.pipe.nerc.train.FusedTokenNameFinderFactory;
+
+/**
+ * Offline converter of a {@code TokenNameFinderModel} file into a mapped
+ * model file, see {@link MappedModel}. The features and probabilities of the
+ * converted model are those of the original model, so both find the same
+ * names.
+ *
+ * Only the models trained with a maxent trainer (GIS, quasi-Newton or
+ * perceptron) and with a feature generator descriptor can be converted.
+ */
+public final class MappedModelWriter {
+
+  /**
+   * The entries of the model file which are not resources of the feature
+   * generators.
+   */
+  private static final List<String> MODEL_ENTRIES = Arrays.asList(
+      "manifest.properties", "nameFinder.model",
+      FusedTokenNameFinderFactory.GENERATOR_DESCRIPTOR_ENTRY_NAME);
+
+  private MappedModelWriter() {
+  }
+
+  /**
+   * Convert a model file into a mapped model file.
+   *
+   * @param modelFile
+   *          the model file
+   * @param mappedFile
+   *          the mapped model file
+   * @throws IOException
+   *           if the model can not be read or converted
+   */
+  public static void convert(final File modelFile, final File mappedFile)
+      throws IOException {
+    TokenNameFinderModel model = new TokenNameFinderModel(modelFile);
+    DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+        new FileOutputStream(mappedFile)));
+    try {
+      write(out, model, getResourceNames(modelFile));
+    } finally {
+      out.close();
+    }
+  }
+
+  @SuppressWarnings("deprecation")
+  private static void write(final DataOutputStream out,
+      final TokenNameFinderModel model, final List<String> resourceNames)
+      throws IOException {
+    MaxentModel maxentModel = model.getNameFinderModel();
+    if (maxentModel == null) {
+      throw new InvalidFormatException(
+          "Only models trained with a maxent trainer can be mapped!");
+    }
+    byte[] descriptor = model
+        .getArtifact(FusedTokenNameFinderFactory.GENERATOR_DESCRIPTOR_ENTRY_NAME);
+    if (descriptor == null) {
+      throw new InvalidFormatException(
+          "Only models with a feature generator descriptor can be mapped!");
+    }
+    String beamSize = model.getManifestProperty(BeamSearch.BEAM_SIZE_PARAMETER);
+    out.writeInt(MappedModel.MAGIC);
+    out.writeInt(MappedModel.VERSION);
+    MappedModel.writeString(out, model.getLanguage());
+    MappedModel.writeString(out, model.getFactory().createSequenceCodec()
+        .getClass().getName());
+    out.writeInt(beamSize == null ? Flags.DEFAULT_BEAM_SIZE : Integer
+        .parseInt(beamSize));
+    out.writeInt(descriptor.length);
+    out.write(descriptor);
+    out.writeInt(resourceNames.size());
+    for (String name : resourceNames) {
+      Object artifact = model.getArtifact(name);
+      MappedModel.writeString(out, name);
+      if (artifact instanceof BrownCluster) {
+        out.writeByte(MappedModel.BROWN_LEXICON);
+        MappedModel.align(out);
+        MappedLexicon.write(out, ((BrownCluster) artifact).getLexicon());
+      } else if (artifact instanceof ClarkCluster) {
+        out.writeByte(MappedModel.CLARK_LEXICON);
+        MappedModel.align(out);
+        MappedLexicon.write(out, ((ClarkCluster) artifact).getLexicon());
+      } else if (artifact instanceof Word2VecCluster) {
+        out.writeByte(MappedModel.WORD2VEC_LEXICON);
+        MappedModel.align(out);
+        MappedLexicon.write(out, ((Word2VecCluster) artifact).getLexicon());
+      } else if (artifact instanceof SerializableArtifact) {
+        out.writeByte(MappedModel.SERIALIZED);
+        MappedModel.align(out);
+        Class<?> serializerClass = ((SerializableArtifact) artifact)
+            .getArtifactSerializerClass();
+        MappedModel.writeString(out, serializerClass.getName());
+        byte[] bytes = serialize(serializerClass, artifact);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+        MappedModel.align(out);
+      } else {
+        throw new InvalidFormatException("Resource " + name
+            + " can not be mapped!");
+      }
+    }
+    MappedMaxentModel.write(out, maxentModel);
+  }
+
+  @SuppressWarnings({ "unchecked", "rawtypes" })
+  private static byte[] serialize(final Class<?> serializerClass,
+      final Object artifact) throws IOException {
+    ArtifactSerializer serializer;
+    try {
+      serializer = (ArtifactSerializer) serializerClass
+          .getDeclaredConstructor().newInstance();
+    } catch (ReflectiveOperationException e) {
+      throw new InvalidFormatException("Can not create serializer "
+          + serializerClass.getName(), e);
+    }
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    serializer.serialize(artifact, bytes);
+    return bytes.toByteArray();
+  }
+
+  /**
+   * Get the names of the resources in a model file, which is a zip file with
+   * an entry per artifact.
+   */
+  private static List<String> getResourceNames(final File modelFile)
+      throws IOException {
+    List<String> names = new ArrayList<String>();
+    ZipFile zipFile = new ZipFile(modelFile);
+    try {
+      Enumeration<? extends ZipEntry> entries = zipFile.entries();
+      while (entries.hasMoreElements()) {
+        String name = entries.nextElement().getName();
+        if (!MODEL_ENTRIES.contains(name)) {
+          names.add(name);
+        }
+      }
+    } finally {
+      zipFile.close();
+    }
+    Collections.sort(names);
+    return names;
+  }
+}
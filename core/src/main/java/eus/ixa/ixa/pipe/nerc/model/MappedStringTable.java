@@ -0,0 +1,261 @@
+/*
+ * Copyright 2015 Rodrigo Agerri
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+
+package eus.ixa.ixa.pipe.nerc.model;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.charset.Charset;
+import java.util.List;
+
+/**
+ * Read only hash table from strings to int values in a mapped model file.
+ * The keys are kept as UTF-8 bytes in a byte pool and found through an open
+ * addressing table of entry indexes, as in
+ * {@link eus.ixa.ixa.pipe.nerc.dict.CompactLexicon}; a key is compared with
+ * the bytes in the pool without decoding them, so lookups do not allocate.
+ *
+ * The layout, written by {@link #write(DataOutputStream, List, int[])}, is
+ * the number of entries and of slots, then the int arrays of the slots (an
+ * entry index plus one, or 0 if empty), of the hashes and values of the
+ * entries and of the offsets of their keys in the pool, and then the pool.
+ */
+public final class MappedStringTable {
+
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+  private final int size;
+  private final int mask;
+  private final IntBuffer slots;
+  private final IntBuffer hashes;
+  private final IntBuffer values;
+  /**
+   * The offset of the key of each entry in the pool; the key of an entry ends
+   * where the key of the next entry starts.
+   */
+  private final IntBuffer keyOffsets;
+  private final ByteBuffer keyPool;
+
+  /**
+   * Read a table from a mapped model file.
+   *
+   * @param buffer
+   *          the model file, positioned at the table and left after it
+   */
+  MappedStringTable(final ByteBuffer buffer) {
+    this.size = buffer.getInt();
+    int slotCount = buffer.getInt();
+    this.mask = slotCount - 1;
+    this.slots = MappedModel.slice(buffer, slotCount * 4).asIntBuffer();
+    this.hashes = MappedModel.slice(buffer, size * 4).asIntBuffer();
+    this.values = MappedModel.slice(buffer, size * 4).asIntBuffer();
+    this.keyOffsets = MappedModel.slice(buffer, (size + 1) * 4).asIntBuffer();
+    this.keyPool = MappedModel.slice(buffer, keyOffsets.get(size));
+    MappedModel.align(buffer);
+  }
+
+  /**
+   * Get the value of a key.
+   *
+   * @param key
+   *          the key
+   * @return the value, or -1 if the key is not in the table
+   */
+  public int get(final CharSequence key) {
+    int entry = findEntry(key);
+    return entry < 0 ? -1 : values.get(entry);
+  }
+
+  /**
+   * Get the number of entries of the table.
+   *
+   * @return the number of entries
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Get the key of an entry, decoding it from the pool.
+   *
+   * @param entry
+   *          the entry index, from 0 to {@link #size()}
+   * @return the key
+   */
+  public String getKey(final int entry) {
+    int offset = keyOffsets.get(entry);
+    byte[] bytes = new byte[keyOffsets.get(entry + 1) - offset];
+    for (int i = 0; i < bytes.length; i++) {
+      bytes[i] = keyPool.get(offset + i);
+    }
+    return new String(bytes, UTF_8);
+  }
+
+  /**
+   * Get the value of an entry.
+   *
+   * @param entry
+   *          the entry index, from 0 to {@link #size()}
+   * @return the value
+   */
+  public int getValue(final int entry) {
+    return values.get(entry);
+  }
+
+  private int findEntry(final CharSequence key) {
+    int hash = hash(key);
+    int slot = hash & mask;
+    int entry;
+    while ((entry = slots.get(slot)) != 0) {
+      entry--;
+      if (hashes.get(entry) == hash && keyEquals(entry, key)) {
+        return entry;
+      }
+      slot = (slot + 1) & mask;
+    }
+    return -1;
+  }
+
+  /**
+   * Compare a key with the UTF-8 bytes of an entry without decoding them.
+   */
+  private boolean keyEquals(final int entry, final CharSequence key) {
+    int offset = keyOffsets.get(entry);
+    int end = keyOffsets.get(entry + 1);
+    int length = key.length();
+    int i = 0;
+    while (i < length && offset < end) {
+      int b = keyPool.get(offset) & 0xff;
+      int codePoint;
+      if (b < 0x80) {
+        codePoint = b;
+        offset += 1;
+      } else if (b < 0xe0) {
+        if (offset + 1 >= end) {
+          return false;
+        }
+        codePoint = ((b & 0x1f) << 6) | (keyPool.get(offset + 1) & 0x3f);
+        offset += 2;
+      } else if (b < 0xf0) {
+        if (offset + 2 >= end) {
+          return false;
+        }
+        codePoint = ((b & 0x0f) << 12) | ((keyPool.get(offset + 1) & 0x3f) << 6)
+            | (keyPool.get(offset + 2) & 0x3f);
+        offset += 3;
+      } else {
+        if (offset + 3 >= end) {
+          return false;
+        }
+        codePoint = ((b & 0x07) << 18) | ((keyPool.get(offset + 1) & 0x3f) << 12)
+            | ((keyPool.get(offset + 2) & 0x3f) << 6)
+            | (keyPool.get(offset + 3) & 0x3f);
+        offset += 4;
+      }
+      if (codePoint >= Character.MIN_SUPPLEMENTARY_CODE_POINT) {
+        if (i + 1 >= length
+            || key.charAt(i) != Character.highSurrogate(codePoint)
+            || key.charAt(i + 1) != Character.lowSurrogate(codePoint)) {
+          return false;
+        }
+        i += 2;
+      } else {
+        if (key.charAt(i) != codePoint) {
+          return false;
+        }
+        i++;
+      }
+    }
+    return i == length && offset == end;
+  }
+
+  /**
+   * Hash the characters of a key, spreading the bits of
+   * {@link String#hashCode()}, which is the same in every JVM, over the low
+   * bits used by the table.
+   */
+  private static int hash(final CharSequence key) {
+    int hash;
+    if (key instanceof String) {
+      hash = key.hashCode();
+    } else {
+      hash = 0;
+      for (int i = 0; i < key.length(); i++) {
+        hash = 31 * hash + key.charAt(i);
+      }
+    }
+    hash ^= (hash >>> 16);
+    hash *= 0x85ebca6b;
+    hash ^= (hash >>> 13);
+    return hash;
+  }
+
+  /**
+   * Write a table to a model file.
+   *
+   * @param out
+   *          the model file
+   * @param keys
+   *          the keys, all different
+   * @param values
+   *          the value of each key
+   * @throws IOException
+   *           if the table can not be written
+   */
+  static void write(final DataOutputStream out, final List<String> keys,
+      final int[] values) throws IOException {
+    int size = keys.size();
+    int slotCount = 2;
+    while (slotCount * 3 < size * 4) {
+      slotCount *= 2;
+    }
+    int[] slots = new int[slotCount];
+    int[] hashes = new int[size];
+    for (int entry = 0; entry < size; entry++) {
+      hashes[entry] = hash(keys.get(entry));
+      int slot = hashes[entry] & (slotCount - 1);
+      while (slots[slot] != 0) {
+        slot = (slot + 1) & (slotCount - 1);
+      }
+      slots[slot] = entry + 1;
+    }
+    out.writeInt(size);
+    out.writeInt(slotCount);
+    for (int slot : slots) {
+      out.writeInt(slot);
+    }
+    for (int hash : hashes) {
+      out.writeInt(hash);
+    }
+    for (int value : values) {
+      out.writeInt(value);
+    }
+    byte[][] keyBytes = new byte[size][];
+    int offset = 0;
+    for (int entry = 0; entry < size; entry++) {
+      keyBytes[entry] = keys.get(entry).getBytes(UTF_8);
+      out.writeInt(offset);
+      offset += keyBytes[entry].length;
+    }
+    out.writeInt(offset);
+    for (byte[] bytes : keyBytes) {
+      out.write(bytes);
+    }
+    MappedModel.align(out);
+  }
+}
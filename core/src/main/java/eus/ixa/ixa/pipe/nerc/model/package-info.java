@@ -0,0 +1,4 @@
+/**
+ * Package containing the memory mapped binary format of the models.
+ */
+package eus.ixa.ixa.pipe.nerc.model;
@@ -104,10 +104,24 @@ public class FixedTrainer extends AbstractTrainer {
         .forName("UTF-8"));
     Map<String, Object> resources = loadResources(params, featureGeneratorBytes);
     setNameClassifierFactory(TokenNameFinderFactory.create(
-        TokenNameFinderFactory.class.getName(), featureGeneratorBytes,
+        getNameClassifierFactoryName(params), featureGeneratorBytes,
         resources, sequenceCodec));
   }
 
+  /**
+   * Get the class name of the name finder factory, the
+   * {@code FusedTokenNameFinderFactory} if the {@code FusedFeatures}
+   * parameter is active.
+   * @param params the training parameters
+   * @return the factory class name
+   */
+  public static String getNameClassifierFactoryName(TrainingParameters params) {
+    if (Flags.isFusedFeatures(params)) {
+      return FusedTokenNameFinderFactory.class.getName();
+    }
+    return TokenNameFinderFactory.class.getName();
+  }
+
   /**
    * Load the external resources such as gazetters and clustering lexicons.
    * @param params the training parameters
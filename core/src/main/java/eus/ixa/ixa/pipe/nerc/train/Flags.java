@@ -26,6 +26,9 @@ public class Flags {
 
   public static final String DEFAULT_FEATURE_FLAG = "no";
   public static final String CHAR_NGRAM_RANGE = "2:5";
+  public static final String DEFAULT_CHAR_NGRAM_BUCKETS = "0";
+  public static final String DEFAULT_ADAPTIVE_CAPACITY = "0";
+  public static final String DEFAULT_FUSED_FEATURES = "yes";
   public static final String DEFAULT_WINDOW = "2:2";
   public static final String DEFAULT_MORPHO_RANGE = "pos,posclass,lemma";
   public static final String DEFAULT_MFS_RANGE = "pos,posclass,lemma,mfs,no";
@@ -41,9 +44,16 @@ public class Flags {
   public static final String DEFAULT_LEXER = "off";
   public static final String DEFAULT_DICT_OPTION = "off";
   public static final String DEFAULT_DICT_PATH = "off";
+  public static final String DEFAULT_POS_LAYER = "off";
+  public static final String DEFAULT_POS_MAPPING = "off";
   public static final String DEFAULT_OUTPUT_FORMAT = "naf";
   public static final String DEFAULT_SEQUENCE_CODEC = "BILOU";
   public static final String DEFAULT_EVAL_FORMAT = "conll02";
+  public static final String DEFAULT_TASK = "tag";
+  public static final String DEFAULT_HOSTNAME = "localhost";
+  public static final int DEFAULT_PORT = 2060;
+  public static final String DEFAULT_WARM_UP = "synthetic";
+  public static final String DEFAULT_BATCH_WARM_UP = "no";
 
   private Flags() {
 
@@ -212,6 +222,26 @@ public class Flags {
     return previousMapFlag;
   }
 
+  public static String getAdaptiveDataCapacity(TrainingParameters params) {
+    String adaptiveCapacityFlag = null;
+    if (params.getSettings().get("AdaptiveDataCapacity") != null) {
+      adaptiveCapacityFlag = params.getSettings().get("AdaptiveDataCapacity");
+    } else {
+      adaptiveCapacityFlag = Flags.DEFAULT_ADAPTIVE_CAPACITY;
+    }
+    return adaptiveCapacityFlag;
+  }
+
+  public static String getFusedFeatures(TrainingParameters params) {
+    String fusedFeaturesFlag = null;
+    if (params.getSettings().get("FusedFeatures") != null) {
+      fusedFeaturesFlag = params.getSettings().get("FusedFeatures");
+    } else {
+      fusedFeaturesFlag = Flags.DEFAULT_FEATURE_FLAG;
+    }
+    return fusedFeaturesFlag;
+  }
+
   public static String getSentenceFeatures(TrainingParameters params) {
     String sentenceFlag = null;
     if (params.getSettings().get("SentenceFeatures") != null) {
@@ -302,6 +332,16 @@ public class Flags {
     return charNgramRangeFlag;
   }
 
+  public static String getCharNgramFeaturesBuckets(TrainingParameters params) {
+    String charNgramBucketsFlag = null;
+    if (params.getSettings().get("CharNgramFeaturesBuckets") != null) {
+      charNgramBucketsFlag = params.getSettings().get("CharNgramFeaturesBuckets");
+    } else {
+      charNgramBucketsFlag = Flags.DEFAULT_CHAR_NGRAM_BUCKETS;
+    }
+    return charNgramBucketsFlag;
+  }
+
   public static String getDictionaryFeatures(TrainingParameters params) {
     String dictionaryFlag = null;
     if (params.getSettings().get("DictionaryFeatures") != null) {
@@ -555,6 +595,16 @@ public class Flags {
     return !mfsFeatures.equalsIgnoreCase(Flags.DEFAULT_FEATURE_FLAG);
   }
 
+  /**
+   * Check if the feature generators are compiled into a single generator.
+   * @param params the parameters
+   * @return whether the fused features are activated or not
+   */
+  public static boolean isFusedFeatures(TrainingParameters params) {
+    String fusedFeatures = getFusedFeatures(params);
+    return !fusedFeatures.equalsIgnoreCase(Flags.DEFAULT_FEATURE_FLAG);
+  }
+
   public static boolean isWord2VecClusterFeatures(TrainingParameters params) {
     String word2vecClusterFeatures = getWord2VecClusterFeatures(params);
     return !word2vecClusterFeatures
@@ -0,0 +1,180 @@
+/*
+ * Copyright 2015 Rodrigo Agerri
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+
+package eus.ixa.ixa.pipe.nerc.train;
+
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import opennlp.tools.namefind.NameContextGenerator;
+import opennlp.tools.namefind.TokenNameFinderFactory;
+import opennlp.tools.namefind.TokenNameFinderModel;
+import opennlp.tools.util.InvalidFormatException;
+import opennlp.tools.util.SequenceCodec;
+import opennlp.tools.util.featuregen.FeatureGeneratorResourceProvider;
+import opennlp.tools.util.model.ArtifactProvider;
+import eus.ixa.ixa.pipe.nerc.features.FeatureGeneratorCompiler;
+import eus.ixa.ixa.pipe.nerc.features.FusedNameContextGenerator;
+
+/**
+ * A {@code TokenNameFinderFactory} whose context generator runs the feature
+ * generator descriptor compiled by {@link FeatureGeneratorCompiler}. The
+ * features are the same as those of the {@code TokenNameFinderFactory}, so
+ * the models trained with this factory, selected with the
+ * {@code FusedFeatures} training parameter, can be used with the
+ * {@code TokenNameFinderFactory} and the other way round, see
+ * {@link #createContextGenerator(TokenNameFinderModel)}.
+ *
+ * The descriptor is parsed once per model, and the generators of this
+ * project are created without reflection (see
+ * {@link eus.ixa.ixa.pipe.nerc.features.FeatureGeneratorRegistry}), so that
+ * creating a name finder for a loaded model is cheap.
+ */
+public class FusedTokenNameFinderFactory extends TokenNameFinderFactory {
+
+  /**
+   * The name of the feature generator descriptor in the model.
+   */
+  public static final String GENERATOR_DESCRIPTOR_ENTRY_NAME = "generator.featuregen";
+
+  /**
+   * The parsed descriptor of the models trained with other factories.
+   */
+  private static final Map<TokenNameFinderModel, FeatureGeneratorCompiler> modelCompilers = new WeakHashMap<TokenNameFinderModel, FeatureGeneratorCompiler>();
+
+  /**
+   * The parsed descriptor, shared by the name finders of the model.
+   */
+  private volatile FeatureGeneratorCompiler compiler;
+
+  /**
+   * Construct the factory, to be initialized by the model or by
+   * {@link TokenNameFinderFactory#create(String, byte[], Map, SequenceCodec)}.
+   */
+  public FusedTokenNameFinderFactory() {
+  }
+
+  /**
+   * Construct the factory.
+   *
+   * @param featureGeneratorBytes
+   *          the feature generator descriptor
+   * @param resources
+   *          the resources of the feature generators
+   * @param seqCodec
+   *          the sequence codec
+   */
+  public FusedTokenNameFinderFactory(final byte[] featureGeneratorBytes,
+      final Map<String, Object> resources, final SequenceCodec<String> seqCodec) {
+    super(featureGeneratorBytes, resources, seqCodec);
+  }
+
+  @Override
+  public NameContextGenerator createContextGenerator() {
+    FeatureGeneratorCompiler descriptorCompiler = getCompiler();
+    if (descriptorCompiler == null) {
+      // the default feature generator of OpenNLP
+      return super.createContextGenerator();
+    }
+    final ArtifactProvider provider = artifactProvider;
+    final Map<String, Object> resources = getResources();
+    try {
+      return new FusedNameContextGenerator(descriptorCompiler
+          .createGenerator(new FeatureGeneratorResourceProvider() {
+            public Object getResource(String key) {
+              if (provider != null) {
+                return provider.getArtifact(key);
+              } else {
+                return resources.get(key);
+              }
+            }
+          }));
+    } catch (InvalidFormatException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  /**
+   * Get the compiler of the feature generator descriptor, parsing it the
+   * first time.
+   */
+  private FeatureGeneratorCompiler getCompiler() {
+    FeatureGeneratorCompiler descriptorCompiler = compiler;
+    if (descriptorCompiler == null) {
+      byte[] descriptor = getFeatureGenerator();
+      if (descriptor == null && artifactProvider != null) {
+        descriptor = artifactProvider
+            .getArtifact(GENERATOR_DESCRIPTOR_ENTRY_NAME);
+      }
+      if (descriptor == null) {
+        return null;
+      }
+      try {
+        descriptorCompiler = FeatureGeneratorCompiler.parse(descriptor);
+      } catch (InvalidFormatException e) {
+        throw new IllegalStateException(e);
+      }
+      compiler = descriptorCompiler;
+    }
+    return descriptorCompiler;
+  }
+
+  /**
+   * Create the context generator of a model with the compiled feature
+   * generator descriptor of the model, whatever the factory it was trained
+   * with. The descriptor is parsed the first time only.
+   *
+   * @param model
+   *          the model
+   * @return the context generator
+   */
+  public static NameContextGenerator createContextGenerator(
+      final TokenNameFinderModel model) {
+    TokenNameFinderFactory factory = model.getFactory();
+    if (factory instanceof FusedTokenNameFinderFactory) {
+      return factory.createContextGenerator();
+    }
+    FeatureGeneratorCompiler descriptorCompiler;
+    synchronized (modelCompilers) {
+      descriptorCompiler = modelCompilers.get(model);
+    }
+    if (descriptorCompiler == null) {
+      byte[] descriptor = model.getArtifact(GENERATOR_DESCRIPTOR_ENTRY_NAME);
+      if (descriptor == null) {
+        return factory.createContextGenerator();
+      }
+      try {
+        descriptorCompiler = FeatureGeneratorCompiler.parse(descriptor);
+      } catch (InvalidFormatException e) {
+        throw new IllegalStateException(e);
+      }
+      synchronized (modelCompilers) {
+        modelCompilers.put(model, descriptorCompiler);
+      }
+    }
+    try {
+      return new FusedNameContextGenerator(
+          descriptorCompiler.createGenerator(new FeatureGeneratorResourceProvider() {
+            public Object getResource(String key) {
+              return model.getArtifact(key);
+            }
+          }));
+    } catch (InvalidFormatException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+}
@@ -0,0 +1,203 @@
+package es.ehu.si.ixa.pipe.nerc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import opennlp.tools.util.InvalidFormatException;
+import opennlp.tools.util.featuregen.CustomFeatureGenerator;
+
+import org.junit.Test;
+
+import eus.ixa.ixa.pipe.nerc.features.AdaptiveMap;
+import eus.ixa.ixa.pipe.nerc.features.DocumentState;
+import eus.ixa.ixa.pipe.nerc.features.Prev2MapFeatureGenerator;
+import eus.ixa.ixa.pipe.nerc.features.PreviousMapFeatureGenerator;
+import eus.ixa.ixa.pipe.nerc.features.PreviousMapTokenFeatureGenerator;
+
+public class AdaptiveMapTest {
+
+    // tokens with the same hash code, so that they probe the same slots
+    private static final String[] COLLIDING = {"AaAa", "AaBB", "BBAa", "BBBB"};
+
+    @Test
+    public void lastOutcomeOfEachToken() {
+        AdaptiveMap adaptiveMap = new AdaptiveMap(0);
+        adaptiveMap.put("Bilbao", "location-start");
+        adaptiveMap.put("Athletic", "organization-start");
+        adaptiveMap.put("Bilbao", "organization-cont");
+        assertEquals("organization-cont", adaptiveMap.get("Bilbao"));
+        assertEquals("organization-start", adaptiveMap.get("Athletic"));
+        assertNull(adaptiveMap.get("Donostia"));
+        assertEquals(2, adaptiveMap.size());
+        adaptiveMap.clear();
+        assertNull(adaptiveMap.get("Bilbao"));
+        assertEquals(0, adaptiveMap.size());
+    }
+
+    @Test
+    public void unboundedMapKeepsEveryToken() {
+        AdaptiveMap adaptiveMap = new AdaptiveMap(0);
+        for (int i = 0; i < 1000; i++) {
+            adaptiveMap.put("token" + i, i % 2 == 0 ? "other" : "person-start");
+        }
+        assertEquals(1000, adaptiveMap.size());
+        assertEquals("other", adaptiveMap.get("token0"));
+        assertEquals("person-start", adaptiveMap.get("token999"));
+    }
+
+    @Test
+    public void boundedMapEvictsAtCapacity() {
+        AdaptiveMap adaptiveMap = new AdaptiveMap(3);
+        adaptiveMap.put("a", "other");
+        adaptiveMap.put("b", "other");
+        adaptiveMap.put("c", "other");
+        // full, but nothing is evicted until another token arrives
+        assertEquals(3, adaptiveMap.size());
+        assertEquals("other", adaptiveMap.get("a"));
+        // putting a kept token makes it the most recent one
+        adaptiveMap.put("a", "person-start");
+        assertEquals(3, adaptiveMap.size());
+        adaptiveMap.put("d", "other");
+        assertEquals(3, adaptiveMap.size());
+        assertNull(adaptiveMap.get("b"));
+        assertEquals("person-start", adaptiveMap.get("a"));
+        assertEquals("other", adaptiveMap.get("c"));
+        assertEquals("other", adaptiveMap.get("d"));
+        // getting a token does not make it recent
+        adaptiveMap.get("c");
+        adaptiveMap.put("e", "other");
+        assertNull(adaptiveMap.get("c"));
+        assertEquals(3, adaptiveMap.size());
+    }
+
+    @Test
+    public void capacityOfOneKeepsTheLastToken() {
+        AdaptiveMap adaptiveMap = new AdaptiveMap(1);
+        adaptiveMap.put("a", "other");
+        adaptiveMap.put("b", "person-start");
+        assertNull(adaptiveMap.get("a"));
+        assertEquals("person-start", adaptiveMap.get("b"));
+        assertEquals(1, adaptiveMap.size());
+    }
+
+    @Test
+    public void evictionKeepsTheProbeSequence() {
+        AdaptiveMap adaptiveMap = new AdaptiveMap(3);
+        adaptiveMap.put(COLLIDING[0], "0");
+        adaptiveMap.put(COLLIDING[1], "1");
+        adaptiveMap.put(COLLIDING[2], "2");
+        // evicting the first token of the sequence shifts the others back
+        adaptiveMap.put(COLLIDING[3], "3");
+        assertNull(adaptiveMap.get(COLLIDING[0]));
+        assertEquals("1", adaptiveMap.get(COLLIDING[1]));
+        assertEquals("2", adaptiveMap.get(COLLIDING[2]));
+        assertEquals("3", adaptiveMap.get(COLLIDING[3]));
+        // and evicting one in the middle shifts back those after it
+        adaptiveMap.put(COLLIDING[1], "1");
+        adaptiveMap.put(COLLIDING[0], "0");
+        assertNull(adaptiveMap.get(COLLIDING[2]));
+        assertEquals("0", adaptiveMap.get(COLLIDING[0]));
+        assertEquals("1", adaptiveMap.get(COLLIDING[1]));
+        assertEquals("3", adaptiveMap.get(COLLIDING[3]));
+        // a token with another hash is not in the sequence
+        adaptiveMap.put("Aa", "4");
+        assertNull(adaptiveMap.get(COLLIDING[3]));
+        assertEquals("0", adaptiveMap.get(COLLIDING[0]));
+        assertEquals("1", adaptiveMap.get(COLLIDING[1]));
+        assertEquals("4", adaptiveMap.get("Aa"));
+        assertEquals(3, adaptiveMap.size());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void negativeCapacityIsRejected() {
+        new AdaptiveMap(-1);
+    }
+
+    @Test
+    public void previousMapFeaturesReadTheDocumentState()
+            throws InvalidFormatException {
+        CustomFeatureGenerator[] generators = {
+            new PreviousMapFeatureGenerator(), new Prev2MapFeatureGenerator(),
+            new PreviousMapTokenFeatureGenerator()};
+        for (CustomFeatureGenerator generator : generators) {
+            generator.init(Collections.<String, String> emptyMap(), null);
+        }
+        String[] tokens = {"Athletic", "de", "Bilbao"};
+        DocumentState first = new DocumentState();
+        DocumentState previous = DocumentState.bind(first);
+        try {
+            for (CustomFeatureGenerator generator : generators) {
+                generator.updateAdaptiveData(tokens, new String[] {
+                    "organization-start", "organization-cont",
+                    "organization-cont"});
+            }
+            assertEquals(Arrays.asList("pd=organization-cont",
+                    "ppd=organization-cont,organization-cont",
+                    "w,pd=Bilbao,organization-cont"), createFeatures(
+                    generators, tokens, 2));
+            assertEquals(Arrays.asList("pd=organization-start",
+                    "w,pd=Athletic,organization-start"), createFeatures(
+                    generators, tokens, 0));
+            // another document does not see the decisions of the first one
+            DocumentState.bind(new DocumentState());
+            assertEquals(Arrays.asList("pd=null", "ppd=null,null",
+                    "w,pd=Bilbao,null"), createFeatures(generators, tokens, 2));
+            DocumentState.bind(first);
+            for (CustomFeatureGenerator generator : generators) {
+                generator.clearAdaptiveData();
+            }
+            assertEquals(Arrays.asList("pd=null", "w,pd=Athletic,null"),
+                    createFeatures(generators, tokens, 0));
+        } finally {
+            DocumentState.bind(previous);
+        }
+    }
+
+    @Test
+    public void capacityOfTheStateOverridesTheGenerators()
+            throws InvalidFormatException {
+        PreviousMapFeatureGenerator bounded = new PreviousMapFeatureGenerator();
+        bounded.init(Collections.singletonMap("capacity", "2"), null);
+        PreviousMapFeatureGenerator unbounded = new PreviousMapFeatureGenerator();
+        unbounded.init(Collections.<String, String> emptyMap(), null);
+        String[] tokens = {"a", "b", "c"};
+        String[] outcomes = {"other", "other", "other"};
+        DocumentState previous = DocumentState.bind(new DocumentState());
+        try {
+            bounded.updateAdaptiveData(tokens, outcomes);
+            unbounded.updateAdaptiveData(tokens, outcomes);
+            assertEquals(2, DocumentState.current().getAdaptiveMap(bounded, 2)
+                    .size());
+            assertEquals(3, DocumentState.current().getAdaptiveMap(unbounded,
+                    0).size());
+            DocumentState.bind(new DocumentState(1));
+            bounded.updateAdaptiveData(tokens, outcomes);
+            unbounded.updateAdaptiveData(tokens, outcomes);
+            assertEquals(1, DocumentState.current().getAdaptiveMap(bounded, 2)
+                    .getCapacity());
+            assertEquals(1, DocumentState.current().getAdaptiveMap(unbounded,
+                    0).size());
+            assertEquals(Arrays.asList("pd=other"), createFeatures(
+                    new CustomFeatureGenerator[] {unbounded}, tokens, 2));
+            assertEquals(Arrays.asList("pd=null"), createFeatures(
+                    new CustomFeatureGenerator[] {unbounded}, tokens, 1));
+        } finally {
+            DocumentState.bind(previous);
+        }
+    }
+
+    private static List<String> createFeatures(
+            CustomFeatureGenerator[] generators, String[] tokens, int index) {
+        List<String> features = new ArrayList<String>();
+        for (CustomFeatureGenerator generator : generators) {
+            generator.createFeatures(features, tokens, index, null);
+        }
+        return features;
+    }
+
+}
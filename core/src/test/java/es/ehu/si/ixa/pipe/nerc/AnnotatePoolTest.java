@@ -0,0 +1,131 @@
+package es.ehu.si.ixa.pipe.nerc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import ixa.kaflib.Entity;
+import ixa.kaflib.KAFDocument;
+import ixa.kaflib.WF;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Assume;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import eus.ixa.ixa.pipe.nerc.Annotate;
+import eus.ixa.ixa.pipe.nerc.AnnotatePool;
+import eus.ixa.ixa.pipe.nerc.features.DocumentState;
+
+public class AnnotatePoolTest {
+
+    private static final File FRENCH_MODEL = new File("../models/fr.bin");
+
+    private static Properties properties = null;
+
+    @BeforeClass
+    public static void setUpClass() {
+        Assume.assumeTrue(FRENCH_MODEL.exists());
+        properties = new Properties();
+        properties.setProperty("model", FRENCH_MODEL.getPath());
+        properties.setProperty("language", "fr");
+        properties.setProperty("ruleBasedOption", "off");
+        properties.setProperty("dictTag", "off");
+        properties.setProperty("dictPath", "off");
+        properties.setProperty("clearFeatures", "no");
+    }
+
+    static KAFDocument createDocument(String language, String[]... sentences) {
+        KAFDocument kaf = new KAFDocument(language, "v1.naf");
+        int offset = 0;
+        for (int sent = 0; sent < sentences.length; sent++) {
+            for (String token : sentences[sent]) {
+                WF wf = kaf.newWF(token, offset, sent + 1);
+                kaf.newTerm("open", token, "N", KAFDocument.newWFSpan(
+                        Collections.singletonList(wf)));
+                offset += token.length() + 1;
+            }
+        }
+        return kaf;
+    }
+
+    private static List<String> getEntities(KAFDocument kaf) {
+        List<String> entities = new ArrayList<String>();
+        for (Entity entity : kaf.getEntities()) {
+            entities.add(entity.getType() + " " + entity.getStr());
+        }
+        return entities;
+    }
+
+    @Test
+    public void busyAnnotatorsAreNotLent() throws IOException {
+        AnnotatePool pool = new AnnotatePool(properties);
+        assertEquals(1, pool.getPoolSize());
+        Annotate first = pool.borrowAnnotator();
+        Annotate second = pool.borrowAnnotator();
+        assertNotSame(first, second);
+        assertEquals(2, pool.getPoolSize());
+        pool.releaseAnnotator(first);
+        assertSame(first, pool.borrowAnnotator());
+        assertEquals(2, pool.getPoolSize());
+        pool.releaseAnnotator(first);
+        pool.releaseAnnotator(second);
+    }
+
+    @Test
+    public void releasedAnnotatorsForgetTheirAdaptiveData() throws IOException {
+        AnnotatePool pool = new AnnotatePool(properties);
+        Annotate annotator = pool.borrowAnnotator();
+        // without a document state the adaptive data is kept in the default
+        // state of the thread
+        annotator.getStatisticalNameFinder().nercToSpans(
+                MappedModelTest.SENTENCES[3]);
+        assertFalse(DocumentState.current().isEmpty());
+        pool.releaseAnnotator(annotator);
+        assertTrue(DocumentState.current().isEmpty());
+    }
+
+    @Test
+    public void concurrentDocumentsGetTheEntitiesOfOneAnnotator()
+            throws Exception {
+        final AnnotatePool pool = new AnnotatePool(properties);
+        Annotate annotator = new Annotate(properties);
+        final String[][] sentences = {MappedModelTest.SENTENCES[3],
+            MappedModelTest.SENTENCES[0], MappedModelTest.SENTENCES[3]};
+        KAFDocument expected = createDocument("fr", sentences);
+        annotator.annotateNEs(expected);
+        assertFalse(expected.getEntities().isEmpty());
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<KAFDocument>> results = new ArrayList<Future<KAFDocument>>();
+            for (int i = 0; i < 16; i++) {
+                results.add(executor.submit(new Callable<KAFDocument>() {
+                    public KAFDocument call() throws IOException {
+                        KAFDocument kaf = createDocument("fr", sentences);
+                        pool.annotateNEs(kaf);
+                        return kaf;
+                    }
+                }));
+            }
+            for (Future<KAFDocument> result : results) {
+                assertEquals(getEntities(expected), getEntities(result.get()));
+            }
+        } finally {
+            executor.shutdown();
+        }
+        assertTrue(pool.getPoolSize() <= 4);
+    }
+
+}
@@ -0,0 +1,96 @@
+package es.ehu.si.ixa.pipe.nerc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import ixa.kaflib.KAFDocument;
+import ixa.kaflib.WF;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Properties;
+
+import org.junit.Assume;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import eus.ixa.ixa.pipe.nerc.Annotate;
+import eus.ixa.ixa.pipe.nerc.DocumentAnnotation;
+
+public class AnnotateTest {
+
+    private static final File FRENCH_MODEL = new File("../models/fr.bin");
+
+    private static Annotate annotator = null;
+
+    @BeforeClass
+    public static void setUpClass() throws IOException {
+        Assume.assumeTrue(FRENCH_MODEL.exists());
+        Properties properties = new Properties();
+        properties.setProperty("model", FRENCH_MODEL.getPath());
+        properties.setProperty("language", "fr");
+        properties.setProperty("ruleBasedOption", "off");
+        properties.setProperty("dictTag", "off");
+        properties.setProperty("dictPath", "off");
+        properties.setProperty("clearFeatures", "no");
+        annotator = new Annotate(properties);
+    }
+
+    private static KAFDocument createDocument() {
+        KAFDocument kaf = new KAFDocument("fr", "v1.naf");
+        String[] tokens = MappedModelTest.SENTENCES[3];
+        int offset = 0;
+        for (String token : tokens) {
+            WF wf = kaf.newWF(token, offset, 1);
+            kaf.newTerm("open", token, "N", KAFDocument.newWFSpan(
+                    Collections.singletonList(wf)));
+            offset += token.length() + 1;
+        }
+        return kaf;
+    }
+
+    @Test
+    public void conllTypesAreNormalized() throws IOException {
+        KAFDocument kaf = createDocument();
+        DocumentAnnotation annotation = annotator.annotateNEs(kaf);
+        assertFalse(kaf.getEntities().isEmpty());
+        for (String conll : new String[] {
+                Annotate.annotateNEsToCoNLL2002(annotation),
+                Annotate.annotateNEsToCoNLL2003(annotation),
+                annotator.annotateNEsToCoNLL2002(kaf),
+                annotator.annotateNEsToCoNLL2003(kaf)}) {
+            assertTrue(conll, conll.contains("-LOC\n"));
+            assertFalse(conll, conll.contains("-loc\n"));
+        }
+    }
+
+    @Test
+    public void compiledFeaturesFindTheNamesOfOpenNLPGenerators()
+            throws IOException {
+        Properties properties = new Properties();
+        properties.setProperty("model", FRENCH_MODEL.getPath());
+        properties.setProperty("language", "fr");
+        properties.setProperty("ruleBasedOption", "off");
+        properties.setProperty("dictTag", "off");
+        properties.setProperty("dictPath", "off");
+        properties.setProperty("clearFeatures", "no");
+        properties.setProperty("fusedFeatures", "no");
+        Annotate openNLPAnnotator = new Annotate(properties);
+        assertEquals(Annotate.annotateNEsToOpenNLP(openNLPAnnotator
+                .annotateNEs(createDocument())),
+                Annotate.annotateNEsToOpenNLP(annotator
+                        .annotateNEs(createDocument())));
+    }
+
+    @Test
+    public void openNLPOutputClassifiesTheDocument() throws IOException {
+        KAFDocument kaf = createDocument();
+        String opennlp = annotator.annotateNEsToOpenNLP(kaf);
+        assertTrue(kaf.getEntities().isEmpty());
+        assertEquals(Annotate.annotateNEsToOpenNLP(annotator.annotateNEs(kaf)),
+                opennlp);
+        assertTrue(opennlp, opennlp.contains("<START:location> Lyon <END>"));
+    }
+
+}
@@ -0,0 +1,125 @@
+package es.ehu.si.ixa.pipe.nerc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import ixa.kaflib.KAFDocument;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.ServerSocket;
+import java.net.URL;
+import java.util.Collections;
+import java.util.Properties;
+
+import org.junit.AfterClass;
+import org.junit.Assume;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import eus.ixa.ixa.pipe.nerc.AnnotationServer;
+
+public class AnnotationServerTest {
+
+    private static final File FRENCH_MODEL = new File("../models/fr.bin");
+
+    private static AnnotationServer server = null;
+    private static URL url = null;
+
+    @BeforeClass
+    public static void setUpClass() throws IOException {
+        Assume.assumeTrue(FRENCH_MODEL.exists());
+        Properties properties = new Properties();
+        properties.setProperty("model", FRENCH_MODEL.getPath());
+        properties.setProperty("language", "fr");
+        properties.setProperty("ruleBasedOption", "off");
+        properties.setProperty("dictTag", "off");
+        properties.setProperty("dictPath", "off");
+        properties.setProperty("clearFeatures", "no");
+        server = new AnnotationServer(Collections.singletonMap("fr",
+                properties), "tag", "conll03", "test");
+        int port;
+        ServerSocket socket = new ServerSocket(0);
+        try {
+            port = socket.getLocalPort();
+        } finally {
+            socket.close();
+        }
+        server.start("localhost", port, 2);
+        url = new URL("http://localhost:" + port + AnnotationServer.CONTEXT_PATH);
+    }
+
+    @AfterClass
+    public static void tearDownClass() {
+        if (server != null) {
+            server.stop();
+        }
+    }
+
+    /**
+     * Post a document, returning the status and the body of the response.
+     */
+    private static String[] post(String document) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+        connection.setRequestMethod("POST");
+        connection.setDoOutput(true);
+        OutputStream os = connection.getOutputStream();
+        os.write(document.getBytes("UTF-8"));
+        os.close();
+        int status = connection.getResponseCode();
+        InputStream is = status == 200 ? connection.getInputStream()
+                : connection.getErrorStream();
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        for (int read; (read = is.read(buffer)) != -1;) {
+            body.write(buffer, 0, read);
+        }
+        is.close();
+        return new String[] {Integer.toString(status), body.toString("UTF-8")};
+    }
+
+    @Test
+    public void documentsAreAnnotated() throws IOException {
+        KAFDocument kaf = AnnotatePoolTest.createDocument("fr",
+                MappedModelTest.SENTENCES[3]);
+        String[] response = post(kaf.toString());
+        assertEquals(response[1], "200", response[0]);
+        assertTrue(response[1], response[1].contains("\nLyon\tLyon\t"));
+        assertTrue(response[1], response[1].contains("\tI-LOC\n"));
+    }
+
+    @Test
+    public void invalidDocumentsAreBadRequests() throws IOException {
+        assertEquals("400", post("<NAF xml:lang=\"fr\"><text>")[0]);
+        assertEquals("400", post("<NAF xml:lang=\"fr\"><text><wf wid=\"w1\""
+                + " offset=\"x\" length=\"4\" sent=\"1\">Lyon</wf></text></NAF>")[0]);
+    }
+
+    @Test
+    public void languagesWithoutModelAreBadRequests() throws IOException {
+        KAFDocument kaf = AnnotatePoolTest.createDocument("de",
+                MappedModelTest.SENTENCES[2]);
+        String[] response = post(kaf.toString());
+        assertEquals("400", response[0]);
+        assertEquals("No model loaded for language de!\n", response[1]);
+    }
+
+    @Test
+    public void annotationErrorsAreServerErrors() throws IOException {
+        // a valid document, but the CoNLL output needs the term layer
+        String[] response = post("<NAF xml:lang=\"fr\" version=\"v1.naf\">"
+                + "<text><wf wid=\"w1\" offset=\"0\" length=\"4\" sent=\"1\">"
+                + "Lyon</wf></text></NAF>");
+        assertEquals("500", response[0]);
+    }
+
+    @Test
+    public void onlyPostIsAllowed() throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+        assertEquals(405, connection.getResponseCode());
+    }
+
+}
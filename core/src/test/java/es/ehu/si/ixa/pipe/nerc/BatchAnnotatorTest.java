@@ -0,0 +1,131 @@
+package es.ehu.si.ixa.pipe.nerc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import ixa.kaflib.KAFDocument;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+
+import org.junit.Assume;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.google.common.base.Charsets;
+
+import eus.ixa.ixa.pipe.nerc.Annotate;
+import eus.ixa.ixa.pipe.nerc.BatchAnnotator;
+
+public class BatchAnnotatorTest {
+
+    private static final File FRENCH_MODEL = new File("../models/fr.bin");
+    private static final String SEPARATOR = "<!-- end -->";
+
+    private static Properties properties = null;
+    private static Annotate annotator = null;
+
+    @BeforeClass
+    public static void setUpClass() throws IOException {
+        Assume.assumeTrue(FRENCH_MODEL.exists());
+        properties = new Properties();
+        properties.setProperty("model", FRENCH_MODEL.getPath());
+        properties.setProperty("language", "fr");
+        properties.setProperty("ruleBasedOption", "off");
+        properties.setProperty("dictTag", "off");
+        properties.setProperty("dictPath", "off");
+        properties.setProperty("clearFeatures", "no");
+        annotator = new Annotate(properties);
+    }
+
+    /**
+     * A document of the given number of sentences, the first one naming a
+     * different person in each document.
+     */
+    private static KAFDocument createDocument(String person, int sentences) {
+        String[][] tokens = new String[sentences][];
+        tokens[0] = ("Le président " + person + " est à Lyon .").split(" ");
+        for (int i = 1; i < sentences; i++) {
+            tokens[i] = MappedModelTest.SENTENCES[3];
+        }
+        return AnnotatePoolTest.createDocument("fr", tokens);
+    }
+
+    private static String annotate(KAFDocument kaf) throws IOException {
+        return Annotate.annotateNEsToOpenNLP(annotator.annotateNEs(kaf));
+    }
+
+    @Test
+    public void documentsAreWrittenInInputOrder() throws IOException {
+        StringBuilder input = new StringBuilder();
+        StringBuilder expected = new StringBuilder();
+        String[] persons = {"François Hollande", "Nicolas Sarkozy",
+            "Jacques Chirac", "Marine Le Pen", "Emmanuel Macron",
+            "Manuel Valls"};
+        for (int i = 0; i < persons.length; i++) {
+            // long documents first, so that the short ones are done earlier
+            KAFDocument kaf = createDocument(persons[i], i % 2 == 0 ? 60 : 1);
+            input.append(kaf.toString()).append(SEPARATOR).append('\n');
+            String annotated = annotate(kaf);
+            expected.append(annotated);
+            if (!annotated.endsWith("\n")) {
+                expected.append('\n');
+            }
+            expected.append(SEPARATOR).append('\n');
+        }
+        StringWriter output = new StringWriter();
+        int failures = new BatchAnnotator(properties, "opennlp", "test", 4)
+                .annotateStream(new BufferedReader(new StringReader(input
+                        .toString())), SEPARATOR, BatchAnnotator.BatchOutput
+                        .toWriter(output, SEPARATOR));
+        assertEquals(0, failures);
+        assertEquals(expected.toString(), output.toString());
+    }
+
+    @Test
+    public void documentsOfSubdirectoriesKeepTheirPaths() throws IOException {
+        File inputDir = Files.createTempDirectory("batch-input").toFile();
+        File outputDir = Files.createTempDirectory("batch-output").toFile();
+        KAFDocument first = createDocument("François Hollande", 1);
+        KAFDocument second = createDocument("Nicolas Sarkozy", 1);
+        write(new File(inputDir, "a/doc.naf"), first.toString());
+        write(new File(inputDir, "b/doc.naf"), second.toString());
+        write(new File(inputDir, "b/bad.naf"), "<NAF xml:lang=\"fr\"><text>");
+
+        int failures = new BatchAnnotator(properties, "opennlp", "test", 2)
+                .annotateDirectory(inputDir, BatchAnnotator.BatchOutput
+                        .toDirectory(outputDir, "opennlp"));
+        assertEquals(1, failures);
+        assertEquals(annotate(first), read(new File(outputDir,
+                "a/doc.naf.opennlp")));
+        assertEquals(annotate(second), read(new File(outputDir,
+                "b/doc.naf.opennlp")));
+        assertFalse(new File(outputDir, "b/bad.naf.opennlp").exists());
+    }
+
+    @Test(expected = IOException.class)
+    public void filesWithTheSameNameAreRejected() throws IOException {
+        File inputDir = Files.createTempDirectory("batch-input").toFile();
+        List<File> files = new ArrayList<File>(Arrays.asList(new File(
+                inputDir, "a/doc.naf"), new File(inputDir, "b/doc.naf")));
+        new BatchAnnotator(properties, "opennlp", "test", 2).annotateFiles(
+                files, BatchAnnotator.BatchOutput.toDirectory(inputDir, null));
+    }
+
+    private static void write(File file, String content) throws IOException {
+        file.getParentFile().mkdirs();
+        com.google.common.io.Files.write(content, file, Charsets.UTF_8);
+    }
+
+    private static String read(File file) throws IOException {
+        return com.google.common.io.Files.toString(file, Charsets.UTF_8);
+    }
+
+}
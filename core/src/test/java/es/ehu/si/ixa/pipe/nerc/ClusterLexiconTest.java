@@ -0,0 +1,140 @@
+package es.ehu.si.ixa.pipe.nerc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+import eus.ixa.ixa.pipe.nerc.dict.BrownCluster;
+import eus.ixa.ixa.pipe.nerc.dict.ClarkCluster;
+import eus.ixa.ixa.pipe.nerc.dict.Word2VecCluster;
+
+public class ClusterLexiconTest {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static ByteArrayInputStream lines(String... lines) {
+        StringBuilder sb = new StringBuilder();
+        for (String line : lines) {
+            sb.append(line).append('\n');
+        }
+        return new ByteArrayInputStream(sb.toString().getBytes(UTF_8));
+    }
+
+    @Test
+    public void brownKeepsFrequentTokens() throws IOException {
+        BrownCluster brownCluster = new BrownCluster(lines(
+                "0110\tParis\t6",
+                "0111\tLyon\t5",
+                "maison\t10"));
+        assertEquals("0110", brownCluster.lookupToken("Paris"));
+        assertNull(brownCluster.lookupToken("Lyon"));
+        assertEquals("10", brownCluster.lookupToken("maison"));
+        // the tokens keep their case
+        assertNull(brownCluster.lookupToken("paris"));
+        assertEquals(2, brownCluster.getLexicon().size());
+    }
+
+    @Test
+    public void brownLaterLinesOverrideEarlierOnes() throws IOException {
+        BrownCluster brownCluster = new BrownCluster(lines(
+                "0110\tParis\t10",
+                "1110\tParis\t10"));
+        assertEquals("1110", brownCluster.lookupToken("Paris"));
+        assertEquals(1, brownCluster.getLexicon().size());
+    }
+
+    @Test
+    public void brownPathsArePrefixesOfTheCluster() throws IOException {
+        BrownCluster brownCluster = new BrownCluster(lines(
+                "Paris\t0110",
+                "Lyon\t011011101",
+                "Nantes\t011011101",
+                "Lille\t0110111010110111011010"));
+        assertEquals(Arrays.asList("0110"), brownCluster.lookupPaths("Paris"));
+        assertEquals(Arrays.asList("0110", "011011", "011011101"),
+                brownCluster.lookupPaths("Lyon"));
+        assertEquals(Arrays.asList("0110", "011011", "0110111010",
+                "01101110101101110110"), brownCluster.lookupPaths("Lille"));
+        // tokens of the same cluster share their paths
+        assertSame(brownCluster.lookupPaths("Lyon"), brownCluster
+                .lookupPaths("Nantes"));
+        assertTrue(brownCluster.lookupPaths("Marseille").isEmpty());
+        String[] tokens = {"Lyon", "et", "Lille"};
+        assertSame(brownCluster.lookupPaths("Lyon"), brownCluster
+                .lookupPaths(tokens, 0));
+        assertTrue(brownCluster.lookupPaths(tokens, 1).isEmpty());
+    }
+
+    @Test
+    public void brownDottedCapitalIIsNormalized() throws IOException {
+        BrownCluster brownCluster = new BrownCluster(lines(
+                "İstanbul\t0101",
+                "Ürün\t0011",
+                "𝔘nicode\t1111"));
+        assertEquals("0101", brownCluster.lookupToken("Istanbul"));
+        assertNull(brownCluster.lookupToken("İstanbul"));
+        assertEquals("0011", brownCluster.lookupToken("Ürün"));
+        assertEquals("1111", brownCluster.lookupToken("𝔘nicode"));
+    }
+
+    @Test
+    public void clarkTokensAreLowercased() throws IOException {
+        ClarkCluster clarkCluster = new ClarkCluster(lines(
+                "Paris 12 0.25",
+                "ÉTÉ 7",
+                "İzmir 3 0.5",
+                "Straße 4"));
+        assertEquals("12", clarkCluster.lookupToken("paris"));
+        assertNull(clarkCluster.lookupToken("Paris"));
+        assertEquals("7", clarkCluster.lookupToken("été"));
+        assertEquals("3", clarkCluster.lookupToken("izmir"));
+        assertEquals("4", clarkCluster.lookupToken("straße"));
+        Map<String, String> expected = new HashMap<String, String>();
+        expected.put("paris", "12");
+        expected.put("été", "7");
+        expected.put("izmir", "3");
+        expected.put("straße", "4");
+        assertEquals(expected, clarkCluster.getMap());
+    }
+
+    @Test
+    public void clarkIsSerializedAsRead() throws IOException {
+        ClarkCluster clarkCluster = new ClarkCluster(lines(
+                "paris 12",
+                "lyon 12",
+                "été 7"));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        clarkCluster.serialize(out);
+        ClarkCluster read = new ClarkCluster(new ByteArrayInputStream(out
+                .toByteArray()));
+        assertEquals(clarkCluster.getMap(), read.getMap());
+        assertEquals(2, read.getLexicon().getClusterCount());
+    }
+
+    @Test
+    public void word2VecTokensAreLowercased() throws IOException {
+        Word2VecCluster word2VecCluster = new Word2VecCluster(lines(
+                "Paris 40",
+                "paris 41",
+                "Íñigo 2",
+                "𝔘 9"));
+        assertEquals("41", word2VecCluster.lookupToken("paris"));
+        assertEquals("2", word2VecCluster.lookupToken("íñigo"));
+        assertEquals("9", word2VecCluster.lookupToken("𝔘"));
+        assertNull(word2VecCluster.lookupToken("Íñigo"));
+        assertNull(word2VecCluster.lookupToken("lyon"));
+        assertEquals(3, word2VecCluster.getMap().size());
+    }
+
+}
@@ -0,0 +1,42 @@
+package es.ehu.si.ixa.pipe.nerc;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+
+import opennlp.tools.namefind.NameFinderME;
+import opennlp.tools.namefind.TokenNameFinderModel;
+import opennlp.tools.util.Span;
+
+import org.junit.Test;
+
+import eus.ixa.ixa.pipe.nerc.CompiledNameFinder;
+
+public class CompiledNameFinderTest {
+
+    @Test
+    public void compiledFeaturesFindTheSameNames() throws IOException {
+        for (File modelFile : MappedModelTest.getModels()) {
+            TokenNameFinderModel model = new TokenNameFinderModel(modelFile);
+            NameFinderME nameFinder = new NameFinderME(model);
+            CompiledNameFinder compiledFinder = new CompiledNameFinder(model);
+            CompiledNameFinder hashedFinder = new CompiledNameFinder(model, true);
+            assertFalse(modelFile.getName(), compiledFinder.isHashed());
+            assertTrue(modelFile.getName(), hashedFinder.isHashed());
+            for (String[] tokens : MappedModelTest.SENTENCES) {
+                Span[] expected = nameFinder.find(tokens);
+                assertArrayEquals(modelFile.getName(), expected,
+                        compiledFinder.find(tokens));
+                assertArrayEquals(modelFile.getName(), expected,
+                        hashedFinder.find(tokens));
+                nameFinder.clearAdaptiveData();
+                compiledFinder.clearAdaptiveData();
+                hashedFinder.clearAdaptiveData();
+            }
+        }
+    }
+
+}
@@ -43,4 +43,20 @@ public class DictionariesNameFinderTest {
         assertEquals(2, spans.length);
     }
 
+    @Test
+    public void multiTokenOccurrence() throws IOException {
+        Span[] spans = finder.nercToSpansExact(new String[] {
+                "Abraham", "Lincoln", "met", "Abraham"});
+        assertEquals(1, spans.length);
+        assertEquals(new Span(0, 2, "person"), spans[0]);
+    }
+
+    @Test
+    public void ignoreCaseOccurrence() throws IOException {
+        String[] tokens = new String[] {"ABRAHAM", "lincoln", "and", "ACHILLES"};
+        assertEquals(0, finder.nercToSpansExact(tokens).length);
+        Span[] spans = finder.nercToSpans(tokens);
+        assertEquals(2, spans.length);
+    }
+
 }
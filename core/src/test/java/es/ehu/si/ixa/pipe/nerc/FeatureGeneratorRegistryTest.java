@@ -0,0 +1,103 @@
+package es.ehu.si.ixa.pipe.nerc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.List;
+
+import opennlp.tools.namefind.DefaultNameContextGenerator;
+import opennlp.tools.util.InvalidFormatException;
+import opennlp.tools.util.featuregen.AdaptiveFeatureGenerator;
+import opennlp.tools.util.featuregen.FeatureGeneratorAdapter;
+import opennlp.tools.util.featuregen.FeatureGeneratorResourceProvider;
+import opennlp.tools.util.featuregen.GeneratorFactory;
+
+import org.junit.Test;
+
+import eus.ixa.ixa.pipe.nerc.features.FeatureGeneratorCompiler;
+import eus.ixa.ixa.pipe.nerc.features.FeatureGeneratorRegistry;
+import eus.ixa.ixa.pipe.nerc.features.FusedNameContextGenerator;
+
+/**
+ * Checks that the registered constructors create the generators that
+ * reflection did, and that the generators created from one parsed
+ * descriptor give the contexts of the GeneratorFactory.
+ */
+public class FeatureGeneratorRegistryTest {
+
+    private static final String[] GENERATORS = {"BigramClassFeatureGenerator",
+        "BrownBigramFeatureGenerator", "BrownTokenClassFeatureGenerator",
+        "BrownTokenFeatureGenerator", "BrownTrigramFeatureGenerator",
+        "CharacterNgramFeatureGenerator", "ClarkFeatureGenerator",
+        "DictionaryFeatureGenerator", "FivegramClassFeatureGenerator",
+        "FourgramClassFeatureGenerator", "MFSFeatureGenerator",
+        "MorphoFeatureGenerator", "OutcomePriorFeatureGenerator",
+        "Prefix34FeatureGenerator", "Prev2MapFeatureGenerator",
+        "PreviousMapFeatureGenerator", "PreviousMapTokenFeatureGenerator",
+        "SentenceFeatureGenerator", "SuffixFeatureGenerator",
+        "SuperSenseFeatureGenerator", "TokenClassFeatureGenerator",
+        "TokenFeatureGenerator", "TrigramClassFeatureGenerator",
+        "Word2VecClusterFeatureGenerator",
+        "WordShapeSuperSenseFeatureGenerator"};
+
+    /**
+     * A generator which is not registered.
+     */
+    public static class UnregisteredFeatureGenerator extends
+            FeatureGeneratorAdapter {
+        public void createFeatures(List<String> features, String[] tokens,
+                int index, String[] previousOutcomes) {
+            features.add("unregistered=" + tokens[index]);
+        }
+    }
+
+    @Test
+    public void creatorsCreateTheNamedClass() throws InvalidFormatException {
+        for (String generator : GENERATORS) {
+            String className = "eus.ixa.ixa.pipe.nerc.features." + generator;
+            assertEquals(className, FeatureGeneratorRegistry
+                    .getCreator(className).create().getClass().getName());
+        }
+        String className = UnregisteredFeatureGenerator.class.getName();
+        AdaptiveFeatureGenerator generator = FeatureGeneratorRegistry
+                .getCreator(className).create();
+        assertEquals(className, generator.getClass().getName());
+        assertNotSame(generator, FeatureGeneratorRegistry.getCreator(className)
+                .create());
+    }
+
+    @Test(expected = InvalidFormatException.class)
+    public void missingClassesAreInvalid() throws InvalidFormatException {
+        FeatureGeneratorRegistry.getCreator("eus.ixa.ixa.pipe.nerc.features.Missing");
+    }
+
+    @Test(expected = InvalidFormatException.class)
+    public void otherClassesAreInvalid() throws InvalidFormatException {
+        FeatureGeneratorRegistry.getCreator(String.class.getName());
+    }
+
+    @Test
+    public void createdGeneratorsMatchTheGeneratorFactory() throws IOException {
+        String descriptor = FusedFeatureGeneratorTest.DESCRIPTOR.replace(
+                "<tokenpattern/>", "<custom class=\""
+                        + UnregisteredFeatureGenerator.class.getName() + "\"/>");
+        byte[] descriptorBytes = descriptor.getBytes(Charset.forName("UTF-8"));
+        FeatureGeneratorResourceProvider resources = FusedFeatureGeneratorTest
+                .getResources();
+        FeatureGeneratorCompiler compiler = FeatureGeneratorCompiler
+                .parse(descriptorBytes);
+        // every generator created from the parsed descriptor, not only the
+        // first, gives the contexts of the descriptor
+        for (int i = 0; i < 3; i++) {
+            FusedFeatureGeneratorTest.assertSameContexts(
+                    new DefaultNameContextGenerator(GeneratorFactory.create(
+                            new ByteArrayInputStream(descriptorBytes),
+                            resources)), new FusedNameContextGenerator(
+                            compiler.createGenerator(resources)));
+        }
+    }
+
+}
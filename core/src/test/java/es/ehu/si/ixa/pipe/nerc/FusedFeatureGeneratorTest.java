@@ -0,0 +1,198 @@
+package es.ehu.si.ixa.pipe.nerc;
+
+import static org.junit.Assert.assertArrayEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.HashMap;
+import java.util.Map;
+
+import opennlp.tools.namefind.DefaultNameContextGenerator;
+import opennlp.tools.namefind.NameContextGenerator;
+import opennlp.tools.util.featuregen.FeatureGeneratorResourceProvider;
+import opennlp.tools.util.featuregen.GeneratorFactory;
+
+import org.junit.Test;
+
+import eus.ixa.ixa.pipe.nerc.dict.BrownCluster;
+import eus.ixa.ixa.pipe.nerc.dict.ClarkCluster;
+import eus.ixa.ixa.pipe.nerc.dict.Dictionary;
+import eus.ixa.ixa.pipe.nerc.dict.Word2VecCluster;
+import eus.ixa.ixa.pipe.nerc.features.FeatureGeneratorCompiler;
+import eus.ixa.ixa.pipe.nerc.features.FusedNameContextGenerator;
+
+/**
+ * Compares the contexts of a compiled descriptor with those of the
+ * generators built from the same descriptor by the GeneratorFactory of
+ * OpenNLP, for a descriptor using every generator which does not need a POS
+ * model.
+ */
+public class FusedFeatureGeneratorTest {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final String PACKAGE = "eus.ixa.ixa.pipe.nerc.features.";
+    private static final String[] OUTCOMES = {"other", "person-start",
+        "person-cont", "location-start", "location-cont",
+        "organization-start", "organization-cont"};
+
+    static final String DESCRIPTOR = "<generators>"
+            + "<cache><generators>"
+            + window(2, custom("TokenFeatureGenerator", ""))
+            + window(2, custom("TokenClassFeatureGenerator", ""))
+            + window(2, custom("WordShapeSuperSenseFeatureGenerator", ""))
+            + custom("OutcomePriorFeatureGenerator", "")
+            + custom("PreviousMapFeatureGenerator", "")
+            + custom("SentenceFeatureGenerator", "begin=\"true\" end=\"false\"")
+            + custom("Prefix34FeatureGenerator", "")
+            + custom("SuffixFeatureGenerator", "")
+            + custom("BigramClassFeatureGenerator", "")
+            + custom("TrigramClassFeatureGenerator", "")
+            + custom("FourgramClassFeatureGenerator", "")
+            + custom("FivegramClassFeatureGenerator", "")
+            + custom("CharacterNgramFeatureGenerator",
+                    "minLength=\"2\" maxLength=\"5\"")
+            + custom("CharacterNgramFeatureGenerator",
+                    "minLength=\"3\" maxLength=\"4\" buckets=\"97\"")
+            + window(2, custom("DictionaryFeatureGenerator",
+                    "dict=\"names\" seqCodec=\"bilou\""))
+            + custom("Prev2MapFeatureGenerator", "")
+            + window(2, custom("PreviousMapTokenFeatureGenerator", ""))
+            + custom("BrownBigramFeatureGenerator", "dict=\"brown\"")
+            + window(2, custom("BrownTokenFeatureGenerator", "dict=\"brown\""))
+            + window(2, custom("BrownTokenClassFeatureGenerator",
+                    "dict=\"brown\""))
+            + window(2, custom("ClarkFeatureGenerator", "dict=\"clark\""))
+            + window(2, custom("Word2VecClusterFeatureGenerator",
+                    "dict=\"word2vec\""))
+            + "</generators></cache>"
+            + window(1, window(1, custom("TokenFeatureGenerator", "")))
+            + "<tokenpattern/>"
+            + "</generators>";
+
+    private static String custom(String className, String attributes) {
+        return "<custom class=\"" + PACKAGE + className + "\" " + attributes
+                + "/>";
+    }
+
+    private static String window(int length, String generator) {
+        return "<window prevLength=\"" + length + "\" nextLength=\"" + length
+                + "\">" + generator + "</window>";
+    }
+
+    /**
+     * Get the resources of the descriptor: a dictionary of some names of the
+     * test sentences, and clusters for some of their words. The Brown
+     * clusters of Mary and Barcelona are too rare to be kept.
+     */
+    static FeatureGeneratorResourceProvider getResources() throws IOException {
+        String names = "John Smith\tperson\nParis\tlocation\n"
+                + "United Nations\torganization\nBerlin\tlocation\n"
+                + "Matteo Renzi\tperson\nVerenigde Naties\torganization\n";
+        String brown = "0110\tJohn\t20\n0110\tMary\t3\n01110\tSmith\t12\n"
+                + "1011001\tParis\t40\n1011001\tBerlin\t35\n"
+                + "1011011\tLyon\t9\n10110011110\tBarcelona\t5\n"
+                + "0011\tthe\t900\n00111\tde\t800\n11\t.\t1000\n"
+                + "110100101011101\tpresidente\t7\n";
+        String clark = "john 3 0.5\nsmith 3 0.2\nparis 17 0.9\n"
+                + "berlin 17 0.8\nmilano 17 0.7\nle 40 0.1\nà 41 0.3\n"
+                + "europäischen 8 0.4\n. 1 0.9\n";
+        String word2vec = "paris 12\nroma 12\namsterdam 12\nlyon 12\n"
+                + "president 30\npresidente 30\nprésident 30\n"
+                + "renzi 5\nrajoy 5\nmerkel 5\n";
+        final Map<String, Object> resources = new HashMap<String, Object>();
+        resources.put("names", new Dictionary(new ByteArrayInputStream(names
+                .getBytes(UTF_8))));
+        resources.put("brown", new BrownCluster(new ByteArrayInputStream(
+                brown.getBytes(UTF_8))));
+        resources.put("clark", new ClarkCluster(new ByteArrayInputStream(
+                clark.getBytes(UTF_8))));
+        resources.put("word2vec", new Word2VecCluster(new ByteArrayInputStream(
+                word2vec.getBytes(UTF_8))));
+        return new FeatureGeneratorResourceProvider() {
+            public Object getResource(String resourceIdentifier) {
+                return resources.get(resourceIdentifier);
+            }
+        };
+    }
+
+    @Test
+    public void compiledWindowAndPreviousMapContexts() throws IOException {
+        String descriptor = "<generators><cache><generators>"
+                + window(1, custom("TokenFeatureGenerator", ""))
+                + custom("PreviousMapFeatureGenerator", "")
+                + "</generators></cache></generators>";
+        NameContextGenerator generator = new FusedNameContextGenerator(
+                FeatureGeneratorCompiler.compile(descriptor.getBytes(UTF_8),
+                        null));
+        String[] tokens = {"John", "went", "to", "Paris"};
+        assertArrayEquals(new String[] {"w=paris", "p1w=to", "pd=null",
+            "po=other", "pow=other,Paris", "powf=other,ic", "ppo=other"},
+                generator.getContext(3, tokens, new String[] {"person-start",
+                    "other", "other"}, null));
+        generator.updateAdaptiveData(tokens, new String[] {"person-start",
+            "other", "other", "location-start"});
+        // the next sentence sees the previous decision on Paris
+        String[] next = {"Paris", "again"};
+        assertArrayEquals(new String[] {"w=paris", "n1w=again",
+            "pd=location-start", "po=other", "pow=other,Paris",
+            "powf=other,ic", "ppo=other"}, generator.getContext(0, next,
+                new String[0], null));
+        assertArrayEquals(new String[] {"w=again", "p1w=paris", "pd=null",
+            "po=location-start", "pow=location-start,again",
+            "powf=location-start,lc", "ppo=other"}, generator.getContext(1,
+                next, new String[] {"location-start"}, null));
+    }
+
+    @Test
+    public void compiledContextsMatchTheGeneratorFactory() throws IOException {
+        FeatureGeneratorResourceProvider resources = getResources();
+        byte[] descriptor = DESCRIPTOR.getBytes(UTF_8);
+        NameContextGenerator expectedGenerator = new DefaultNameContextGenerator(
+                GeneratorFactory.create(new ByteArrayInputStream(descriptor),
+                        resources));
+        NameContextGenerator fusedGenerator = new FusedNameContextGenerator(
+                FeatureGeneratorCompiler.compile(descriptor, resources));
+        assertSameContexts(expectedGenerator, fusedGenerator);
+    }
+
+    /**
+     * Check that two context generators give the same contexts through
+     * documents of the test sentences, each repeated so that the adaptive
+     * data is used, with previous outcomes varying with the sentence.
+     */
+    static void assertSameContexts(NameContextGenerator expectedGenerator,
+            NameContextGenerator generator) {
+        for (int document = 0; document < 2; document++) {
+            expectedGenerator.clearAdaptiveData();
+            generator.clearAdaptiveData();
+            for (int sentence = 0; sentence < 2 * MappedModelTest.SENTENCES.length; sentence++) {
+                // a new array for every sentence, as the name finder gets
+                String[] tokens = MappedModelTest.SENTENCES[(sentence + document)
+                        % MappedModelTest.SENTENCES.length].clone();
+                String[] outcomes = new String[tokens.length];
+                for (int i = 0; i < tokens.length; i++) {
+                    outcomes[i] = OUTCOMES[(i + sentence) % OUTCOMES.length];
+                }
+                for (int index = 0; index < tokens.length; index++) {
+                    // the beam search asks for the contexts of several
+                    // sequences of previous outcomes for each token
+                    for (int sequence = 0; sequence < 3; sequence++) {
+                        String[] preds = new String[index];
+                        for (int i = 0; i < index; i++) {
+                            preds[i] = OUTCOMES[(i * sequence + sentence)
+                                    % OUTCOMES.length];
+                        }
+                        assertArrayEquals(tokens[index],
+                                expectedGenerator.getContext(index, tokens,
+                                        preds, null),
+                                generator.getContext(index, tokens, preds, null));
+                    }
+                }
+                expectedGenerator.updateAdaptiveData(tokens, outcomes);
+                generator.updateAdaptiveData(tokens, outcomes);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,178 @@
+package es.ehu.si.ixa.pipe.nerc;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+import opennlp.tools.ml.maxent.GISModel;
+import opennlp.tools.ml.model.Context;
+import opennlp.tools.ml.model.MaxentModel;
+import opennlp.tools.namefind.NameContextGenerator;
+import opennlp.tools.namefind.TokenNameFinderModel;
+
+import org.junit.Test;
+
+import eus.ixa.ixa.pipe.nerc.features.FeatureGeneratorCompiler;
+import eus.ixa.ixa.pipe.nerc.features.FeatureHashes;
+import eus.ixa.ixa.pipe.nerc.features.FusedNameContextGenerator;
+import eus.ixa.ixa.pipe.nerc.model.HeapMaxentModel;
+import eus.ixa.ixa.pipe.nerc.train.FusedTokenNameFinderFactory;
+
+public class HashedFeaturesTest {
+
+    private static final String[] TOKENS = MappedModelTest.SENTENCES[3];
+
+    /**
+     * The outcomes of the tokens of "Le président François Hollande est à
+     * Lyon avec Marine Le Pen .".
+     */
+    private static final String[] OUTCOMES = {"other", "other",
+        "person-start", "person-cont", "other", "other", "location-start",
+        "other", "person-start", "person-cont", "person-cont", "other"};
+
+    /**
+     * Two strings with the same polynomial hash for any odd multiplier: the
+     * Thue-Morse sequence of length 2^11 and its complement.
+     */
+    private static final String THUE_MORSE = thueMorse('a', 'b');
+    private static final String COMPLEMENT = thueMorse('b', 'a');
+
+    private static String thueMorse(char zero, char one) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 2048; i++) {
+            sb.append(Integer.bitCount(i) % 2 == 0 ? zero : one);
+        }
+        return sb.toString();
+    }
+
+    private static String[] getPreds(int index) {
+        return Arrays.copyOf(OUTCOMES, index);
+    }
+
+    @Test
+    public void hashOfAFeatureIsTheHashOfItsString() {
+        FeatureHashes features = new FeatureHashes();
+        features.add("w=Lyon");
+        features.add("pw,w=", "à", ",", "Lyon");
+        features.add("été");
+        assertEquals(3, features.size());
+        assertEquals("pw,w=à,Lyon", features.getFeature(1).toString());
+        assertEquals(FeatureHashes.hash("w=Lyon"), features.getHash(0));
+        assertEquals(FeatureHashes.hash("pw,w=à,Lyon"), features.getHash(1));
+        assertEquals(FeatureHashes.hash("été"), features.getHash(2));
+        assertFalse(FeatureHashes.hash("pw,w=à,Lyon") == FeatureHashes
+                .hash("pw,w=à,lyon"));
+        FeatureHashes copy = new FeatureHashes();
+        copy.addAll(features);
+        assertEquals("été", copy.getFeature(2).toString());
+        assertEquals(features.getHash(1), copy.getHash(1));
+        features.clear();
+        assertEquals(0, features.size());
+    }
+
+    @Test
+    public void contextHashesMatchTheContexts() throws IOException {
+        FusedNameContextGenerator generator = new FusedNameContextGenerator(
+                FeatureGeneratorCompiler.compile(FusedFeatureGeneratorTest.DESCRIPTOR
+                        .getBytes(Charset.forName("UTF-8")),
+                        FusedFeatureGeneratorTest.getResources()));
+        FeatureHashes features = new FeatureHashes();
+        // the second time with the outcomes of the first one in the maps
+        for (int pass = 0; pass < 2; pass++) {
+            for (int index = 0; index < TOKENS.length; index++) {
+                String[] context = generator.getContext(index, TOKENS,
+                        getPreds(index), null);
+                generator.getContextHashes(features, index, TOKENS,
+                        getPreds(index), null);
+                assertEquals(context.length, features.size());
+                for (int i = 0; i < context.length; i++) {
+                    assertEquals(context[i], features.getFeature(i).toString());
+                    assertEquals(context[i], FeatureHashes.hash(context[i]),
+                            features.getHash(i));
+                }
+            }
+            generator.updateAdaptiveData(TOKENS, OUTCOMES);
+        }
+    }
+
+    @Test
+    public void collidingPredicatesAreFoundByTheirStrings() {
+        // prefixed or followed by the same string they still collide
+        String first = "w=" + THUE_MORSE + COMPLEMENT;
+        String second = "w=" + COMPLEMENT + THUE_MORSE;
+        String notAPredicate = "w=" + THUE_MORSE + THUE_MORSE;
+        assertEquals(FeatureHashes.hash(first), FeatureHashes.hash(second));
+        assertEquals(FeatureHashes.hash(first), FeatureHashes
+                .hash(notAPredicate));
+        MaxentModel model = new GISModel(new Context[] {
+            new Context(new int[] {0}, new double[] {2.0}),
+            new Context(new int[] {1}, new double[] {3.0}),
+            new Context(new int[] {0, 1}, new double[] {0.5, -0.5})},
+                new String[] {first, second, "w=Lyon"}, new String[] {
+                    "other", "location-start"}, 1, 0);
+        HeapMaxentModel hashedModel = HeapMaxentModel.get(model);
+        assertNotNull(hashedModel);
+        String[][] contexts = {{first}, {second}, {first, "w=Lyon"},
+            {notAPredicate}, {notAPredicate, second}, {"w=Paris", "w=Lyon"}};
+        FeatureHashes features = new FeatureHashes();
+        double[] probs = new double[2];
+        for (String[] context : contexts) {
+            features.clear();
+            for (String feature : context) {
+                features.add(feature);
+            }
+            double[] expected = model.eval(context);
+            assertArrayEquals(expected, hashedModel.eval(context), 1e-12);
+            assertArrayEquals(expected, hashedModel.eval(features, probs),
+                    1e-12);
+        }
+        // only the colliding predicate of the context is counted
+        assertArrayEquals(new double[] {1 / (1 + Math.exp(3.0)),
+            Math.exp(3.0) / (1 + Math.exp(3.0))}, model.eval(new String[] {
+            notAPredicate, second}), 1e-12);
+    }
+
+    @Test
+    @SuppressWarnings("deprecation")
+    public void hashedPredicatesGiveTheSameProbabilities() throws IOException {
+        for (File modelFile : MappedModelTest.getModels()) {
+            TokenNameFinderModel model = new TokenNameFinderModel(modelFile);
+            MaxentModel maxentModel = model.getNameFinderModel();
+            HeapMaxentModel hashedModel = HeapMaxentModel.get(maxentModel);
+            assertNotNull(modelFile.getName(), hashedModel);
+            NameContextGenerator expectedGenerator = model.getFactory()
+                    .createContextGenerator();
+            FusedNameContextGenerator generator = (FusedNameContextGenerator) FusedTokenNameFinderFactory
+                    .createContextGenerator(model);
+            FeatureHashes features = new FeatureHashes();
+            double[] probs = new double[hashedModel.getNumOutcomes()];
+            for (int pass = 0; pass < 2; pass++) {
+                // a copy, the cache of OpenNLP keeps the features of an array
+                String[] tokens = TOKENS.clone();
+                for (int index = 0; index < tokens.length; index++) {
+                    String[] context = expectedGenerator.getContext(index,
+                            tokens, getPreds(index), null);
+                    assertArrayEquals(modelFile.getName(), context,
+                            generator.getContext(index, tokens,
+                                    getPreds(index), null));
+                    generator.getContextHashes(features, index, tokens,
+                            getPreds(index), null);
+                    double[] expected = maxentModel.eval(context);
+                    assertArrayEquals(modelFile.getName(), expected,
+                            hashedModel.eval(context), 1e-12);
+                    assertArrayEquals(modelFile.getName(), expected,
+                            hashedModel.eval(features, probs), 1e-12);
+                }
+                expectedGenerator.updateAdaptiveData(tokens, OUTCOMES);
+                generator.updateAdaptiveData(tokens, OUTCOMES);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,140 @@
+package es.ehu.si.ixa.pipe.nerc;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+import opennlp.tools.namefind.BilouCodec;
+import opennlp.tools.namefind.BioCodec;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.google.common.collect.TreeMultimap;
+
+import eus.ixa.ixa.pipe.nerc.dict.MFSResource;
+
+public class MFSResourceTest {
+
+    private static final String LEXICON = "house#n\t3#noun.location\n"
+            + "house#n\t5#noun.artifact\n"
+            + "new#a\t2#adj.all\n"
+            + "new_york#n\t4#noun.location\n"
+            + "new_york_city#n\t1#noun.location\n"
+            + "york#n\t1#noun.person\n"
+            + "eat#v\t2#verb.consumption\n"
+            + "eat#v\t2#verb.body\n"
+            + "fast_food#n\t1#noun.food\n"
+            + "Paris#n\t1#noun.location\n"
+            + "été#n\t2#noun.time\n";
+
+    private static MFSResource mfsResource = null;
+
+    @BeforeClass
+    public static void setUpClass() throws IOException {
+        mfsResource = new MFSResource(new ByteArrayInputStream(LEXICON
+                .getBytes("UTF-8")));
+    }
+
+    private static String bio(String sense, String tag) {
+        return sense + "-" + tag;
+    }
+
+    @Test
+    public void mostFrequentSenseOfAToken() {
+        List<String> lemmas = Arrays.asList("the", "house");
+        String[] posTags = {"DT", "NN"};
+        assertEquals(Arrays.asList(BioCodec.OTHER, bio("noun.artifact",
+                BioCodec.START)), mfsResource.getFirstSenseBio(lemmas, posTags));
+        assertEquals(Arrays.asList(BilouCodec.OTHER, bio("noun.artifact",
+                BilouCodec.UNIT)), mfsResource.getFirstSenseBilou(lemmas,
+                posTags));
+    }
+
+    @Test
+    public void equallyFrequentSensesAreTakenInAlphabeticalOrder() {
+        assertEquals(Arrays.asList(bio("verb.body", BioCodec.START)),
+                mfsResource.getFirstSenseBio(Arrays.asList("eat"),
+                        new String[] {"VB"}));
+    }
+
+    @Test
+    public void longestEntryIsLabelled() {
+        List<String> lemmas = Arrays.asList("new", "york", "city", "is", "new");
+        String[] posTags = {"NNP", "NNP", "NNP", "VBZ", "AQ"};
+        assertEquals(Arrays.asList(bio("noun.location", BioCodec.START),
+                bio("noun.location", BioCodec.CONTINUE), bio("noun.location",
+                        BioCodec.CONTINUE), BioCodec.OTHER, bio("adj.all",
+                        BioCodec.START)), mfsResource.getFirstSenseBio(
+                lemmas, posTags));
+        assertEquals(Arrays.asList(bio("noun.location", BilouCodec.START),
+                bio("noun.location", BilouCodec.CONTINUE), bio(
+                        "noun.location", BilouCodec.LAST), BioCodec.OTHER,
+                bio("adj.all", BilouCodec.UNIT)),
+                mfsResource.getFirstSenseBilou(lemmas, posTags));
+    }
+
+    @Test
+    public void entriesMatchThePosOfTheirFirstOrLastToken() {
+        // an adjective followed by a noun is new_york#n
+        List<String> lemmas = Arrays.asList("new", "york");
+        assertEquals(Arrays.asList(bio("noun.location", BilouCodec.START),
+                bio("noun.location", BilouCodec.LAST)),
+                mfsResource.getFirstSenseBilou(lemmas, new String[] {"AQ",
+                    "NN"}));
+        // but only new#a is left if neither token is a noun
+        assertEquals(Arrays.asList(bio("adj.all", BilouCodec.UNIT),
+                BilouCodec.OTHER), mfsResource.getFirstSenseBilou(lemmas,
+                new String[] {"AQ", "VB"}));
+    }
+
+    @Test
+    public void multiwordLemmasMatchTheirWords() {
+        // a lemma of several words matches like the tokens of its words
+        assertEquals(Arrays.asList(bio("noun.location", BilouCodec.UNIT),
+                bio("noun.food", BilouCodec.START), bio("noun.food",
+                        BilouCodec.LAST)), mfsResource.getFirstSenseBilou(
+                Arrays.asList("new_york", "fast", "food"), new String[] {
+                    "NNP", "NN", "NN"}));
+        assertEquals(Arrays.asList(bio("noun.location", BilouCodec.START),
+                bio("noun.location", BilouCodec.LAST)),
+                mfsResource.getFirstSenseBilou(Arrays.asList("new_york",
+                        "city"), new String[] {"NNP", "NN"}));
+    }
+
+    @Test
+    public void lemmasAreLowercased() {
+        // the entries with uppercase letters are never found
+        assertEquals(Arrays.asList(bio("noun.artifact", BioCodec.START),
+                BioCodec.OTHER, bio("noun.time", BioCodec.START)),
+                mfsResource.getFirstSenseBio(Arrays.asList("House", "Paris",
+                        "ÉTÉ"), new String[] {"NN", "NNP", "NN"}));
+    }
+
+    @Test
+    public void sensesAreRankedFromTheLexicon() {
+        TreeMultimap<Integer, String> senses = mfsResource
+                .getOrderedMap("house#n");
+        assertEquals(Arrays.asList(5, 3), Arrays.asList(senses.keySet()
+                .toArray()));
+        assertEquals("noun.artifact", mfsResource.getMFS(senses));
+        assertEquals("verb.body", mfsResource.getMFS(mfsResource
+                .getOrderedMap("eat#v")));
+        assertEquals(1, mfsResource.getMFSRanking("house#n", 1).size());
+        assertTrue(mfsResource.getOrderedMap("home#n").isEmpty());
+    }
+
+    @Test
+    public void serializedLexiconIsTheOriginalOne() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        mfsResource.serialize(out);
+        assertArrayEquals(LEXICON.getBytes("UTF-8"), out.toByteArray());
+    }
+
+}
@@ -0,0 +1,80 @@
+package es.ehu.si.ixa.pipe.nerc;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import opennlp.tools.namefind.NameFinderME;
+import opennlp.tools.namefind.TokenNameFinderModel;
+import opennlp.tools.util.Span;
+
+import org.junit.Assume;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import eus.ixa.ixa.pipe.nerc.CompiledNameFinder;
+import eus.ixa.ixa.pipe.nerc.model.MappedModel;
+import eus.ixa.ixa.pipe.nerc.model.MappedModelWriter;
+
+public class MappedModelTest {
+
+    private static final File MODELS_DIR = new File("../models");
+
+    static final String[][] SENTENCES = {
+        "John Smith went to Paris with Mary Brown and the United Nations .".split(" "),
+        "El presidente Mariano Rajoy viajó a Barcelona con Pedro Sánchez .".split(" "),
+        "Angela Merkel traf Emmanuel Macron in Berlin bei der Europäischen Union .".split(" "),
+        "Le président François Hollande est à Lyon avec Marine Le Pen .".split(" "),
+        "Il sindaco di Roma incontra Matteo Renzi a Milano con la FIAT .".split(" "),
+        "Mark Rutte ging naar Amsterdam met de Verenigde Naties .".split(" ")};
+
+    private static File mappedDir = null;
+
+    @BeforeClass
+    public static void setUpClass() throws IOException {
+        mappedDir = Files.createTempDirectory("mapped").toFile();
+    }
+
+    /**
+     * The bundled models, or none if they are not in the tree.
+     */
+    static File[] getModels() {
+        File[] models = MODELS_DIR.listFiles(new FilenameFilter() {
+            public boolean accept(File dir, String name) {
+                return name.endsWith(".bin");
+            }
+        });
+        Assume.assumeTrue(models != null && models.length > 0);
+        return models;
+    }
+
+    @Test
+    public void convertedModelsFindTheSameNames() throws IOException {
+        for (File modelFile : getModels()) {
+            File mappedFile = new File(mappedDir, modelFile.getName()
+                    .replace(".bin", MappedModel.EXTENSION));
+            MappedModelWriter.convert(modelFile, mappedFile);
+            assertTrue(mappedFile.length() > 0);
+            NameFinderME nameFinder = new NameFinderME(
+                    new TokenNameFinderModel(modelFile));
+            MappedModel mappedModel = MappedModel.open(mappedFile);
+            CompiledNameFinder mappedFinder = new CompiledNameFinder(mappedModel);
+            CompiledNameFinder hashedFinder = new CompiledNameFinder(mappedModel, true);
+            for (String[] tokens : SENTENCES) {
+                Span[] expected = nameFinder.find(tokens);
+                assertArrayEquals(modelFile.getName(), expected,
+                        mappedFinder.find(tokens));
+                assertArrayEquals(modelFile.getName(), expected,
+                        hashedFinder.find(tokens));
+                nameFinder.clearAdaptiveData();
+                mappedFinder.clearAdaptiveData();
+                hashedFinder.clearAdaptiveData();
+            }
+        }
+    }
+
+}
@@ -0,0 +1,94 @@
+package es.ehu.si.ixa.pipe.nerc;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+import opennlp.tools.namefind.NameFinderME;
+import opennlp.tools.namefind.TokenNameFinderModel;
+
+import org.junit.Assume;
+import org.junit.Test;
+
+import eus.ixa.ixa.pipe.nerc.ModelRegistry;
+
+/**
+ * Checks that the registry loads each model file once, keyed by path and
+ * content, that its models find the names the model file does, and that it
+ * keeps to its memory budget.
+ */
+public class ModelRegistryTest {
+
+    @Test
+    public void modelsAreKeyedByPathAndContent() throws IOException {
+        File[] models = MappedModelTest.getModels();
+        Assume.assumeTrue(models.length > 1);
+        ModelRegistry registry = new ModelRegistry(Long.MAX_VALUE);
+        File modelFile = models[0];
+        TokenNameFinderModel model = registry.getModel(modelFile.getPath());
+        assertSame(model, registry.getModel(modelFile.getPath()));
+        // the same file through another path
+        File otherPath = new File(modelFile.getParentFile(), "../"
+                + modelFile.getParentFile().getName() + "/"
+                + modelFile.getName());
+        assertSame(model, registry.getModel(otherPath.getPath()));
+
+        File copy = new File(Files.createTempDirectory("registry").toFile(),
+                modelFile.getName());
+        Files.copy(modelFile.toPath(), copy.toPath());
+        TokenNameFinderModel copyModel = registry.getModel(copy.getPath());
+        assertNotSame(model, copyModel);
+        assertEquals(2, registry.size());
+
+        // another model in place of the copy is loaded again
+        Files.copy(models[1].toPath(), copy.toPath(),
+                StandardCopyOption.REPLACE_EXISTING);
+        TokenNameFinderModel replacedModel = registry.getModel(copy.getPath());
+        assertNotSame(copyModel, replacedModel);
+        assertEquals(new TokenNameFinderModel(models[1]).getLanguage(),
+                replacedModel.getLanguage());
+    }
+
+    @Test
+    public void registryModelsFindTheSameNames() throws IOException {
+        ModelRegistry registry = new ModelRegistry(Long.MAX_VALUE);
+        for (File modelFile : MappedModelTest.getModels()) {
+            NameFinderME expected = new NameFinderME(new TokenNameFinderModel(
+                    modelFile));
+            NameFinderME nameFinder = new NameFinderME(registry.getModel(
+                    modelFile.getPath()));
+            for (String[] tokens : MappedModelTest.SENTENCES) {
+                assertArrayEquals(modelFile.getName(), expected.find(tokens),
+                        nameFinder.find(tokens));
+            }
+        }
+    }
+
+    @Test
+    public void leastRecentlyRequestedModelsAreEvicted() throws IOException {
+        File[] models = MappedModelTest.getModels();
+        Assume.assumeTrue(models.length > 2);
+        long budget = ModelRegistry.estimateFootprint(models[0])
+                + Math.max(ModelRegistry.estimateFootprint(models[1]),
+                        ModelRegistry.estimateFootprint(models[2]));
+        ModelRegistry registry = new ModelRegistry(budget);
+        TokenNameFinderModel first = registry.getModel(models[0].getPath());
+        TokenNameFinderModel second = registry.getModel(models[1].getPath());
+        assertSame(first, registry.getModel(models[0].getPath()));
+        // the second model is now the least recently requested
+        registry.getModel(models[2].getPath());
+        assertEquals(2, registry.size());
+        assertSame(first, registry.getModel(models[0].getPath()));
+        assertNotSame(second, registry.getModel(models[1].getPath()));
+        registry.setMemoryBudget(0);
+        assertEquals(0, registry.size());
+        assertEquals(0, registry.getUsedMemory());
+    }
+
+}
@@ -0,0 +1,126 @@
+package es.ehu.si.ixa.pipe.nerc;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import ixa.kaflib.KAFDocument;
+import ixa.kaflib.Term;
+import ixa.kaflib.WF;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import org.junit.After;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.google.common.base.Charsets;
+
+import eus.ixa.ixa.pipe.nerc.MorphologyLayer;
+import eus.ixa.ixa.pipe.nerc.features.SentenceContext;
+import eus.ixa.ixa.pipe.nerc.train.Flags;
+
+public class MorphologyLayerTest {
+
+    @BeforeClass
+    public static void setUpClass() throws IOException {
+        SentenceContextTest.setUpClass();
+    }
+
+    @After
+    public void tearDown() {
+        SentenceContext.clear();
+    }
+
+    /**
+     * The document "New York is big", with "New York" as a single term, and
+     * the morphofeat and lemma of each term, null for none.
+     */
+    private static KAFDocument createDocument(String[] morphofeats,
+            String[] lemmas) {
+        KAFDocument kaf = new KAFDocument("en", "v1.naf");
+        WF newWF = kaf.newWF("New", 0, 1);
+        WF york = kaf.newWF("York", 4, 1);
+        WF is = kaf.newWF("is", 9, 1);
+        WF big = kaf.newWF("big", 12, 1);
+        Term[] terms = {
+            kaf.newTerm("open", lemmas[0], "R", KAFDocument.newWFSpan(Arrays
+                    .asList(newWF, york))),
+            kaf.newTerm("open", lemmas[1], "V", KAFDocument.newWFSpan(Arrays
+                    .asList(is))),
+            kaf.newTerm("open", lemmas[2], "G", KAFDocument.newWFSpan(Arrays
+                    .asList(big)))};
+        for (int i = 0; i < terms.length; i++) {
+            terms[i].setMorphofeat(morphofeats[i]);
+        }
+        return kaf;
+    }
+
+    private static final String[] TOKENS = {"New", "York", "is", "big"};
+
+    @Test
+    public void multiwordLemmaIsGivenToTheFirstToken() throws IOException {
+        KAFDocument kaf = createDocument(new String[] {"NNP", "VBZ", "JJ"},
+                new String[] {"New_York", "be", "big"});
+        MorphologyLayer layer = new MorphologyLayer("morphofeat",
+                Flags.DEFAULT_POS_MAPPING);
+        assertTrue(layer.setSentence(kaf, kaf.getSentences().get(0), TOKENS));
+        SentenceContext context = SentenceContext.get(TOKENS);
+        assertArrayEquals(new String[] {"NNP", "NNP", "VBZ", "JJ"},
+                context.getPosTags(null));
+        assertEquals(Arrays.asList("New_York", "york", "be", "big"),
+                context.getLemmas(null, null));
+    }
+
+    @Test
+    public void tagsAreMapped() throws IOException {
+        File mapping = Files.createTempFile("mapping", ".txt").toFile();
+        com.google.common.io.Files.write("NNP\tNP\nVBZ\tV\n", mapping,
+                Charsets.UTF_8);
+        KAFDocument kaf = createDocument(new String[] {"NNP", "VBZ", "JJ"},
+                new String[] {"New_York", "be", "big"});
+        MorphologyLayer layer = new MorphologyLayer("morphofeat",
+                mapping.getPath());
+        assertTrue(layer.setSentence(kaf, kaf.getSentences().get(0), TOKENS));
+        assertArrayEquals(new String[] {"NP", "NP", "V", "JJ"},
+                SentenceContext.get(TOKENS).getPosTags(null));
+    }
+
+    @Test
+    public void missingTagFallsBackToThePosModel() throws IOException {
+        SentenceContextTest.CountingPOSModelResource posModelResource = new SentenceContextTest.CountingPOSModelResource();
+        KAFDocument kaf = createDocument(new String[] {"NNP", null, "JJ"},
+                new String[] {"New_York", "be", "big"});
+        MorphologyLayer layer = new MorphologyLayer("morphofeat",
+                Flags.DEFAULT_POS_MAPPING);
+        assertFalse(layer.setSentence(kaf, kaf.getSentences().get(0), TOKENS));
+        String[] tags = SentenceContext.get(TOKENS).getPosTags(
+                posModelResource);
+        assertEquals(TOKENS.length, tags.length);
+        assertEquals(1, posModelResource.sentences);
+        // the lemmas of the layer are not used either
+        assertEquals(Arrays.asList("new", "york", "is", "big"),
+                SentenceContext.get(TOKENS).getLemmas(posModelResource,
+                        SentenceContextTest.createLemmaResource()));
+    }
+
+    @Test
+    public void missingLemmaFallsBackToTheLemmaDictionary()
+            throws IOException {
+        SentenceContextTest.CountingPOSModelResource posModelResource = new SentenceContextTest.CountingPOSModelResource();
+        KAFDocument kaf = createDocument(new String[] {"NNP", "VBZ", "JJ"},
+                new String[] {"New_York", null, "big"});
+        MorphologyLayer layer = new MorphologyLayer("morphofeat",
+                Flags.DEFAULT_POS_MAPPING);
+        assertTrue(layer.setSentence(kaf, kaf.getSentences().get(0), TOKENS));
+        // the dictionary lemmatizes the tags of the layer
+        assertEquals(Arrays.asList("New", "York", "is", "big"),
+                SentenceContext.get(TOKENS).getLemmas(posModelResource,
+                        SentenceContextTest.createLemmaResource()));
+        assertEquals(0, posModelResource.sentences);
+    }
+
+}
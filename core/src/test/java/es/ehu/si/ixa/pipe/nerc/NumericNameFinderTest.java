@@ -0,0 +1,96 @@
+package es.ehu.si.ixa.pipe.nerc;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+
+import opennlp.tools.util.Span;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import eus.ixa.ixa.pipe.nerc.NameFactory;
+import eus.ixa.ixa.pipe.nerc.NumericNameFinder;
+
+public class NumericNameFinderTest {
+
+    private NumericNameFinder finder = null;
+
+    @Before
+    public void setUp() {
+        finder = new NumericNameFinder(new NameFactory());
+    }
+
+    private static String[] tokens(String sentence) {
+        return sentence.split(" ");
+    }
+
+    @Test
+    public void multiTokenDateAndMoney() {
+        Span[] spans = finder.nercToSpans(tokens(
+                "He arrived on 12 de enero de 2015 with 300 euros ."));
+        assertArrayEquals(new Span[] {new Span(3, 8, "DATE"),
+            new Span(9, 11, "MONEY")}, spans);
+    }
+
+    @Test
+    public void moneyPercentAndTime() {
+        assertArrayEquals(new Span[] {new Span(2, 4, "MONEY")},
+                finder.nercToSpans(tokens("It costs $ 25 .")));
+        assertArrayEquals(new Span[] {new Span(2, 4, "PERCENT"),
+            new Span(5, 6, "DATE")},
+                finder.nercToSpans(tokens("It rose 3 % to 12/04/2013 .")));
+        assertArrayEquals(new Span[] {new Span(3, 5, "TIME"),
+            new Span(6, 7, "DATE")},
+                finder.nercToSpans(tokens("We met at 10:30 pm on Monday .")));
+    }
+
+    @Test
+    public void trailingSpacesOfMatchesAreTrimmed() {
+        // the abbreviated days match with the space after them
+        assertArrayEquals(new Span[] {new Span(2, 3, "DATE")},
+                finder.nercToSpans(tokens("See you Mon. tomorrow")));
+    }
+
+    @Test
+    public void matchesInsideTokensAreIgnored() {
+        // the lexer finds US$25, 12/04/2013 and 5% inside the tokens
+        assertEquals(0, finder.nercToSpans(tokens("It cost US$25m .")).length);
+        assertEquals(0, finder.nercToSpans(tokens("ref X12/04/2013 here")).length);
+        assertEquals(0, finder.nercToSpans(tokens("It was 5%-ish .")).length);
+    }
+
+    @Test
+    public void repeatedExpressionsAreFoundOnce() {
+        // every match was searched in the whole sentence, giving each span
+        // once per repetition
+        assertArrayEquals(new Span[] {new Span(3, 5, "MONEY"),
+            new Span(6, 8, "MONEY")},
+                finder.nercToSpans(tokens("The price was 40 euros and 40 euros .")));
+    }
+
+    @Test
+    public void documentPassFindsTheNamesOfEachSentence() {
+        String[] first = tokens("Le 14 juillet 1789 la Bastille tombe .");
+        String[] second = tokens("Le 14 juillet 1790 , 20 % de plus .");
+        Span[][] spans = finder.nercToSpans(Arrays.asList(first, second));
+        assertEquals(2, spans.length);
+        assertArrayEquals(finder.nercToSpans(first), spans[0]);
+        assertArrayEquals(finder.nercToSpans(second), spans[1]);
+        assertArrayEquals(new Span[] {new Span(1, 4, "DATE")}, spans[0]);
+        assertArrayEquals(new Span[] {new Span(1, 4, "DATE"),
+            new Span(5, 7, "PERCENT")}, spans[1]);
+    }
+
+    @Test
+    public void namesDoNotCrossSentences() {
+        assertArrayEquals(new Span[] {new Span(3, 5, "DATE")},
+                finder.nercToSpans(tokens("See you on March 12 .")));
+        Span[][] spans = finder.nercToSpans(Arrays.asList(
+                tokens("See you on March"), tokens("12 .")));
+        assertArrayEquals(new Span[] {new Span(3, 4, "DATE")}, spans[0]);
+        assertEquals(0, spans[1].length);
+    }
+
+}
@@ -0,0 +1,158 @@
+package es.ehu.si.ixa.pipe.nerc;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.List;
+
+import opennlp.tools.postag.POSModel;
+import opennlp.tools.postag.POSSample;
+import opennlp.tools.postag.POSTaggerFactory;
+import opennlp.tools.postag.POSTaggerME;
+import opennlp.tools.util.ObjectStreamUtils;
+import opennlp.tools.util.TrainingParameters;
+
+import org.junit.After;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import eus.ixa.ixa.pipe.nerc.dict.LemmaResource;
+import eus.ixa.ixa.pipe.nerc.dict.POSModelResource;
+import eus.ixa.ixa.pipe.nerc.features.SentenceContext;
+
+public class SentenceContextTest {
+
+    private static byte[] posModel = null;
+
+    /**
+     * A POS model counting the sentences it tags.
+     */
+    static class CountingPOSModelResource extends POSModelResource {
+        int sentences = 0;
+
+        CountingPOSModelResource() throws IOException {
+            super(new ByteArrayInputStream(posModel));
+        }
+
+        @Override
+        public String[] posTag(String[] tokens) {
+            sentences++;
+            return super.posTag(tokens);
+        }
+    }
+
+    /**
+     * Train a tiny POS model tagging determiners, nouns and verbs.
+     */
+    @BeforeClass
+    public static void setUpClass() throws IOException {
+        POSSample[] samples = new POSSample[20];
+        for (int i = 0; i < samples.length; i++) {
+            samples[i] = POSSample.parse(i % 2 == 0 ? "the_DT dog_NN runs_VBZ"
+                    : "a_DT cat_NN sleeps_VBZ");
+        }
+        TrainingParameters params = TrainingParameters.defaultParams();
+        params.put(TrainingParameters.CUTOFF_PARAM, "0");
+        params.put(TrainingParameters.ITERATIONS_PARAM, "20");
+        // the trainer prints every iteration
+        PrintStream out = System.out;
+        System.setOut(new PrintStream(new ByteArrayOutputStream()));
+        POSModel model;
+        try {
+            model = POSTaggerME.train("en",
+                    ObjectStreamUtils.createObjectStream(samples), params,
+                    new POSTaggerFactory());
+        } finally {
+            System.setOut(out);
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        model.serialize(bytes);
+        posModel = bytes.toByteArray();
+    }
+
+    static LemmaResource createLemmaResource() throws IOException {
+        return new LemmaResource(new ByteArrayInputStream(
+                "runs\trun\tVBZ\nsleeps\tsleep\tVBZ\n".getBytes(Charset
+                        .forName("UTF-8"))));
+    }
+
+    @After
+    public void tearDown() {
+        SentenceContext.clear();
+    }
+
+    @Test
+    public void annotationsAreComputedOncePerSentence() throws IOException {
+        CountingPOSModelResource posModelResource = new CountingPOSModelResource();
+        LemmaResource lemmaResource = createLemmaResource();
+        String[] tokens = {"the", "dog", "runs"};
+        String[] tags = SentenceContext.get(tokens).getPosTags(posModelResource);
+        assertArrayEquals(new String[] {"DT", "NN", "VBZ"}, tags);
+        assertSame(tags, SentenceContext.get(tokens).getPosTags(
+                posModelResource));
+        List<String> lemmas = SentenceContext.get(tokens).getLemmas(
+                posModelResource, lemmaResource);
+        assertEquals(Arrays.asList("the", "dog", "run"), lemmas);
+        assertSame(lemmas, SentenceContext.get(tokens).getLemmas(
+                posModelResource, lemmaResource));
+        assertEquals(1, posModelResource.sentences);
+    }
+
+    @Test
+    public void sentencesAreComparedByIdentity() throws IOException {
+        CountingPOSModelResource posModelResource = new CountingPOSModelResource();
+        String[] tokens = {"a", "cat", "sleeps"};
+        SentenceContext.get(tokens).getPosTags(posModelResource);
+        // an equal sentence in another array is tagged again
+        SentenceContext.get(tokens.clone()).getPosTags(posModelResource);
+        assertEquals(2, posModelResource.sentences);
+        // as is the same array after the context is cleared
+        SentenceContext.clear();
+        tokens[1] = "dog";
+        SentenceContext.get(tokens).getPosTags(posModelResource);
+        assertEquals(3, posModelResource.sentences);
+    }
+
+    @Test
+    public void resourcesAreComparedByIdentity() throws IOException {
+        CountingPOSModelResource first = new CountingPOSModelResource();
+        CountingPOSModelResource second = new CountingPOSModelResource();
+        String[] tokens = {"the", "dog", "runs"};
+        SentenceContext.get(tokens).getPosTags(first);
+        SentenceContext.get(tokens).getPosTags(second);
+        SentenceContext.get(tokens).getPosTags(first);
+        assertEquals(1, first.sentences);
+        assertEquals(1, second.sentences);
+    }
+
+    @Test
+    public void givenAnnotationsLastUntilAnotherSentence() throws IOException {
+        CountingPOSModelResource posModelResource = new CountingPOSModelResource();
+        LemmaResource lemmaResource = createLemmaResource();
+        String[] tokens = {"the", "dog", "runs"};
+        String[] givenTags = {"D", "N", "V"};
+        List<String> givenLemmas = Arrays.asList("le", "chien", "courir");
+        SentenceContext.setAnnotations(tokens, givenTags, givenLemmas);
+        assertSame(givenTags, SentenceContext.get(tokens).getPosTags(
+                posModelResource));
+        assertSame(givenLemmas, SentenceContext.get(tokens).getLemmas(
+                posModelResource, lemmaResource));
+        assertEquals(0, posModelResource.sentences);
+
+        String[] next = {"a", "cat", "sleeps"};
+        assertArrayEquals(new String[] {"DT", "NN", "VBZ"}, SentenceContext
+                .get(next).getPosTags(posModelResource));
+        assertEquals(1, posModelResource.sentences);
+        // the given annotations are not kept for the first sentence either
+        assertArrayEquals(new String[] {"DT", "NN", "VBZ"}, SentenceContext
+                .get(tokens).getPosTags(posModelResource));
+    }
+
+}
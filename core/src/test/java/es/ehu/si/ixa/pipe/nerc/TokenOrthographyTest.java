@@ -0,0 +1,151 @@
+package es.ehu.si.ixa.pipe.nerc;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import opennlp.tools.util.featuregen.AdaptiveFeatureGenerator;
+
+import org.junit.Test;
+
+import eus.ixa.ixa.pipe.nerc.features.BigramClassFeatureGenerator;
+import eus.ixa.ixa.pipe.nerc.features.FivegramClassFeatureGenerator;
+import eus.ixa.ixa.pipe.nerc.features.Prefix34FeatureGenerator;
+import eus.ixa.ixa.pipe.nerc.features.SuffixFeatureGenerator;
+import eus.ixa.ixa.pipe.nerc.features.TokenClassFeatureGenerator;
+import eus.ixa.ixa.pipe.nerc.features.TokenFeatureGenerator;
+import eus.ixa.ixa.pipe.nerc.features.TrigramClassFeatureGenerator;
+import eus.ixa.ixa.pipe.nerc.features.WordShapeSuperSenseFeatureGenerator;
+
+public class TokenOrthographyTest {
+
+    private static final String[] SENTENCE = {"Le", "président", "Hollande",
+        "est", "à", "Lyon", "."};
+
+    private static List<String> createFeatures(
+            AdaptiveFeatureGenerator generator, String[] tokens, int index) {
+        List<String> features = new ArrayList<String>();
+        generator.createFeatures(features, tokens, index, null);
+        return features;
+    }
+
+    private static void assertShape(String shape, String token) {
+        assertEquals(token, shape,
+                TokenClassFeatureGenerator.tokenShapeFeature(token));
+    }
+
+    @Test
+    public void asciiTokenShapes() {
+        assertShape("lc", "bilbao");
+        assertShape("2d", "15");
+        assertShape("4d", "1999");
+        // the number of digits is checked before the separators
+        assertShape("2d", "3-4");
+        assertShape("dd", "3-45");
+        assertShape("ds", "1/23");
+        assertShape("dc", "1,25");
+        assertShape("dp", "3.14");
+        assertShape("num", "123");
+        assertShape("an", "A1");
+        assertShape("sc", "I");
+        assertShape("ac", "IBM");
+        assertShape("cp", "A.");
+        assertShape("ic", "Bilbao");
+        assertShape("other", "iPhone");
+        assertShape("other", "...");
+    }
+
+    @Test
+    public void nonAsciiTokenShapes() {
+        assertShape("lc", "été");
+        assertShape("lc", "straße");
+        assertShape("ic", "Éric");
+        assertShape("ic", "İstanbul");
+        assertShape("ac", "ÉTÉ");
+        assertShape("sc", "Ñ");
+        // digits of other scripts are digits too
+        assertShape("num", "٣");
+        assertShape("an", "x٣");
+        // a supplementary letter is neither lowercase nor capital
+        assertShape("other", "𝔘");
+    }
+
+    @Test
+    public void normalizedShapes() {
+        assertEquals("Xx*", WordShapeSuperSenseFeatureGenerator
+                .normalize("Bilbao"));
+        assertEquals("xXx*", WordShapeSuperSenseFeatureGenerator
+                .normalize("iPhone"));
+        assertEquals("d*-d*", WordShapeSuperSenseFeatureGenerator
+                .normalize("1999-2000"));
+        assertEquals(".*", WordShapeSuperSenseFeatureGenerator
+                .normalize("..."));
+        // only ASCII letters and digits are classes, others are kept
+        assertEquals("éxé", WordShapeSuperSenseFeatureGenerator
+                .normalize("été"));
+        assertEquals("ÉXÉ", WordShapeSuperSenseFeatureGenerator
+                .normalize("ÉTÉ"));
+        assertEquals("ß*", WordShapeSuperSenseFeatureGenerator
+                .normalize("ßß"));
+        assertEquals("٣", WordShapeSuperSenseFeatureGenerator.normalize("٣"));
+    }
+
+    @Test
+    public void tokenFeatures() {
+        assertEquals(Arrays.asList("w=président"), createFeatures(
+                new TokenFeatureGenerator(), SENTENCE, 1));
+        assertEquals(Arrays.asList("w=Le"), createFeatures(
+                new TokenFeatureGenerator(false), SENTENCE, 0));
+        assertEquals(Arrays.asList("wc=ic", "w&c=hollande,ic"),
+                createFeatures(new TokenClassFeatureGenerator(), SENTENCE, 2));
+        assertEquals(Arrays.asList("wc=other"), createFeatures(
+                new TokenClassFeatureGenerator(false), SENTENCE, 6));
+        assertEquals(Arrays.asList("sh=Xx*", "w,sh=hollande,Xx*"),
+                createFeatures(new WordShapeSuperSenseFeatureGenerator(),
+                        SENTENCE, 2));
+    }
+
+    @Test
+    public void affixFeatures() {
+        // only the prefix of length 4 is set
+        assertEquals(Arrays.asList("pre=null", "pre=null", "pre=null",
+                "pre=Holl"), createFeatures(new Prefix34FeatureGenerator(),
+                SENTENCE, 2));
+        assertEquals(Arrays.asList("pre=null", "pre=null", "pre=null",
+                "pre=Le"), createFeatures(new Prefix34FeatureGenerator(),
+                SENTENCE, 0));
+        assertEquals(Arrays.asList("suf=e", "suf=de", "suf=nde", "suf=ande"),
+                createFeatures(new SuffixFeatureGenerator(), SENTENCE, 2));
+        assertEquals(Arrays.asList("suf=e", "suf=Le", "suf=Le", "suf=Le"),
+                createFeatures(new SuffixFeatureGenerator(), SENTENCE, 0));
+        // affixes count chars, so a supplementary letter is two of them
+        assertEquals(Arrays.asList("pre=null", "pre=null", "pre=null",
+                "pre=𝔘𝔘"), createFeatures(new Prefix34FeatureGenerator(),
+                new String[] {"𝔘𝔘x"}, 0));
+    }
+
+    @Test
+    public void ngramClassFeatures() {
+        assertEquals(Arrays.asList("pw,w=président,Hollande", "pwc,wc=lc,ic",
+                "w,nw=Hollande,est", "wc,nc=ic,lc"), createFeatures(
+                new BigramClassFeatureGenerator(), SENTENCE, 2));
+        assertEquals(Arrays.asList("pw,w=Lyon,.", "pwc,wc=ic,other"),
+                createFeatures(new BigramClassFeatureGenerator(), SENTENCE, 6));
+        assertEquals(Arrays.asList("ppw,pw,w=Le,président,Hollande",
+                "ppwc,pwc,wc=ic,lc,ic", "w,nw,nnw=Hollande,est,à",
+                "wc,nwc,nnwc=ic,lc,lc"), createFeatures(
+                new TrigramClassFeatureGenerator(), SENTENCE, 2));
+        // the fivegram class features only name four of the five classes
+        assertEquals(Arrays.asList(
+                "w,nw,nnw,nnnw,nnnnw=Hollande,est,à,Lyon,.",
+                "wc,nwc,nnwc,nnnwc=ic,lc,lc,ic,other"), createFeatures(
+                new FivegramClassFeatureGenerator(), SENTENCE, 2));
+        assertEquals(Arrays.asList(
+                "ppppw,pppw,ppw,pw,w=Hollande,est,à,Lyon,.",
+                "pppwc,ppwc,pwc,wc=ic,lc,lc,ic,other"), createFeatures(
+                new FivegramClassFeatureGenerator(), SENTENCE, 6));
+    }
+
+}